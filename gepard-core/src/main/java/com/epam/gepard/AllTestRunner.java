@@ -19,6 +19,7 @@ package com.epam.gepard;
  along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
 ===========================================================================*/
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Properties;
@@ -32,21 +33,31 @@ import org.slf4j.LoggerFactory;
 import com.epam.gepard.common.Environment;
 import com.epam.gepard.common.GepardConstants;
 import com.epam.gepard.common.helper.ConsoleWriter;
+import com.epam.gepard.common.helper.DurationHistory;
 import com.epam.gepard.common.helper.ReportFinalizer;
+import com.epam.gepard.common.helper.ResultCache;
 import com.epam.gepard.common.helper.ResultCollector;
 import com.epam.gepard.common.helper.TestFailureReporter;
+import com.epam.gepard.common.threads.ConcurrencyController;
 import com.epam.gepard.common.threads.ExecutorThreadManager;
 import com.epam.gepard.common.threads.RemoteControlHandlerThread;
+import com.epam.gepard.common.threads.StopCondition;
+import com.epam.gepard.common.threads.TestClassExecutionThread;
 import com.epam.gepard.common.threads.handler.RemoteControlHandler;
 import com.epam.gepard.common.threads.helper.ServerSocketFactory;
+import com.epam.gepard.distributed.ForkedWorkerLauncher;
+import com.epam.gepard.distributed.WorkerPool;
 import com.epam.gepard.exception.ComplexGepardException;
 import com.epam.gepard.exception.ShutDownException;
 import com.epam.gepard.filter.ExpressionTestFilter;
+import com.epam.gepard.filter.impact.ImpactTestFilter;
 import com.epam.gepard.generic.GenericListTestSuite;
 import com.epam.gepard.helper.AllTestResults;
+import com.epam.gepard.logger.JournalRenderer;
 import com.epam.gepard.logger.LogFileWriter;
 import com.epam.gepard.logger.LogFinalizer;
 import com.epam.gepard.logger.LogFolderCreator;
+import com.epam.gepard.logger.ResultJournal;
 import com.epam.gepard.logger.helper.LogFileWriterFactory;
 import com.epam.gepard.util.ExitCode;
 
@@ -72,6 +83,14 @@ public class AllTestRunner extends TestRunner {
 
     public static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
     private static final Logger LOG = LoggerFactory.getLogger(AllTestRunner.class);
+    private static final int DEFAULT_AGENT_TIMEOUT = 300; //in seconds
+    private static final int DEFAULT_FAILFAST_MIN_CLASSES = 10;
+    private static final int MAX_PERCENT = 100;
+    private static final int DEFAULT_ADAPTIVE_INTERVAL = 5; //in seconds
+    private static final int DEFAULT_ADAPTIVE_CPU_LIMIT = 90; //in percent
+    private static final int DEFAULT_ADAPTIVE_HEAP_LIMIT = 85; //in percent
+    private static final int DEFAULT_ADAPTIVE_LATENCY_LIMIT = 200; //in percent
+    private static final String RESULT_JOURNAL_FILE = "journal.jsonl";
 
     /**
      * Program exit code. See @class ExitCode for the predefined values.
@@ -91,6 +110,7 @@ public class AllTestRunner extends TestRunner {
     private final ResultCollector resultCollector = new ResultCollector();
     private TestFailureReporter failureReporter;
     private LogFolderCreator logFolderCreator;
+    private final DurationHistory durationHistory;
     private final LogFileWriterFactory logFileWriterFactory = new LogFileWriterFactory();
     private final Environment environment;
 
@@ -107,6 +127,7 @@ public class AllTestRunner extends TestRunner {
         this.reportFinalizer = reportFinalizer;
         this.failureReporter = failureReporter;
         this.logFolderCreator = logFolderCreator;
+        this.durationHistory = new DurationHistory(environment);
     }
 
     /**
@@ -221,11 +242,13 @@ public class AllTestRunner extends TestRunner {
      * @throws Exception in case of tc failure
      */
     void runAll(final String testListFile) throws Exception {
+        durationHistory.load(); //before the result folder is cleaned up, as the history may be stored there
         logFolderCreator.prepareOutputFolders();
+        startResultJournal();
         //---------------
         GenericListTestSuite gSuite = tryToCreateTestSuiteList(testListFile);
 
-        handleTestListLoadTestCase();
+        handleTestListLoadTestCase(gSuite);
         systemUnderTestVersion = environment.getProperty(Environment.SYSTEM_UNDER_TEST_VERSION);
 
         //variable for multi thread results
@@ -235,38 +258,219 @@ public class AllTestRunner extends TestRunner {
         long startTime = System.currentTimeMillis();
         //take care about the threads
         initiateAndStartExecutorThreads();
+        //the test classes are passed to the threads as soon as they are loaded
+        gSuite.startLoading();
 
         //now the test is running, we have nothing else to do just prepare the summary result, first the header
-        Properties props = new Properties();
-        Calendar cal = Calendar.getInstance();
-        DateHelper dateHelper = new DateHelper();
-        props.setProperty("Date", dateHelper.getShortStringFromDate(cal));
+        Properties props = createSummaryProperties();
         //set up Loggers
         LogFileWriter htmlLog = logFileWriterFactory.createSpecificLogWriter("index.html", "html", Environment.GEPARD_HTML_RESULT_PATH, environment);
         LogFileWriter csvLog = logFileWriterFactory.createSpecificLogWriter("results.csv", "csv", Environment.GEPARD_CSV_RESULT_PATH, environment);
         LogFileWriter quickLog = logFileWriterFactory.createSpecificLogWriter("results.plain", "plain", Environment.GEPARD_RESULT_PATH, environment);
         prepareHeaders(props, htmlLog, csvLog, quickLog);
 
+        resultCollector.setCompactResults(environment.getBooleanProperty(Environment.GEPARD_RESULT_COMPACT));
         resultCollector.waitForExecutionEndAndCollectResults(allTestResults, htmlLog, csvLog);
         //Test Execution is ended
         long endTime = System.currentTimeMillis();
 
         //close threads, if any
         executorThreadManager.closeRunningThreads();
+        reportExecutionControl(props);
+        handleStopReason();
         //After running the tests, finalize the report
         reportFinalizer.finalizeTheReport(gSuite, allTestResults, systemUnderTestVersion, endTime - startTime, props);
 
+        resultCollector.writeResultRowsInTestlistOrder(props, htmlLog, csvLog);
         logFinalizer.finalizeLogs(props, htmlLog, csvLog, quickLog, executorThreadManager.getThreadCount());
+        renderResultJournal();
         CONSOLE_LOG.info("\n");
 
-        failureReporter.generateTestlistFailure(); // generate the testlist-failure.txt file to help re-execution
+        storeRunHistory();
         CONSOLE_LOG.info("Gepard Test Done.");
     }
 
+    private Properties createSummaryProperties() {
+        Properties props = new Properties();
+        Calendar cal = Calendar.getInstance();
+        DateHelper dateHelper = new DateHelper();
+        props.setProperty("Date", dateHelper.getShortStringFromDate(cal));
+        return props;
+    }
+
+    /**
+     * Logs the summary of the result cache and of the concurrency controller, and puts the report of the controller into the summary properties.
+     */
+    private void reportExecutionControl(final Properties props) {
+        if (executorThreadManager.getResultCache() != null) {
+            CONSOLE_LOG.info(executorThreadManager.getResultCache().getSummary());
+        }
+        ConcurrencyController concurrencyController = executorThreadManager.getConcurrencyController();
+        if (concurrencyController != null) {
+            CONSOLE_LOG.info(concurrencyController.getSummary());
+        }
+        props.setProperty("ConcurrencyHTML", concurrencyController == null ? "" : concurrencyController.getReportHtml());
+    }
+
+    private void handleStopReason() {
+        String stopReason = TestClassExecutionThread.getDispatcher().getStopReason();
+        if (stopReason != null) {
+            CONSOLE_LOG.info("\nTest execution was stopped, as " + stopReason + ".");
+            if (exitCode == ExitCode.EXIT_CODE_OK) { //the exit code of a load failure is kept
+                setExitCode(ExitCode.EXIT_CODE_TEST_EXECUTION_STOPPED);
+            }
+        }
+    }
+
+    /**
+     * Stores what the next runs use: the failed and the flaky test classes, and the duration of the test classes.
+     */
+    private void storeRunHistory() {
+        failureReporter.generateTestlistFailure(); // generate the testlist-failure.txt file to help re-execution
+        failureReporter.generateTestlistFlaky(); // list the test classes those passed on retry only
+        durationHistory.save(); // remember the duration of the test classes to start the longest ones first next time
+    }
+
+    private void startResultJournal() {
+        if (environment.getBooleanProperty(Environment.GEPARD_RESULT_JOURNAL)) {
+            File journalFile = new File(environment.getProperty(Environment.GEPARD_RESULT_PATH), RESULT_JOURNAL_FILE);
+            try {
+                ResultJournal.start(journalFile);
+            } catch (IOException e) {
+                exitFromGepardWithCriticalException("\nCould not create the result journal " + journalFile.getPath(), e, true,
+                        ExitCode.EXIT_CODE_TEMPLATE_CANNOT_OPEN_REPORT_LOG_FILE);
+            }
+        }
+    }
+
+    private void renderResultJournal() {
+        File journalFile = ResultJournal.stop();
+        if (journalFile != null) {
+            try {
+                int renderedLogs = new JournalRenderer().render(journalFile);
+                CONSOLE_LOG.info(renderedLogs + " report file(s) are rendered from the result journal: " + journalFile.getPath());
+            } catch (IOException e) {
+                exitFromGepardWithCriticalException("\nCould not read the result journal " + journalFile.getPath(), e, true,
+                        ExitCode.EXIT_CODE_TEMPLATE_OTHER_EXCEPTION);
+            }
+        }
+    }
+
     private void initiateAndStartExecutorThreads() {
         String threads = environment.getProperty(Environment.GEPARD_THREADS);
         String xmlResultPath = environment.getProperty(Environment.GEPARD_XML_RESULT_PATH);
+        executorThreadManager.setWorkerKeepAlive(environment.getProperty(Environment.GEPARD_THREADS_KEEPALIVE));
+        executorThreadManager.setVirtualThreads(environment.getProperty(Environment.GEPARD_THREADS_VIRTUAL));
+        TestClassExecutionThread.getDispatcher().setDurationHistory(durationHistory);
+        TestClassExecutionThread.getDispatcher().setMaxRetries(getNonNegativeProperty(Environment.GEPARD_RETRY_COUNT, 0, ExitCode.EXIT_CODE_BAD_SETUP));
+        TestClassExecutionThread.getDispatcher().setStopCondition(createStopCondition());
+        TestClassExecutionThread.getDispatcher().setThreadAffinity(environment.getBooleanProperty(Environment.GEPARD_THREADS_AFFINITY));
+        int forkedWorkers = getNonNegativeProperty(Environment.GEPARD_FORK_WORKERS, 0, ExitCode.EXIT_CODE_WORKER_SETUP_ERROR);
+        int agents = getNonNegativeProperty(Environment.GEPARD_AGENTS_COUNT, 0, ExitCode.EXIT_CODE_WORKER_SETUP_ERROR);
+        if (forkedWorkers + agents > 0) {
+            //every executor thread drives a worker JVM
+            executorThreadManager.setWorkerPool(startWorkers(forkedWorkers, agents));
+            threads = String.valueOf(forkedWorkers + agents);
+        }
+        executorThreadManager.setConcurrencyController(createConcurrencyController());
+        ResultCache resultCache = new ResultCache(environment);
+        if (resultCache.init()) {
+            executorThreadManager.setResultCache(resultCache);
+        }
         executorThreadManager.initiateAndStartExecutorThreads(threads, xmlResultPath);
+        //rows loaded ahead of the execution, per thread
+        TestClassExecutionThread.getDispatcher().setLoadWindow(getNonNegativeProperty(Environment.GEPARD_LOAD_WINDOW, 0, ExitCode.EXIT_CODE_BAD_SETUP)
+                * executorThreadManager.getThreadCount());
+    }
+
+    private StopCondition createStopCondition() {
+        int maxFailureRate = getNonNegativeProperty(Environment.GEPARD_FAILFAST_FAILURE_RATE, 0, ExitCode.EXIT_CODE_BAD_SETUP);
+        if (maxFailureRate > MAX_PERCENT) {
+            CONSOLE_LOG.info("\nERROR: Property " + Environment.GEPARD_FAILFAST_FAILURE_RATE + " must be a percent (0-100), but it is: " + maxFailureRate
+                    + "\nPlease check and fix it!\nNow exiting...");
+            exitFromGepard(ExitCode.EXIT_CODE_BAD_SETUP);
+        }
+        StopCondition stopCondition = new StopCondition(getNonNegativeProperty(Environment.GEPARD_FAILFAST_FAILED_CLASSES, 0, ExitCode.EXIT_CODE_BAD_SETUP),
+                maxFailureRate, getNonNegativeProperty(Environment.GEPARD_FAILFAST_MIN_CLASSES, DEFAULT_FAILFAST_MIN_CLASSES, ExitCode.EXIT_CODE_BAD_SETUP));
+        return stopCondition.isEnabled() ? stopCondition : null;
+    }
+
+    private ConcurrencyController createConcurrencyController() {
+        ConcurrencyController concurrencyController = null;
+        if (environment.getBooleanProperty(Environment.GEPARD_THREADS_ADAPTIVE)) {
+            int interval = getNonNegativeProperty(Environment.GEPARD_THREADS_ADAPTIVE_INTERVAL, DEFAULT_ADAPTIVE_INTERVAL, ExitCode.EXIT_CODE_BAD_SETUP);
+            if (interval == 0) {
+                CONSOLE_LOG.info("\nERROR: Property " + Environment.GEPARD_THREADS_ADAPTIVE_INTERVAL + " must be a positive number of seconds."
+                        + "\nPlease check and fix it!\nNow exiting...");
+                exitFromGepard(ExitCode.EXIT_CODE_BAD_SETUP);
+            }
+            concurrencyController = new ConcurrencyController(executorThreadManager,
+                    getNonNegativeProperty(Environment.GEPARD_THREADS_ADAPTIVE_MIN, 1, ExitCode.EXIT_CODE_BAD_SETUP),
+                    interval * (long) GepardConstants.ONE_SECOND_LENGTH.getConstant());
+            concurrencyController.setLimits(getNonNegativeProperty(Environment.GEPARD_THREADS_ADAPTIVE_CPU_LIMIT, DEFAULT_ADAPTIVE_CPU_LIMIT, ExitCode.EXIT_CODE_BAD_SETUP),
+                    getNonNegativeProperty(Environment.GEPARD_THREADS_ADAPTIVE_HEAP_LIMIT, DEFAULT_ADAPTIVE_HEAP_LIMIT, ExitCode.EXIT_CODE_BAD_SETUP),
+                    getNonNegativeProperty(Environment.GEPARD_THREADS_ADAPTIVE_LATENCY_LIMIT, DEFAULT_ADAPTIVE_LATENCY_LIMIT, ExitCode.EXIT_CODE_BAD_SETUP));
+            concurrencyController.setDurationHistory(durationHistory);
+        }
+        return concurrencyController;
+    }
+
+    private int getNonNegativeProperty(final String name, final int defaultValue, final int errorExitCode) {
+        int result = defaultValue;
+        String value = environment.getProperty(name);
+        if (value != null) {
+            try {
+                result = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                result = -1;
+            }
+            if (result < 0) {
+                CONSOLE_LOG.info("\nERROR: Property " + name + " must be a non-negative number, but it is: " + value + "\nPlease check and fix it!\nNow exiting...");
+                exitFromGepard(errorExitCode);
+            }
+        }
+        return result;
+    }
+
+    private WorkerPool startWorkers(final int forkedWorkers, final int agents) {
+        String token = getWorkerToken(agents);
+        WorkerPool workerPool = new WorkerPool(environment, new ServerSocketFactory(), token);
+        try {
+            //forked workers may use any free port on the loopback address, agents need a well known port
+            int port = workerPool.start(agents > 0 ? getNonNegativeProperty(Environment.GEPARD_AGENTS_PORT, 0, ExitCode.EXIT_CODE_WORKER_SETUP_ERROR) : 0,
+                    agents == 0);
+            if (agents > 0) {
+                workerPool.setAgentTimeout(getNonNegativeProperty(Environment.GEPARD_AGENTS_TIMEOUT, DEFAULT_AGENT_TIMEOUT, ExitCode.EXIT_CODE_WORKER_SETUP_ERROR)
+                        * (long) GepardConstants.ONE_SECOND_LENGTH.getConstant());
+                CONSOLE_LOG.info("Test classes are executed by " + agents + " agent(s), those should connect to port: " + port);
+            }
+            if (forkedWorkers > 0) {
+                ForkedWorkerLauncher launcher = new ForkedWorkerLauncher(environment, token);
+                workerPool.setLauncher(launcher);
+                launcher.launch(forkedWorkers, port);
+                CONSOLE_LOG.info("Test classes are executed by " + forkedWorkers + " forked worker JVM(s).");
+            }
+        } catch (IOException e) {
+            workerPool.shutdown();
+            exitFromGepardWithCriticalException("\nCould not start the workers.", e, true, ExitCode.EXIT_CODE_WORKER_SETUP_ERROR);
+        }
+        return workerPool;
+    }
+
+    /**
+     * Gets the token the workers should know: the agents use the configured one, the forked workers get a new one in every run.
+     */
+    private String getWorkerToken(final int agents) {
+        String token = WorkerPool.createToken();
+        if (agents > 0) {
+            token = environment.getProperty(Environment.GEPARD_AGENTS_TOKEN);
+            if (token == null || token.trim().isEmpty()) {
+                CONSOLE_LOG.info("\nERROR: Property " + Environment.GEPARD_AGENTS_TOKEN + " must be set, when agents are used, and the agents should know it."
+                        + "\nPlease check and fix it!\nNow exiting...");
+                exitFromGepard(ExitCode.EXIT_CODE_WORKER_SETUP_ERROR);
+            }
+        }
+        return token;
     }
 
     private void prepareHeaders(final Properties props, final LogFileWriter htmlLog, final LogFileWriter csvLog, final LogFileWriter quickLog) {
@@ -275,8 +479,9 @@ public class AllTestRunner extends TestRunner {
         quickLog.insertBlock("Header", props);
     }
 
-    private void handleTestListLoadTestCase() {
+    private void handleTestListLoadTestCase(final GenericListTestSuite gSuite) {
         if (environment.getBooleanProperty(Environment.GEPARD_LOAD_AND_EXIT)) {
+            gSuite.loadTestClasses(); //so the data feeders are checked, too
             CONSOLE_LOG.info("\nLoad and Exit is requested...");
             throw new ShutDownException(ExitCode.EXIT_CODE_OK);
         }
@@ -288,7 +493,7 @@ public class AllTestRunner extends TestRunner {
         ExpressionTestFilter filter = tryToCreateTestFilter(filterClass, filterExpr);
         GenericListTestSuite gSuite;
         if (testListFile != null) {
-            gSuite = new GenericListTestSuite(testListFile, filter, environment);
+            gSuite = new GenericListTestSuite(testListFile, filter, ImpactTestFilter.createFilter(environment), environment);
         } else {
             CONSOLE_LOG.info("No test list file is available.");
             throw new ShutDownException(ExitCode.EXIT_CODE_BAD_SETUP);
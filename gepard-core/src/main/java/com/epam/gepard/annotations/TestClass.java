@@ -42,4 +42,23 @@ public @interface TestClass {
      */
     String id();
 
+    /**
+     * Maximum number of test methods of the class those are executed in parallel. By default the test methods are executed one by one.
+     * Use it only when the test methods are independent from each other.
+     */
+    int parallelMethods() default 1;
+
+    /**
+     * Test classes those must be executed successfully before this test class.
+     * If any of them fails, this test class is skipped.
+     */
+    Class<?>[] dependsOn() default {};
+
+    /**
+     * Maximum execution time of the test class in seconds, 0 means that the default (gepard.timeout) is used.
+     * If the test class runs longer, it is considered as hung: it is set as failed, a thread dump is added to its log,
+     * and its executor thread is abandoned and replaced. The timeout column of the testlist overrides this value.
+     */
+    int timeout() default 0;
+
 }
@@ -56,8 +56,43 @@ public final class Environment {
     public static final String GEPARD_TESTLIST_FILE = "gepard.testlist.file";
     public static final String GEPARD_TESTLIST_FAILURE_PATH = "gepard.testlist-failure.path";
     public static final String GEPARD_TESTLIST_FAILURE_FILE = "gepard.testlist-failure.file";
+    public static final String GEPARD_TESTLIST_FLAKY_FILE = "gepard.testlist-flaky.file";
+    public static final String GEPARD_DURATION_HISTORY_FILE = "gepard.duration-history.file";
     public static final String GEPARD_TEST_RESOURCE_PATH = "gepard.test.resource.path";
     public static final String GEPARD_THREADS = "gepard.threads";
+    public static final String GEPARD_THREADS_KEEPALIVE = "gepard.threads.keepalive";
+    public static final String GEPARD_THREADS_VIRTUAL = "gepard.threads.virtual";
+    public static final String GEPARD_THREADS_AFFINITY = "gepard.threads.affinity";
+    public static final String GEPARD_THREADS_ADAPTIVE = "gepard.threads.adaptive";
+    public static final String GEPARD_THREADS_ADAPTIVE_MIN = "gepard.threads.adaptive.min";
+    public static final String GEPARD_THREADS_ADAPTIVE_INTERVAL = "gepard.threads.adaptive.interval";
+    public static final String GEPARD_THREADS_ADAPTIVE_CPU_LIMIT = "gepard.threads.adaptive.cpu-limit";
+    public static final String GEPARD_THREADS_ADAPTIVE_HEAP_LIMIT = "gepard.threads.adaptive.heap-limit";
+    public static final String GEPARD_THREADS_ADAPTIVE_LATENCY_LIMIT = "gepard.threads.adaptive.latency-limit";
+    public static final String GEPARD_TIMEOUT = "gepard.timeout";
+    public static final String GEPARD_RETRY_COUNT = "gepard.retry.count";
+    public static final String GEPARD_LOAD_WINDOW = "gepard.load.window";
+    public static final String GEPARD_RESULT_COMPACT = "gepard.result.compact";
+    public static final String GEPARD_RESULT_ASYNC = "gepard.result.async";
+    public static final String GEPARD_RESULT_JOURNAL = "gepard.result.journal";
+    public static final String GEPARD_FAILFAST_FAILED_CLASSES = "gepard.failfast.failed-classes";
+    public static final String GEPARD_FAILFAST_FAILURE_RATE = "gepard.failfast.failure-rate";
+    public static final String GEPARD_FAILFAST_MIN_CLASSES = "gepard.failfast.min-classes";
+    public static final String GEPARD_IMPACT_DIFF = "gepard.impact.diff";
+    public static final String GEPARD_IMPACT_CLASSPATH = "gepard.impact.classpath";
+    public static final String GEPARD_IMPACT_INDEX_FILE = "gepard.impact.index.file";
+    public static final String GEPARD_RESULT_CACHE_FOLDER = "gepard.result-cache.folder";
+    public static final String GEPARD_RESULT_CACHE_PROPERTIES = "gepard.result-cache.properties";
+    public static final String GEPARD_RESULT_CACHE_REFRESH = "gepard.result-cache.refresh";
+    public static final String GEPARD_RESULT_CACHE_MAX_ENTRIES = "gepard.result-cache.max-entries";
+    public static final String GEPARD_RESOURCE_PREFIX = "gepard.resource.";
+    public static final String GEPARD_FORK_WORKERS = "gepard.fork.workers";
+    public static final String GEPARD_FORK_JVM_ARGS = "gepard.fork.jvmargs";
+    public static final String GEPARD_AGENTS_COUNT = "gepard.agents.count";
+    public static final String GEPARD_AGENTS_PORT = "gepard.agents.port";
+    public static final String GEPARD_AGENTS_TIMEOUT = "gepard.agents.timeout";
+    public static final String GEPARD_AGENTS_TOKEN = "gepard.agents.token";
+    public static final String GEPARD_AGENTS_PROPERTIES = "gepard.agents.properties";
 
     public static final String GEPARD_DATA_DRIVEN_PATH_BASE = "gepard.datadriven.pathbase";
     public static final String GEPARD_DATA_DRIVEN_COLUMN_SPLITTER = "gepard.datadriven.columnsplitter";
@@ -116,6 +151,19 @@ public final class Environment {
         return isLoadedProperly;
     }
 
+    /**
+     * Sets up the environment from properties those are already loaded elsewhere, like the properties received
+     * by a worker from the Gepard coordinator.
+     *
+     * @param source holds the properties to be used.
+     */
+    public void setUp(final Properties source) {
+        for (String name : source.stringPropertyNames()) {
+            properties.setProperty(name, source.getProperty(name));
+        }
+        testEnvironmentID = getProperty(Environment.TEST_ENVIRONMENT_ID);
+    }
+
     /**
      * Returns all the properties in a Properties object.
      *
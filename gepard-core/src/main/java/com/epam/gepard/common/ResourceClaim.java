@@ -0,0 +1,80 @@
+package com.epam.gepard.common;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A resource (blocker) that is needed by a test class, as given in the third column of the testlist.
+ * Several resources can be claimed by joining them with '+', like: DB+BROWSER. All of them are acquired at the same time.
+ * A '*' at the end of the resource name means that rows of the same test class can share the resource, like: AAA*.
+ */
+public final class ResourceClaim {
+    private static final String SEPARATOR = "+";
+    private static final String SELF_ENABLED_MARK = "*";
+
+    private final String name;
+    private final boolean selfEnabled;
+
+    /**
+     * Constructs a new instance of {@link ResourceClaim}.
+     * @param name is the name of the resource (blocker string)
+     * @param selfEnabled is true if rows of the same test class can share the resource.
+     */
+    public ResourceClaim(final String name, final boolean selfEnabled) {
+        this.name = name;
+        this.selfEnabled = selfEnabled;
+    }
+
+    /**
+     * Parses the blocker column of the testlist.
+     * @param blocker is the blocker column, may be null or empty.
+     * @return with the claimed resources, empty list if no resource is needed.
+     */
+    public static List<ResourceClaim> parse(final String blocker) {
+        List<ResourceClaim> result = new ArrayList<>();
+        if (blocker != null) {
+            for (String part : blocker.split("\\" + SEPARATOR)) {
+                String claim = part.trim();
+                boolean selfEnabled = claim.endsWith(SELF_ENABLED_MARK);
+                String resourceName = selfEnabled ? claim.substring(0, claim.length() - 1) : claim;
+                if (!resourceName.isEmpty()) {
+                    result.add(new ResourceClaim(resourceName, selfEnabled));
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isSelfEnabled() {
+        return selfEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return selfEnabled ? name + SELF_ENABLED_MARK : name;
+    }
+}
@@ -19,6 +19,9 @@ package com.epam.gepard.common;
  along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
 ===========================================================================*/
 
+import java.util.Collections;
+import java.util.List;
+
 import com.epam.gepard.logger.HtmlRunReporter;
 
 import org.slf4j.Logger;
@@ -52,7 +55,13 @@ public final class TestClassExecutionData {
     private int countNA;
     private int countDummy;
     private boolean isProblematic;
+    private volatile boolean isSkipped;
+    private volatile boolean isCachedPass;
+    private volatile boolean isAbandoned;
     private int countOfRuns;
+    private int retries; //number of re-executions after a failed execution
+    private long executionTime; //in ms
+    private long timeout; //in ms, 0 means no time limit
     /**
      * To store the data driven parameters for this test class run.
      */
@@ -64,14 +73,17 @@ public final class TestClassExecutionData {
     private int drivenDataRowNo;
     private DataFeederLoader dataFeederLoader;
 
-    private int lock; //Thread lock handling. 0 = not locked, waiting for lock.
+    private volatile int lock; //Thread lock handling. 0 = not locked, waiting for lock.
 
     private final String id;
     /**
      * Store the Blocker Test Group info.
      */
-    private String blockerString;
-    private boolean selfEnabledBlocker;
+    private List<ResourceClaim> resourceClaims = Collections.emptyList();
+    /**
+     * Name of the test classes those must be executed successfully before this class.
+     */
+    private List<String> dependencies = Collections.emptyList();
 
     /**
      * The test name that will appear in the log.
@@ -88,6 +100,8 @@ public final class TestClassExecutionData {
     private String originalLine;
     private Environment environment;
     private HtmlRunReporter htmlRunReporter;
+    private String skipReason;
+    private boolean released; //the result of the row is flushed, it must not be prepared again
 
     /**
      * Test execution data for a Test Class (inherited TestCase class).
@@ -124,6 +138,115 @@ public final class TestClassExecutionData {
         isProblematic = true;
     }
 
+    /**
+     * Set the class as skipped, because a test class it depends on is failed or skipped.
+     */
+    public void setItAsSkipped() {
+        isSkipped = true;
+        isProblematic = true;
+    }
+
+    /**
+     * Set the class as skipped, because of the given reason.
+     * @param reason is why the class is not executed
+     */
+    public void setItAsSkipped(final String reason) {
+        setItAsSkipped();
+        skipReason = reason;
+    }
+
+    /**
+     * Gets why the class is skipped.
+     * @return with the reason, or null if the class is skipped because a test class it depends on is failed or skipped.
+     */
+    public String getSkipReason() {
+        return skipReason;
+    }
+
+    /**
+     * Get info if the test class was skipped or not.
+     * @return with the boolean info
+     */
+    public boolean isSkipped() {
+        return isSkipped;
+    }
+
+    /**
+     * Set the class as answered from the result cache, so it is not executed in this run.
+     */
+    public void setItAsCachedPass() {
+        isCachedPass = true;
+    }
+
+    /**
+     * Get info if the result of the test class is taken from the result cache.
+     * @return true if the class was not executed, as it passed in a previous run
+     */
+    public boolean isCachedPass() {
+        return isCachedPass;
+    }
+
+    /**
+     * Set the class as abandoned, as it is hung. Its executor thread may still run it, so it must not be executed again.
+     */
+    public void setItAsAbandoned() {
+        isAbandoned = true;
+    }
+
+    /**
+     * Get info if the test class was abandoned, as it was hung.
+     * @return true if the executor thread of the class was abandoned
+     */
+    public boolean isAbandoned() {
+        return isAbandoned;
+    }
+
+    /**
+     * Detects if the test class execution is failed, so the test classes depending on it should not be executed.
+     * @return true if a test method is failed, or the test class execution was problematic.
+     */
+    public boolean isFailed() {
+        return countFailed > 0 || isProblematic;
+    }
+
+    /**
+     * Get the number of re-executions of the test class after a failed execution.
+     * @return with the number of retries, 0 if the test class was executed only once.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Set the number of re-executions, used at the workers, those execute the attempt given by the coordinator.
+     * @param retries is the number of the previous attempts.
+     */
+    public void setRetries(final int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * Detects if the test class is flaky, i.e. it is failed first, but passed on a retry.
+     * @return true if the test class passed on a retry.
+     */
+    public boolean isFlaky() {
+        return retries > 0 && !isFailed();
+    }
+
+    /**
+     * Prepares the test class for a re-execution after a failed execution: the counters are cleared, and the class is waiting for lock again.
+     */
+    public void prepareRetry() {
+        retries++;
+        countPassed = 0;
+        countFailed = 0;
+        countNA = 0;
+        countDummy = 0;
+        countOfRuns = 0;
+        isProblematic = false;
+        lock = 0;
+    }
+
     /**
      * Get info if the test class execution was problematic or not.
      * @return with the boolean info
@@ -159,20 +282,40 @@ public final class TestClassExecutionData {
         lock = -1;
     }
 
+    /**
+     * Gets the blocker column of the testlist, i.e. the resources claimed by the test class.
+     * @return with the claimed resources joined by '+', or null if the class does not need any resource.
+     */
     public String getBlockerString() {
-        return blockerString;
+        String result = null;
+        if (!resourceClaims.isEmpty()) {
+            StringBuilder blocker = new StringBuilder();
+            for (ResourceClaim claim : resourceClaims) {
+                blocker.append(blocker.length() == 0 ? "" : "+").append(claim);
+            }
+            result = blocker.toString();
+        }
+        return result;
     }
 
+    /**
+     * Sets the resources claimed by the test class, as given in the blocker column of the testlist, like: AAA, AAA* or DB+BROWSER.
+     * @param blockerString is the blocker column, may be null.
+     */
     public void setBlockerString(final String blockerString) {
-        this.blockerString = blockerString;
+        resourceClaims = ResourceClaim.parse(blockerString);
     }
 
-    public void setSelfEnabledBlocker(final boolean selfEnabledBlocker) {
-        this.selfEnabledBlocker = selfEnabledBlocker;
+    public List<ResourceClaim> getResourceClaims() {
+        return resourceClaims;
     }
 
-    public boolean isSelfEnabledBlocker() {
-        return selfEnabledBlocker;
+    public List<String> getDependencies() {
+        return dependencies;
+    }
+
+    public void setDependencies(final List<String> dependencies) {
+        this.dependencies = dependencies;
     }
 
     /**
@@ -268,6 +411,29 @@ public final class TestClassExecutionData {
         }
     }
 
+    /**
+     * Prepares the row of the test class for its execution (or for reporting it), if it is not prepared yet:
+     * loads its data driven parameters and creates its html reporter. Rows waiting for execution do not hold these.
+     */
+    public synchronized void materialize() {
+        if (htmlRunReporter == null && !released) {
+            loadParameters();
+            new HtmlRunReporter(this); //this prepares everything that need to be prepared for Html Logging the execution of the test class
+            if (drivenData != null) {
+                testScriptName += " - " + drivenData.getParameters()[0]; //puts the first parameter into the test name
+            }
+        }
+    }
+
+    /**
+     * Releases the data driven parameters and the html reporter of the row, used when its result is flushed already.
+     */
+    public synchronized void release() {
+        released = true;
+        drivenData = null;
+        htmlRunReporter = null;
+    }
+
     public void setDataRow(final int rowNo) {
         drivenDataRowNo = rowNo;
     }
@@ -340,6 +506,21 @@ public final class TestClassExecutionData {
         countFailed++;
     }
 
+    /**
+     * Sets the counters of the test class, used when the test class was executed by a worker.
+     *
+     * @param passed        is the number of passed test cases
+     * @param failed        is the number of failed test cases
+     * @param notApplicable is the number of N/A test cases
+     * @param dummy         is the number of dummy test cases
+     */
+    public void setCounters(final int passed, final int failed, final int notApplicable, final int dummy) {
+        countPassed = passed;
+        countFailed = failed;
+        countNA = notApplicable;
+        countDummy = dummy;
+    }
+
     public String getTestURL() {
         return testURL;
     }
@@ -367,4 +548,24 @@ public final class TestClassExecutionData {
     public void setCountOfRuns(int countOfRuns) {
         this.countOfRuns = countOfRuns;
     }
+
+    public long getExecutionTime() {
+        return executionTime;
+    }
+
+    public void setExecutionTime(final long executionTime) {
+        this.executionTime = executionTime;
+    }
+
+    /**
+     * Gets the maximum execution time of the test class, the test class is considered as hung after that.
+     * @return with the time limit in ms, 0 means no time limit.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(final long timeout) {
+        this.timeout = timeout;
+    }
 }
@@ -0,0 +1,151 @@
+package com.epam.gepard.common;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+/**
+ * Compact, immutable result of a test class row. The final report, the failure list and the duration history are built from these records,
+ * so the {@link TestClassExecutionData} of a row (with its reporter, parameters, test class) can be released after its result is flushed.
+ */
+public final class TestClassResult {
+
+    private final String id;
+    private final String originalLine;
+    private final String testScriptId;
+    private final String testScriptName;
+    private final String testURL;
+    private final int countPassed;
+    private final int countFailed;
+    private final int countNA;
+    private final int countDummy;
+    private final int countOfRuns;
+    private final long executionTime;
+    private final boolean problematic;
+    private final boolean flaky;
+    private final boolean executed;
+    private final boolean skipped;
+    private final boolean cachedPass;
+
+    /**
+     * Creates the result record of a test class row.
+     *
+     * @param classData is the row of the test class.
+     */
+    public TestClassResult(final TestClassExecutionData classData) {
+        id = classData.getID();
+        originalLine = classData.getOriginalLine();
+        testScriptId = classData.getTestScriptId();
+        testScriptName = classData.getTestScriptName();
+        testURL = classData.getTestURL();
+        countPassed = classData.getCountPassed();
+        countFailed = classData.getCountFailed();
+        countNA = classData.getCountNA();
+        countDummy = classData.getCountDummy();
+        countOfRuns = classData.getCountOfRuns();
+        executionTime = classData.getExecutionTime();
+        problematic = classData.isProblematic();
+        flaky = classData.isFlaky();
+        executed = classData.getLock() == -1;
+        skipped = classData.isSkipped();
+        cachedPass = classData.isCachedPass();
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public String getOriginalLine() {
+        return originalLine;
+    }
+
+    public String getTestScriptId() {
+        return testScriptId;
+    }
+
+    public String getTestScriptName() {
+        return testScriptName;
+    }
+
+    public String getTestURL() {
+        return testURL;
+    }
+
+    public int getCountPassed() {
+        return countPassed;
+    }
+
+    public int getCountFailed() {
+        return countFailed;
+    }
+
+    public int getCountNA() {
+        return countNA;
+    }
+
+    public int getCountDummy() {
+        return countDummy;
+    }
+
+    public int getRunned() {
+        return countPassed + countFailed + countNA;
+    }
+
+    public int getCountOfRuns() {
+        return countOfRuns;
+    }
+
+    public long getExecutionTime() {
+        return executionTime;
+    }
+
+    public boolean isProblematic() {
+        return problematic;
+    }
+
+    public boolean isFlaky() {
+        return flaky;
+    }
+
+    /**
+     * Tells if the row was executed (or skipped) in this run.
+     *
+     * @return true if the execution of the row is finished.
+     */
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    /**
+     * Tells if the row was skipped in this run (e.g. a test class it depends on failed, or the execution was stopped).
+     *
+     * @return true if the row was not executed.
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Tells if the result of the row is taken from the result cache, i.e. it was not executed in this run.
+     *
+     * @return true if the row passed in a previous run, and it was not executed now.
+     */
+    public boolean isCachedPass() {
+        return cachedPass;
+    }
+}
@@ -0,0 +1,146 @@
+package com.epam.gepard.common.helper;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.epam.gepard.AllTestRunner;
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.TestClassResult;
+import com.epam.gepard.generic.GenericListTestSuite;
+
+/**
+ * Stores the execution time of the test classes (per data row) of the previous runs, so the longest test classes can be started first.
+ * The history is stored next to the testlist-failure file, as a property file, the key is the test class ID, the value is the duration in ms.
+ */
+public class DurationHistory {
+    private final Environment environment;
+    private final Properties durations = new Properties();
+    private long defaultDuration;
+
+    /**
+     * Constructs a new instance of {@link DurationHistory}.
+     * @param environment holds the properties of the application
+     */
+    public DurationHistory(final Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Loads the durations of the previous runs. If there is no history, every test class gets the same (zero) estimation.
+     */
+    public void load() {
+        File historyFile = getHistoryFile();
+        durations.clear();
+        if (historyFile != null && historyFile.isFile()) {
+            try (InputStream in = new FileInputStream(historyFile)) {
+                durations.load(in);
+            } catch (IOException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Cannot load test duration history: " + historyFile.getPath() + ", " + e.getMessage());
+            }
+        }
+        defaultDuration = calculateAverageDuration();
+    }
+
+    /**
+     * Gets the expected execution time of the test class.
+     * Test classes without history get the average duration of the known test classes.
+     * @param classData is the test class
+     * @return with the expected duration in ms.
+     */
+    public long getPredictedDuration(final TestClassExecutionData classData) {
+        long result = defaultDuration;
+        Long duration = parseDuration(durations.getProperty(classData.getID()));
+        if (duration != null) {
+            result = duration;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the execution time of the test class in the previous run, without estimation.
+     * @param classData is the test class
+     * @return with the duration in ms, or null if the test class has no history.
+     */
+    public Long getRecordedDuration(final TestClassExecutionData classData) {
+        return parseDuration(durations.getProperty(classData.getID()));
+    }
+
+    /**
+     * Updates the history with the durations of the executed test classes, and saves it.
+     * Test classes those were not executed in this run (including the skipped ones and the cached passes) keep their old duration.
+     */
+    public void save() {
+        File historyFile = getHistoryFile();
+        if (historyFile != null) {
+            for (TestClassResult result : GenericListTestSuite.getTestClassResults()) {
+                if (result.isExecuted() && !result.isSkipped() && !result.isCachedPass()) {
+                    durations.setProperty(result.getID(), String.valueOf(result.getExecutionTime()));
+                }
+            }
+            try (OutputStream out = new FileOutputStream(historyFile)) {
+                durations.store(out, "Gepard generated file about test class durations (ms).");
+            } catch (IOException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Cannot save test duration history: " + historyFile.getPath() + ", " + e.getMessage());
+            }
+        }
+    }
+
+    private File getHistoryFile() {
+        File result = null;
+        String fileName = environment.getProperty(Environment.GEPARD_DURATION_HISTORY_FILE);
+        if (fileName != null && !fileName.isEmpty()) {
+            result = new File(environment.getProperty(Environment.GEPARD_TESTLIST_FAILURE_PATH) + "/" + fileName);
+        }
+        return result;
+    }
+
+    private long calculateAverageDuration() {
+        long sum = 0;
+        int count = 0;
+        for (String id : durations.stringPropertyNames()) {
+            Long duration = parseDuration(durations.getProperty(id));
+            if (duration != null) {
+                sum += duration;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    private Long parseDuration(final String duration) {
+        Long result = null;
+        if (duration != null) {
+            try {
+                result = Long.valueOf(duration.trim());
+            } catch (NumberFormatException e) {
+                result = null; //unusable entry, handled as unknown
+            }
+        }
+        return result;
+    }
+}
@@ -21,11 +21,11 @@ package com.epam.gepard.common.helper;
 
 import java.text.NumberFormat;
 import java.util.Calendar;
-import java.util.Iterator;
 import java.util.Properties;
 
 import com.epam.gepard.common.Environment;
 import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.common.TestClassResult;
 import com.epam.gepard.generic.GenericListTestSuite;
 import com.epam.gepard.helper.AllTestResults;
 import com.epam.gepard.helper.DateHelper;
@@ -83,11 +83,9 @@ public class ReportFinalizer {
         props.setProperty("TCSrunned", String.valueOf(gSuite.getTestClassCount())); //TODO as gSuite won't be used, counting TCs should be arranged somehow
         props.setProperty("TCUsed", Integer.toString(gSuite.getUsedTc()));
         int tcNumber = 0;
-        Iterator<String> iterator = GenericListTestSuite.getTestClassIds().iterator();
-        while (iterator.hasNext()) {
-            String s = iterator.next();
-            if (s.endsWith("/0")) { //ignore multiplications in map
-                tcNumber += GenericListTestSuite.getTestClassExecutionData(s).getCountOfRuns();
+        for (TestClassResult result : GenericListTestSuite.getTestClassResults()) {
+            if (result.getID().endsWith("/0")) { //ignore multiplications in map
+                tcNumber += result.getCountOfRuns();
             }
         }
         props.setProperty("TCNumber", Integer.toString(tcNumber));
@@ -0,0 +1,350 @@
+package com.epam.gepard.common.helper;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.epam.gepard.AllTestRunner;
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.datadriven.DataDrivenParameters;
+import com.epam.gepard.filter.impact.ClassDependencyIndex;
+import com.epam.gepard.helper.DateHelper;
+import com.epam.gepard.util.ExitCode;
+
+/**
+ * Cache of the passed test class rows. A row that passed in a previous run is not executed again, but reported as "cached pass",
+ * if nothing is changed that may affect its result: the bytecode of the test class and of the classes it refers to (directly or indirectly),
+ * the libraries of the class path, the data row, and the selected properties (gepard.result-cache.properties).
+ * <p>
+ * The cache is a folder, an entry is a small property file, named by the SHA-256 hash of the above. The number of entries is limited,
+ * the least recently used entries are removed. Only rows those passed at the first attempt are cached, and only test classes those are
+ * compiled into a class folder (not into a jar) can be cached.
+ * </p>
+ */
+public class ResultCache {
+
+    private static final String KEY_VERSION = "Gepard result cache, version 1";
+    private static final String ENTRY_EXTENSION = ".properties";
+    private static final String INDEX_FILE = "class-index.txt";
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final int BYTE_MASK = 0xff;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int NIBBLE_SIZE = 4;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Environment environment;
+    /**
+     * Key is the name of the test class, value is the hash of its bytecode, together with the classes it refers to.
+     */
+    private final Map<String, String> classHashes = new ConcurrentHashMap<>();
+    /**
+     * Key is the key of the entry, ordered by the last use, the least recently used comes first.
+     */
+    private final Map<String, File> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    private final ClassDependencyIndex index = new ClassDependencyIndex();
+    private File cacheFolder;
+    private boolean refresh;
+    private int maxEntries;
+    private List<String> keyProperties;
+    private String classPathFingerprint;
+    private int cachedPasses;
+    private int storedPasses;
+
+    /**
+     * Constructs a new instance of {@link ResultCache}.
+     * @param environment holds the properties of the application
+     */
+    public ResultCache(final Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Prepares the cache, if it is requested (gepard.result-cache.folder is set): loads the list of the entries, and updates the class dependency index.
+     * @return true if the cache can be used.
+     */
+    public boolean init() {
+        String folderName = environment.getProperty(Environment.GEPARD_RESULT_CACHE_FOLDER);
+        boolean result = false;
+        if (folderName != null && !folderName.trim().isEmpty()) {
+            cacheFolder = new File(folderName.trim());
+            refresh = environment.getBooleanProperty(Environment.GEPARD_RESULT_CACHE_REFRESH);
+            maxEntries = parseMaxEntries(environment.getProperty(Environment.GEPARD_RESULT_CACHE_MAX_ENTRIES));
+            keyProperties = parseKeyProperties(environment.getProperty(Environment.GEPARD_RESULT_CACHE_PROPERTIES, ""));
+            try {
+                if (!cacheFolder.isDirectory() && !cacheFolder.mkdirs()) {
+                    throw new IOException("Cannot create folder: " + cacheFolder.getPath());
+                }
+                File indexFile = new File(cacheFolder, INDEX_FILE);
+                if (indexFile.isFile()) {
+                    index.load(indexFile);
+                }
+                index.update(ClassDependencyIndex.getClassFolders(environment.getProperty(Environment.GEPARD_IMPACT_CLASSPATH)));
+                index.save(indexFile);
+                classPathFingerprint = createClassPathFingerprint();
+                loadEntries();
+                result = true;
+                AllTestRunner.CONSOLE_LOG.info("Result cache: " + cacheFolder.getPath() + ", " + entries.size() + " cached passes are known"
+                        + (refresh ? ", those are refreshed now." : "."));
+            } catch (IOException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Result cache cannot be used, all test classes are executed. " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private int parseMaxEntries(final String value) {
+        int result = DEFAULT_MAX_ENTRIES;
+        if (value != null) {
+            try {
+                result = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                result = -1;
+            }
+            if (result <= 0) {
+                AllTestRunner.CONSOLE_LOG.info("\nERROR: Property " + Environment.GEPARD_RESULT_CACHE_MAX_ENTRIES + " must be a positive number, but it is: "
+                        + value + "\nPlease check and fix it!\nNow exiting...");
+                AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_BAD_SETUP);
+            }
+        }
+        return result;
+    }
+
+    private List<String> parseKeyProperties(final String value) {
+        List<String> result = new ArrayList<>();
+        for (String name : value.split(",")) {
+            if (!name.trim().isEmpty()) {
+                result.add(name.trim());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private void loadEntries() {
+        File[] files = cacheFolder.listFiles();
+        List<File> entryFiles = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(ENTRY_EXTENSION)) {
+                    entryFiles.add(file);
+                }
+            }
+        }
+        //the least recently used entry comes first
+        Collections.sort(entryFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File o1, final File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+        synchronized (entries) {
+            for (File file : entryFiles) {
+                entries.put(file.getName().substring(0, file.getName().length() - ENTRY_EXTENSION.length()), file);
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Restores the result of a row from the cache, if the row passed in a previous run, and nothing is changed since then.
+     * @param classData is the row to be executed, its parameters must be loaded.
+     * @return true if the result is restored, so the row must not be executed.
+     */
+    public boolean restoreCachedPass(final TestClassExecutionData classData) {
+        boolean result = false;
+        String key = refresh ? null : getKey(classData);
+        File entryFile = null;
+        if (key != null) {
+            synchronized (entries) {
+                entryFile = entries.get(key);
+                if (entryFile != null) {
+                    cachedPasses++;
+                    //remember the use for the next runs, too
+                    entryFile.setLastModified(System.currentTimeMillis());
+                }
+            }
+        }
+        if (entryFile != null) {
+            Properties entry = new Properties();
+            try (InputStream in = new FileInputStream(entryFile)) {
+                entry.load(in);
+                classData.setCounters(Integer.parseInt(entry.getProperty("passed")), 0, Integer.parseInt(entry.getProperty("notApplicable")),
+                        Integer.parseInt(entry.getProperty("dummy")));
+                classData.setCountOfRuns(Integer.parseInt(entry.getProperty("runs")));
+                classData.addSysOut("\nCached pass: " + classData.getClassName() + "\nName: " + classData.getTestScriptName()
+                        + "\nThe row passed on " + entry.getProperty("date") + ", nothing is changed since then, so it is not executed. Cache key: " + key);
+                classData.setItAsCachedPass();
+                result = true;
+            } catch (IOException | NumberFormatException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Broken result cache entry: " + entryFile.getPath() + ", the row is executed. " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the result of a just executed row, if it passed at the first attempt.
+     * @param classData is the executed row.
+     */
+    public void storePass(final TestClassExecutionData classData) {
+        String key = classData.isFailed() || classData.isSkipped() || classData.getRetries() > 0 ? null : getKey(classData);
+        if (key != null) {
+            Properties entry = new Properties();
+            entry.setProperty("id", classData.getID());
+            entry.setProperty("passed", String.valueOf(classData.getCountPassed()));
+            entry.setProperty("notApplicable", String.valueOf(classData.getCountNA()));
+            entry.setProperty("dummy", String.valueOf(classData.getCountDummy()));
+            entry.setProperty("runs", String.valueOf(classData.getCountOfRuns()));
+            entry.setProperty("date", new DateHelper().getShortStringFromDate(Calendar.getInstance()));
+            File entryFile = new File(cacheFolder, key + ENTRY_EXTENSION);
+            try (OutputStream out = new FileOutputStream(entryFile)) {
+                entry.store(out, "Gepard result cache entry, the row passed.");
+                synchronized (entries) {
+                    entries.put(key, entryFile);
+                    storedPasses++;
+                    evict();
+                }
+            } catch (IOException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Cannot store result cache entry: " + entryFile.getPath() + ", " + e.getMessage());
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<File> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            File leastRecentlyUsed = iterator.next();
+            iterator.remove();
+            if (!leastRecentlyUsed.delete()) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Cannot delete result cache entry: " + leastRecentlyUsed.getPath());
+            }
+        }
+    }
+
+    /**
+     * Gets the key of a row: the hash of the bytecode of its test class (and the classes it refers to), the libraries, its data row,
+     * and the selected properties.
+     * @param classData is the row, its parameters must be loaded.
+     * @return with the key, or null if the row cannot be cached, as its test class is not found in the class folders.
+     */
+    String getKey(final TestClassExecutionData classData) {
+        String result = null;
+        String classHash = getClassHash(classData.getClassName());
+        if (classHash != null) {
+            StringBuilder content = new StringBuilder(KEY_VERSION).append('\n');
+            content.append("class=").append(classHash).append('\n');
+            content.append("classpath=").append(classPathFingerprint).append('\n');
+            content.append("row=").append(classData.getID()).append('\n');
+            content.append("testlist=").append(classData.getOriginalLine()).append('\n');
+            DataDrivenParameters drivenData = classData.getDrivenData();
+            if (drivenData != null && drivenData.getParameters() != null) {
+                content.append("parameters=").append(Arrays.toString(drivenData.getParameterNames())).append('=')
+                        .append(Arrays.toString(drivenData.getParameters())).append('\n');
+            }
+            for (String name : keyProperties) {
+                content.append(name).append('=').append(environment.getProperty(name)).append('\n');
+            }
+            result = toHex(createDigest().digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        return result;
+    }
+
+    private String getClassHash(final String className) {
+        String result = classHashes.get(className);
+        if (result == null) {
+            List<File> classFiles = index.getDependencyClosure(className);
+            if (!classFiles.isEmpty()) {
+                MessageDigest digest = createDigest();
+                try {
+                    for (File classFile : classFiles) {
+                        digest.update(classFile.getName().getBytes(StandardCharsets.UTF_8));
+                        digest.update(Files.readAllBytes(classFile.toPath()));
+                    }
+                    result = toHex(digest.digest());
+                    classHashes.put(className, result);
+                } catch (IOException e) {
+                    AllTestRunner.CONSOLE_LOG.info("INFO: Test class: " + className + " cannot be cached, as its class files cannot be read. " + e.getMessage());
+                }
+            }
+        }
+        return result;
+    }
+
+    private String createClassPathFingerprint() {
+        StringBuilder result = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File library = new File(entry.trim());
+            if (library.isFile()) {
+                result.append(library.getName()).append(':').append(library.length()).append(':').append(library.lastModified()).append(';');
+            }
+        }
+        return toHex(createDigest().digest(result.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by the JVM.", e);
+        }
+    }
+
+    private String toHex(final byte[] bytes) {
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[2 * i] = HEX_DIGITS[(bytes[i] & BYTE_MASK) >>> NIBBLE_SIZE];
+            result[2 * i + 1] = HEX_DIGITS[bytes[i] & (BYTE_MASK >>> NIBBLE_SIZE)];
+        }
+        return new String(result);
+    }
+
+    /**
+     * Gets the statistics of the cache in this run.
+     * @return with the number of the cached and the stored passes.
+     */
+    public String getSummary() {
+        synchronized (entries) {
+            return "Result cache: " + cachedPasses + " rows passed from the cache, " + storedPasses + " passed rows are stored, " + entries.size()
+                    + " entries are in the cache.";
+        }
+    }
+}
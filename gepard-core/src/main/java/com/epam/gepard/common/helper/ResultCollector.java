@@ -24,68 +24,130 @@ import java.util.Properties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.epam.gepard.AllTestRunner;
 import com.epam.gepard.common.GepardConstants;
 import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.TestClassResult;
+import com.epam.gepard.common.threads.TestClassExecutionThread;
 import com.epam.gepard.generic.GenericListTestSuite;
 import com.epam.gepard.helper.AllTestResults;
 import com.epam.gepard.logger.LogFileWriter;
 
 /**
  * Collects the results of all tests.
+ * The rows are collected as they finish (see {@link GenericListTestSuite#testClassFinished(TestClassExecutionData)}), so a slow row does not hold back
+ * the results of the others. The html and csv logs get the result rows in completion order during the execution,
+ * and they are rewritten in testlist order at the end, see {@link #writeResultRowsInTestlistOrder(Properties, LogFileWriter, LogFileWriter)}.
  * @author Zsolt Kiss Gere, Laszlo Toth, Tamas Godan, Tamas Kohegyi, Tibor Kovacs
  */
 public class ResultCollector {
     private static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
 
     private boolean odd;
+    private boolean compactResults;
+    private int collectedRows;
+    private boolean inTestlistOrder;
 
     /**
-     * Goes through the current test list and waits till each test finished then collects the results to the given {@link AllTestResults} object.
+     * Sets if only the compact result record of a row is kept after its result is flushed, see gepard.result.compact.
+     * @param compactResults is true if the execution data of the flushed rows should be released.
+     */
+    public void setCompactResults(final boolean compactResults) {
+        this.compactResults = compactResults;
+    }
+
+    /**
+     * Collects the results of the rows as they finish, till all the rows are finished, into the given {@link AllTestResults} object.
+     * While no row finishes, the console output of the rows under execution is written out, once per second.
      * @param allTestResults is the holder of test results.
      * @param htmlLog is writer of html log file.
      * @param csvLog is writer of csv log file.
-     * @throws InterruptedException because of the Thread.sleep()
+     * @throws InterruptedException if the waiting is interrupted
      */
     public void waitForExecutionEndAndCollectResults(final AllTestResults allTestResults, final LogFileWriter htmlLog, final LogFileWriter csvLog)
         throws InterruptedException {
         odd = false; //a marker to detect odd and even rows in the html test result
-        for (String s1 : GenericListTestSuite.getTestClassIds()) {
-            TestClassExecutionData d = GenericListTestSuite.getTestClassExecutionData(s1);
-            boolean needToWait = true;
-            while (needToWait) {
-                needToWait = hasToWait(allTestResults, d, htmlLog, csvLog);
+        collectedRows = 0;
+        inTestlistOrder = true;
+        while (!GenericListTestSuite.isCollectionFinished()) {
+            TestClassExecutionData d = GenericListTestSuite.waitForFinishedTestClass(GepardConstants.ONE_SECOND_LENGTH.getConstant());
+            if (d == null) {
+                writeRunningOutput();
+            } else {
+                collectTestResult(allTestResults, d, htmlLog, csvLog);
             }
         }
     }
 
-    private boolean hasToWait(final AllTestResults allTestResults, final TestClassExecutionData executionData, final LogFileWriter htmlLog,
-            final LogFileWriter csvLog) throws InterruptedException {
-        boolean result = true;
-        if (executionData.getLock() >= 0) { //need wait
-            String s = executionData.getSysOut();
+    private void writeRunningOutput() {
+        for (TestClassExecutionThread thread : AllTestRunner.getExecutorThreadManager().getThreads()) {
+            TestClassExecutionData executionData = thread.getActiveTest();
+            String s = executionData == null ? "" : executionData.getSysOut();
             if (s.length() > 0) { // if there is a meaning to write it out...
                 CONSOLE_LOG.info(s);
             }
-            Thread.sleep(GepardConstants.ONE_SECOND_LENGTH.getConstant()); //wait for a sec
-        } else { //lock is -1, Test Class is ready, flush the result
-            flushTestResult(executionData, odd, htmlLog, csvLog);
-            //collect suite level results
-            allTestResults.increaseRunned(executionData.getRunned());
-            allTestResults.increasePassed(executionData.getCountPassed());
-            allTestResults.increaseFailed(executionData.getCountFailed());
-            allTestResults.increaseNotApplicable(executionData.getCountNA());
-            allTestResults.increaseDummy(executionData.getCountDummy());
-            //finalize the row
-            odd = !odd; //change the odd/even html output marker
-            result = false;
         }
-        return result;
+    }
+
+    private void collectTestResult(final AllTestResults allTestResults, final TestClassExecutionData executionData, final LogFileWriter htmlLog,
+            final LogFileWriter csvLog) {
+        if (!executionData.getID().equals(GenericListTestSuite.getTestClassId(collectedRows))) {
+            inTestlistOrder = false;
+        }
+        collectedRows++;
+        flushTestResult(executionData, odd, htmlLog, csvLog);
+        //collect suite level results
+        allTestResults.increaseRunned(executionData.getRunned());
+        allTestResults.increasePassed(executionData.getCountPassed());
+        allTestResults.increaseFailed(executionData.getCountFailed());
+        allTestResults.increaseNotApplicable(executionData.getCountNA());
+        allTestResults.increaseDummy(executionData.getCountDummy());
+        //finalize the row
+        odd = !odd; //change the odd/even html output marker
+    }
+
+    /**
+     * Rewrites the html and csv logs with the result rows in testlist order, if the rows were finished in a different order.
+     * It should be called when all the rows are collected, before the footer of the logs is written.
+     * @param props holds the properties of the header.
+     * @param htmlLog is writer of html log file.
+     * @param csvLog is writer of csv log file.
+     */
+    public void writeResultRowsInTestlistOrder(final Properties props, final LogFileWriter htmlLog, final LogFileWriter csvLog) {
+        if (!inTestlistOrder) {
+            htmlLog.restart();
+            csvLog.restart();
+            htmlLog.insertBlock("Header", props);
+            csvLog.insertBlock("Header", props);
+            boolean oddRow = false;
+            for (TestClassResult result : GenericListTestSuite.getTestClassResults()) {
+                Properties rowProps = createRowProperties(result, oddRow);
+                htmlLog.insertBlock("TestRow", rowProps);
+                csvLog.insertBlock("TestRow", rowProps);
+                oddRow = !oddRow;
+            }
+        }
     }
 
     private void flushTestResult(final TestClassExecutionData d, final boolean odd, final LogFileWriter htmlLog, final LogFileWriter csvLog) {
         String s = d.getSysOut();
         CONSOLE_LOG.info(s);
+        if (d.isFlaky()) {
+            //passed, but only on a retry
+            CONSOLE_LOG.info("Flaky test class: " + d.getClassName() + ", passed on attempt " + (d.getRetries() + 1) + ".");
+        }
         //write the Test Class result row
+        Properties props2 = createRowProperties(new TestClassResult(d), odd);
+        htmlLog.insertBlock("TestRow", props2);
+        csvLog.insertBlock("TestRow", props2);
+        //the row is done, its parameters and reporter are not needed any more
+        d.release();
+        if (compactResults) {
+            GenericListTestSuite.compactTestClass(d);
+        }
+    }
+
+    private Properties createRowProperties(final TestClassResult d, final boolean odd) {
         Properties props2 = new Properties();
         props2.setProperty("Number", d.getTestScriptId().replace(',', ';').replace('{', '(').replace('}', ')'));
         props2.setProperty("Name", d.getTestScriptName().replace(',', ';').replace('{', '(').replace('}', ')'));
@@ -100,10 +162,11 @@ public class ResultCollector {
         if (d.isProblematic()) {
             props2.setProperty("ResultColor", "#F0F0C0");
         }
+        if (d.isFlaky()) {
+            //passed, but only on a retry
+            props2.setProperty("ResultColor", "#F0E0B0");
+        }
         props2.setProperty("RowColor", odd ? "#F0F0F0" : "#E4E4E4");
-        htmlLog.insertBlock("TestRow", props2);
-        csvLog.insertBlock("TestRow", props2);
-        //redefine RealPerDummy as xml does not allow '&nbsp;'
-        props2.setProperty("RealPerDummy", String.valueOf(d.getRunned() - d.getCountDummy()) + "/" + String.valueOf(d.getCountDummy()));
+        return props2;
     }
 }
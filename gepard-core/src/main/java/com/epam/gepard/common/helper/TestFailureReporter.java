@@ -26,7 +26,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import com.epam.gepard.common.Environment;
-import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.TestClassResult;
 import com.epam.gepard.exception.ComplexGepardException;
 import com.epam.gepard.generic.GenericListTestSuite;
 import com.epam.gepard.util.FileUtil;
@@ -53,15 +53,35 @@ public class TestFailureReporter {
         Map<String, String> failedRows = collectFailedRows();
         //now build up the file
         String fileContent = concatenateRows(failedRows.values());
-        writeContentToFile(fileContent);
+        writeContentToFile(fileContent, environment.getProperty(Environment.GEPARD_TESTLIST_FAILURE_FILE));
+    }
+
+    /**
+     * Generate the list of flaky test classes (failed first, but passed on a retry), in testlist format, to help their quarantine.
+     * The list is generated only if its file name is specified (gepard.testlist-flaky.file).
+     */
+    public void generateTestlistFlaky() {
+        String fileName = environment.getProperty(Environment.GEPARD_TESTLIST_FLAKY_FILE);
+        if (fileName != null && !fileName.isEmpty()) {
+            Map<String, String> flakyRows = new LinkedHashMap<>();
+            for (TestClassResult d : GenericListTestSuite.getTestClassResults()) {
+                if (d.isFlaky()) {
+                    String row = d.getOriginalLine() + "\n";
+                    flakyRows.put(row, row);
+                }
+            }
+            StringBuilder s = new StringBuilder("#Gepard generated testlist file about flaky test classes, those passed on retry only.\n");
+            for (String row : flakyRows.values()) {
+                s.append(row);
+            }
+            writeContentToFile(s.toString(), fileName);
+        }
     }
 
     private Map<String, String> collectFailedRows() {
-        Iterator<String> i = GenericListTestSuite.getTestClassIds().iterator();
         Map<String, String> result = new LinkedHashMap<>();
-        while (i.hasNext()) {
-            TestClassExecutionData d = GenericListTestSuite.getTestClassExecutionData(i.next());
-            if (d.getCountPassed() != d.getRunned()) {
+        for (TestClassResult d : GenericListTestSuite.getTestClassResults()) {
+            if (d.getCountPassed() != d.getRunned() || d.isProblematic()) {
                 //this class should be in the list
                 String row = d.getOriginalLine() + "\n";
                 if (!result.containsKey(row)) {
@@ -82,9 +102,8 @@ public class TestFailureReporter {
         return s.toString();
     }
 
-    private void writeContentToFile(final String content) {
+    private void writeContentToFile(final String content, final String fileName) {
         String path = environment.getProperty(Environment.GEPARD_TESTLIST_FAILURE_PATH);
-        String fileName = environment.getProperty(Environment.GEPARD_TESTLIST_FAILURE_FILE);
         try {
             File f = new File(path + "/" + fileName);
             FileUtil fileUtil = new FileUtil();
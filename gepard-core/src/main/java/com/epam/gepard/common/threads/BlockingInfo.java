@@ -19,35 +19,90 @@ package com.epam.gepard.common.threads;
  along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
 ===========================================================================*/
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * This class is used to store information about the blocker string.
+ * This class is used to store information about the blocker string, that is a resource with limited capacity.
+ * A classic blocker has capacity 1, so it can be used by a single test class at a time.
+ * A resource pool (gepard.resource.NAME=capacity) can be used by at most 'capacity' test classes at the same time.
+ * Rows of the same test class those are allowed to run in parallel (BLOCKER*) share a single place of the resource.
  */
 public class BlockingInfo {
-    private boolean blockerInUse; // = false;         //whether the blocker is in use or not
-    private String actualClass; // = null; //stores the class name who actually use the block
-    private int overload; // = 0;          //stores information on how many classes are using this block
+    private final int capacity; //number of places of the resource
+    private int usedPlaces; // = 0;          //number of the actually used places
+    private final Map<String, Integer> actualClasses = new HashMap<>(); //stores the classes who actually use the block, with the number of their rows
 
-    boolean isBlockerInUse() {
-        return blockerInUse;
+    /**
+     * Creates an exclusive blocker.
+     */
+    public BlockingInfo() {
+        this(1);
     }
 
-    void setBlockerInUse(final boolean b) {
-        this.blockerInUse = b;
+    /**
+     * Creates a resource pool.
+     * @param capacity is the number of test classes those may use the resource at the same time.
+     */
+    public BlockingInfo(final int capacity) {
+        this.capacity = capacity;
     }
 
-    String getActualClass() {
-        return actualClass;
+    /**
+     * Detects if the resource can be used by a row of the given class.
+     * @param className is the name of the test class
+     * @param selfEnabled is true if the rows of the class can share the same place of the resource.
+     * @return true if the resource can be used now.
+     */
+    boolean canBeUsedBy(final String className, final boolean selfEnabled) {
+        return (selfEnabled && actualClasses.containsKey(className)) || usedPlaces < capacity;
     }
 
-    void setActualClass(final String actualClass) {
-        this.actualClass = actualClass;
+    /**
+     * A row of the given class starts to use the resource.
+     * @param className is the name of the test class
+     * @param selfEnabled is true if the rows of the class can share the same place of the resource.
+     */
+    void use(final String className, final boolean selfEnabled) {
+        Integer rows = actualClasses.get(className);
+        if (!selfEnabled || rows == null) {
+            usedPlaces++;
+        }
+        actualClasses.put(className, rows == null ? 1 : rows + 1);
     }
 
-    int getOverload() {
-        return overload;
+    /**
+     * A row of the given class stops using the resource.
+     * @param className is the name of the test class
+     * @param selfEnabled is true if the rows of the class can share the same place of the resource.
+     * @return true if a place of the resource became free.
+     */
+    boolean release(final String className, final boolean selfEnabled) {
+        Integer rows = actualClasses.get(className);
+        boolean released = false;
+        if (rows != null) {
+            if (rows == 1) {
+                actualClasses.remove(className);
+            } else {
+                actualClasses.put(className, rows - 1);
+            }
+            if (!selfEnabled || rows == 1) {
+                usedPlaces--;
+                released = true;
+            }
+        }
+        return released;
     }
 
-    void setOverload(final int overload) {
-        this.overload = overload;
+    String getActualClasses() {
+        return actualClasses.keySet().toString();
+    }
+
+    int getOverload() {
+        int overload = 0;
+        for (Integer rows : actualClasses.values()) {
+            overload += rows;
+        }
+        return overload;
     }
 }
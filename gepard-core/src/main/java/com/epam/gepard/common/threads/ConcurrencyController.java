@@ -0,0 +1,317 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.helper.DurationHistory;
+
+/**
+ * This thread adapts the number of the active executor threads to the load of the machine, AIMD-style (additive increase, multiplicative decrease).
+ * It samples the CPU load, the heap occupancy after the last garbage collection, and the latency of the recently executed test methods
+ * (compared to their latency in the previous run, see {@link DurationHistory}, or to the other rows of the same test class).
+ * If any of them is over its limit, the number of the active threads is halved, otherwise it is increased by one if there are test classes waiting.
+ * The number of the active threads is kept between the configured minimum and the number of the executor threads (gepard.threads).
+ * <p>
+ * Note that the heap is the heap of this JVM, and the CPU load is the load of this machine, so if the test classes are executed by workers,
+ * only the latency is meaningful for remote agents.
+ * </p>
+ */
+public class ConcurrencyController extends Thread {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyController.class);
+    private static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
+    private static final int PERCENT = 100;
+    private static final int MAX_REPORTED_DECISIONS = 100;
+    private static final long MIN_EXPECTED_LATENCY = 100L; //ms, shorter samples are too noisy to compare
+
+    private final ExecutorThreadManager manager;
+    private final int minThreads;
+    private final long interval;
+    private int cpuLimit;
+    private int heapLimit;
+    private int latencyLimit;
+    private DurationHistory durationHistory; //null, if the latency is compared within this run only
+    private final Map<String, Long> classMethodLatencies = new HashMap<>(); //the lowest per-method latency of the test classes in this run
+
+    //latency of the test classes executed since the last sample
+    private long sampleActualTime;
+    private long sampleExpectedTime;
+    private long sampleMethodTime;
+    private int sampleMethods;
+    private long methodLatency = -1; //average per-method latency of the last sample, in ms
+
+    private int threadLimit;
+    private int decreases;
+    private int increases;
+    private long startTime;
+    private final Deque<String> decisions = new ArrayDeque<>();
+    private int droppedDecisions;
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new instance of {@link ConcurrencyController}.
+     * @param manager is the manager of the executor threads to be controlled.
+     * @param minThreads is the lowest number of active threads.
+     * @param interval is the time between two samples, in ms.
+     */
+    public ConcurrencyController(final ExecutorThreadManager manager, final int minThreads, final long interval) {
+        this.manager = manager;
+        this.minThreads = minThreads;
+        this.interval = interval;
+        setName("GEPARD Concurrency Controller");
+        setDaemon(true);
+    }
+
+    /**
+     * Sets the limits those mean overload, a limit of 0 switches the given check off.
+     * @param cpuLimit is the CPU load of the machine, in percent.
+     * @param heapLimit is the occupancy of the heap after garbage collection, in percent.
+     * @param latencyLimit is the latency of the test methods, in percent of their expected latency.
+     */
+    public void setLimits(final int cpuLimit, final int heapLimit, final int latencyLimit) {
+        this.cpuLimit = cpuLimit;
+        this.heapLimit = heapLimit;
+        this.latencyLimit = latencyLimit;
+    }
+
+    /**
+     * Sets the durations of the previous run, those are used as expected latency of the test classes.
+     * @param durationHistory is the loaded history, or null.
+     */
+    public void setDurationHistory(final DurationHistory durationHistory) {
+        this.durationHistory = durationHistory;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            startTime = System.currentTimeMillis();
+            threadLimit = manager.getThreadCount();
+        }
+        while (running) {
+            try {
+                Thread.sleep(interval);
+                controlThreadCount();
+            } catch (InterruptedException e) {
+                LOGGER.debug("Concurrency controller is exiting, as got InterruptedException.");
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Stops the controller.
+     */
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+
+    private void controlThreadCount() {
+        int latency = takeLatencySample();
+        String decision = adjust(sampleCpuLoad(), sampleHeapAfterGc(), latency, TestClassExecutionThread.getDispatcher().hasReadyClass());
+        if (decision != null) {
+            manager.setActiveThreadLimit(getThreadLimit());
+        }
+    }
+
+    /**
+     * Notes the latency of an executed test class row. Called by the executor threads.
+     * @param classData is the executed row.
+     */
+    public synchronized void classExecuted(final TestClassExecutionData classData) {
+        int runs = classData.getCountOfRuns();
+        if (runs > 0 && !classData.isSkipped()) {
+            long executionTime = classData.getExecutionTime();
+            Long expectedMethodLatency = getExpectedMethodLatency(classData, runs);
+            if (expectedMethodLatency != null) {
+                sampleActualTime += executionTime;
+                sampleExpectedTime += expectedMethodLatency * runs;
+            }
+            sampleMethodTime += executionTime;
+            sampleMethods += runs;
+            Long lowest = classMethodLatencies.get(classData.getClassName());
+            if (lowest == null || lowest > executionTime / runs) {
+                classMethodLatencies.put(classData.getClassName(), executionTime / runs);
+            }
+        }
+    }
+
+    private Long getExpectedMethodLatency(final TestClassExecutionData classData, final int runs) {
+        Long result = classMethodLatencies.get(classData.getClassName());
+        Long recordedDuration = durationHistory == null ? null : durationHistory.getRecordedDuration(classData);
+        if (recordedDuration != null) {
+            result = recordedDuration / runs;
+        }
+        return result;
+    }
+
+    /**
+     * Takes the latency of the test classes executed since the previous sample.
+     * @return with the latency in percent of the expected latency, or -1 if it is not known.
+     */
+    synchronized int takeLatencySample() {
+        int result = -1;
+        if (sampleExpectedTime >= MIN_EXPECTED_LATENCY) {
+            result = (int) (sampleActualTime * PERCENT / sampleExpectedTime);
+        }
+        methodLatency = sampleMethods == 0 ? -1 : sampleMethodTime / sampleMethods;
+        sampleActualTime = 0;
+        sampleExpectedTime = 0;
+        sampleMethodTime = 0;
+        sampleMethods = 0;
+        return result;
+    }
+
+    /**
+     * Gets the CPU load of the machine, or the load average if the CPU load is not available.
+     * @return with the load in percent of the capacity of the processors, or -1 if it is not available.
+     */
+    int sampleCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double load = -1;
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            load = ((com.sun.management.OperatingSystemMXBean) os).getSystemCpuLoad();
+        }
+        if (load < 0 && os.getSystemLoadAverage() >= 0) {
+            load = os.getSystemLoadAverage() / os.getAvailableProcessors();
+        }
+        return load < 0 ? -1 : (int) Math.round(load * PERCENT);
+    }
+
+    /**
+     * Gets the occupancy of the tenured heap pools after the last garbage collection, so the garbage is not counted.
+     * @return with the highest occupancy in percent, or -1 if it is not available.
+     */
+    int sampleHeapAfterGc() {
+        int result = -1;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            //young pools are emptied (or filled) by every collection, only the tenured pools support usage threshold
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() ? pool.getCollectionUsage() : null;
+            if (usage != null && usage.getMax() > 0) {
+                result = Math.max(result, (int) (usage.getUsed() * PERCENT / usage.getMax()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decides the number of the active threads: halves it on overload, or increases it by one if there are test classes waiting.
+     * @param cpuLoad is the CPU load in percent, or -1 if not known.
+     * @param heapAfterGc is the heap occupancy after garbage collection in percent, or -1 if not known.
+     * @param latency is the latency of the test methods in percent of the expected one, or -1 if not known.
+     * @param classWaiting is true if there are test classes waiting for an executor thread.
+     * @return with the description of the decision, or null, if the number of the active threads is not changed.
+     */
+    synchronized String adjust(final int cpuLoad, final int heapAfterGc, final int latency, final boolean classWaiting) {
+        int maxThreads = manager.getThreadCount();
+        String overload = getOverload(cpuLoad, heapAfterGc, latency);
+        int newLimit = threadLimit;
+        if (overload != null) {
+            newLimit = Math.max(Math.min(minThreads, maxThreads), threadLimit / 2);
+        } else if (classWaiting) {
+            newLimit = threadLimit + 1;
+        }
+        newLimit = Math.min(maxThreads, newLimit); //the number of the threads may be changed by remote control
+        String result = null;
+        if (newLimit != threadLimit) {
+            result = threadLimit + " -> " + newLimit + " active threads, " + (overload == null ? "test classes are waiting" : overload)
+                    + " (CPU load: " + formatPercent(cpuLoad) + ", heap after GC: " + formatPercent(heapAfterGc) + ", test method latency: "
+                    + (methodLatency < 0 ? "n/a" : methodLatency + " ms") + ", " + formatPercent(latency) + " of the expected)";
+            if (newLimit < threadLimit) {
+                decreases++;
+            } else {
+                increases++;
+            }
+            threadLimit = newLimit;
+            addDecision(result);
+        }
+        return result;
+    }
+
+    private String getOverload(final int cpuLoad, final int heapAfterGc, final int latency) {
+        String result = null;
+        if (heapLimit > 0 && heapAfterGc > heapLimit) {
+            result = "heap after GC is over " + heapLimit + "%";
+        } else if (cpuLimit > 0 && cpuLoad > cpuLimit) {
+            result = "CPU load is over " + cpuLimit + "%";
+        } else if (latencyLimit > 0 && latency > latencyLimit) {
+            result = "test method latency is over " + latencyLimit + "% of the expected";
+        }
+        return result;
+    }
+
+    private String formatPercent(final int value) {
+        return value < 0 ? "n/a" : value + "%";
+    }
+
+    private void addDecision(final String decision) {
+        long elapsedSeconds = (System.currentTimeMillis() - startTime) / GepardConstants.ONE_SECOND_LENGTH.getConstant();
+        String entry = elapsedSeconds + " s: " + decision;
+        CONSOLE_LOG.info("INFO: Concurrency controller: " + entry);
+        decisions.addLast(entry);
+        if (decisions.size() > MAX_REPORTED_DECISIONS) {
+            decisions.removeFirst();
+            droppedDecisions++;
+        }
+    }
+
+    synchronized int getThreadLimit() {
+        return threadLimit;
+    }
+
+    /**
+     * Gets the summary of the decisions, to be shown in the console log.
+     * @return with the summary.
+     */
+    public synchronized String getSummary() {
+        return "Concurrency controller: " + decreases + " decrease(s) and " + increases + " increase(s) of the active threads, finally "
+                + threadLimit + " active threads.";
+    }
+
+    /**
+     * Gets the decisions as HTML, to be shown in the main report.
+     * @return with the decisions, the earliest ones are left out if there are too many.
+     */
+    public synchronized String getReportHtml() {
+        StringBuilder html = new StringBuilder(getSummary()).append("<br/>\n");
+        if (droppedDecisions > 0) {
+            html.append("<small>(").append(droppedDecisions).append(" earlier decision(s) are not listed)</small><br/>\n");
+        }
+        for (String decision : decisions) {
+            html.append("<small>").append(decision).append("</small><br/>\n");
+        }
+        return html.toString();
+    }
+}
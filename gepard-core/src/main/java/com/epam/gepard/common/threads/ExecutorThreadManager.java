@@ -19,44 +19,75 @@ package com.epam.gepard.common.threads;
  along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
 ===========================================================================*/
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.epam.gepard.AllTestRunner;
 import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.common.helper.ResultCache;
+import com.epam.gepard.common.threads.helper.VirtualThreadFactory;
+import com.epam.gepard.distributed.WorkerPool;
 import com.epam.gepard.util.Util;
 
 /**
  * Manages the executor threads.
+ * Executor threads are created lazily, only when there is a test class to be executed and no idle thread is available to pick it,
+ * up to the configured number of threads. Threads those are idle for a while are exiting, and the number of threads
+ * can be changed at run-time (see remote control). Executor threads of hung test classes are replaced (see {@link TestClassWatchdog}).
  * @author Zsolt Kiss Gere, Laszlo Toth, Tamas Godan, Tamas Kohegyi, Tibor Kovacs
  */
 public class ExecutorThreadManager {
     private static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
-    private static final int MAX_EXEC_THREADS = 50;
-    private final TestClassExecutionThread[] threads = new TestClassExecutionThread[MAX_EXEC_THREADS];
+    private static final long DEFAULT_WORKER_KEEP_ALIVE = 60L * GepardConstants.ONE_SECOND_LENGTH.getConstant();
+
+    private final List<TestClassExecutionThread> threads = new ArrayList<>();
 
-    private int threadCount = 1; //number of active test threads
+    private int threadCount = 1; //number of allowed test threads
+    private int activeThreadLimit; //number of active threads allowed by the concurrency controller, 0 means no limit
+    private int threadIndex; //used to give unique name to the threads
+    private long workerKeepAlive = DEFAULT_WORKER_KEEP_ALIVE;
+    private String xmlResultPath;
+    private VirtualThreadFactory virtualThreadFactory; //null, if platform threads are used
+    private WorkerPool workerPool; //null, if the test classes are executed in this JVM
+    private ResultCache resultCache; //null, if the passed rows are not cached
+    private TestClassWatchdog watchdog;
+    private ConcurrencyController concurrencyController; //null, if the number of the active threads is not adapted to the load
 
     /**
-     * Initializes and then starts executor threads.
+     * Initializes the executor threads, those will be started when there is something to do.
      * @param threadCountText number of threads to use as a {@link String}
      * @param xmlResultPath the path to use for making xml reports
      */
     public void initiateAndStartExecutorThreads(final String threadCountText, final String xmlResultPath) {
+        this.xmlResultPath = xmlResultPath;
         loadThreadCount(threadCountText);
 
         Util util = new Util();
-        CONSOLE_LOG.info(util.getGepardVersion() + " uses " + threadCount + " thread(s).");
+        String threadKind = virtualThreadFactory == null ? "" : " virtual";
+        CONSOLE_LOG.info(util.getGepardVersion() + " uses " + threadCount + threadKind + " thread(s).");
 
         //MULTI THREADED EXEC
-        //init threads. Note: always the max number of threads are created, just some of them is enabled for TC execution.
-        //the purpose is to keep the possibility of dynamically change the number of active threads during run-time (see remote control)
-        for (int ti = 0; ti < MAX_EXEC_THREADS; ti++) {
-            threads[ti] = new TestClassExecutionThread(xmlResultPath);
-            threads[ti].setName("Exec" + ti); //set its name
-            threads[ti].setEnabled(ti < threadCount); //enable tc execution for the selected threads
-            threads[ti].start(); //start
+        //threads are started on demand, i.e. when a class is waiting and there is no idle thread to pick it
+        TestClassDispatcher dispatcher = TestClassExecutionThread.getDispatcher();
+        dispatcher.setWorkerDemandHandler(new Runnable() {
+            @Override
+            public void run() {
+                startWorkerIfAllowed();
+            }
+        });
+        //hung test classes are abandoned, so they cannot stop the execution
+        watchdog = new TestClassWatchdog(this);
+        watchdog.start();
+        //the number of the active threads is adapted to the load, if requested
+        if (concurrencyController != null) {
+            concurrencyController.start();
         }
+        //all the loaded classes are ready to be dispatched
+        dispatcher.enqueueTestSuite();
     }
 
     private void loadThreadCount(final String t) {
@@ -66,10 +97,6 @@ public class ExecutorThreadManager {
                 if (thNo > 0) {
                     threadCount = thNo;
                 }
-                //limit the thread no
-                if (thNo > MAX_EXEC_THREADS) {
-                    threadCount = MAX_EXEC_THREADS;
-                }
             } catch (Exception e) { //this is not a problem, just means we use single thread approach, i.e. threads no = 1
                 // default value of threadCount is 1, so in case of problem, it stays at 1
                 CONSOLE_LOG.info("INFO: Cannot parse " + Environment.GEPARD_THREADS + " property:\" " + t + "\", using single thread.");
@@ -77,6 +104,177 @@ public class ExecutorThreadManager {
         }
     }
 
+    /**
+     * Sets how long an idle executor thread waits for a new test class before exiting.
+     * @param keepAliveText is the time in seconds, as a {@link String}, if null or invalid, the default value is used.
+     */
+    public void setWorkerKeepAlive(final String keepAliveText) {
+        if (keepAliveText != null) {
+            try {
+                long keepAlive = Long.parseLong(keepAliveText);
+                if (keepAlive > 0) {
+                    workerKeepAlive = keepAlive * GepardConstants.ONE_SECOND_LENGTH.getConstant();
+                }
+            } catch (NumberFormatException e) {
+                CONSOLE_LOG.info("INFO: Cannot parse " + Environment.GEPARD_THREADS_KEEPALIVE + " property:\" " + keepAliveText + "\", using default.");
+            }
+        }
+    }
+
+    /**
+     * Selects virtual threads to execute the test classes, that is useful when the test classes are mostly waiting for I/O.
+     * If the JVM does not support virtual threads, platform threads are used.
+     * @param virtualText is "true" if virtual threads should be used, as a {@link String}.
+     */
+    public void setVirtualThreads(final String virtualText) {
+        virtualThreadFactory = null;
+        if (Boolean.parseBoolean(virtualText)) {
+            VirtualThreadFactory factory = new VirtualThreadFactory();
+            if (factory.isSupported()) {
+                virtualThreadFactory = factory;
+            } else {
+                CONSOLE_LOG.info("INFO: Virtual threads are not supported by this JVM, using platform threads.");
+            }
+        }
+    }
+
+    public VirtualThreadFactory getVirtualThreadFactory() {
+        return virtualThreadFactory;
+    }
+
+    /**
+     * Selects separate worker JVMs to execute the test classes, the executor threads pass the test classes to the workers.
+     * @param workerPool is the pool of the connected workers, or null, if the test classes should be executed in this JVM.
+     */
+    public void setWorkerPool(final WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Sets the cache of the passed rows, the executor threads do not execute the rows those passed in a previous run, and nothing is changed since then.
+     * @param resultCache is the initialized cache, or null, if all the rows should be executed.
+     */
+    public void setResultCache(final ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the controller that adapts the number of the active threads to the load, it is started together with the executor threads.
+     * @param concurrencyController is the controller, or null, if all the executor threads may be active.
+     */
+    public void setConcurrencyController(final ConcurrencyController concurrencyController) {
+        this.concurrencyController = concurrencyController;
+    }
+
+    public ConcurrencyController getConcurrencyController() {
+        return concurrencyController;
+    }
+
+    public long getWorkerKeepAlive() {
+        return workerKeepAlive;
+    }
+
+    /**
+     * Changes the number of the executor threads at run-time.
+     * If the number is decreased, the extra threads finish the actually executed test class, then exit.
+     * If the number is increased, new threads are started when there is something to do.
+     * @param newThreadCount is the new number of threads, must be positive.
+     */
+    public void setThreadCount(final int newThreadCount) {
+        if (newThreadCount <= 0) {
+            return;
+        }
+        synchronized (threads) {
+            threadCount = newThreadCount;
+            for (int i = threadCount; i < threads.size(); i++) {
+                threads.get(i).setEnabled(false); //disabled thread exits after finishing the actual class
+            }
+        }
+        CONSOLE_LOG.info("INFO: Number of executor threads is set to: " + newThreadCount);
+        if (TestClassExecutionThread.getDispatcher().hasReadyClass()) {
+            startWorkerIfAllowed();
+        }
+    }
+
+    /**
+     * Limits the number of the active executor threads below the number of the executor threads, see {@link ConcurrencyController}.
+     * If the limit is decreased, the extra threads (idle ones first) finish the actually executed test class, then exit.
+     * @param limit is the number of the active threads.
+     */
+    void setActiveThreadLimit(final int limit) {
+        synchronized (threads) {
+            activeThreadLimit = limit;
+            int surplus = countEnabledThreads() - getAllowedThreadCount();
+            for (int pass = 0; pass < 2 && surplus > 0; pass++) {
+                for (TestClassExecutionThread thread : threads) {
+                    //idle threads are disabled in the first pass, busy ones in the second
+                    if (surplus > 0 && thread.isEnabled() && (pass > 0 || thread.getActiveTest() == null)) {
+                        thread.setEnabled(false);
+                        surplus--;
+                    }
+                }
+            }
+        }
+        if (TestClassExecutionThread.getDispatcher().hasReadyClass()) {
+            startWorkerIfAllowed();
+        }
+    }
+
+    private int getAllowedThreadCount() {
+        return activeThreadLimit > 0 ? Math.min(threadCount, activeThreadLimit) : threadCount;
+    }
+
+    /**
+     * Starts a new executor thread if the number of the active threads is less than the allowed number.
+     */
+    void startWorkerIfAllowed() {
+        synchronized (threads) {
+            if (xmlResultPath != null && !TestClassExecutionThread.getDispatcher().isShutdown() && countEnabledThreads() < getAllowedThreadCount()) {
+                TestClassExecutionThread thread = new TestClassExecutionThread(xmlResultPath, this);
+                thread.setName("Exec" + threadIndex++); //set its name
+                thread.setEnabled(true); //enable tc execution
+                threads.add(thread);
+                thread.start(); //start
+            }
+        }
+    }
+
+    /**
+     * Called by an executor thread, when it got nothing to do. Decides whether the thread should exit or not.
+     * @param thread is the executor thread
+     * @return true if the thread should exit, and it is removed from the active threads.
+     */
+    boolean retireWorker(final TestClassExecutionThread thread) {
+        boolean retire;
+        synchronized (threads) {
+            TestClassDispatcher dispatcher = TestClassExecutionThread.getDispatcher();
+            retire = dispatcher.isShutdown() || thread.isInterrupted() || !thread.isEnabled() || !dispatcher.hasReadyClass();
+            if (retire) {
+                threads.remove(thread);
+                dispatcher.threadExited(thread);
+            }
+        }
+        return retire;
+    }
+
+    private int countEnabledThreads() {
+        int count = 0;
+        for (TestClassExecutionThread thread : threads) {
+            if (thread.isEnabled()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Closes all running threads in the application except the main thread.
      */
@@ -84,16 +282,30 @@ public class ExecutorThreadManager {
         if (AllTestRunner.getGepardRemote() != null) {
             AllTestRunner.getGepardRemote().interrupt();
         }
-        for (TestClassExecutionThread testClassExecutionThread : threads) {
-            if (testClassExecutionThread != null) {
-                testClassExecutionThread.setEnabled(false);
-                testClassExecutionThread.interrupt();
-            }
+        if (watchdog != null) {
+            watchdog.shutdown();
+        }
+        if (concurrencyController != null) {
+            concurrencyController.shutdown();
+        }
+        TestClassExecutionThread.getDispatcher().shutdown();
+        for (TestClassExecutionThread testClassExecutionThread : getThreads()) {
+            testClassExecutionThread.setEnabled(false);
+            testClassExecutionThread.interrupt();
+        }
+        if (workerPool != null) {
+            workerPool.shutdown();
         }
     }
 
+    /**
+     * Gets the actually living executor threads.
+     * @return with a snapshot of the executor threads.
+     */
     public TestClassExecutionThread[] getThreads() {
-        return threads;
+        synchronized (threads) {
+            return threads.toArray(new TestClassExecutionThread[threads.size()]);
+        }
     }
 
     public int getThreadCount() {
@@ -0,0 +1,91 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * JUnit {@link Computer} that executes the test methods of a test class in parallel, by using a limited number of threads.
+ * The threads are created by the executor thread of the test class, so they inherit {@link TestClassExecutionThread#CLASS_DATA_IN_CONTEXT}.
+ */
+public class ParallelMethodComputer extends Computer {
+
+    private final int threadCount;
+
+    /**
+     * Constructs a new instance of {@link ParallelMethodComputer}.
+     * @param threadCount is the maximum number of test methods executed at the same time.
+     */
+    public ParallelMethodComputer(final int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    @Override
+    protected Runner getRunner(final RunnerBuilder builder, final Class<?> testClass) throws Throwable {
+        Runner runner = super.getRunner(builder, testClass);
+        if (runner instanceof ParentRunner) {
+            ((ParentRunner<?>) runner).setScheduler(new MethodScheduler(threadCount, Thread.currentThread().getName()));
+        }
+        return runner;
+    }
+
+    /**
+     * Schedules the test methods to a fixed size thread pool, and waits for them at the end of the class.
+     */
+    private static final class MethodScheduler implements RunnerScheduler {
+        private final ExecutorService service;
+
+        private MethodScheduler(final int threadCount, final String parentName) {
+            final AtomicInteger threadIndex = new AtomicInteger();
+            service = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable task) {
+                    return new Thread(task, parentName + "-M" + threadIndex.getAndIncrement());
+                }
+            });
+        }
+
+        @Override
+        public void schedule(final Runnable childStatement) {
+            service.submit(childStatement);
+        }
+
+        @Override
+        public void finished() {
+            service.shutdown();
+            try {
+                service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                service.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
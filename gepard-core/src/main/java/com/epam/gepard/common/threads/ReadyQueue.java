@@ -0,0 +1,155 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import com.epam.gepard.common.TestClassExecutionData;
+
+/**
+ * The test class rows those can be started right now, in dispatch order, used by the {@link TestClassDispatcher} under its lock.
+ * The rows are indexed by their test class, too, so the next row of a given test class can be found without walking through the queue.
+ */
+final class ReadyQueue {
+
+    private final Comparator<TestClassExecutionData> order;
+    private final NavigableSet<TestClassExecutionData> rows;
+    private final Map<String, NavigableSet<TestClassExecutionData>> rowsByClass = new HashMap<>();
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param order is the dispatch order of the rows.
+     */
+    ReadyQueue(final Comparator<TestClassExecutionData> order) {
+        this.order = order;
+        rows = new TreeSet<>(order);
+    }
+
+    /**
+     * Adds a row to the queue.
+     *
+     * @param row is the row, its dispatch order must not change while it is in the queue.
+     */
+    void add(final TestClassExecutionData row) {
+        if (rows.add(row)) {
+            NavigableSet<TestClassExecutionData> classRows = rowsByClass.get(row.getClassName());
+            if (classRows == null) {
+                classRows = new TreeSet<>(order);
+                rowsByClass.put(row.getClassName(), classRows);
+            }
+            classRows.add(row);
+        }
+    }
+
+    /**
+     * Adds rows to the queue.
+     *
+     * @param newRows are the rows to be added.
+     */
+    void addAll(final Collection<TestClassExecutionData> newRows) {
+        for (TestClassExecutionData row : newRows) {
+            add(row);
+        }
+    }
+
+    /**
+     * Removes a row from the queue.
+     *
+     * @param row is the row to be removed.
+     */
+    void remove(final TestClassExecutionData row) {
+        if (rows.remove(row)) {
+            NavigableSet<TestClassExecutionData> classRows = rowsByClass.get(row.getClassName());
+            classRows.remove(row);
+            if (classRows.isEmpty()) {
+                rowsByClass.remove(row.getClassName());
+            }
+        }
+    }
+
+    /**
+     * Takes the first row of the queue.
+     *
+     * @return with the first row, or null if the queue is empty.
+     */
+    TestClassExecutionData pollFirst() {
+        TestClassExecutionData result = rows.isEmpty() ? null : rows.first();
+        if (result != null) {
+            remove(result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the first row of a test class, without removing it.
+     *
+     * @param className is the name of the test class.
+     * @return with the first row of the test class, or null if no row of the test class is waiting.
+     */
+    TestClassExecutionData peekFirstOfClass(final String className) {
+        NavigableSet<TestClassExecutionData> classRows = rowsByClass.get(className);
+        return classRows == null ? null : classRows.first();
+    }
+
+    /**
+     * Gets the first row whose test class is not among the given ones, without removing it.
+     *
+     * @param excludedClasses are the names of the test classes to be left out.
+     * @return with the first row of the other test classes, or null if only rows of the given test classes are waiting.
+     */
+    TestClassExecutionData peekFirstExcept(final Collection<String> excludedClasses) {
+        TestClassExecutionData result = null;
+        for (Map.Entry<String, NavigableSet<TestClassExecutionData>> entry : rowsByClass.entrySet()) {
+            TestClassExecutionData first = entry.getValue().first();
+            if (!excludedClasses.contains(entry.getKey()) && (result == null || order.compare(first, result) < 0)) {
+                result = first;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the rows from the queue.
+     *
+     * @return with the removed rows, in dispatch order.
+     */
+    List<TestClassExecutionData> drain() {
+        List<TestClassExecutionData> result = new ArrayList<>(rows);
+        rows.clear();
+        rowsByClass.clear();
+        return result;
+    }
+
+    boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    int size() {
+        return rows.size();
+    }
+}
@@ -49,6 +49,7 @@ import com.epam.gepard.util.Util;
 public class RemoteControlHandlerThread extends Thread {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RemoteControlHandlerThread.class);
+    private static final String THREADS_COMMAND = "threads ";
     private ServerSocket gepardServerSocket;
     private Socket clientSocket;
     private PrintStream os;
@@ -143,6 +144,11 @@ public class RemoteControlHandlerThread extends Thread {
             String s = handler.remoteGetStatus();
             os.println(s);
         }
+        if (command.startsWith(THREADS_COMMAND)) {
+            //change the number of executor threads
+            String s = handler.remoteSetThreadCount(command.substring(THREADS_COMMAND.length()).trim());
+            os.println(s);
+        }
         if ("exit".equals(command)) {
             //close connection is requested
             clientSocket.close();
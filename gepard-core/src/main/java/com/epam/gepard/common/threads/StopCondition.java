@@ -0,0 +1,83 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import com.epam.gepard.common.TestClassExecutionData;
+
+/**
+ * Fail-fast condition of the test execution, used by the {@link TestClassDispatcher}, under the lock of the dispatcher.
+ * The execution is stopped when the number of failed test class rows reaches a limit (1 means to stop at the first failure),
+ * or when the failure rate reaches a limit, after a minimum number of test class rows is executed.
+ * Skipped rows and rows those are re-executed are not counted, only the final result of the executed rows.
+ */
+public class StopCondition {
+
+    private static final int PERCENT = 100;
+
+    private final int maxFailedClasses;
+    private final int maxFailureRate;
+    private final int minClasses;
+    private int executedClasses;
+    private int failedClasses;
+
+    /**
+     * Creates the stop condition.
+     *
+     * @param maxFailedClasses is the number of failed rows that stops the execution, 0 means no limit.
+     * @param maxFailureRate   is the failure rate in percent that stops the execution, 0 means no limit.
+     * @param minClasses       is the number of rows to be executed before the failure rate is checked.
+     */
+    public StopCondition(final int maxFailedClasses, final int maxFailureRate, final int minClasses) {
+        this.maxFailedClasses = maxFailedClasses;
+        this.maxFailureRate = maxFailureRate;
+        this.minClasses = minClasses;
+    }
+
+    /**
+     * Detects if any limit is set.
+     *
+     * @return true if the condition may stop the execution.
+     */
+    public boolean isEnabled() {
+        return maxFailedClasses > 0 || maxFailureRate > 0;
+    }
+
+    /**
+     * Counts the final result of an executed test class row, and checks the limits.
+     *
+     * @param classData is the executed row.
+     * @return with the reason of the stop, or null if the execution can go on.
+     */
+    public String classExecuted(final TestClassExecutionData classData) {
+        String result = null;
+        if (!classData.isSkipped()) {
+            executedClasses++;
+            if (classData.isFailed()) {
+                failedClasses++;
+            }
+            if (maxFailedClasses > 0 && failedClasses >= maxFailedClasses) {
+                result = failedClasses + " test class(es) failed, the limit is " + maxFailedClasses;
+            } else if (maxFailureRate > 0 && executedClasses >= minClasses && failedClasses * PERCENT >= maxFailureRate * executedClasses) {
+                result = failedClasses + " of " + executedClasses + " test classes failed, that reaches the limit of " + maxFailureRate + "%";
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,335 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.helper.DurationHistory;
+
+/**
+ * Dependency graph of the test classes, used by the {@link TestClassDispatcher}, under the lock of the dispatcher.
+ * <p>
+ * Rows of a test class are held back until all the test classes it depends on are executed.
+ * If a test class fails, the test classes depending on it (directly or indirectly) are skipped.
+ * The graph also tells the length of the longest chain of test classes those are waiting for a test class,
+ * so the test classes on the critical path can be started first.
+ * </p>
+ * <p>
+ * When the test suite is loaded in the background, the test classes are expected first (so the graph is complete), then their rows
+ * are registered one by one. A test class is not considered as executed until all of its rows are loaded.
+ * </p>
+ */
+final class TestClassDependencies {
+
+    /**
+     * Key is a test class, value is the list of test classes depending on it.
+     */
+    private final Map<String, List<String>> dependents = new HashMap<>();
+    /**
+     * Key is a test class, value is the number of test classes it is still waiting for.
+     */
+    private final Map<String, Integer> pendingPrerequisites = new HashMap<>();
+    /**
+     * Key is a test class, value is the list of its rows those are waiting for the prerequisites.
+     */
+    private final Map<String, List<TestClassExecutionData>> heldRows = new HashMap<>();
+    /**
+     * Key is a test class, value is the number of its rows those are not yet executed.
+     */
+    private final Map<String, Integer> unfinishedRows = new HashMap<>();
+    private final Set<String> failedClasses = new HashSet<>();
+    /**
+     * Test classes those are skipped, as a test class they depend on is failed.
+     */
+    private final Set<String> skippedClasses = new HashSet<>();
+    /**
+     * Test classes whose prerequisites are registered already.
+     */
+    private final Set<String> knownClasses = new HashSet<>();
+    /**
+     * Test classes whose rows are still being loaded.
+     */
+    private final Set<String> loadingClasses = new HashSet<>();
+    private final Map<String, Long> classDuration = new HashMap<>();
+    private final Map<String, Long> downstreamDuration = new HashMap<>();
+    private final Map<String, Integer> downstreamDepth = new HashMap<>();
+
+    /**
+     * Registers the rows of the test suite, and builds up the dependency graph.
+     *
+     * @param rows            are the rows of the test suite.
+     * @param durationHistory is used to calculate the length of the dependency chains, may be null.
+     */
+    void register(final Collection<TestClassExecutionData> rows, final DurationHistory durationHistory) {
+        Map<String, List<String>> prerequisites = new LinkedHashMap<>();
+        boolean changed = false;
+        for (TestClassExecutionData row : rows) {
+            String className = row.getClassName();
+            Integer count = unfinishedRows.get(className);
+            unfinishedRows.put(className, count == null ? 1 : count + 1);
+            if (!knownClasses.contains(className)) {
+                prerequisites.put(className, row.getDependencies());
+            }
+            long duration = durationHistory == null ? 0L : durationHistory.getPredictedDuration(row);
+            Long known = classDuration.get(className);
+            if (known == null || duration > known) {
+                classDuration.put(className, duration);
+                //the length of the chains is changed only if the class is waiting for other classes
+                changed |= !row.getDependencies().isEmpty();
+            }
+        }
+        if (addPrerequisites(prerequisites) || changed) {
+            calculateDownstream();
+        }
+    }
+
+    /**
+     * Registers the test classes before their rows are loaded, so the dependency graph is complete even if the rows are
+     * registered one by one. The rows of these classes are expected till {@link #classLoaded} is called.
+     *
+     * @param prerequisites key is a test class, value is the list of test classes it depends on.
+     */
+    void expect(final Map<String, List<String>> prerequisites) {
+        for (String className : prerequisites.keySet()) {
+            loadingClasses.add(className);
+            if (!classDuration.containsKey(className)) {
+                classDuration.put(className, 0L);
+            }
+        }
+        addPrerequisites(prerequisites);
+        calculateDownstream();
+    }
+
+    private boolean addPrerequisites(final Map<String, List<String>> prerequisites) {
+        boolean added = false;
+        for (Map.Entry<String, List<String>> entry : prerequisites.entrySet()) {
+            knownClasses.add(entry.getKey());
+            int pending = 0;
+            for (String prerequisite : entry.getValue()) {
+                if (unfinishedRows.containsKey(prerequisite) || loadingClasses.contains(prerequisite)) {
+                    pending++;
+                    List<String> list = dependents.get(prerequisite);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        dependents.put(prerequisite, list);
+                    }
+                    list.add(entry.getKey());
+                }
+            }
+            if (pending > 0) {
+                pendingPrerequisites.put(entry.getKey(), pending);
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    private void calculateDownstream() {
+        downstreamDuration.clear();
+        downstreamDepth.clear();
+        for (String className : classDuration.keySet()) {
+            calculateDownstream(className, new HashSet<String>());
+        }
+    }
+
+    /**
+     * Detects if the test class is skipped already, as a test class it depends on is failed.
+     *
+     * @param className is the test class
+     * @return true if the rows of the class should be skipped.
+     */
+    boolean isSkipped(final String className) {
+        return skippedClasses.contains(className);
+    }
+
+    /**
+     * Notes that all the rows of a test class are loaded.
+     *
+     * @param className is the test class
+     * @param skipped   is filled with the rows those should be skipped, as a test class they depend on is failed.
+     * @return with the rows those are ready to be executed now.
+     */
+    List<TestClassExecutionData> classLoaded(final String className, final List<TestClassExecutionData> skipped) {
+        List<TestClassExecutionData> ready = new ArrayList<>();
+        if (loadingClasses.remove(className) && isFinished(className)) {
+            classExecuted(className, ready, skipped);
+        }
+        return ready;
+    }
+
+    private boolean isFinished(final String className) {
+        return !unfinishedRows.containsKey(className) && !loadingClasses.contains(className) && !pendingPrerequisites.containsKey(className)
+                && !skippedClasses.contains(className);
+    }
+
+    /**
+     * Detects if the row should wait for other test classes. If so, the row is held back till its prerequisites are executed.
+     *
+     * @param row is the row to be enqueued.
+     * @return true if the row is held back.
+     */
+    boolean holdIfWaiting(final TestClassExecutionData row) {
+        boolean waiting = pendingPrerequisites.containsKey(row.getClassName());
+        if (waiting) {
+            List<TestClassExecutionData> held = heldRows.get(row.getClassName());
+            if (held == null) {
+                held = new ArrayList<>();
+                heldRows.put(row.getClassName(), held);
+            }
+            held.add(row);
+        }
+        return waiting;
+    }
+
+    /**
+     * Gets the expected execution time of the test classes those are waiting for this class (the longest chain).
+     *
+     * @param className is the test class
+     * @return with the expected duration in ms.
+     */
+    long getDownstreamDuration(final String className) {
+        Long result = downstreamDuration.get(className);
+        return result == null ? 0L : result;
+    }
+
+    /**
+     * Gets the number of the test classes in the longest chain of classes those are waiting for this class.
+     *
+     * @param className is the test class
+     * @return with the length of the longest chain.
+     */
+    int getDownstreamDepth(final String className) {
+        Integer result = downstreamDepth.get(className);
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * Notes that a row is executed.
+     *
+     * @param row     is the executed row.
+     * @param skipped is filled with the rows those should be skipped, as a test class they depend on is failed.
+     * @return with the rows those are ready to be executed now.
+     */
+    List<TestClassExecutionData> rowExecuted(final TestClassExecutionData row, final List<TestClassExecutionData> skipped) {
+        List<TestClassExecutionData> ready = new ArrayList<>();
+        String className = row.getClassName();
+        Integer rows = unfinishedRows.get(className);
+        if (rows != null) {
+            if (row.isFailed()) {
+                failedClasses.add(className);
+            }
+            if (rows > 1) {
+                unfinishedRows.put(className, rows - 1);
+            } else {
+                unfinishedRows.remove(className);
+                if (!loadingClasses.contains(className)) {
+                    classExecuted(className, ready, skipped);
+                }
+            }
+        }
+        return ready;
+    }
+
+    private void classExecuted(final String className, final List<TestClassExecutionData> ready, final List<TestClassExecutionData> skipped) {
+        boolean failed = failedClasses.contains(className);
+        for (String dependent : getDependents(className)) {
+            if (failed) {
+                skipClass(dependent, skipped);
+            } else if (pendingPrerequisites.containsKey(dependent)) {
+                int pending = pendingPrerequisites.get(dependent) - 1;
+                if (pending > 0) {
+                    pendingPrerequisites.put(dependent, pending);
+                } else {
+                    pendingPrerequisites.remove(dependent);
+                    List<TestClassExecutionData> held = heldRows.remove(dependent);
+                    if (held != null) {
+                        ready.addAll(held);
+                    } else if (isFinished(dependent)) {
+                        //the class has no rows at all, so the classes waiting for it can go on, too
+                        classExecuted(dependent, ready, skipped);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the rows those are waiting for their prerequisites, as the execution is stopped.
+     *
+     * @return with the removed rows.
+     */
+    List<TestClassExecutionData> removeHeldRows() {
+        List<TestClassExecutionData> result = new ArrayList<>();
+        for (List<TestClassExecutionData> held : heldRows.values()) {
+            result.addAll(held);
+        }
+        heldRows.clear();
+        return result;
+    }
+
+    private void skipClass(final String className, final List<TestClassExecutionData> skipped) {
+        if (pendingPrerequisites.remove(className) != null) {
+            //the class is not yet started, as it was waiting for its prerequisites, so skip it, together with the classes depending on it
+            failedClasses.add(className);
+            skippedClasses.add(className);
+            unfinishedRows.remove(className);
+            List<TestClassExecutionData> held = heldRows.remove(className);
+            if (held != null) {
+                for (TestClassExecutionData row : held) {
+                    row.setItAsSkipped();
+                    skipped.add(row);
+                }
+            }
+            for (String dependent : getDependents(className)) {
+                skipClass(dependent, skipped);
+            }
+        }
+    }
+
+    private List<String> getDependents(final String className) {
+        List<String> result = dependents.get(className);
+        return result == null ? Collections.<String>emptyList() : result;
+    }
+
+    private void calculateDownstream(final String className, final Set<String> visiting) {
+        if (!downstreamDuration.containsKey(className) && visiting.add(className)) {
+            long duration = 0;
+            int depth = 0;
+            for (String dependent : getDependents(className)) {
+                calculateDownstream(dependent, visiting);
+                Long dependentDuration = classDuration.get(dependent);
+                duration = Math.max(duration, (dependentDuration == null ? 0L : dependentDuration) + getDownstreamDuration(dependent));
+                depth = Math.max(depth, 1 + getDownstreamDepth(dependent));
+            }
+            downstreamDuration.put(className, duration);
+            downstreamDepth.put(className, depth);
+            visiting.remove(className);
+        }
+    }
+}
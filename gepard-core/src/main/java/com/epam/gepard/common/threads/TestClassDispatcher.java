@@ -0,0 +1,784 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.gepard.common.ResourceClaim;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.helper.DurationHistory;
+import com.epam.gepard.generic.GenericListTestSuite;
+
+/**
+ * Event driven dispatcher of the test classes, used by the executor threads.
+ * <p>
+ * Test classes those can be started right now are held in an ordered ready queue. Test classes on the longest chain of dependent
+ * test classes (critical path, according to the duration history of the previous runs) come first, then the ones with the most
+ * dependent test classes, test classes with the same priority are in testlist order.
+ * When an executor thread asks for a class, the first class of the ready queue is proposed whose blocker is free.
+ * A class that is found blocked is parked at its blocker, and gets back to the ready queue only when the blocker is released,
+ * i.e. when a class holding the blocker is finished. Executor threads with nothing to do are waiting on a condition,
+ * and they are woken up when a new class is enqueued, or a blocker is released.
+ * </p>
+ * <p>
+ * Blocker string semantics are the same as before: a class with blocker string cannot be started while
+ * another class holds the same blocker, except when self-parallelism is enabled (BLOCKER*) and the blocker is held by the same class.
+ * Blockers those are declared as resource pools (gepard.resource.NAME=capacity) can be held by 'capacity' classes at the same time.
+ * A class may claim several blockers (BLOCKER1+BLOCKER2), it is started only when all of them are available.
+ * </p>
+ * <p>
+ * A test class that depends on other test classes is held back until all rows of those classes are executed.
+ * If any of those classes fails, the dependent class is skipped. While the test suite is loaded in the background, the test classes
+ * are announced first, so a class is not released until all rows of the classes it depends on are loaded and executed.
+ * </p>
+ * <p>
+ * A failed test class may be re-executed (gepard.retry.count times at most) before it is considered as failed. The re-executions have
+ * the lowest priority, so they are started after the classes those were not executed yet. The classes depending on a re-executed class
+ * are held back until its final result is known.
+ * </p>
+ * <p>
+ * If thread affinity is enabled, an executor thread prefers the next row of the test class it executed last, so the state those are kept warm
+ * by the thread (like connections or browser sessions in thread locals, or the JIT-compiled code of a forked worker) is reused,
+ * and the per-row setup cost is lower. Otherwise it prefers a test class that is not executed by any other thread, in dispatch order.
+ * A thread that would be idle steals the rows of the test classes of the other threads. Re-executions are never preferred.
+ * </p>
+ * <p>
+ * If a stop condition is set (fail-fast), and it trips, no more test classes are handed out. The classes under execution are finished,
+ * all the other classes (those are waiting, or loaded later) are skipped.
+ * </p>
+ */
+public class TestClassDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassDispatcher.class);
+    private static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Condition loadCapacity = lock.newCondition();
+
+    /**
+     * Key is the blocker, value is the lock of the blocker.
+     */
+    private final Map<String, BlockingInfo> testClassBlockingMap = new LinkedHashMap<>(); //blocking TClass map
+    /**
+     * Key is the blocker, value is the list of classes those were found blocked by it.
+     */
+    private final Map<String, List<TestClassExecutionData>> parkedClasses = new HashMap<>();
+    /**
+     * Priority of the enqueued classes.
+     */
+    private final Map<TestClassExecutionData, DispatchOrder> dispatchOrder = new HashMap<>();
+    private final TestClassDependencies dependencies = new TestClassDependencies();
+    private final ReadyQueue readyQueue = new ReadyQueue(new ReadyQueueComparator());
+    /**
+     * Key is the executor thread, value is the test class it executed last, used if thread affinity is enabled.
+     */
+    private final Map<TestClassExecutionThread, String> lastClasses = new HashMap<>();
+    /**
+     * Key is the test class, value is the number of executor threads those executed it last.
+     */
+    private final Map<String, Integer> warmClasses = new HashMap<>();
+    private boolean threadAffinity;
+    private long nextSequence;
+    private int idleThreads;
+    private volatile boolean shutdown;
+    private Runnable workerDemandHandler;
+    private DurationHistory durationHistory;
+    private int maxRetries;
+    private int loadWindow;
+    private StopCondition stopCondition;
+    private String stopReason;
+
+    /**
+     * Sets the handler to be called when there is a class to be executed, but no idle executor thread is available to pick it.
+     * The handler is called outside of the dispatcher lock.
+     *
+     * @param workerDemandHandler is the handler, usually it starts a new executor thread if it is allowed.
+     */
+    public void setWorkerDemandHandler(final Runnable workerDemandHandler) {
+        this.workerDemandHandler = workerDemandHandler;
+    }
+
+    /**
+     * Sets the duration history, that is used to start the longest test classes first.
+     * Should be set before the test classes are enqueued.
+     *
+     * @param durationHistory is the loaded history, if null, the test classes are dispatched in testlist order.
+     */
+    public void setDurationHistory(final DurationHistory durationHistory) {
+        lock.lock();
+        try {
+            this.durationHistory = durationHistory;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how many times a failed test class is re-executed before it is considered as failed.
+     *
+     * @param maxRetries is the maximum number of re-executions, 0 means that failed classes are not re-executed.
+     */
+    public void setMaxRetries(final int maxRetries) {
+        lock.lock();
+        try {
+            this.maxRetries = maxRetries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how many test class rows may wait for an executor thread, while the test suite is loaded in the background.
+     *
+     * @param loadWindow is the maximum number of waiting rows, 0 means no limit, i.e. the whole suite is loaded at once.
+     */
+    public void setLoadWindow(final int loadWindow) {
+        lock.lock();
+        try {
+            this.loadWindow = loadWindow;
+            loadCapacity.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enables the thread affinity, i.e. an executor thread prefers the rows of the test class it executed last.
+     *
+     * @param threadAffinity is true if the thread affinity is enabled, otherwise the rows are dispatched in dispatch order only.
+     */
+    public void setThreadAffinity(final boolean threadAffinity) {
+        lock.lock();
+        try {
+            this.threadAffinity = threadAffinity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the condition that stops the execution, when too many test classes fail.
+     *
+     * @param stopCondition is the condition, if null, the execution is not stopped because of failures.
+     */
+    public void setStopCondition(final StopCondition stopCondition) {
+        lock.lock();
+        try {
+            this.stopCondition = stopCondition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets why the execution is stopped by the stop condition.
+     *
+     * @return with the reason, or null if the execution is not stopped.
+     */
+    public String getStopReason() {
+        lock.lock();
+        try {
+            return stopReason;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a new test class row may be loaded, i.e. until the number of rows waiting for an executor thread goes below the load window.
+     * Rows those wait for other test classes (they depend on) are not counted, so the loading cannot be stuck on them.
+     */
+    public void awaitLoadCapacity() {
+        lock.lock();
+        try {
+            while (!shutdown && loadWindow > 0 && countWaitingRows() >= loadWindow) {
+                loadCapacity.await();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Loading of the test classes is interrupted.");
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int countWaitingRows() {
+        int result = readyQueue.size();
+        for (List<TestClassExecutionData> parked : parkedClasses.values()) {
+            result += parked.size();
+        }
+        return result;
+    }
+
+    /**
+     * Enqueues all the test classes of the loaded test suite those are not executed yet.
+     */
+    public void enqueueTestSuite() {
+        boolean workerNeeded;
+        lock.lock();
+        try {
+            List<TestClassExecutionData> rows = new ArrayList<>();
+            for (String id : GenericListTestSuite.getTestClassIds()) {
+                TestClassExecutionData classData = GenericListTestSuite.getTestClassExecutionData(id);
+                if (classData != null && classData.getLock() == 0 && !dispatchOrder.containsKey(classData)) {
+                    rows.add(classData);
+                }
+            }
+            dependencies.register(rows, durationHistory);
+            for (TestClassExecutionData classData : rows) {
+                enqueueLocked(classData);
+            }
+            changed.signalAll();
+            workerNeeded = isWorkerNeeded();
+        } finally {
+            lock.unlock();
+        }
+        fireWorkerDemand(workerNeeded);
+    }
+
+    /**
+     * Announces the test classes those will be enqueued one by one, while the test suite is loaded in the background.
+     * The classes depending on an announced class wait till all of its rows are enqueued and executed.
+     *
+     * @param prerequisites key is a test class, value is the list of test classes it depends on.
+     */
+    public void expectTestClasses(final Map<String, List<String>> prerequisites) {
+        lock.lock();
+        try {
+            dependencies.expect(prerequisites);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enqueues a single test class, it becomes available for the executor threads immediately.
+     *
+     * @param classData is the test class to be executed.
+     * @return with the skipped classes (the given one, if a test class it depends on is failed already), those are locked,
+     * and the caller should report them, then set them as executed.
+     */
+    public List<TestClassExecutionData> enqueue(final TestClassExecutionData classData) {
+        List<TestClassExecutionData> skipped = new ArrayList<>();
+        boolean workerNeeded;
+        lock.lock();
+        try {
+            if (stopReason != null) {
+                skipStopped(classData, skipped);
+            } else if (dependencies.isSkipped(classData.getClassName())) {
+                //a class it depends on is failed already
+                classData.setItAsSkipped();
+                classData.lock();
+                skipped.add(classData);
+            } else {
+                dependencies.register(Collections.singletonList(classData), durationHistory);
+                enqueueLocked(classData);
+            }
+            changed.signalAll();
+            workerNeeded = isWorkerNeeded();
+        } finally {
+            lock.unlock();
+        }
+        fireWorkerDemand(workerNeeded);
+        return skipped;
+    }
+
+    /**
+     * Notes that all the rows of an announced test class are enqueued.
+     *
+     * @param className is the test class
+     * @return with the skipped classes, those are locked, and the caller should report them, then set them as executed.
+     */
+    public List<TestClassExecutionData> testClassLoaded(final String className) {
+        List<TestClassExecutionData> skipped = new ArrayList<>();
+        boolean workerNeeded;
+        lock.lock();
+        try {
+            readyQueue.addAll(dependencies.classLoaded(className, skipped));
+            lockSkippedClasses(skipped);
+            changed.signalAll();
+            workerNeeded = isWorkerNeeded();
+        } finally {
+            lock.unlock();
+        }
+        fireWorkerDemand(workerNeeded);
+        return skipped;
+    }
+
+    private void enqueueLocked(final TestClassExecutionData classData) {
+        long duration = durationHistory == null ? 0L : durationHistory.getPredictedDuration(classData);
+        String className = classData.getClassName();
+        dispatchOrder.put(classData, new DispatchOrder(classData.getRetries(), duration + dependencies.getDownstreamDuration(className),
+                dependencies.getDownstreamDepth(className), nextSequence++));
+        if (!dependencies.holdIfWaiting(classData)) {
+            readyQueue.add(classData);
+        }
+    }
+
+    /**
+     * Picks the next test class to be executed, and locks it (together with its blocker) for the caller thread.
+     * If there is nothing to do, or the thread is disabled, the caller waits until something happens.
+     *
+     * @param thread      is the executor thread, asking for a class.
+     * @param idleTimeout is the maximum time in milliseconds to wait for a class, 0 means to wait without time limit.
+     * @return with the locked test class, or null if the thread should consider exiting (disabled, interrupted, idle for too long, or shutdown).
+     */
+    public TestClassExecutionData takeNextClass(final TestClassExecutionThread thread, final long idleTimeout) {
+        TestClassExecutionData result = null;
+        boolean workerNeeded = false;
+        long remaining = idleTimeout > 0 ? TimeUnit.MILLISECONDS.toNanos(idleTimeout) : Long.MAX_VALUE;
+        lock.lock();
+        try {
+            result = pickClass(thread);
+            while (result == null && canPick(thread) && remaining > 0) {
+                remaining = awaitChange(idleTimeout, remaining);
+                result = pickClass(thread);
+            }
+            if (result != null) {
+                LOGGER.debug("Thread: " + thread.getName() + " " + lockClass(result));
+                if (threadAffinity) {
+                    setLastClass(thread, result.getClassName());
+                }
+                workerNeeded = isWorkerNeeded();
+                loadCapacity.signalAll();
+            }
+        } catch (InterruptedException e) {
+            //this was not expected, but if happens, then time to exit
+            LOGGER.debug("Thread: " + thread.getName() + " is exiting, as got InterruptedException!");
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        fireWorkerDemand(workerNeeded);
+        return result;
+    }
+
+    private long awaitChange(final long idleTimeout, final long remaining) throws InterruptedException {
+        long result = remaining;
+        idleThreads++;
+        try {
+            if (idleTimeout > 0) {
+                result = changed.awaitNanos(remaining);
+            } else {
+                changed.await();
+            }
+        } finally {
+            idleThreads--;
+        }
+        return result;
+    }
+
+    /**
+     * Detects if there is any test class waiting to be picked up.
+     *
+     * @return true if the ready queue is not empty.
+     */
+    public boolean hasReadyClass() {
+        lock.lock();
+        try {
+            return !readyQueue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Marks the test class as executed, releases its blocker, and wakes up the waiting threads.
+     * The classes those were waiting for this class are enqueued, or, if this class is failed, they are skipped.
+     * A failed class is re-queued instead, if it has retries left.
+     *
+     * @param threadName is the name of the executor thread.
+     * @param classData  is the just executed class.
+     * @return with the skipped classes, those are locked, and the caller should report them, then set them as executed.
+     */
+    public List<TestClassExecutionData> setClassExecuted(final String threadName, final TestClassExecutionData classData) {
+        List<TestClassExecutionData> skipped = new ArrayList<>();
+        boolean workerNeeded;
+        boolean finished = false;
+        lock.lock();
+        try {
+            String additionalInfo = releaseBlocker(classData);
+            dispatchOrder.remove(classData);
+            if (isRetryNeeded(classData)) {
+                classData.addSysOut("\nTest class failed: " + classData.getClassName() + "\nName: " + classData.getTestScriptName()
+                        + "\nIt will be re-executed, attempt " + (classData.getRetries() + 2) + " of " + (maxRetries + 1) + ".");
+                classData.prepareRetry();
+                enqueueLocked(classData);
+                additionalInfo += ", and re-queue it for retry";
+            } else {
+                classData.setLockExecuted();
+                finished = true;
+                readyQueue.addAll(dependencies.rowExecuted(classData, skipped));
+                lockSkippedClasses(skipped);
+                checkStopCondition(classData, skipped);
+            }
+            LOGGER.debug("Thread: " + threadName + " sets class as executed:" + classData.getID() + additionalInfo);
+            changed.signalAll();
+            workerNeeded = isWorkerNeeded();
+        } finally {
+            lock.unlock();
+        }
+        if (finished) {
+            GenericListTestSuite.testClassFinished(classData);
+        }
+        fireWorkerDemand(workerNeeded);
+        return skipped;
+    }
+
+    /**
+     * Wakes up all the waiting threads, so they can re-evaluate their state (like enabled flag).
+     */
+    public void wakeUpWaitingThreads() {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the dispatching, waiting threads are released.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            changed.signalAll();
+            loadCapacity.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Detects if the blocker is known by the dispatcher.
+     *
+     * @param key the key of the BlockingInfo
+     * @return true if it's contained false otherwise
+     */
+    public boolean containsClassBlockingInfo(final String key) {
+        lock.lock();
+        try {
+            return testClassBlockingMap.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a blocker.
+     *
+     * @param key          the key to store
+     * @param blockingInfo the value to store
+     */
+    public void putClassBlockingInfo(final String key, final BlockingInfo blockingInfo) {
+        lock.lock();
+        try {
+            testClassBlockingMap.put(key, blockingInfo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockSkippedClasses(final List<TestClassExecutionData> skipped) {
+        for (TestClassExecutionData skippedClass : skipped) {
+            skippedClass.lock();
+            dispatchOrder.remove(skippedClass);
+        }
+    }
+
+    /**
+     * Stops the execution: the test classes those are not executed yet are skipped, the running ones are finished.
+     *
+     * @param reason is why the execution is stopped.
+     * @return with the skipped classes, those are locked, and the caller should report them, then set them as executed.
+     */
+    public List<TestClassExecutionData> stopExecution(final String reason) {
+        List<TestClassExecutionData> skipped = new ArrayList<>();
+        lock.lock();
+        try {
+            if (stopReason == null) {
+                stop(reason, skipped);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return skipped;
+    }
+
+    private void checkStopCondition(final TestClassExecutionData classData, final List<TestClassExecutionData> skipped) {
+        if (stopReason == null && stopCondition != null) {
+            String reason = stopCondition.classExecuted(classData);
+            if (reason != null) {
+                stop(reason, skipped);
+            }
+        }
+    }
+
+    private void stop(final String reason, final List<TestClassExecutionData> skipped) {
+        stopReason = reason;
+        CONSOLE_LOG.info("INFO: Test execution is stopped, as " + stopReason + ". The remaining test classes are skipped.");
+        List<TestClassExecutionData> waiting = readyQueue.drain();
+        for (List<TestClassExecutionData> parked : parkedClasses.values()) {
+            waiting.addAll(parked);
+        }
+        parkedClasses.clear();
+        waiting.addAll(dependencies.removeHeldRows());
+        for (TestClassExecutionData waitingClass : waiting) {
+            skipStopped(waitingClass, skipped);
+        }
+        loadCapacity.signalAll();
+    }
+
+    private void skipStopped(final TestClassExecutionData classData, final List<TestClassExecutionData> skipped) {
+        classData.setItAsSkipped("the test execution is stopped (" + stopReason + ")");
+        classData.lock();
+        dispatchOrder.remove(classData);
+        skipped.add(classData);
+    }
+
+    private boolean isRetryNeeded(final TestClassExecutionData classData) {
+        //an abandoned (hung) class may still be running on its old executor thread, so it is never executed again
+        return !shutdown && stopReason == null && classData.isFailed() && !classData.isSkipped() && !classData.isAbandoned() && classData.getRetries() < maxRetries;
+    }
+
+    private boolean isWorkerNeeded() {
+        return !shutdown && idleThreads == 0 && !readyQueue.isEmpty();
+    }
+
+    private void fireWorkerDemand(final boolean workerNeeded) {
+        if (workerNeeded && workerDemandHandler != null) {
+            workerDemandHandler.run();
+        }
+    }
+
+    private boolean canPick(final TestClassExecutionThread thread) {
+        return !shutdown && thread.isEnabled();
+    }
+
+    private TestClassExecutionData pickClass(final TestClassExecutionThread thread) {
+        TestClassExecutionData result = null;
+        boolean allowed = canPick(thread);
+        while (allowed && result == null && !readyQueue.isEmpty()) {
+            TestClassExecutionData candidate = pollCandidate(thread);
+            ResourceClaim blockingClaim = findBlockingClaim(candidate);
+            if (blockingClaim == null) {
+                result = candidate;
+            } else {
+                park(candidate, blockingClaim.getName());
+            }
+        }
+        return result;
+    }
+
+    private TestClassExecutionData pollCandidate(final TestClassExecutionThread thread) {
+        TestClassExecutionData result = threadAffinity ? findAffineCandidate(thread) : null;
+        if (result == null) {
+            //no affinity, or only the rows of the test classes of the other threads are waiting, so steal one of them
+            result = readyQueue.pollFirst();
+        } else {
+            readyQueue.remove(result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the row preferred by the thread: the next row of the test class it executed last,
+     * or the first row of a test class that is not executed by the other threads.
+     *
+     * @param thread is the executor thread
+     * @return with the preferred row, or null if there is no such row.
+     */
+    private TestClassExecutionData findAffineCandidate(final TestClassExecutionThread thread) {
+        String lastClass = lastClasses.get(thread);
+        TestClassExecutionData result = lastClass == null ? null : readyQueue.peekFirstOfClass(lastClass);
+        if (result == null || result.getRetries() > 0) {
+            result = readyQueue.peekFirstExcept(warmClasses.keySet());
+        }
+        return result;
+    }
+
+    private void setLastClass(final TestClassExecutionThread thread, final String className) {
+        String previousClass = className == null ? lastClasses.remove(thread) : lastClasses.put(thread, className);
+        if (previousClass != null) {
+            int count = warmClasses.get(previousClass) - 1;
+            if (count == 0) {
+                warmClasses.remove(previousClass);
+            } else {
+                warmClasses.put(previousClass, count);
+            }
+        }
+        if (className != null) {
+            Integer count = warmClasses.get(className);
+            warmClasses.put(className, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Forgets the executor thread, as it is exiting, so its last test class is not preferred for it anymore.
+     *
+     * @param thread is the exiting executor thread
+     */
+    public void threadExited(final TestClassExecutionThread thread) {
+        lock.lock();
+        try {
+            setLastClass(thread, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds a resource claimed by the class that cannot be used right now.
+     * All the claimed resources must be available at the same time, so they are acquired together, that avoids deadlocks.
+     *
+     * @param d is the test class
+     * @return with a claim that is blocked, or null if the class can be executed now.
+     */
+    private ResourceClaim findBlockingClaim(final TestClassExecutionData d) {
+        ResourceClaim result = null;
+        for (ResourceClaim claim : d.getResourceClaims()) {
+            //blocked if there is no free place at the resource, and self-parallelism is not allowed
+            //or the resource is not used by another row of this class
+            if (result == null && !getBlockingInfo(claim.getName()).canBeUsedBy(d.getClassName(), claim.isSelfEnabled())) {
+                result = claim;
+            }
+        }
+        return result;
+    }
+
+    private void park(final TestClassExecutionData d, final String blockerString) {
+        List<TestClassExecutionData> parked = parkedClasses.get(blockerString);
+        if (parked == null) {
+            parked = new ArrayList<>();
+            parkedClasses.put(blockerString, parked);
+        }
+        parked.add(d);
+    }
+
+    private void unPark(final String blockerString) {
+        List<TestClassExecutionData> parked = parkedClasses.remove(blockerString);
+        if (parked != null) {
+            readyQueue.addAll(parked);
+        }
+    }
+
+    private String lockClass(final TestClassExecutionData o) {
+        StringBuilder additionalInfo = new StringBuilder();
+        for (ResourceClaim claim : o.getResourceClaims()) {
+            BlockingInfo blockingInfo = getBlockingInfo(claim.getName());
+            blockingInfo.use(o.getClassName(), claim.isSelfEnabled()); //now locks the blocker it in the map
+            additionalInfo.append(", with Blocker: ").append(claim.getName()).append(" Class:").append(blockingInfo.getActualClasses())
+                    .append(" Overload:").append(blockingInfo.getOverload());
+        }
+        o.lock();
+        return "got Class to execute:" + o.getID() + additionalInfo;
+    }
+
+    private String releaseBlocker(final TestClassExecutionData o) {
+        StringBuilder additionalInfo = new StringBuilder();
+        for (ResourceClaim claim : o.getResourceClaims()) {
+            BlockingInfo blockingInfo = getBlockingInfo(claim.getName());
+            if (blockingInfo.release(o.getClassName(), claim.isSelfEnabled())) {
+                //a place of the resource is free, so let the blocked classes go
+                unPark(claim.getName());
+            }
+            additionalInfo.append(", and remove Blocker: ").append(claim.getName()).append(", now Class:").append(blockingInfo.getActualClasses())
+                    .append(" Overload:").append(blockingInfo.getOverload());
+        }
+        return additionalInfo.toString();
+    }
+
+    private BlockingInfo getBlockingInfo(final String blockerString) {
+        BlockingInfo blockingInfo = testClassBlockingMap.get(blockerString);
+        if (blockingInfo == null) {
+            blockingInfo = new BlockingInfo();
+            testClassBlockingMap.put(blockerString, blockingInfo);
+        }
+        return blockingInfo;
+    }
+
+    /**
+     * Priority of a test class in the ready queue.
+     */
+    private static final class DispatchOrder {
+        private final int retries;
+        private final long criticalPath;
+        private final int depth;
+        private final long sequence;
+
+        /**
+         * Creates the priority of a class.
+         *
+         * @param retries      is the number of re-executions of the class, re-executions come after the first executions.
+         * @param criticalPath is the expected duration of the class plus the longest chain of classes those are waiting for it, in ms.
+         * @param depth        is the number of classes in the longest chain of classes those are waiting for it.
+         * @param sequence     is the enqueue order, that is the testlist order.
+         */
+        DispatchOrder(final int retries, final long criticalPath, final int depth, final long sequence) {
+            this.retries = retries;
+            this.criticalPath = criticalPath;
+            this.depth = depth;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Orders the ready queue by the number of re-executions (first executions first), then by the critical path (longest first), then by the number of dependent classes,
+     * then by the enqueue order (that is the testlist order).
+     */
+    private class ReadyQueueComparator implements Comparator<TestClassExecutionData> {
+        @Override
+        public int compare(final TestClassExecutionData o1, final TestClassExecutionData o2) {
+            DispatchOrder order1 = dispatchOrder.get(o1);
+            DispatchOrder order2 = dispatchOrder.get(o2);
+            int result = Integer.compare(order1.retries, order2.retries);
+            if (result == 0) {
+                result = Long.compare(order2.criticalPath, order1.criticalPath);
+            }
+            if (result == 0) {
+                result = Integer.compare(order2.depth, order1.depth);
+            }
+            if (result == 0) {
+                result = Long.compare(order1.sequence, order2.sequence);
+            }
+            return result;
+        }
+    }
+}
@@ -20,10 +20,8 @@ package com.epam.gepard.common.threads;
 ===========================================================================*/
 
 import java.io.File;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.epam.gepard.logger.HtmlRunReporter;
 import org.junit.runner.Computer;
@@ -33,242 +31,311 @@ import org.junit.runner.notification.Failure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.annotations.TestClass;
 import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.helper.ResultCache;
+import com.epam.gepard.common.threads.helper.VirtualThreadFactory;
+import com.epam.gepard.distributed.WorkerPool;
 import com.epam.gepard.generic.GenericListTestSuite;
 import com.epam.gepard.logger.XmlRunReporter;
 
 /**
  * This threads are used to execute the test cases in parallel.
+ * In virtual thread mode this object is the handle of the executor, and its {@link #run()} method is executed by a virtual thread.
  */
 public class TestClassExecutionThread extends Thread {
 
     public static final InheritableThreadLocal<TestClassExecutionData> CLASS_DATA_IN_CONTEXT = new InheritableThreadLocal<>();
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TestClassExecutionThread.class);
-    private static final Semaphore AVAILABLE = new Semaphore(1, false);
-
-    /**
-     * Key is the blocker, value is the lock of the blocker.
-     */
-    private static Map<String, BlockingInfo> testClassBlockingMap = new LinkedHashMap<>(); //blocking TClass map
+    private static final TestClassDispatcher DISPATCHER = new TestClassDispatcher();
 
     //TC executor
     private final JUnitCore core = new JUnitCore();
-    private boolean enabled; // = false; //weather TC execution enabled for this thread or not
-    private TestClassExecutionData classData; // = null; //points to the actual tc, under exec
+    private volatile boolean enabled; // = false; //weather TC execution enabled for this thread or not
+    private final AtomicReference<TestClassExecutionData> classData = new AtomicReference<>(); //points to the actual tc, under exec
+    private volatile long classStartTime; //start time of the actual tc, in ms
     private String xmlResultPath;
+    private final ExecutorThreadManager manager;
+    private volatile Thread runner; //the thread that executes the run method, it is this thread, or a virtual thread
 
     /**
      * Constructs a new instance of {@link TestClassExecutionThread}.
      * @param xmlResultPath the path to use for xml report generation
+     * @param manager is the manager of the executor threads, it decides when this thread should exit.
      */
-    public TestClassExecutionThread(final String xmlResultPath) {
+    public TestClassExecutionThread(final String xmlResultPath, final ExecutorThreadManager manager) {
         this.xmlResultPath = xmlResultPath;
+        this.manager = manager;
+    }
+
+    @Override
+    public synchronized void start() {
+        VirtualThreadFactory virtualThreadFactory = manager.getVirtualThreadFactory();
+        if (virtualThreadFactory == null) {
+            runner = this;
+            super.start();
+        } else {
+            runner = virtualThreadFactory.create(getName(), this);
+            runner.start();
+        }
+    }
+
+    @Override
+    public void interrupt() {
+        Thread actualRunner = runner;
+        if (actualRunner != null && actualRunner != this) {
+            actualRunner.interrupt();
+        }
+        super.interrupt();
+    }
+
+    @Override
+    public boolean isInterrupted() {
+        Thread actualRunner = runner;
+        return actualRunner != null && actualRunner != this ? actualRunner.isInterrupted() : super.isInterrupted();
     }
 
     @Override
     public void run() {
         String me = this.getName();
         core.addListener(new XmlRunReporter(new File(xmlResultPath)));
-        core.addListener(new XmlRunReporter(new File(xmlResultPath), true));
-        //forever loop we have
-        while (true) {
-            tryToExecuteATest(me);
+        //loop till the manager lets us go, the dispatcher wakes us up when there is something to do
+        boolean running = true;
+        while (running) {
+            running = tryToExecuteATest(me);
         }
+        LOGGER.debug("Thread: " + me + " is exiting.");
     }
 
-    private void tryToExecuteATest(final String me) {
-        //first, detect whether there is anything to do
-        boolean grabbed = tryToGrab();
-        if (grabbed) {
-            pickAClassToBeExecuted(me);
+    private boolean tryToExecuteATest(final String me) {
+        boolean keepRunning = true;
+        TestClassExecutionData o = DISPATCHER.takeNextClass(this, manager.getWorkerKeepAlive());
+        if (o != null) {
+            if (execClass(o)) { //execute the class
+                //done, so need to be set as done - unless the watchdog abandoned this thread meanwhile, and did it already
+                setClassExecuted(me, o);
+            }
         } else {
-            wait(me);
+            //disabled, idle for a while, interrupted or shutdown
+            keepRunning = !manager.retireWorker(this);
         }
+        return keepRunning;
     }
 
-    private boolean tryToGrab() {
-        boolean grabbed = false;
-        if (isThereAnyThingTodo() && isEnabled()) {
-            //there is something to do, so grab the semaphore
-            grabbed = AVAILABLE.tryAcquire();
+    /**
+     * Executes a test class, and finishes it, unless the watchdog abandoned it meanwhile as hung.
+     * An abandoned test class is finished by the watchdog, so it must not be touched when (if ever) its execution returns.
+     *
+     * @param o is the test class
+     * @return true if the test class is finished by this thread.
+     */
+    private boolean execClass(final TestClassExecutionData o) {
+        long startTime = System.currentTimeMillis();
+        classStartTime = startTime;
+        classData.set(o);
+        CLASS_DATA_IN_CONTEXT.set(o);
+        Result result = null; //the result of the JUnit run, if the class is executed by this thread
+        boolean executed = false;
+        try {
+            o.materialize(); //rows are prepared for execution only when they are dispatched
+            ResultCache resultCache = manager.getResultCache();
+            if (resultCache != null && resultCache.restoreCachedPass(o)) {
+                reportCachedPass(o);
+            } else {
+                WorkerPool workerPool = manager.getWorkerPool();
+                if (workerPool == null) {
+                    result = runClass(o);
+                } else {
+                    workerPool.execute(o); //executed by a separate JVM
+                }
+                executed = true;
+            }
+        } catch (Throwable e) {
+            //this is gas
+            LOGGER.debug("Thread: got EX during JUnitCore execution.", e);
+        }
+        CLASS_DATA_IN_CONTEXT.set(null);
+        boolean owned = classData.compareAndSet(o, null);
+        if (owned) {
+            finishClass(o, result, executed, System.currentTimeMillis() - startTime);
         }
-        return grabbed;
+        return owned;
     }
 
-    private void pickAClassToBeExecuted(final String me) {
-        //semaphore is grabbed
-        //+ there is something to do, so pick a class to be executed
-        LOGGER.debug("Thread: " + me + " grabbed the semaphore.");
-        TestClassExecutionData o = pickClass();
-        if (o != null) {
-            executeCandidate(me, o);
-        } else {
-            releaseAndWait(me);
+    private void finishClass(final TestClassExecutionData o, final Result result, final boolean executed, final long executionTime) {
+        try {
+            if (result != null) {
+                o.setCountOfRuns(result.getRunCount());
+                o.getHtmlRunReporter().hiddenAfterTestClassExecution();
+            }
+            ResultCache resultCache = manager.getResultCache();
+            if (executed && resultCache != null) {
+                resultCache.storePass(o);
+            }
+        } catch (Throwable e) {
+            LOGGER.debug("Thread: got EX during finishing the test class.", e);
+        }
+        o.setExecutionTime(executionTime);
+        ConcurrencyController concurrencyController = manager.getConcurrencyController();
+        if (concurrencyController != null && !o.isCachedPass()) { //a cached pass is not a latency sample
+            concurrencyController.classExecuted(o);
         }
     }
 
-    private void executeCandidate(final String me, final TestClassExecutionData o) {
-        //we grabbed the semaphore and has a candidate to be executed
-        String info = lock(o); //lock the class
-        LOGGER.debug("Thread: " + me + " released the semaphore, and " + info);
-        AVAILABLE.release(); //release the semaphore
-        execClass(o); //execute the class
-        setLockExecuted(me, o); //done, so need to be set as done
+    /**
+     * Sets the test class as executed at the dispatcher, and reports the test classes those are skipped because of it.
+     *
+     * @param me is the name of the caller
+     * @param o  is the executed test class
+     */
+    static void setClassExecuted(final String me, final TestClassExecutionData o) {
+        reportSkippedClasses(DISPATCHER.setClassExecuted(me, o), "test class " + o.getClassName() + " (or a test class it depends on)");
     }
 
-    private void releaseAndWait(final String me) {
-        //hmm, nothing to pick, maybe the last one just picked or blocked.
-        //release the semaphore, wait a bit and reiterate
-        LOGGER.debug("Thread: " + me + " released the semaphore (no Class to execute).");
-        AVAILABLE.release(); //release the semaphore
-        //now wait for the next iteration
-        wait(me);
+    /**
+     * Passes a just loaded test class row to the dispatcher, so it can be executed right now.
+     *
+     * @param o is the loaded test class row
+     */
+    public static void publishTestClass(final TestClassExecutionData o) {
+        reportSkippedClasses(DISPATCHER.enqueue(o), "a test class it depends on");
     }
 
-    private void wait(final String me) {
-        try {
-            sleep(GepardConstants.ONE_SECOND_LENGTH.getConstant()); //sleep for a sec, then restart the loop
-        } catch (InterruptedException e) {
-            //this was not expected, but if happens, then time to exit
-            LOGGER.debug("Thread: " + me + " is exiting, as got InterruptedException!");
-        }
+    /**
+     * Notes that all the rows of a test class are loaded and passed to the dispatcher.
+     *
+     * @param className is the loaded test class
+     */
+    public static void publishTestClassLoaded(final String className) {
+        reportSkippedClasses(DISPATCHER.testClassLoaded(className), "test class " + className + " (or a test class it depends on)");
     }
 
-    private boolean isThereAnyThingTodo() {
-        boolean result = false;
-        Iterator<String> keyIterator = GenericListTestSuite.getTestClassIds().iterator();
-        while (keyIterator.hasNext() && !result) {
-            String s = keyIterator.next();
-            TestClassExecutionData d = GenericListTestSuite.getTestClassExecutionData(s);
-            result = d.getLock() >= 0;
-        }
-        return result;
+    /**
+     * Stops the execution, the test classes those are not executed yet are reported as skipped.
+     *
+     * @param reason is why the execution is stopped
+     */
+    public static void stopExecution(final String reason) {
+        reportSkippedClasses(DISPATCHER.stopExecution(reason), reason);
     }
 
-    private TestClassExecutionData pickClass() {
-        TestClassExecutionData result = null;
-        Iterator<String> iterator = GenericListTestSuite.getTestClassIds().iterator();
-        while (iterator.hasNext() && result == null) {
-            String s = iterator.next();
-            TestClassExecutionData d = GenericListTestSuite.getTestClassExecutionData(s);
-            result = findUnblockedClass(d);
+    private static void reportSkippedClasses(final List<TestClassExecutionData> skipped, final String failedClass) {
+        for (TestClassExecutionData skippedClass : skipped) {
+            reportSkippedClass(skippedClass, failedClass);
         }
-        return result; //no class to be proposed for exec
     }
 
-    private TestClassExecutionData findUnblockedClass(final TestClassExecutionData d) {
-        TestClassExecutionData result = null;
-        boolean notBlocked = true;
-        if (d.getBlockerString() != null) {
-            //need to check blocker map, too
-            notBlocked = checkBlocked(d);
-        }
-        //not blocked, so check the locked status
-        if (notBlocked && d.getLock() == 0) {
-            result = d; //if not locked, then this is the class we propose to be locked
+    /**
+     * Takes the actual test class away from this thread, as it is hung. The thread is disabled and interrupted,
+     * it exits as soon as the test class returns (if ever), and the caller is responsible to set the test class as executed.
+     *
+     * @param o is the test class that is considered as hung
+     * @return true if the test class is taken away, false if this thread is not executing it anymore.
+     */
+    boolean abandonActiveTest(final TestClassExecutionData o) {
+        boolean abandoned = classData.compareAndSet(o, null);
+        if (abandoned) {
+            o.setItAsAbandoned();
+            HtmlRunReporter reporter = o.getHtmlRunReporter();
+            if (reporter != null) {
+                //the test methods those are still running must not update the finished test class
+                core.removeListener(reporter);
+            }
+            setEnabled(false);
+            interrupt();
         }
-        return result;
+        return abandoned;
     }
 
-    private boolean checkBlocked(final TestClassExecutionData d) {
-        boolean result = true;
-        BlockingInfo blockerInfo = TestClassExecutionThread.testClassBlockingMap.get(d.getBlockerString());
-        if (blockerInfo.isBlockerInUse()) {
-            //continue the search if self-parallelism is not allowed
-            if (!d.isSelfEnabledBlocker()) {
-                result = false;
-            }
-            //hmm. if this class is not the same as blocked it, we should continue the search
-            if (notTheSameAsBlocked(d, blockerInfo)) {
-                result = false;
-            }
-            //self-parallelism is allowed, and the blocker is this class, so this class can be executed now
-        }
-        return result;
+    /**
+     * Gets the thread that actually executes the test classes, it is this thread, or a virtual thread.
+     *
+     * @return with the runner thread, or null if the thread is not started.
+     */
+    Thread getRunner() {
+        return runner;
     }
 
-    private boolean notTheSameAsBlocked(final TestClassExecutionData d, final BlockingInfo blockerInfo) {
-        return d.getClassName().compareTo(blockerInfo.getActualClass()) != 0;
+    /**
+     * Gets when the execution of the actual test class was started.
+     *
+     * @return with the start time in ms, valid only if there is an active test class.
+     */
+    long getActiveTestStartTime() {
+        return classStartTime;
     }
 
-    private String lock(final TestClassExecutionData o) {
-        //first detect if second lock is necessary
-        String blockerString = o.getBlockerString();
-        boolean needsecondLock = blockerString != null;
-        String additionalInfo = "";
-        if (needsecondLock) {
-            BlockingInfo blockingInfo = TestClassExecutionThread.testClassBlockingMap.get(blockerString);
-            blockingInfo.setBlockerInUse(true); //now locks the blocker it in the map
-            blockingInfo.setActualClass(o.getClassName());
-            blockingInfo.setOverload(blockingInfo.getOverload() + 1);
-            additionalInfo = ", with Blocker: " + blockerString + " Class:" + blockingInfo.getActualClass() + " Overload:"
-                    + blockingInfo.getOverload();
+    private Result runClass(final TestClassExecutionData o) {
+        HtmlRunReporter reporter = o.getHtmlRunReporter();
+        reporter.hiddenBeforeTestClassExecution();
+        if (o.getRetries() > 0) {
+            reporter.beforeClassLogComment("Re-execution of the test class, as the previous attempt failed, this is attempt " + (o.getRetries() + 1) + ".");
         }
-        o.lock();
-        return "got Class to execute:" + o.getID() + additionalInfo;
-    }
+        core.addListener(reporter);
 
-    private void setLockExecuted(final String me, final TestClassExecutionData o) {
-        //first detect if second lock is necessary
-        String blockerString = o.getBlockerString();
-        boolean needsecondLock = blockerString != null;
-        String additionalInfo = "";
-        if (needsecondLock) {
-            BlockingInfo blockingInfo = TestClassExecutionThread.testClassBlockingMap.get(blockerString);
-            blockingInfo.setOverload(blockingInfo.getOverload() - 1);
-            additionalInfo = ", and remove Blocker: " + blockerString + " and Class:" + blockingInfo.getActualClass() + ", now Overload:"
-                    + blockingInfo.getOverload();
-            if (blockingInfo.getOverload() == 0) {
-                //this was this last blocker class so now release it
-                blockingInfo.setBlockerInUse(false); //now unlocks the blocker it in the map
-                blockingInfo.setActualClass(null);
-            }
+        Result result = core.run(createComputer(o.getTestClass()), o.getTestClass());
+        for (Failure failure : result.getFailures()) {
+            LOGGER.debug(failure.toString());
         }
-        o.setLockExecuted();
-        LOGGER.debug("Thread: " + me + " sets class as executed:" + o.getID() + additionalInfo);
+        core.removeListener(reporter);
+        return result;
     }
 
-    private void execClass(final TestClassExecutionData o) {
-        classData = o;
-        CLASS_DATA_IN_CONTEXT.set(o);
+    private static void reportSkippedClass(final TestClassExecutionData skipped, final String failedClass) {
+        String message = skipped.getSkipReason() == null ? "Skipped, as " + failedClass + " failed." : "Skipped, as " + skipped.getSkipReason() + ".";
         try {
-            HtmlRunReporter reporter = o.getHtmlRunReporter();
+            skipped.materialize();
+            HtmlRunReporter reporter = skipped.getHtmlRunReporter();
             reporter.hiddenBeforeTestClassExecution();
-            core.addListener(reporter);
-
-            Result result = core.run(Computer.serial(), o.getTestClass());
-            for (Failure failure : result.getFailures()) {
-                LOGGER.debug(failure.toString());
-            }
-            classData.setCountOfRuns(result.getRunCount());
-            core.removeListener(reporter);
+            reporter.beforeClassLogComment(message);
             reporter.hiddenAfterTestClassExecution();
         } catch (Throwable e) {
-            //this is gas
-            LOGGER.debug("Thread: got EX during JUnitCore execution.", e);
+            LOGGER.debug("Thread: got EX during reporting of a skipped class.", e);
         }
-        CLASS_DATA_IN_CONTEXT.set(null);
-        classData = null;
+        skipped.addSysOut("\nSkipped test class: " + skipped.getClassName() + "\nName: " + skipped.getTestScriptName() + "\n" + message);
+        skipped.setLockExecuted();
+        GenericListTestSuite.testClassFinished(skipped);
+    }
+
+    private void reportCachedPass(final TestClassExecutionData o) {
+        HtmlRunReporter reporter = o.getHtmlRunReporter();
+        reporter.hiddenBeforeTestClassExecution();
+        reporter.beforeClassLogComment("Cached pass: this row passed in a previous run, and its test class (together with the classes it uses), "
+                + "its data and the selected properties are not changed since then, so it is not executed now.");
+        reporter.hiddenAfterTestClassExecution();
+    }
+
+    private Computer createComputer(final Class<?> testClass) {
+        TestClass testClassAnnotation = testClass.getAnnotation(TestClass.class);
+        int parallelMethods = testClassAnnotation == null ? 1 : testClassAnnotation.parallelMethods();
+        return parallelMethods > 1 ? new ParallelMethodComputer(parallelMethods) : Computer.serial();
     }
 
     /**
-     * Delegates the method call to the inner map.
+     * Delegates the method call to the dispatcher.
      * @param key the key of the BlockingInfo
      * @return true if it's contained false otherwise
      */
     public static boolean containsClassBlockingInfo(final String key) {
-        return TestClassExecutionThread.testClassBlockingMap.containsKey(key);
+        return DISPATCHER.containsClassBlockingInfo(key);
     }
 
     /**
-     * Delegates the method call to the inner map.
+     * Delegates the method call to the dispatcher.
      * @param key the key to store
      * @param blockingInfo the value to store
      */
     public static void putClassBlockingInfo(final String key, final BlockingInfo blockingInfo) {
-        TestClassExecutionThread.testClassBlockingMap.put(key, blockingInfo);
+        DISPATCHER.putClassBlockingInfo(key, blockingInfo);
+    }
+
+    /**
+     * Get the dispatcher, that is shared between the executor threads.
+     * @return with the test class dispatcher.
+     */
+    public static TestClassDispatcher getDispatcher() {
+        return DISPATCHER;
     }
 
     /**
@@ -278,6 +345,7 @@ public class TestClassExecutionThread extends Thread {
      */
     public void setEnabled(final boolean enabled) {
         this.enabled = enabled;
+        DISPATCHER.wakeUpWaitingThreads();
     }
 
     /**
@@ -296,7 +364,7 @@ public class TestClassExecutionThread extends Thread {
      * @return with the Test Class execution information of the running test case.
      */
     public TestClassExecutionData getActiveTest() {
-        return classData;
+        return classData.get();
     }
 
 }
@@ -0,0 +1,150 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.distributed.WorkerPool;
+import com.epam.gepard.logger.HtmlRunReporter;
+import com.epam.gepard.util.Util;
+
+/**
+ * This thread enforces the time limit of the test classes (see timeout of @TestClass, the timeout column of the testlist, and gepard.timeout).
+ * A test class that runs longer than its time limit is considered as hung: it is set as failed, a thread dump is added to its log
+ * (if it is executed in this JVM), and its executor thread (and worker, if workers are used) is abandoned, a new one is started instead of it.
+ * So a hung test class does not stop the execution of the remaining test classes.
+ */
+public class TestClassWatchdog extends Thread {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassWatchdog.class);
+    private static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
+
+    private final ExecutorThreadManager manager;
+    private final long sleepTime = GepardConstants.ONE_SECOND_LENGTH.getConstant();
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new instance of {@link TestClassWatchdog}.
+     * @param manager is the manager of the executor threads to be watched.
+     */
+    public TestClassWatchdog(final ExecutorThreadManager manager) {
+        this.manager = manager;
+        setName("GEPARD Watchdog");
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            checkExecutorThreads(System.currentTimeMillis());
+            try {
+                Thread.sleep(sleepTime);
+            } catch (InterruptedException e) {
+                LOGGER.debug("Watchdog is exiting, as got InterruptedException.");
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Stops the watchdog.
+     */
+    public void shutdown() {
+        running = false;
+        interrupt();
+    }
+
+    /**
+     * Checks the test classes under execution, and abandons the ones those are running for too long.
+     * @param now is the actual time in ms.
+     */
+    void checkExecutorThreads(final long now) {
+        for (TestClassExecutionThread thread : manager.getThreads()) {
+            TestClassExecutionData classData = thread.getActiveTest();
+            if (classData != null && classData.getTimeout() > 0 && now - thread.getActiveTestStartTime() > classData.getTimeout()) {
+                String threadDump = createThreadDump(thread);
+                if (thread.abandonActiveTest(classData)) {
+                    handleHungClass(thread, classData, threadDump);
+                }
+            }
+        }
+    }
+
+    private void handleHungClass(final TestClassExecutionThread thread, final TestClassExecutionData classData, final String threadDump) {
+        long timeoutInSeconds = classData.getTimeout() / GepardConstants.ONE_SECOND_LENGTH.getConstant();
+        String message = "Test class is hung, as it is running for more than " + timeoutInSeconds + " seconds.";
+        CONSOLE_LOG.info("INFO: Test class: " + classData.getID() + " is hung, its executor thread: " + thread.getName() + " is abandoned.");
+        classData.setItAsProblematic();
+        classData.addSysOut("\nTest class: " + classData.getClassName() + "\nName: " + classData.getTestScriptName() + "\n" + message
+                + " Its executor thread: " + thread.getName() + " is abandoned.");
+        WorkerPool workerPool = manager.getWorkerPool();
+        if (workerPool == null) {
+            reportHungClass(classData, message + " Thread dump:<br/><pre>" + new Util().escapeHTML(threadDump) + "</pre>");
+        } else {
+            //the log of the class is written by the worker, that is replaced now
+            workerPool.abandon(classData);
+        }
+        TestClassExecutionThread.setClassExecuted(getName(), classData);
+        //start a new executor thread instead of the abandoned one, if there is something to do
+        manager.startWorkerIfAllowed();
+    }
+
+    private void reportHungClass(final TestClassExecutionData classData, final String comment) {
+        try {
+            HtmlRunReporter reporter = classData.getHtmlRunReporter();
+            reporter.afterClassLogComment(comment);
+            reporter.hiddenAfterTestClassExecution();
+        } catch (Throwable e) {
+            LOGGER.debug("Watchdog: got EX during reporting of a hung class.", e);
+        }
+    }
+
+    /**
+     * Creates a thread dump, the stack of the hung executor thread comes first.
+     * @param hungThread is the executor thread of the hung test class.
+     * @return with the thread dump.
+     */
+    String createThreadDump(final TestClassExecutionThread hungThread) {
+        StringBuilder dump = new StringBuilder();
+        Thread runner = hungThread.getRunner();
+        if (runner != null) {
+            appendThread(dump, runner, runner.getStackTrace());
+        }
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            if (entry.getKey() != runner) {
+                appendThread(dump, entry.getKey(), entry.getValue());
+            }
+        }
+        return dump.toString();
+    }
+
+    private void appendThread(final StringBuilder dump, final Thread thread, final StackTraceElement[] stackTrace) {
+        dump.append('"').append(thread.getName()).append("\" ").append(thread.getState()).append('\n');
+        for (StackTraceElement element : stackTrace) {
+            dump.append("\tat ").append(element).append('\n');
+        }
+        dump.append('\n');
+    }
+}
@@ -53,4 +53,25 @@ public class RemoteControlHandler {
         }
         return s;
     }
+
+    /**
+     * This Gepard server method offers the possibility of changing the number of the executor threads.
+     * @param threadCountText is the requested number of threads
+     * @return with server answer.
+     */
+    public String remoteSetThreadCount(final String threadCountText) {
+        String s;
+        try {
+            int threadCount = Integer.parseInt(threadCountText);
+            if (threadCount > 0) {
+                AllTestRunner.getExecutorThreadManager().setThreadCount(threadCount);
+                s = "Number of executor threads is set to: " + threadCount;
+            } else {
+                s = "Number of executor threads must be positive.";
+            }
+        } catch (NumberFormatException e) {
+            s = "Invalid number of executor threads: " + threadCountText;
+        }
+        return s;
+    }
 }
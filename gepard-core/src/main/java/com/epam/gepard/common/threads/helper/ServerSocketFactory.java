@@ -20,6 +20,7 @@ package com.epam.gepard.common.threads.helper;
 ===========================================================================*/
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 
 /**
@@ -37,4 +38,15 @@ public class ServerSocketFactory {
     public ServerSocket create(final int port) throws IOException {
         return new ServerSocket(port);
     }
+
+    /**
+     * Creates a {@link ServerSocket} bound to the specific port of the given local address.
+     * @param port the port to bind to
+     * @param bindAddress the local address to bind to
+     * @return a new instance of {@link ServerSocket}
+     * @throws IOException if an IO error occurs when opening the socket
+     */
+    public ServerSocket create(final int port, final InetAddress bindAddress) throws IOException {
+        return new ServerSocket(port, 0, bindAddress);
+    }
 }
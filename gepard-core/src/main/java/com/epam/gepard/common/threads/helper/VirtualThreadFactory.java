@@ -0,0 +1,90 @@
+package com.epam.gepard.common.threads.helper;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.lang.reflect.Method;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Factory class for virtual threads.
+ * Virtual threads are available from Java 21, while Gepard is built for Java 8, so the virtual thread builder is reached via reflection.
+ * If the JVM does not support virtual threads, platform threads are created.
+ */
+public class VirtualThreadFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadFactory.class);
+    private static final Method OF_VIRTUAL = findOfVirtual();
+    private static final Method UNSTARTED = findBuilderMethod("unstarted", Runnable.class);
+    private static final Method NAME = findBuilderMethod("name", String.class);
+
+    private static Method findOfVirtual() {
+        Method result = null;
+        try {
+            result = Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            LOGGER.debug("Virtual threads are not supported by this JVM.");
+        }
+        return result;
+    }
+
+    private static Method findBuilderMethod(final String methodName, final Class<?> parameterType) {
+        Method result = null;
+        if (OF_VIRTUAL != null) {
+            try {
+                result = Class.forName("java.lang.Thread$Builder").getMethod(methodName, parameterType);
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                LOGGER.debug("Virtual thread builder is not available.", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tells whether the JVM is able to create virtual threads.
+     * @return true if virtual threads are supported.
+     */
+    public boolean isSupported() {
+        return UNSTARTED != null && NAME != null;
+    }
+
+    /**
+     * Creates a new, not yet started thread, that is a virtual thread if the JVM supports it, otherwise a platform thread.
+     * @param name is the name of the new thread
+     * @param task is the task to be executed by the thread
+     * @return with the new, unstarted thread
+     */
+    public Thread create(final String name, final Runnable task) {
+        Thread thread = null;
+        if (isSupported()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                thread = (Thread) UNSTARTED.invoke(builder, task);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.debug("Cannot create virtual thread, using platform thread.", e);
+            }
+        }
+        if (thread == null) {
+            thread = new Thread(task, name);
+        }
+        return thread;
+    }
+}
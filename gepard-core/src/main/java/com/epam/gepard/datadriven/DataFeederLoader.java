@@ -265,6 +265,14 @@ public class DataFeederLoader {
         this.parameterArray = parameterArray;
     }
 
+    /**
+     * Gets the parameter data array that is stored for this class.
+     * @return with the parameter data array, or null if it is not stored yet.
+     */
+    public DataDrivenParameterArray getParameterArray() {
+        return parameterArray;
+    }
+
     /**
      * Use this method to report Feeder problems to the user.
      * Suggested message format:
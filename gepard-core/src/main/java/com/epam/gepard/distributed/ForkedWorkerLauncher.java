@@ -0,0 +1,164 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.GepardConstants;
+
+/**
+ * Starts worker JVMs on the local machine, those connect back to the coordinator.
+ * The workers use the same java and class path as the coordinator, extra JVM arguments can be set via gepard.fork.jvmargs.
+ * The token of the coordinator is passed to the workers as the gepard.agents.token system property.
+ * The console output of each worker is written to a log file (worker#.log) in the result folder.
+ */
+public class ForkedWorkerLauncher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForkedWorkerLauncher.class);
+    private static final long EXIT_TIMEOUT = 10L * GepardConstants.ONE_SECOND_LENGTH.getConstant();
+
+    private final Environment environment;
+    private final String token;
+    private final Map<String, Process> processes = new LinkedHashMap<>(); //key is the name of the worker
+    private int nextWorkerIndex;
+
+    /**
+     * Constructs a new instance of {@link ForkedWorkerLauncher}.
+     *
+     * @param environment holds the properties of the application
+     * @param token       is the secret the workers should send to the coordinator
+     */
+    public ForkedWorkerLauncher(final Environment environment, final String token) {
+        this.environment = environment;
+        this.token = token;
+    }
+
+    /**
+     * Starts the worker JVMs.
+     *
+     * @param count is the number of workers to be started
+     * @param port  is the port of the coordinator, on the local machine
+     * @throws IOException if a worker cannot be started
+     */
+    public void launch(final int count, final int port) throws IOException {
+        for (int i = 0; i < count; i++) {
+            synchronized (processes) {
+                int index = nextWorkerIndex++;
+                ProcessBuilder processBuilder = new ProcessBuilder(createCommand("Worker" + index, port));
+                processBuilder.redirectErrorStream(true);
+                processBuilder.redirectOutput(new File(environment.getProperty(Environment.GEPARD_RESULT_PATH), "worker" + index + ".log"));
+                processes.put("Worker" + index, processBuilder.start());
+            }
+        }
+    }
+
+    /**
+     * Kills a hung worker, and starts a new one instead of it.
+     *
+     * @param name is the name of the hung worker
+     * @param port is the port of the coordinator, on the local machine
+     * @return true if the worker was started by this launcher, so it is replaced, false if it is unknown (e.g. an agent).
+     * @throws IOException if the new worker cannot be started
+     */
+    public boolean replace(final String name, final int port) throws IOException {
+        Process process;
+        synchronized (processes) {
+            process = processes.remove(name);
+        }
+        if (process != null) {
+            process.destroyForcibly();
+            launch(1, port);
+        }
+        return process != null;
+    }
+
+    /**
+     * Creates the command line that starts a worker.
+     *
+     * @param name is the name of the worker
+     * @param port is the port of the coordinator
+     * @return with the command line.
+     */
+    List<String> createCommand(final String name, final int port) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        String jvmArgs = environment.getProperty(Environment.GEPARD_FORK_JVM_ARGS);
+        if (jvmArgs != null) {
+            for (String jvmArg : jvmArgs.trim().split("\\s+")) {
+                if (!jvmArg.isEmpty()) {
+                    command.add(jvmArg);
+                }
+            }
+        }
+        command.add("-D" + Environment.GEPARD_AGENTS_TOKEN + "=" + token);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(GepardWorker.class.getName());
+        command.add("localhost");
+        command.add(String.valueOf(port));
+        command.add(name);
+        return command;
+    }
+
+    /**
+     * Detects if any of the started workers is still running.
+     *
+     * @return true if there is a living worker process.
+     */
+    public boolean hasAliveWorker() {
+        boolean result = false;
+        synchronized (processes) {
+            for (Process process : processes.values()) {
+                result |= process.isAlive();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits for the workers to exit, those are still running after a while are killed.
+     */
+    public void waitForExit() {
+        synchronized (processes) {
+            for (Process process : processes.values()) {
+                try {
+                    if (!process.waitFor(EXIT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        process.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    LOGGER.debug("Interrupted while waiting for the workers to exit.");
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+            processes.clear();
+        }
+    }
+}
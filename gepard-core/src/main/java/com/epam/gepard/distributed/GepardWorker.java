@@ -0,0 +1,171 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.gepard.AllTestRunner;
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.threads.ExecutorThreadManager;
+import com.epam.gepard.common.threads.TestClassExecutionThread;
+import com.epam.gepard.logger.HtmlRunReporter;
+import com.epam.gepard.logger.XmlRunReporter;
+import com.epam.gepard.util.ExitCode;
+
+/**
+ * Gepard worker, a separate JVM that executes the test classes assigned by the Gepard coordinator.
+ * <p>
+ * The worker connects to the coordinator, receives the properties of the coordinator, then executes the assigned test classes one by one,
+ * with the usual executor thread, streams back the console output of the test methods, and sends back the results.
+ * Since the worker has its own JVM, test classes those use static state can be executed in parallel, in different workers.
+ * </p>
+ * <p>
+ * A worker can be forked by the coordinator, or started as an agent on another machine (the test classes, their resources and Gepard must be
+ * available at the same place there). If the agent cannot write into the result folder of the coordinator, a local result folder
+ * should be given, then the result files are sent to the coordinator.
+ * The worker should know the token of the coordinator, it is given as the gepard.agents.token system property.
+ * </p>
+ * Usage: java -Dgepard.agents.token=token com.epam.gepard.distributed.GepardWorker coordinatorHost coordinatorPort [workerName [localResultFolder]]
+ */
+public final class GepardWorker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GepardWorker.class);
+    private static final int HOST_ARG = 0;
+    private static final int PORT_ARG = 1;
+    private static final int NAME_ARG = 2;
+    private static final int RESULT_FOLDER_ARG = 3;
+    private static final long EXECUTION_POLL_TIME = 100L;
+
+    private final Environment environment;
+    private final WorkerProtocol protocol = new WorkerProtocol();
+    private final ExecutorThreadManager executorThreadManager = AllTestRunner.getExecutorThreadManager();
+    private final ResultFileShipper resultFileShipper;
+
+    /**
+     * Constructs a new instance of {@link GepardWorker}.
+     *
+     * @param environment       will hold the properties received from the coordinator
+     * @param resultFileShipper sends the result files to the coordinator, or null, if the worker writes into the result folder of the coordinator
+     */
+    public GepardWorker(final Environment environment, final ResultFileShipper resultFileShipper) {
+        this.environment = environment;
+        this.resultFileShipper = resultFileShipper;
+    }
+
+    /**
+     * Starts a worker.
+     *
+     * @param args are the host and port of the coordinator, and optionally the name of the worker.
+     */
+    public static void main(final String[] args) {
+        Thread.currentThread().setName("GEPARD Worker");
+        if (args.length <= PORT_ARG) {
+            AllTestRunner.CONSOLE_LOG.info("Usage: java -D" + Environment.GEPARD_AGENTS_TOKEN + "=token " + GepardWorker.class.getName()
+                    + " coordinatorHost coordinatorPort [workerName [localResultFolder]]");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_WRONG_NUMBER_OF_PARAMETERS_OR_HELP_REQUEST);
+        }
+        String name = args.length > NAME_ARG ? args[NAME_ARG] : "Worker@" + System.getProperty("user.name");
+        ResultFileShipper resultFileShipper = args.length > RESULT_FOLDER_ARG ? new ResultFileShipper(new File(args[RESULT_FOLDER_ARG])) : null;
+        GepardWorker worker = new GepardWorker(new Environment(), resultFileShipper);
+        AllTestRunner.exitFromGepard(worker.run(args[HOST_ARG], Integer.parseInt(args[PORT_ARG]), name));
+    }
+
+    /**
+     * Connects to the coordinator, and executes the assigned test classes, till the coordinator asks the worker to exit.
+     *
+     * @param host is the host of the coordinator
+     * @param port is the port of the coordinator
+     * @param name is the name of the worker
+     * @return with the exit code.
+     */
+    int run(final String host, final int port, final String name) {
+        int exitCode = ExitCode.EXIT_CODE_OK;
+        WorkerConnection connection = null;
+        try {
+            connection = new WorkerConnection(new Socket(host, port));
+            connection.send(new WorkerMessage(WorkerMessage.HELLO, name, System.getProperty(Environment.GEPARD_AGENTS_TOKEN)));
+            Properties properties = protocol.readEnvironmentMessage(connection.receive());
+            if (resultFileShipper != null) {
+                resultFileShipper.relocateResultPaths(properties);
+                XmlRunReporter.setFileNameQualifier(name);
+            }
+            environment.setUp(properties);
+            executorThreadManager.setVirtualThreads(environment.getProperty(Environment.GEPARD_THREADS_VIRTUAL));
+            executorThreadManager.initiateAndStartExecutorThreads("1", environment.getProperty(Environment.GEPARD_XML_RESULT_PATH));
+            AllTestRunner.CONSOLE_LOG.info("Worker " + name + " is connected to " + host + ":" + port);
+            WorkerMessage message = connection.receive();
+            while (!WorkerMessage.EXIT.equals(message.getCommand())) {
+                if (WorkerMessage.RUN.equals(message.getCommand())) {
+                    connection.send(execute(message, connection));
+                }
+                message = connection.receive();
+            }
+        } catch (IOException e) {
+            AllTestRunner.CONSOLE_LOG.info("\nERROR: Connection to the coordinator at " + host + ":" + port + " failed: " + e.getMessage()
+                    + "\nPlease check and fix it!\nNow exiting...");
+            exitCode = ExitCode.EXIT_CODE_WORKER_SETUP_ERROR;
+        } catch (InterruptedException e) {
+            LOGGER.debug("Worker is interrupted, exiting.");
+            exitCode = ExitCode.EXIT_CODE_WORKER_SETUP_ERROR;
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+            executorThreadManager.closeRunningThreads();
+        }
+        return exitCode;
+    }
+
+    private WorkerMessage execute(final WorkerMessage runMessage, final WorkerConnection connection) throws InterruptedException, IOException {
+        WorkerMessage result;
+        try {
+            TestClassExecutionData classData = protocol.createClassData(runMessage, environment);
+            //the html reporter sets the name from the annotation, but the coordinator may extend it (data driven tests)
+            String testScriptName = classData.getTestScriptName();
+            new HtmlRunReporter(classData);
+            classData.setTestScriptName(testScriptName);
+            TestClassExecutionThread.getDispatcher().enqueue(classData);
+            while (classData.getLock() >= 0) {
+                Thread.sleep(EXECUTION_POLL_TIME);
+                String output = classData.getSysOut();
+                if (!output.isEmpty()) {
+                    connection.send(protocol.createOutputMessage(classData, output));
+                }
+            }
+            if (resultFileShipper != null) {
+                for (WorkerMessage fileMessage : resultFileShipper.collectChangedFiles()) {
+                    connection.send(fileMessage);
+                }
+            }
+            result = protocol.createDoneMessage(classData);
+        } catch (ClassNotFoundException | LinkageError e) {
+            result = new WorkerMessage(WorkerMessage.DONE, runMessage.getField(0), "0", "0", "0", "0", "0", "true",
+                    "\nTest class is not available at the worker: " + e.getMessage());
+        }
+        return result;
+    }
+}
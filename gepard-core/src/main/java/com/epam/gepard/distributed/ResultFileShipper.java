@@ -0,0 +1,122 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.epam.gepard.common.Environment;
+
+/**
+ * Sends the result files of a worker to the coordinator, used when the worker cannot write into the result folder of the coordinator
+ * (like an agent on a different machine). The worker writes the results into its own result folder, and the files those are
+ * created or changed since the last check are sent to the coordinator, that stores them in its result folder, at the same relative path.
+ */
+public class ResultFileShipper {
+
+    /**
+     * The result path properties those are relocated to the result folder of the worker.
+     */
+    private static final String[] RESULT_PATH_PROPERTIES = {Environment.GEPARD_RESULT_PATH, Environment.GEPARD_HTML_RESULT_PATH,
+        Environment.GEPARD_XML_RESULT_PATH, Environment.GEPARD_CSV_RESULT_PATH, Environment.GEPARD_TESTLIST_FAILURE_PATH, };
+
+    private final File localResultFolder;
+    private final Map<String, Long> shippedFiles = new HashMap<>();
+
+    /**
+     * Constructs a new instance of {@link ResultFileShipper}.
+     *
+     * @param localResultFolder is the result folder of the worker
+     */
+    public ResultFileShipper(final File localResultFolder) {
+        this.localResultFolder = localResultFolder;
+    }
+
+    /**
+     * Changes the result paths received from the coordinator to point into the result folder of the worker.
+     *
+     * @param properties are the properties received from the coordinator
+     */
+    public void relocateResultPaths(final Properties properties) {
+        String coordinatorResultPath = properties.getProperty(Environment.GEPARD_RESULT_PATH);
+        String localPath = localResultFolder.getPath();
+        for (String property : RESULT_PATH_PROPERTIES) {
+            String path = properties.getProperty(property);
+            if (path != null && coordinatorResultPath != null && path.startsWith(coordinatorResultPath)) {
+                properties.setProperty(property, localPath + path.substring(coordinatorResultPath.length()));
+            }
+        }
+    }
+
+    /**
+     * Collects the result files those are created or changed since the last call.
+     *
+     * @return with the FILE messages, those hold the changed files.
+     * @throws IOException if a file cannot be read
+     */
+    public List<WorkerMessage> collectChangedFiles() throws IOException {
+        List<WorkerMessage> result = new ArrayList<>();
+        collectChangedFiles(localResultFolder, "", result);
+        return result;
+    }
+
+    private void collectChangedFiles(final File folder, final String relativePath, final List<WorkerMessage> result) throws IOException {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String path = relativePath + file.getName();
+                if (file.isDirectory()) {
+                    collectChangedFiles(file, path + "/", result);
+                } else {
+                    Long shipped = shippedFiles.get(path);
+                    long modified = file.lastModified();
+                    if (shipped == null || shipped != modified) {
+                        shippedFiles.put(path, modified);
+                        result.add(new WorkerMessage(WorkerMessage.FILE, path, Base64.getEncoder().encodeToString(Files.readAllBytes(file.toPath()))));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a result file received from a worker, at the coordinator side.
+     *
+     * @param message      is the FILE message
+     * @param resultFolder is the result folder of the coordinator
+     * @throws IOException if the file cannot be written, or its path points out of the result folder
+     */
+    public static void storeFile(final WorkerMessage message, final File resultFolder) throws IOException {
+        File file = new File(resultFolder, message.getField(0));
+        if (!file.getCanonicalPath().startsWith(resultFolder.getCanonicalPath() + File.separator)) {
+            throw new IOException("Result file is out of the result folder: " + message.getField(0));
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), Base64.getDecoder().decode(message.getField(1)));
+    }
+}
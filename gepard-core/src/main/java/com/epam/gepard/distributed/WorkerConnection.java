@@ -0,0 +1,116 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection between the Gepard coordinator and a worker, both sides use it to send and receive {@link WorkerMessage}s.
+ */
+public class WorkerConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerConnection.class);
+    private static final String ENCODING = "UTF-8";
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final PrintWriter writer;
+    private String name;
+    private String lastClassName; //the test class executed last by the worker
+
+    /**
+     * Creates a connection over an already connected socket.
+     *
+     * @param socket is the connected socket
+     * @throws IOException in case the streams of the socket cannot be opened
+     */
+    public WorkerConnection(final Socket socket) throws IOException {
+        this.socket = socket;
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ENCODING));
+        writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), ENCODING));
+        name = String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    /**
+     * Sends a message.
+     *
+     * @param message is the message to be sent
+     * @throws IOException if the message cannot be sent
+     */
+    public void send(final WorkerMessage message) throws IOException {
+        synchronized (writer) {
+            writer.println(message.encode());
+            writer.flush();
+            if (writer.checkError()) {
+                throw new IOException("Connection to worker " + name + " is lost.");
+            }
+        }
+    }
+
+    /**
+     * Receives the next message, waits for it if necessary.
+     *
+     * @return with the message
+     * @throws IOException if the connection is closed or broken
+     */
+    public WorkerMessage receive() throws IOException {
+        WorkerMessage message = WorkerMessage.decode(reader.readLine());
+        if (message == null) {
+            throw new IOException("Connection to worker " + name + " is closed.");
+        }
+        return message;
+    }
+
+    /**
+     * Closes the connection, problems are ignored.
+     */
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //nothing to do, it is closed anyway
+            LOGGER.debug("Problem at closing the connection of worker " + name, e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getLastClassName() {
+        return lastClassName;
+    }
+
+    public void setLastClassName(final String lastClassName) {
+        this.lastClassName = lastClassName;
+    }
+}
@@ -0,0 +1,176 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single message between the Gepard coordinator and a worker.
+ * A message is transferred as a single text line: the command, followed by the URL encoded fields, separated by spaces.
+ */
+public final class WorkerMessage {
+
+    /**
+     * Sent by the worker after connecting, the field is the name of the worker.
+     */
+    public static final String HELLO = "HELLO";
+    /**
+     * Sent by the coordinator after HELLO, the fields are the properties of the coordinator, as key-value pairs.
+     */
+    public static final String ENVIRONMENT = "ENV";
+    /**
+     * Sent by the coordinator, asks the worker to execute a test class (data row).
+     */
+    public static final String RUN = "RUN";
+    /**
+     * Sent by the worker during the execution of a test class, the fields are the test class ID and the console output of the test methods.
+     */
+    public static final String OUTPUT = "OUT";
+    /**
+     * Sent by the worker, when it uses its own result folder, the fields are the path of a result file (relative to the result folder)
+     * and its Base64 encoded content.
+     */
+    public static final String FILE = "FILE";
+    /**
+     * Sent by the worker, when the test class (data row) is executed, the fields hold the result.
+     */
+    public static final String DONE = "DONE";
+    /**
+     * Sent by the coordinator, asks the worker to exit.
+     */
+    public static final String EXIT = "EXIT";
+
+    private static final String ENCODING = "UTF-8";
+    private static final String SEPARATOR = " ";
+    private static final String FIELD_PREFIX = "=";
+    private static final String NULL_FIELD = "-";
+
+    private final String command;
+    private final List<String> fields;
+
+    /**
+     * Creates a new message.
+     *
+     * @param command is the command of the message
+     * @param fields  are the parameters of the command
+     */
+    public WorkerMessage(final String command, final String... fields) {
+        this(command, Arrays.asList(fields));
+    }
+
+    /**
+     * Creates a new message.
+     *
+     * @param command is the command of the message
+     * @param fields  are the parameters of the command
+     */
+    public WorkerMessage(final String command, final List<String> fields) {
+        this.command = command;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Gets a field of the message.
+     *
+     * @param index is the index of the field
+     * @return with the field, or null if the message has no such field.
+     */
+    public String getField(final int index) {
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    /**
+     * Gets a numeric field of the message.
+     *
+     * @param index is the index of the field
+     * @return with the value of the field.
+     */
+    public int getIntField(final int index) {
+        return Integer.parseInt(getField(index));
+    }
+
+    /**
+     * Converts the message to a single text line.
+     *
+     * @return with the encoded message.
+     */
+    public String encode() {
+        StringBuilder line = new StringBuilder(command);
+        for (String field : fields) {
+            line.append(SEPARATOR).append(encodeField(field));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Parses a message from a text line.
+     *
+     * @param line is the encoded message
+     * @return with the message, or null, if the line is null (end of stream).
+     */
+    public static WorkerMessage decode(final String line) {
+        WorkerMessage result = null;
+        if (line != null) {
+            String[] parts = line.trim().split(SEPARATOR);
+            List<String> fields = new ArrayList<>();
+            for (int i = 1; i < parts.length; i++) {
+                fields.add(decodeField(parts[i]));
+            }
+            result = new WorkerMessage(parts[0], fields);
+        }
+        return result;
+    }
+
+    private static String encodeField(final String field) {
+        try {
+            //fields are prefixed, so empty fields are not lost at split, and null can be distinguished from empty string
+            return field == null ? NULL_FIELD : FIELD_PREFIX + URLEncoder.encode(field, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " encoding is not supported.", e);
+        }
+    }
+
+    private static String decodeField(final String field) {
+        try {
+            return NULL_FIELD.equals(field) ? null : URLDecoder.decode(field.substring(1), ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(ENCODING + " encoding is not supported.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return command + fields;
+    }
+}
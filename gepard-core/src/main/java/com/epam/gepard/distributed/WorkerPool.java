@@ -0,0 +1,358 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.threads.helper.ServerSocketFactory;
+
+/**
+ * The workers connected to the Gepard coordinator.
+ * <p>
+ * Workers are separate JVMs (forked by the coordinator, or agents started on other machines) those connect to the coordinator,
+ * and execute the test classes assigned to them.
+ * A worker executes one test class at a time, and it is reused for the next assignments, so the JVM start-up cost is paid only once.
+ * The executor threads of the coordinator still take care about the dispatching (blockers, dependencies, order),
+ * but instead of executing the test class, they pass it to an idle worker, and wait for the result.
+ * The workers stream back the console output of the test methods, write the detailed (html and xml) logs of the test classes
+ * into the result folder (or send them to the coordinator, if they use their own result folder), and send back the counters,
+ * so the summary report is built by the coordinator as usual.
+ * </p>
+ * <p>
+ * A worker is accepted only if it knows the token of the coordinator. When only forked workers are used, the port is opened on the loopback
+ * address, and the token is generated for the run, otherwise the agents should use the token given in gepard.agents.token.
+ * </p>
+ */
+public class WorkerPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerPool.class);
+    private static final Logger CONSOLE_LOG = LoggerFactory.getLogger("console");
+    private static final int HANDSHAKE_TIMEOUT = 10 * GepardConstants.ONE_SECOND_LENGTH.getConstant();
+    private static final int TOKEN_BITS = 128;
+    private static final int TOKEN_RADIX = 16;
+
+    private final Environment environment;
+    private final ServerSocketFactory serverSocketFactory;
+    private final String token;
+    private final WorkerProtocol protocol = new WorkerProtocol();
+    private final BlockingQueue<WorkerConnection> idleWorkers = new LinkedBlockingQueue<>();
+    private final List<WorkerConnection> workers = new ArrayList<>();
+    private final Map<TestClassExecutionData, WorkerConnection> busyWorkers = new ConcurrentHashMap<>();
+    private ServerSocket serverSocket;
+    private int localPort;
+    private ForkedWorkerLauncher launcher;
+    private long agentTimeout;
+    private volatile long lastWorkerSeen = System.currentTimeMillis();
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs a new instance of {@link WorkerPool}.
+     *
+     * @param environment         holds the properties of the application, those are passed to the workers
+     * @param serverSocketFactory is used to open the port where the workers connect to
+     * @param token               is the secret the workers should send in their HELLO message
+     */
+    public WorkerPool(final Environment environment, final ServerSocketFactory serverSocketFactory, final String token) {
+        this.environment = environment;
+        this.serverSocketFactory = serverSocketFactory;
+        this.token = token;
+    }
+
+    /**
+     * Creates a random token, for the workers forked in this run.
+     *
+     * @return with the token.
+     */
+    public static String createToken() {
+        return new BigInteger(TOKEN_BITS, new SecureRandom()).toString(TOKEN_RADIX);
+    }
+
+    /**
+     * Opens the port for the workers, and starts accepting them.
+     *
+     * @param port      is the port to be used, 0 means any free port
+     * @param localOnly is true if only the workers on the local machine (forked workers) may connect, so the port is opened on the loopback address
+     * @return with the port the workers should connect to
+     * @throws IOException if the port cannot be opened
+     */
+    public int start(final int port, final boolean localOnly) throws IOException {
+        serverSocket = localOnly ? serverSocketFactory.create(port, InetAddress.getLoopbackAddress()) : serverSocketFactory.create(port);
+        localPort = serverSocket.getLocalPort();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                acceptWorkers();
+            }
+        };
+        acceptor.setName("GEPARD Worker Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return localPort;
+    }
+
+    public void setLauncher(final ForkedWorkerLauncher launcher) {
+        this.launcher = launcher;
+    }
+
+    /**
+     * Sets how long the test classes wait for an agent, when no worker is connected.
+     * @param agentTimeout is the time in ms, 0 means not to wait for agents.
+     */
+    public void setAgentTimeout(final long agentTimeout) {
+        this.agentTimeout = agentTimeout;
+    }
+
+    private void acceptWorkers() {
+        while (!shutdown) {
+            try {
+                Socket socket = serverSocket.accept();
+                registerWorker(new WorkerConnection(socket), socket);
+            } catch (IOException e) {
+                if (!shutdown) {
+                    LOGGER.debug("Problem at accepting a worker.", e);
+                }
+            }
+        }
+    }
+
+    private void registerWorker(final WorkerConnection worker, final Socket socket) throws IOException {
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            WorkerMessage hello = worker.receive();
+            if (!WorkerMessage.HELLO.equals(hello.getCommand())) {
+                throw new IOException("Unexpected message from worker: " + hello);
+            }
+            if (!isTokenValid(hello.getField(1))) {
+                CONSOLE_LOG.info("INFO: Worker " + hello.getField(0) + " from " + socket.getRemoteSocketAddress() + " is rejected, as its token is wrong.");
+                throw new IOException("Worker is rejected: " + hello.getField(0));
+            }
+            worker.setName(hello.getField(0));
+            worker.send(protocol.createEnvironmentMessage(environment));
+            socket.setSoTimeout(0);
+        } catch (IOException e) {
+            worker.close();
+            throw e;
+        }
+        synchronized (workers) {
+            workers.add(worker);
+        }
+        idleWorkers.add(worker);
+        CONSOLE_LOG.info("INFO: Worker " + worker.getName() + " is connected.");
+    }
+
+    private boolean isTokenValid(final String workerToken) {
+        //the time of the comparison must not depend on the matching part of the token
+        return workerToken != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), workerToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Executes the test class at an idle worker, and waits for the result.
+     * If there is no worker available, or the worker is lost meanwhile, the test class is marked as problematic.
+     *
+     * @param classData is the test class to be executed
+     */
+    public void execute(final TestClassExecutionData classData) {
+        WorkerConnection worker = takeIdleWorker(classData.getClassName());
+        if (worker == null) {
+            classData.setItAsProblematic();
+            classData.addSysOut("\nNo worker is available to execute test class: " + classData.getID());
+            return;
+        }
+        busyWorkers.put(classData, worker);
+        worker.setLastClassName(classData.getClassName());
+        try {
+            worker.send(protocol.createRunMessage(classData));
+            WorkerMessage message = worker.receive();
+            while (!WorkerMessage.DONE.equals(message.getCommand())) {
+                handleProgress(worker, message, classData);
+                message = worker.receive();
+            }
+            applyResult(worker, message, classData);
+            idleWorkers.add(worker);
+        } catch (IOException e) {
+            removeWorker(worker);
+            if (busyWorkers.remove(classData, worker)) { //unless the test class is abandoned meanwhile
+                classData.setItAsProblematic();
+                classData.addSysOut("\nWorker " + worker.getName() + " is lost during the execution of test class: " + classData.getID() + " - " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stores the result of the test class, if it is sent for the test class that is assigned to the worker, and it is still assigned to it.
+     *
+     * @throws IOException if the result is unexpected, so the worker cannot be used any more
+     */
+    private void applyResult(final WorkerConnection worker, final WorkerMessage message, final TestClassExecutionData classData) throws IOException {
+        if (!classData.getID().equals(message.getField(0)) || !busyWorkers.remove(classData, worker)) {
+            throw new IOException("Unexpected result from the worker, for test class: " + message.getField(0));
+        }
+        protocol.applyDoneMessage(message, classData);
+    }
+
+    /**
+     * Abandons the worker that executes the given test class, as the test class is hung.
+     * The connection is closed, so the waiting executor thread is released, and a forked worker is replaced by a new one.
+     *
+     * @param classData is the hung test class
+     */
+    public void abandon(final TestClassExecutionData classData) {
+        WorkerConnection worker = busyWorkers.remove(classData);
+        if (worker != null) {
+            worker.close();
+            try {
+                if (launcher != null && !shutdown && launcher.replace(worker.getName(), localPort)) {
+                    CONSOLE_LOG.info("INFO: Hung worker " + worker.getName() + " is replaced by a new one.");
+                }
+            } catch (IOException e) {
+                CONSOLE_LOG.info("INFO: Hung worker " + worker.getName() + " cannot be replaced: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handleProgress(final WorkerConnection worker, final WorkerMessage message, final TestClassExecutionData classData) {
+        if (WorkerMessage.OUTPUT.equals(message.getCommand()) && classData.getID().equals(message.getField(0))) {
+            protocol.applyOutputMessage(message, classData);
+        } else if (WorkerMessage.FILE.equals(message.getCommand())) {
+            try {
+                ResultFileShipper.storeFile(message, new File(environment.getProperty(Environment.GEPARD_RESULT_PATH)));
+            } catch (IOException e) {
+                classData.addSysOut("\nResult file " + message.getField(0) + " from worker " + worker.getName() + " cannot be stored: " + e.getMessage());
+            }
+        } else {
+            LOGGER.debug("Unexpected message from worker " + worker.getName() + ": " + message);
+        }
+    }
+
+    private WorkerConnection takeIdleWorker(final String className) {
+        WorkerConnection result = takeWarmWorker(className);
+        try {
+            while (result == null && !shutdown && hasPotentialWorker()) {
+                result = idleWorkers.poll(GepardConstants.ONE_SECOND_LENGTH.getConstant(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Interrupted while waiting for an idle worker.");
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    /**
+     * Takes the idle worker that executed the same test class last, so its warm state (loaded classes, JIT-compiled code, fixtures) is reused.
+     *
+     * @param className is the test class to be executed
+     * @return with the worker, or null if there is no such idle worker.
+     */
+    private WorkerConnection takeWarmWorker(final String className) {
+        WorkerConnection result = null;
+        for (WorkerConnection worker : idleWorkers) {
+            if (result == null && className.equals(worker.getLastClassName()) && idleWorkers.remove(worker)) {
+                result = worker;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Detects if there is a connected worker, or a worker that may connect later.
+     *
+     * @return true if workers are available.
+     */
+    private boolean hasPotentialWorker() {
+        boolean result = getWorkerCount() > 0 || launcher != null && launcher.hasAliveWorker();
+        if (result) {
+            lastWorkerSeen = System.currentTimeMillis();
+        } else {
+            //an agent may connect later
+            result = System.currentTimeMillis() - lastWorkerSeen < agentTimeout;
+        }
+        return result;
+    }
+
+    private void removeWorker(final WorkerConnection worker) {
+        worker.close();
+        synchronized (workers) {
+            workers.remove(worker);
+        }
+        CONSOLE_LOG.info("INFO: Worker " + worker.getName() + " is lost.");
+    }
+
+    /**
+     * Gets the number of the connected workers.
+     *
+     * @return with the number of workers.
+     */
+    public int getWorkerCount() {
+        synchronized (workers) {
+            return workers.size();
+        }
+    }
+
+    /**
+     * Asks the workers to exit, and closes the connections.
+     */
+    public void shutdown() {
+        shutdown = true;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Problem at closing the worker port.", e);
+        }
+        List<WorkerConnection> actualWorkers;
+        synchronized (workers) {
+            actualWorkers = new ArrayList<>(workers);
+            workers.clear();
+        }
+        for (WorkerConnection worker : actualWorkers) {
+            try {
+                worker.send(new WorkerMessage(WorkerMessage.EXIT));
+            } catch (IOException e) {
+                LOGGER.debug("Worker " + worker.getName() + " cannot be asked to exit.", e);
+            }
+            worker.close();
+        }
+        if (launcher != null) {
+            launcher.waitForExit();
+        }
+    }
+}
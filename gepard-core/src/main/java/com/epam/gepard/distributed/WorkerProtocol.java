@@ -0,0 +1,227 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.datadriven.DataDrivenParameters;
+
+/**
+ * Converts the test class execution data to {@link WorkerMessage} and back, both at the coordinator and the worker side.
+ */
+public class WorkerProtocol {
+
+    private static final int RUN_CLASS_NAME_FIELD = 1;
+    private static final int RUN_ROW_FIELD = 2;
+    private static final int RUN_SCRIPT_ID_FIELD = 3;
+    private static final int RUN_SCRIPT_NAME_FIELD = 4;
+    private static final int RUN_BLOCKER_FIELD = 5;
+    private static final int RUN_RETRIES_FIELD = 6;
+    private static final int RUN_PARAMETER_FIELD = 7;
+    private static final int DONE_PASSED_FIELD = 1;
+    private static final int DONE_FAILED_FIELD = 2;
+    private static final int DONE_NA_FIELD = 3;
+    private static final int DONE_DUMMY_FIELD = 4;
+    private static final int DONE_RUNS_FIELD = 5;
+    private static final int DONE_PROBLEMATIC_FIELD = 6;
+    private static final int DONE_SYSOUT_FIELD = 7;
+    /**
+     * Key prefixes of the properties those are passed to the workers: the settings of Gepard and the test environment.
+     */
+    private static final List<String> WORKER_PROPERTY_PREFIXES = Arrays.asList("gepard.", "env.", Environment.TEST_ENVIRONMENT_ID,
+            Environment.SYSTEM_UNDER_TEST_VERSION);
+    /**
+     * Key prefixes of the settings those are used by the coordinator only (e.g. the token of the workers), these are never passed.
+     */
+    private static final List<String> COORDINATOR_PROPERTY_PREFIXES = Arrays.asList("gepard.agents.", "gepard.fork.", "gepard.remote.");
+
+    /**
+     * Creates the message that passes the properties of the coordinator to an authenticated worker.
+     * Only the properties the worker needs are passed: the settings of Gepard (except the ones of the coordinator), the test environment,
+     * and the properties those keys start with a prefix listed in gepard.agents.properties.
+     *
+     * @param environment is the environment of the coordinator
+     * @return with the message.
+     */
+    public WorkerMessage createEnvironmentMessage(final Environment environment) {
+        List<String> prefixes = new ArrayList<>(WORKER_PROPERTY_PREFIXES);
+        String testProperties = environment.getProperty(Environment.GEPARD_AGENTS_PROPERTIES);
+        if (testProperties != null) {
+            for (String prefix : testProperties.split(",")) {
+                if (!prefix.trim().isEmpty()) {
+                    prefixes.add(prefix.trim());
+                }
+            }
+        }
+        List<String> fields = new ArrayList<>();
+        Properties properties = environment.getProperties();
+        //only the properties of Gepard are passed, the system properties (defaults) are not
+        for (Object key : properties.keySet()) {
+            String name = key.toString();
+            if (startsWithAny(name, prefixes) && !startsWithAny(name, COORDINATOR_PROPERTY_PREFIXES)) {
+                fields.add(name);
+                fields.add(properties.getProperty(name));
+            }
+        }
+        return new WorkerMessage(WorkerMessage.ENVIRONMENT, fields);
+    }
+
+    private boolean startsWithAny(final String name, final List<String> prefixes) {
+        boolean result = false;
+        for (String prefix : prefixes) {
+            result |= name.startsWith(prefix);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the properties received from the coordinator.
+     *
+     * @param message is the ENV message
+     * @return with the properties of the coordinator.
+     */
+    public Properties readEnvironmentMessage(final WorkerMessage message) {
+        Properties properties = new Properties();
+        List<String> fields = message.getFields();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            properties.setProperty(fields.get(i), fields.get(i + 1));
+        }
+        return properties;
+    }
+
+    /**
+     * Creates the message that asks the worker to execute a test class (data row).
+     *
+     * @param classData is the test class
+     * @return with the message.
+     */
+    public WorkerMessage createRunMessage(final TestClassExecutionData classData) {
+        List<String> fields = new ArrayList<>();
+        fields.add(classData.getID());
+        fields.add(classData.getClassName());
+        fields.add(String.valueOf(classData.getDrivenDataRowNo()));
+        fields.add(classData.getTestScriptId());
+        fields.add(classData.getTestScriptName());
+        fields.add(classData.getBlockerString());
+        fields.add(String.valueOf(classData.getRetries()));
+        DataDrivenParameters drivenData = classData.getDrivenData();
+        if (drivenData != null) {
+            String[] names = drivenData.getParameterNames();
+            String[] values = drivenData.getParameters();
+            for (int i = 0; i < values.length; i++) {
+                fields.add(names[i]);
+                fields.add(values[i]);
+            }
+        }
+        return new WorkerMessage(WorkerMessage.RUN, fields);
+    }
+
+    /**
+     * Creates the test class execution data at the worker side, from the RUN message.
+     *
+     * @param message     is the RUN message
+     * @param environment is the environment of the worker
+     * @return with the test class to be executed.
+     * @throws ClassNotFoundException if the test class is not available at the worker
+     */
+    public TestClassExecutionData createClassData(final WorkerMessage message, final Environment environment) throws ClassNotFoundException {
+        TestClassExecutionData classData = new TestClassExecutionData(message.getField(0), environment);
+        classData.setClassName(message.getField(RUN_CLASS_NAME_FIELD));
+        classData.setTestClass(Class.forName(message.getField(RUN_CLASS_NAME_FIELD)));
+        classData.setDataRow(message.getIntField(RUN_ROW_FIELD));
+        classData.setTestScriptId(message.getField(RUN_SCRIPT_ID_FIELD));
+        classData.setTestScriptName(message.getField(RUN_SCRIPT_NAME_FIELD));
+        classData.setBlockerString(message.getField(RUN_BLOCKER_FIELD));
+        classData.setRetries(message.getIntField(RUN_RETRIES_FIELD)); //the pages of the attempt are named after it
+        List<String> fields = message.getFields();
+        int parameterCount = (fields.size() - RUN_PARAMETER_FIELD) / 2;
+        if (parameterCount > 0) {
+            String[] names = new String[parameterCount];
+            String[] values = new String[parameterCount];
+            for (int i = 0; i < parameterCount; i++) {
+                names[i] = fields.get(RUN_PARAMETER_FIELD + 2 * i);
+                values[i] = fields.get(RUN_PARAMETER_FIELD + 2 * i + 1);
+            }
+            classData.setDrivenData(new DataDrivenParameters(values, names));
+        }
+        return classData;
+    }
+
+    /**
+     * Creates the message that holds the result of the test class execution at the worker.
+     *
+     * @param classData is the executed test class
+     * @return with the message.
+     */
+    public WorkerMessage createDoneMessage(final TestClassExecutionData classData) {
+        return new WorkerMessage(WorkerMessage.DONE, classData.getID(), String.valueOf(classData.getCountPassed()),
+                String.valueOf(classData.getCountFailed()), String.valueOf(classData.getCountNA()), String.valueOf(classData.getCountDummy()),
+                String.valueOf(classData.getCountOfRuns()), String.valueOf(classData.isProblematic()), classData.getSysOut());
+    }
+
+    /**
+     * Stores the result received from the worker in the test class execution data of the coordinator.
+     *
+     * @param message   is the DONE message
+     * @param classData is the executed test class
+     */
+    public void applyDoneMessage(final WorkerMessage message, final TestClassExecutionData classData) {
+        classData.setCounters(message.getIntField(DONE_PASSED_FIELD), message.getIntField(DONE_FAILED_FIELD), message.getIntField(DONE_NA_FIELD),
+                message.getIntField(DONE_DUMMY_FIELD));
+        classData.setCountOfRuns(message.getIntField(DONE_RUNS_FIELD));
+        if (Boolean.parseBoolean(message.getField(DONE_PROBLEMATIC_FIELD))) {
+            classData.setItAsProblematic();
+        }
+        appendSysOut(classData, message.getField(DONE_SYSOUT_FIELD));
+    }
+
+    /**
+     * Creates the message that streams the console output of the test methods executed so far.
+     *
+     * @param classData is the test class under execution
+     * @param output    is the console output
+     * @return with the message.
+     */
+    public WorkerMessage createOutputMessage(final TestClassExecutionData classData, final String output) {
+        return new WorkerMessage(WorkerMessage.OUTPUT, classData.getID(), output);
+    }
+
+    /**
+     * Stores the console output received from the worker in the test class execution data of the coordinator.
+     *
+     * @param message   is the OUT message
+     * @param classData is the test class under execution
+     */
+    public void applyOutputMessage(final WorkerMessage message, final TestClassExecutionData classData) {
+        appendSysOut(classData, message.getField(1));
+    }
+
+    private void appendSysOut(final TestClassExecutionData classData, final String sysOut) {
+        if (sysOut != null && !sysOut.isEmpty()) {
+            //the stored text already ends with a new line
+            classData.addSysOut(sysOut.endsWith("\n") ? sysOut.substring(0, sysOut.length() - 1) : sysOut);
+        }
+    }
+}
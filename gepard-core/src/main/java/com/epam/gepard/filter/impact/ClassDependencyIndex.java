@@ -0,0 +1,339 @@
+package com.epam.gepard.filter.impact;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Class level dependency index of the compiled test and production classes, built by reading the constant pool of the class files.
+ * <p>
+ * The index is cached on disk. When it is updated, only the class files those are new or changed (by last modification time and length)
+ * since the previous update are read again (in parallel), so rebuilding the index of a big project after a small change is quick.
+ * </p>
+ * <p>
+ * The classes affected by a change are the classes compiled from the changed source files, and all the classes those refer to them,
+ * directly or indirectly.
+ * </p>
+ */
+public class ClassDependencyIndex {
+
+    private static final String HEADER = "#Gepard class dependency index, version 1";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String DEPENDENCY_SEPARATOR = " ";
+    private static final int FIELD_CLASS_FILE = 0;
+    private static final int FIELD_LAST_MODIFIED = 1;
+    private static final int FIELD_LENGTH = 2;
+    private static final int FIELD_CLASS_NAME = 3;
+    private static final int FIELD_SOURCE_PATH = 4;
+    private static final int FIELD_DEPENDENCIES = 5;
+
+    /**
+     * Key is the path of the class file.
+     */
+    private Map<String, IndexedClass> classes = new HashMap<>();
+
+    /**
+     * Loads the index cached by a previous run. An unknown or broken cache is ignored, so the index is rebuilt.
+     *
+     * @param indexFile is the cached index.
+     * @throws IOException if the file cannot be read.
+     */
+    public void load(final File indexFile) throws IOException {
+        Map<String, IndexedClass> loaded = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            boolean valid = HEADER.equals(line);
+            line = valid ? reader.readLine() : null;
+            while (line != null) {
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+                if (fields.length == FIELD_DEPENDENCIES + 1) {
+                    Set<String> dependencies = new TreeSet<>();
+                    if (!fields[FIELD_DEPENDENCIES].isEmpty()) {
+                        dependencies.addAll(Arrays.asList(fields[FIELD_DEPENDENCIES].split(DEPENDENCY_SEPARATOR)));
+                    }
+                    IndexedClass indexedClass = new IndexedClass(fields[FIELD_CLASS_NAME], fields[FIELD_SOURCE_PATH], dependencies);
+                    indexedClass.setClassFile(fields[FIELD_CLASS_FILE], Long.parseLong(fields[FIELD_LAST_MODIFIED]), Long.parseLong(fields[FIELD_LENGTH]));
+                    loaded.put(indexedClass.getClassFile(), indexedClass);
+                }
+                line = reader.readLine();
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Broken index file: " + indexFile.getPath(), e);
+        }
+        classes = loaded;
+    }
+
+    /**
+     * Saves the index, so the next run can update it incrementally.
+     *
+     * @param indexFile is the file to store the index.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(final File indexFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (IndexedClass indexedClass : classes.values()) {
+                StringBuilder line = new StringBuilder();
+                line.append(indexedClass.getClassFile()).append(FIELD_SEPARATOR).append(indexedClass.getLastModified()).append(FIELD_SEPARATOR)
+                        .append(indexedClass.getLength()).append(FIELD_SEPARATOR).append(indexedClass.getClassName()).append(FIELD_SEPARATOR)
+                        .append(indexedClass.getSourcePath()).append(FIELD_SEPARATOR);
+                String separator = "";
+                for (String dependency : indexedClass.getDependencies()) {
+                    line.append(separator).append(dependency);
+                    separator = DEPENDENCY_SEPARATOR;
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    /**
+     * Updates the index from the class files under the given folders. Changed and new class files are read, the removed ones are dropped.
+     *
+     * @param classFolders are the root folders of the compiled classes (like build/classes/main and build/classes/test).
+     * @return with the number of class files those were read, i.e. those are new or changed since the previous update.
+     * @throws IOException if a class file cannot be read.
+     */
+    public int update(final Collection<File> classFolders) throws IOException {
+        Map<String, IndexedClass> updated = new HashMap<>();
+        List<File> classFiles = new ArrayList<>();
+        for (File classFolder : classFolders) {
+            collectClassFiles(classFolder, classFiles);
+        }
+        List<File> changedClassFiles = new ArrayList<>();
+        for (File classFile : classFiles) {
+            IndexedClass indexedClass = classes.get(classFile.getPath());
+            if (indexedClass != null && indexedClass.isUpToDate(classFile.lastModified(), classFile.length())) {
+                updated.put(classFile.getPath(), indexedClass);
+            } else {
+                changedClassFiles.add(classFile);
+            }
+        }
+        //the class files are read in parallel, so a full rebuild of a big project is quick, too
+        ForkJoinPool readerPool = new ForkJoinPool();
+        try {
+            List<ForkJoinTask<IndexedClass>> readers = new ArrayList<>();
+            for (final File classFile : changedClassFiles) {
+                readers.add(readerPool.submit(new Callable<IndexedClass>() {
+                    @Override
+                    public IndexedClass call() throws IOException {
+                        return readClassFile(classFile);
+                    }
+                }));
+            }
+            for (ForkJoinTask<IndexedClass> reader : readers) {
+                IndexedClass indexedClass = reader.get();
+                updated.put(indexedClass.getClassFile(), indexedClass);
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Class dependency index update is interrupted.", e);
+        } finally {
+            readerPool.shutdownNow();
+        }
+        classes = updated;
+        return changedClassFiles.size();
+    }
+
+    private IndexedClass readClassFile(final File classFile) throws IOException {
+        long lastModified = classFile.lastModified();
+        long length = classFile.length();
+        IndexedClass result;
+        try {
+            result = ClassFileParser.parse(new ByteArrayInputStream(Files.readAllBytes(classFile.toPath())));
+        } catch (IOException e) {
+            throw new IOException("Cannot read class file: " + classFile.getPath() + ", " + e.getMessage(), e);
+        }
+        result.setClassFile(classFile.getPath(), lastModified, length);
+        return result;
+    }
+
+    private void collectClassFiles(final File folder, final List<File> classFiles) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    collectClassFiles(file, classFiles);
+                } else if (file.getName().endsWith(".class")) {
+                    classFiles.add(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the class folders of a class path, jar files are left out, as they are libraries, those are not changed by the tested project.
+     *
+     * @param classPath is the class path, if empty, the class path of this JVM is used.
+     * @return with the existing folders of the class path.
+     */
+    public static List<File> getClassFolders(final String classPath) {
+        String path = classPath == null || classPath.trim().isEmpty() ? System.getProperty("java.class.path") : classPath;
+        List<File> result = new ArrayList<>();
+        for (String entry : path.split(File.pathSeparator)) {
+            File folder = new File(entry.trim());
+            if (folder.isDirectory()) {
+                result.add(folder);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the class files of a class and of all the indexed classes it refers to, directly or indirectly.
+     *
+     * @param className is the name of the class.
+     * @return with the class files, ordered by class name, or an empty list if the class is not indexed.
+     */
+    public List<File> getDependencyClosure(final String className) {
+        Map<String, IndexedClass> classesByName = new HashMap<>();
+        for (IndexedClass indexedClass : classes.values()) {
+            classesByName.put(indexedClass.getClassName(), indexedClass);
+        }
+        Set<String> visited = new TreeSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(className);
+        while (!toVisit.isEmpty()) {
+            IndexedClass indexedClass = classesByName.get(toVisit.poll());
+            if (indexedClass != null && visited.add(indexedClass.getClassName())) {
+                toVisit.addAll(indexedClass.getDependencies());
+            }
+        }
+        List<File> result = new ArrayList<>();
+        for (String name : visited) {
+            result.add(new File(classesByName.get(name).getClassFile()));
+        }
+        return result;
+    }
+
+    public int getClassCount() {
+        return classes.size();
+    }
+
+    /**
+     * Gets the name of the indexed classes.
+     *
+     * @return with the class names.
+     */
+    public Set<String> getClassNames() {
+        Set<String> result = new HashSet<>();
+        for (IndexedClass indexedClass : classes.values()) {
+            result.add(indexedClass.getClassName());
+        }
+        return result;
+    }
+
+    /**
+     * Gets the classes those may be affected by the changed files: the classes compiled from the changed source files,
+     * and the classes those refer to them, directly or indirectly. Nested classes make their top level class affected, too.
+     * If a changed file is not the source of any indexed class (like test data, property files, or a removed source),
+     * its effect is unknown, so every class may be affected.
+     *
+     * @param changedFiles is the path of the changed files, relative to any folder, like gepard-core/src/main/java/com/epam/Sample.java.
+     * @return with the name of the affected classes, or null if a changed file is not the source of any indexed class.
+     */
+    public Set<String> getAffectedClasses(final Collection<String> changedFiles) {
+        Map<String, List<String>> classesBySource = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (IndexedClass indexedClass : classes.values()) {
+            addTo(classesBySource, indexedClass.getSourcePath(), indexedClass.getClassName());
+            for (String dependency : indexedClass.getDependencies()) {
+                addTo(dependents, dependency, indexedClass.getClassName());
+            }
+        }
+        Set<String> result = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        boolean known = true;
+        for (String changedFile : changedFiles) {
+            List<String> classesOfSource = findClassesOfSource(classesBySource, changedFile.replace('\\', '/'));
+            known &= !classesOfSource.isEmpty();
+            toVisit.addAll(classesOfSource);
+        }
+        while (known && !toVisit.isEmpty()) {
+            String className = toVisit.poll();
+            if (result.add(className)) {
+                toVisit.addAll(getList(dependents, className));
+                int nestedStart = className.indexOf('$');
+                if (nestedStart > 0) {
+                    toVisit.add(className.substring(0, nestedStart));
+                }
+            }
+        }
+        return known ? result : null;
+    }
+
+    /**
+     * Finds the classes compiled from a changed file, the source path of the class must be the end of the changed path.
+     */
+    private List<String> findClassesOfSource(final Map<String, List<String>> classesBySource, final String changedFile) {
+        List<String> result = new ArrayList<>();
+        int start = 0;
+        while (start >= 0) {
+            result.addAll(getList(classesBySource, changedFile.substring(start)));
+            start = changedFile.indexOf('/', start);
+            start = start < 0 ? start : start + 1;
+        }
+        return result;
+    }
+
+    private static void addTo(final Map<String, List<String>> map, final String key, final String value) {
+        List<String> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        list.add(value);
+    }
+
+    private static List<String> getList(final Map<String, List<String>> map, final String key) {
+        List<String> result = map.get(key);
+        return result == null ? Collections.<String>emptyList() : result;
+    }
+}
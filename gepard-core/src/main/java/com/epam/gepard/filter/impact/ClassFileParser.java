@@ -0,0 +1,234 @@
+package com.epam.gepard.filter.impact;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the name, the source file and the referred classes of a compiled class, from its constant pool only, so it is fast.
+ * Referred classes are the class constants, and the class names found in the descriptors and signatures (fields, methods, annotations, generics).
+ * JDK classes are left out, as they are never changed by the tested project.
+ * Note that compile time constants (static final primitives and Strings) are inlined by the compiler, so they are not visible as a dependency.
+ */
+final class ClassFileParser {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_INTERFACE_METHOD_REF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+    private static final int METHOD_HANDLE_SIZE = 3;
+    private static final int DOUBLE_WORD_SIZE = 8;
+    private static final int WORD_SIZE = 4;
+    private static final String[] JDK_PACKAGES = {"java/", "javax/", "jdk/", "sun/", "com/sun/"};
+
+    private ClassFileParser() {
+    }
+
+    /**
+     * Parses a compiled class.
+     *
+     * @param in is the content of the class file.
+     * @return with the parsed class, its path, last modification time and length are not set.
+     * @throws IOException if the class file cannot be read, or it is not a class file.
+     */
+    static IndexedClass parse(final InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a class file.");
+        }
+        data.readUnsignedShort(); //minor version
+        data.readUnsignedShort(); //major version
+        int poolSize = data.readUnsignedShort();
+        String[] utf8 = new String[poolSize];
+        int[] classNameIndex = new int[poolSize];
+        int index = 1;
+        while (index < poolSize) {
+            int tag = data.readUnsignedByte();
+            if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE) {
+                data.skipBytes(DOUBLE_WORD_SIZE);
+                index += 2; //takes two entries
+            } else {
+                readConstant(data, tag, index, utf8, classNameIndex);
+                index++;
+            }
+        }
+        data.readUnsignedShort(); //access flags
+        String className = utf8[classNameIndex[data.readUnsignedShort()]];
+        Set<String> dependencies = new TreeSet<>();
+        for (int i = 1; i < poolSize; i++) {
+            if (classNameIndex[i] > 0) {
+                addClassName(dependencies, utf8[classNameIndex[i]]);
+            } else if (utf8[i] != null) {
+                addDescriptorClasses(dependencies, utf8[i]);
+            }
+        }
+        dependencies.remove(className.replace('/', '.'));
+        return new IndexedClass(className.replace('/', '.'), getSourcePath(className, readSourceFile(data, utf8)), dependencies);
+    }
+
+    private static void readConstant(final DataInputStream data, final int tag, final int index, final String[] utf8, final int[] classNameIndex)
+        throws IOException {
+        switch (tag) {
+        case CONSTANT_UTF8:
+            utf8[index] = data.readUTF();
+            break;
+        case CONSTANT_CLASS:
+            classNameIndex[index] = data.readUnsignedShort();
+            break;
+        case CONSTANT_STRING:
+        case CONSTANT_METHOD_TYPE:
+        case CONSTANT_MODULE:
+        case CONSTANT_PACKAGE:
+            data.skipBytes(2);
+            break;
+        case CONSTANT_METHOD_HANDLE:
+            data.skipBytes(METHOD_HANDLE_SIZE);
+            break;
+        case CONSTANT_INTEGER:
+        case CONSTANT_FLOAT:
+        case CONSTANT_FIELD_REF:
+        case CONSTANT_METHOD_REF:
+        case CONSTANT_INTERFACE_METHOD_REF:
+        case CONSTANT_NAME_AND_TYPE:
+        case CONSTANT_DYNAMIC:
+        case CONSTANT_INVOKE_DYNAMIC:
+            data.skipBytes(WORD_SIZE);
+            break;
+        default:
+            throw new IOException("Unknown constant pool tag: " + tag);
+        }
+    }
+
+    /**
+     * Skips the interfaces, fields and methods, and reads the SourceFile attribute of the class.
+     */
+    private static String readSourceFile(final DataInputStream data, final String[] utf8) throws IOException {
+        data.readUnsignedShort(); //super class
+        data.skipBytes(2 * data.readUnsignedShort()); //interfaces
+        skipMembers(data); //fields
+        skipMembers(data); //methods
+        String result = null;
+        int attributeCount = data.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String name = utf8[data.readUnsignedShort()];
+            int length = data.readInt();
+            if ("SourceFile".equals(name)) {
+                result = utf8[data.readUnsignedShort()];
+            } else {
+                data.skipBytes(length);
+            }
+        }
+        return result;
+    }
+
+    private static void skipMembers(final DataInputStream data) throws IOException {
+        int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            data.skipBytes(2 + 2 + 2); //access flags, name, descriptor
+            skipAttributes(data);
+        }
+    }
+
+    private static void skipAttributes(final DataInputStream data) throws IOException {
+        int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            data.readUnsignedShort(); //name
+            data.skipBytes(data.readInt());
+        }
+    }
+
+    /**
+     * Gets the path of the source file of the class, relative to the source root, like com/epam/Sample.java.
+     * If the class is compiled without source file info, the source is guessed from the name of the top level class.
+     */
+    private static String getSourcePath(final String className, final String sourceFile) {
+        int packageEnd = className.lastIndexOf('/');
+        String packagePath = packageEnd < 0 ? "" : className.substring(0, packageEnd + 1);
+        String result;
+        if (sourceFile == null) {
+            String simpleName = className.substring(packageEnd + 1);
+            int nestedStart = simpleName.indexOf('$');
+            result = packagePath + (nestedStart > 0 ? simpleName.substring(0, nestedStart) : simpleName) + ".java";
+        } else {
+            result = packagePath + sourceFile;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the classes of a field or method descriptor, or a generic signature, like (Lcom/epam/A;I)[Lcom/epam/B&lt;Lcom/epam/C;&gt;;.
+     * Other strings are checked, too, that may add classes those are not really used, but it is safe for the impact selection.
+     */
+    private static void addDescriptorClasses(final Set<String> dependencies, final String descriptor) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = start + 1;
+            while (end < descriptor.length() && isClassNameChar(descriptor.charAt(end))) {
+                end++;
+            }
+            if (end < descriptor.length() && end > start + 1 && (descriptor.charAt(end) == ';' || descriptor.charAt(end) == '<')) {
+                addClassName(dependencies, descriptor.substring(start + 1, end));
+            }
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private static boolean isClassNameChar(final char c) {
+        return c == '/' || c == '$' || c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    private static void addClassName(final Set<String> dependencies, final String name) {
+        String className = name;
+        if (className.startsWith("[")) {
+            //array class, like [[Lcom/epam/A; or [I
+            int start = className.indexOf('L');
+            className = start < 0 || !className.endsWith(";") ? null : className.substring(start + 1, className.length() - 1);
+        }
+        if (className != null && !isJdkClass(className)) {
+            dependencies.add(className.replace('/', '.'));
+        }
+    }
+
+    private static boolean isJdkClass(final String className) {
+        boolean result = false;
+        for (String jdkPackage : JDK_PACKAGES) {
+            result |= className.startsWith(jdkPackage);
+        }
+        return result;
+    }
+}
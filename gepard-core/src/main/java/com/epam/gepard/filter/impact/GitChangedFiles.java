@@ -0,0 +1,84 @@
+package com.epam.gepard.filter.impact;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the changed files of the local git repository (of the working folder), by calling the git command line client.
+ */
+public class GitChangedFiles {
+
+    private static final String GIT_COMMAND = "git";
+
+    /**
+     * Lists the changed files.
+     *
+     * @param diff is a revision (like HEAD), then the working tree is compared to it, and the new, untracked files are listed, too,
+     *             or a range (like origin/master...HEAD), then only the committed changes of the range are listed.
+     * @return with the path of the changed files, relative to the root of the repository.
+     * @throws IOException if git cannot be executed, or it fails.
+     */
+    public Set<String> getChangedFiles(final String diff) throws IOException {
+        Set<String> result = new LinkedHashSet<>(runGit("diff", "--name-only", diff, "--"));
+        if (!diff.contains("..")) {
+            result.addAll(runGit("ls-files", "--others", "--exclude-standard", "--full-name"));
+        }
+        return result;
+    }
+
+    private List<String> runGit(final String... arguments) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(GIT_COMMAND);
+        command.addAll(Arrays.asList(arguments));
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+                line = reader.readLine();
+            }
+        }
+        int exitValue;
+        try {
+            exitValue = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for: " + command, e);
+        }
+        if (exitValue != 0) {
+            throw new IOException(command + " failed with exit code " + exitValue + ": " + lines);
+        }
+        return lines;
+    }
+}
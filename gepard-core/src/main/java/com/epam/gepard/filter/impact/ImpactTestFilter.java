@@ -0,0 +1,107 @@
+package com.epam.gepard.filter.impact;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import com.epam.gepard.AllTestRunner;
+import com.epam.gepard.common.Environment;
+import com.gargoylesoftware.base.testing.AcceptAllTestFilter;
+
+/**
+ * Test impact selection: accepts only the test classes those may be affected by the changed sources of the local git repository,
+ * i.e. the test classes those refer to a changed class (directly or indirectly), or those are changed.
+ * It is used together with the filter given by gepard.filter.class, a test class is executed if both filters accept it.
+ * <p>
+ * When in doubt, the test classes are executed: the test classes those are not indexed (e.g. they are in a jar) are always accepted,
+ * and if a changed file is not a source of an indexed class (e.g. test data or a property file), every test class is selected.
+ * </p>
+ */
+public class ImpactTestFilter extends AcceptAllTestFilter {
+
+    private final Set<String> affectedClasses;
+    private final Set<String> indexedClasses;
+
+    /**
+     * Creates a filter that accepts the affected classes, and the classes those are not indexed.
+     *
+     * @param affectedClasses is the name of the classes affected by the changes.
+     * @param indexedClasses is the name of the indexed classes, the effect of the changes is known for these classes only.
+     */
+    public ImpactTestFilter(final Set<String> affectedClasses, final Set<String> indexedClasses) {
+        super();
+        this.affectedClasses = affectedClasses;
+        this.indexedClasses = indexedClasses;
+    }
+
+    /**
+     * Called by the test runner to determine if a given class is to be tested.
+     *
+     * @param clazz The class to check
+     * @return True, if the class may be affected by the changes, or it is not indexed
+     */
+    @Override
+    public boolean accept(final Class clazz) {
+        return affectedClasses.contains(clazz.getName()) || !indexedClasses.contains(clazz.getName());
+    }
+
+    /**
+     * Creates the filter, if test impact selection is requested (gepard.impact.diff is set).
+     * The class dependency index is updated and saved, then the classes affected by the changed files are collected.
+     * If the changes cannot be detected, all the test classes are selected.
+     *
+     * @param environment holds the properties of the application
+     * @return with the filter, or null if test impact selection is not requested, or not possible.
+     */
+    public static ImpactTestFilter createFilter(final Environment environment) {
+        ImpactTestFilter result = null;
+        String diff = environment.getProperty(Environment.GEPARD_IMPACT_DIFF);
+        if (diff != null && !diff.trim().isEmpty()) {
+            ClassDependencyIndex index = new ClassDependencyIndex();
+            File indexFile = new File(environment.getProperty(Environment.GEPARD_TESTLIST_FAILURE_PATH) + "/"
+                    + environment.getProperty(Environment.GEPARD_IMPACT_INDEX_FILE, "testlist-impact-index.txt"));
+            try {
+                if (indexFile.isFile()) {
+                    index.load(indexFile);
+                }
+                long startTime = System.currentTimeMillis();
+                int readClasses = index.update(ClassDependencyIndex.getClassFolders(environment.getProperty(Environment.GEPARD_IMPACT_CLASSPATH)));
+                index.save(indexFile);
+                AllTestRunner.CONSOLE_LOG.info("Class dependency index is updated: " + index.getClassCount() + " classes, " + readClasses + " (re)indexed, in "
+                        + (System.currentTimeMillis() - startTime) + " ms.");
+                Set<String> changedFiles = new GitChangedFiles().getChangedFiles(diff.trim());
+                Set<String> affectedClasses = index.getAffectedClasses(changedFiles);
+                if (affectedClasses == null) {
+                    AllTestRunner.CONSOLE_LOG.info("INFO: Test impact selection: " + changedFiles.size() + " changed files (" + diff.trim()
+                            + "), some of them are not sources of indexed classes (e.g. test data), all test classes are selected.");
+                } else {
+                    AllTestRunner.CONSOLE_LOG.info("Test impact selection: " + changedFiles.size() + " changed files (" + diff.trim() + "), "
+                            + affectedClasses.size() + " affected classes.");
+                    result = new ImpactTestFilter(affectedClasses, index.getClassNames());
+                }
+            } catch (IOException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Test impact selection is not possible, all test classes are selected. " + e.getMessage());
+            }
+        }
+        return result;
+    }
+}
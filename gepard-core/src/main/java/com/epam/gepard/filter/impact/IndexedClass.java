@@ -0,0 +1,97 @@
+package com.epam.gepard.filter.impact;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.Set;
+
+/**
+ * A compiled class in the {@link ClassDependencyIndex}: its name, source file, the classes it refers to,
+ * and the class file it is read from (with its last modification time and length, to detect if it is changed since it was indexed).
+ */
+final class IndexedClass {
+
+    private final String className;
+    private final String sourcePath;
+    private final Set<String> dependencies;
+    private String classFile;
+    private long lastModified;
+    private long length;
+
+    /**
+     * Creates an indexed class.
+     *
+     * @param className    is the name of the class, like com.epam.Sample$Inner.
+     * @param sourcePath   is the path of its source file, relative to the source root, like com/epam/Sample.java.
+     * @param dependencies is the name of the classes it refers to.
+     */
+    IndexedClass(final String className, final String sourcePath, final Set<String> dependencies) {
+        this.className = className;
+        this.sourcePath = sourcePath;
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Sets the class file the class is read from.
+     *
+     * @param classFile    is the path of the class file.
+     * @param lastModified is the last modification time of the class file.
+     * @param length       is the length of the class file.
+     */
+    void setClassFile(final String classFile, final long lastModified, final long length) {
+        this.classFile = classFile;
+        this.lastModified = lastModified;
+        this.length = length;
+    }
+
+    /**
+     * Detects if the class file is the same as the indexed one.
+     *
+     * @param lastModified is the actual last modification time of the class file.
+     * @param length       is the actual length of the class file.
+     * @return true if the class file is not changed since it was indexed.
+     */
+    boolean isUpToDate(final long lastModified, final long length) {
+        return this.lastModified == lastModified && this.length == length;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getSourcePath() {
+        return sourcePath;
+    }
+
+    Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    String getClassFile() {
+        return classFile;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    long getLength() {
+        return length;
+    }
+}
@@ -22,25 +22,39 @@ package com.epam.gepard.generic;
 import com.epam.gepard.AllTestRunner;
 import com.epam.gepard.annotations.TestClass;
 import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.GepardConstants;
+import com.epam.gepard.common.ResourceClaim;
 import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.TestClassResult;
 import com.epam.gepard.common.threads.BlockingInfo;
 import com.epam.gepard.common.threads.TestClassExecutionThread;
 import com.epam.gepard.datadriven.DataDrivenParameterArray;
+import com.epam.gepard.datadriven.DataDrivenParameters;
 import com.epam.gepard.datadriven.DataFeederLoader;
+import com.epam.gepard.exception.ShutDownException;
 import com.epam.gepard.filter.ExpressionTestFilter;
 import com.epam.gepard.generic.helper.TestClassData;
-import com.epam.gepard.logger.HtmlRunReporter;
 import com.epam.gepard.util.ExitCode;
+import com.gargoylesoftware.base.testing.TestFilter;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class loads the testlist file, evaluates it ad builds up the test suite to be executed.
@@ -50,6 +64,9 @@ public class GenericListTestSuite {
     private static final int TESTLIST_CLASS_NAME_FIELD = 0;
     private static final int TESTLIST_FEEDER_DESCRIPTOR_FIELD = 1;
     private static final int TESTLIST_BLOCKER_FIELD = 2;
+    private static final int TESTLIST_DEPENDENCY_FIELD = 3;
+    private static final int TESTLIST_TIMEOUT_FIELD = 4;
+    private static final String DEPENDENCY_SEPARATOR = "\\+";
     /**
      * Gepard level global map, to store anything you believe is important to be stored during the tests.
      * So you may use it.
@@ -61,27 +78,44 @@ public class GenericListTestSuite {
      * Do NOT touch it, otherwise you will do nasty things. It is used internally by Gepard.
      */
     private static Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>(); //global TestClass exec info
-    private int actualDataRow; //this is used during the load of the tests, do NOT use it during execution
-    private String actualTestClassName; //this is used during the load of the tests, do NOT use it during execution
+    private static List<String> testClassIdList = new ArrayList<>(); //ids of all the rows, in testlist order
+    /**
+     * Results of the rows those are flushed already, and their execution data is released (see gepard.result.compact).
+     */
+    private static Map<String, TestClassResult> compactResults = new HashMap<>();
+    /**
+     * Rows those are finished (executed or skipped), but not collected yet, in completion order.
+     */
+    private static Deque<TestClassExecutionData> finishedRows = new ArrayDeque<>();
+    private static int collectedRows; //number of the finished rows those are collected already
+    private static boolean loading; //true while the test classes are loaded in the background
+    private static final Object TEST_CLASS_MAP_LOCK = new Object();
 
     private int usedTc; // = 0; //number of used Test Classes - will be used at report
+    private final List<TestListEntry> testListEntries = new ArrayList<>(); //the checked testlist rows, those are expanded later
+    private final Map<String, List<String>> testClassDependencies = new LinkedHashMap<>(); //key: test class, value: the classes it depends on
+    private volatile boolean publishing; //true if the loaded test classes are passed to the executor threads immediately
 
     private Environment environment;
 
     /**
-     * This class builds up the Junit Test suite (including loading data-driven tests).
+     * This class reads the testlist file, and checks the test classes listed in it (annotation, duplication, resources, dependencies, timeout),
+     * and their data feeders (descriptor, feeder classes and their initialization), so a bad testlist row stops Gepard before the execution is started.
+     * The test classes are expanded (including loading data-driven tests) later, see {@link #loadTestClasses()} and {@link #startLoading()}.
      *
      * @param testListFile is the filename of the testlist file.
      * @param filter       is the filter of the test classes.
+     * @param impactFilter is the test impact selection (test classes affected by the changed sources), or null if all test classes are selected.
      * @param environment  holds the properties of the application
      * @throws IOException            in case testlist file cannot be accessed properly
-     * @throws ClassNotFoundException in case the specified feeder class is not available.
+     * @throws ClassNotFoundException in case the specified test class is not available.
      */
-    public GenericListTestSuite(final String testListFile, final ExpressionTestFilter filter, final Environment environment) throws IOException,
-            ClassNotFoundException {
+    public GenericListTestSuite(final String testListFile, final ExpressionTestFilter filter, final TestFilter impactFilter,
+            final Environment environment) throws IOException, ClassNotFoundException {
         this.environment = environment;
         LineNumberReader listReader = new LineNumberReader(new InputStreamReader(new FileInputStream(testListFile)));
         String originalLine;
+        int notAffectedTc = 0;
         while ((originalLine = listReader.readLine()) != null) {
             originalLine = originalLine.trim();
             if ("".equals(originalLine) || originalLine.startsWith("//") || originalLine.startsWith("#")) {
@@ -91,35 +125,157 @@ public class GenericListTestSuite {
             // if: classname   -> 1 run is expected
             // if: classname,3 -> 3 run is expected
             // if: classname,,AAA -> AAA is used as a blocker id
+            // if: classname,,,other.Class -> other.Class must be executed successfully before this class
+            // if: classname,,,,300 -> the class is considered as hung if it runs longer than 300 seconds
             // if: classname,feederdescriptor,...-> loader class defines the number of execution and provides the tests
             String[] testDescriptor = line.split(",");
             Class<?> clazz = Class.forName(testDescriptor[TESTLIST_CLASS_NAME_FIELD]);
-            //add as many classes to the stack as data driven approach requires
-            if (filter.accept(clazz)) {
-                int count = 1;
-                DataFeederLoader dataFeeder = null;
-                if ((testDescriptor.length > TESTLIST_FEEDER_DESCRIPTOR_FIELD) && (!testDescriptor[TESTLIST_FEEDER_DESCRIPTOR_FIELD].isEmpty())) {
-                    //this is a data driven TC
-                    dataFeeder = new DataFeederLoader(clazz.getName(), testDescriptor[TESTLIST_FEEDER_DESCRIPTOR_FIELD], environment);
-                    count = dataFeeder.calculateRuns(clazz.getName(), count);
-                    DataDrivenParameterArray parameterArray = dataFeeder.calculateParameterArray(clazz.getName(), null);
-                    dataFeeder.reserveParameterArray(parameterArray);
-                }
+            boolean selected = filter.accept(clazz);
+            if (selected && impactFilter != null && !impactFilter.accept(clazz)) {
+                selected = false;
+                notAffectedTc++; //not affected by the changed sources
+            }
+            if (selected) {
+                addTestListRow(clazz, testDescriptor, originalLine);
+            }
+        }
+        listReader.close();
+        if (notAffectedTc > 0) {
+            AllTestRunner.CONSOLE_LOG.info("Test impact selection: " + notAffectedTc + " test classes are not affected by the changes, those are not executed.");
+        }
+        checkTestClassDependencies();
+    }
+
+    /**
+     * Checks a selected row of the testlist, and remembers it, it will be expanded later.
+     *
+     * @param clazz is the test class of the row.
+     * @param testDescriptor is the row, split into its fields.
+     * @param originalLine is the row as it is in the testlist.
+     */
+    private void addTestListRow(final Class<?> clazz, final String[] testDescriptor, final String originalLine) {
+        //this is a data driven TC, if there is a feeder descriptor
+        String feederDescriptor = getTestListField(testDescriptor, TESTLIST_FEEDER_DESCRIPTOR_FIELD);
+        if (feederDescriptor != null && feederDescriptor.isEmpty()) {
+            feederDescriptor = null;
+        }
+        String blocker = getTestListField(testDescriptor, TESTLIST_BLOCKER_FIELD); //the resources of the class
+        String dependencies = getTestListField(testDescriptor, TESTLIST_DEPENDENCY_FIELD); //the classes this class depends on
+        String timeout = getTestListField(testDescriptor, TESTLIST_TIMEOUT_FIELD); //the time limit of the class
+        TestClassData testClassData = new TestClassData(clazz, 1, blocker, dependencies, timeout);
+        checkTestClass(testClassData);
+        //the feeders are loaded and initialized now, only their data is calculated later
+        DataFeederLoader dataFeeder = feederDescriptor == null ? null : new DataFeederLoader(clazz.getName(), feederDescriptor, environment);
+        testListEntries.add(new TestListEntry(testClassData, dataFeeder, originalLine));
+        usedTc++; //count the used test classes
+    }
+
+    private static String getTestListField(final String[] testDescriptor, final int field) {
+        return testDescriptor.length > field ? testDescriptor[field] : null;
+    }
+
+    private void checkTestClass(final TestClassData testClassData) {
+        Class<?> clazz = testClassData.getClassOfTestClass();
+        if (!clazz.isAnnotationPresent(TestClass.class)) {
+            //no proper annotation at Test Class, cannot continue
+            AllTestRunner.CONSOLE_LOG.info("\nERROR: @TestClass annotation is missing at class: " + clazz.getCanonicalName() + " - Please fix!");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_ANNOTATION_MISSING);
+        }
+        if (testClassDependencies.containsKey(clazz.getName())) {
+            AllTestRunner.CONSOLE_LOG.info("\nERROR: Duplicated Class found in testlist: " + clazz.getName()
+                    + "\nPlease ensure that a class is listed only one time in the list!\nNow exiting...");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_DUPLICATED);
+        }
+        registerResources(testClassData.getBlocker());
+        getTimeout(clazz, testClassData.getTimeout());
+        testClassDependencies.put(clazz.getName(), collectDependencies(clazz, testClassData.getDependencies()));
+    }
 
-                //detect blocker class
-                String blocker = null;
-                if (testDescriptor.length > TESTLIST_BLOCKER_FIELD) {
-                    //has blocker value
-                    blocker = testDescriptor[TESTLIST_BLOCKER_FIELD];
+    /**
+     * Expands the checked test classes (including loading data-driven tests), and adds them to the suite.
+     * The data feeders of the testlist rows run in parallel, but the test classes are added to the suite in testlist order.
+     * Every test class row is passed to the executor threads as soon as it is added, if {@link #startLoading()} is used.
+     * The rows are created lazily: their parameters and html reporters are created only when they are dispatched.
+     */
+    public void loadTestClasses() {
+        ForkJoinPool expanderPool = new ForkJoinPool();
+        try {
+            List<ForkJoinTask<TestClassRows>> expansions = new ArrayList<>();
+            for (final TestListEntry entry : testListEntries) {
+                expansions.add(expanderPool.submit(new Callable<TestClassRows>() {
+                    @Override
+                    public TestClassRows call() {
+                        return expandTestListEntry(entry);
+                    }
+                }));
+            }
+            for (int i = 0; i < testListEntries.size(); i++) {
+                addTestClassRows(expansions.get(i).join());
+                if (publishing) {
+                    TestClassExecutionThread.publishTestClassLoaded(testListEntries.get(i).testClassData.getClassOfTestClass().getName());
                 }
+            }
+        } finally {
+            expanderPool.shutdownNow();
+        }
+    }
+
+    private TestClassRows expandTestListEntry(final TestListEntry entry) {
+        TestClassData testClassData = entry.testClassData;
+        Class<?> clazz = testClassData.getClassOfTestClass();
+        int count = 1;
+        DataFeederLoader dataFeeder = entry.dataFeeder;
+        if (dataFeeder != null) {
+            count = dataFeeder.calculateRuns(clazz.getName(), count);
+            DataDrivenParameterArray parameterArray = dataFeeder.calculateParameterArray(clazz.getName(), null);
+            dataFeeder.reserveParameterArray(parameterArray);
+        }
+        //as many rows as data driven approach requires
+        return new TestClassRows(new TestClassData(clazz, count, testClassData.getBlocker(), testClassData.getDependencies(), testClassData.getTimeout()),
+                dataFeeder, entry.originalLine);
+    }
 
-                //and add it to the suite
-                TestClassData testClassData = new TestClassData(clazz, count, blocker);
-                addTestClass(testClassData, dataFeeder, originalLine);
-                usedTc++; //count the used test classes
+    /**
+     * Starts the expansion of the test classes in the background, and passes every expanded test class row to the executor threads,
+     * so the execution starts before the whole suite is loaded. The executor threads should be started already.
+     */
+    public void startLoading() {
+        TestClassExecutionThread.getDispatcher().expectTestClasses(testClassDependencies);
+        publishing = true;
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            loading = true;
+        }
+        Thread loader = new Thread() {
+            @Override
+            public void run() {
+                //the execution is running already, so a failed load stops it, but the loaded test classes are finished and reported
+                try {
+                    loadTestClasses();
+                } catch (ShutDownException e) {
+                    stopLoading(e.getExitCode());
+                } catch (Throwable e) {
+                    AllTestRunner.exitFromGepardWithCriticalException("\nERROR: Load of the test classes failed.", e, false, ExitCode.EXIT_CODE_UNKNOWN_ERROR);
+                    stopLoading(ExitCode.EXIT_CODE_UNKNOWN_ERROR);
+                } finally {
+                    finishLoading();
+                }
             }
+        };
+        loader.setName("GEPARD Loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private static void stopLoading(final int exitCode) {
+        AllTestRunner.setExitCode(exitCode);
+        TestClassExecutionThread.stopExecution("the load of the test classes failed with exit code: " + exitCode);
+    }
+
+    private static void finishLoading() {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            loading = false;
+            TEST_CLASS_MAP_LOCK.notifyAll();
         }
-        listReader.close();
     }
 
     public static Map<String, Object> getGlobalDataStorage() {
@@ -137,15 +293,143 @@ public class GenericListTestSuite {
      * @return the {@link TestClassExecutionData} that belongs to the given id.
      */
     public static TestClassExecutionData getTestClassExecutionData(final String testClassId) {
-        return testClassMap.get(testClassId);
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            return testClassMap.get(testClassId);
+        }
     }
 
+    /**
+     * Returns the ids of the test classes loaded so far, in testlist order.
+     * Note that the execution data of the flushed rows may be released already, see {@link #getTestClassResults()}.
+     *
+     * @return with a snapshot of the ids.
+     */
     public static Set<String> getTestClassIds() {
-        return testClassMap.keySet();
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            return new LinkedHashSet<>(testClassIdList);
+        }
     }
 
+    /**
+     * Returns the results of the test classes loaded so far, in testlist order.
+     *
+     * @return with the result records, the ones of the rows not yet flushed reflect their actual state.
+     */
+    public static List<TestClassResult> getTestClassResults() {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            List<TestClassResult> result = new ArrayList<>(testClassIdList.size());
+            for (String id : testClassIdList) {
+                TestClassResult compactResult = compactResults.get(id);
+                result.add(compactResult == null ? new TestClassResult(testClassMap.get(id)) : compactResult);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Keeps only the compact result record of a flushed row, everything else (reporter, parameters, test class) is released.
+     *
+     * @param classData is the flushed row.
+     */
+    public static void compactTestClass(final TestClassExecutionData classData) {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            compactResults.put(classData.getID(), new TestClassResult(classData));
+            testClassMap.remove(classData.getID());
+        }
+    }
+
+    /**
+     * Returns the test class that is at the given position of the suite (in testlist order), and waits for it if it is not loaded yet.
+     *
+     * @param index is the position of the test class
+     * @return with the test class, or null if there is no such test class, and the suite is loaded already.
+     * @throws InterruptedException in case the waiting is interrupted
+     */
+    public static TestClassExecutionData waitForTestClass(final int index) throws InterruptedException {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            while (index >= testClassIdList.size() && loading) {
+                TEST_CLASS_MAP_LOCK.wait();
+            }
+            return index < testClassIdList.size() ? testClassMap.get(testClassIdList.get(index)) : null;
+        }
+    }
+
+    /**
+     * Returns the id of the test class that is at the given position of the suite (in testlist order).
+     *
+     * @param index is the position of the test class
+     * @return with the id, or null if there is no such test class (yet).
+     */
+    public static String getTestClassId(final int index) {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            return index < testClassIdList.size() ? testClassIdList.get(index) : null;
+        }
+    }
+
+    /**
+     * Publishes a finished (executed or skipped) row to the result collector.
+     *
+     * @param classData is the finished row.
+     */
+    public static void testClassFinished(final TestClassExecutionData classData) {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            finishedRows.add(classData);
+            TEST_CLASS_MAP_LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Takes the next finished row, in completion order, and waits for it if there is no finished row yet.
+     *
+     * @param timeout is the maximum time to wait in ms.
+     * @return with the finished row, or null if no row is finished within the timeout.
+     * @throws InterruptedException in case the waiting is interrupted
+     */
+    public static TestClassExecutionData waitForFinishedTestClass(final long timeout) throws InterruptedException {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            if (finishedRows.isEmpty() && !isCollectionFinished()) {
+                TEST_CLASS_MAP_LOCK.wait(timeout);
+            }
+            TestClassExecutionData result = finishedRows.poll();
+            if (result != null) {
+                collectedRows++;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Detects if all the rows of the suite are loaded, finished and collected.
+     *
+     * @return true if there is nothing to collect any more.
+     */
+    public static boolean isCollectionFinished() {
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            return !loading && finishedRows.isEmpty() && collectedRows >= testClassIdList.size();
+        }
+    }
+
+    /**
+     * Replaces the test classes of the suite, the suite is considered as loaded.
+     * The rows those are finished already are published to the result collector.
+     *
+     * @param testClassMap is the new content, key is the id of the test class.
+     */
     public static void setTestClassMap(final Map<String, TestClassExecutionData> testClassMap) {
-        GenericListTestSuite.testClassMap = new LinkedHashMap<>(testClassMap);
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            GenericListTestSuite.testClassMap = new LinkedHashMap<>(testClassMap);
+            testClassIdList = new ArrayList<>(testClassMap.keySet());
+            compactResults = new HashMap<>();
+            finishedRows = new ArrayDeque<>();
+            collectedRows = 0;
+            for (TestClassExecutionData classData : testClassMap.values()) {
+                if (classData.getLock() == -1) {
+                    finishedRows.add(classData);
+                }
+            }
+            loading = false;
+            TEST_CLASS_MAP_LOCK.notifyAll();
+        }
     }
 
     /**
@@ -156,132 +440,231 @@ public class GenericListTestSuite {
      * @param originalLine  is the original testlist row.
      */
     public void addTestClass(final TestClassData testClassData, final DataFeederLoader dataFeeder, final String originalLine) {
-        int rowNo = 0;
-        int counter = testClassData.getCount();
-        Class<?> cls = testClassData.getClassOfTestClass();
-        String blocker = testClassData.getBlocker();
-        while (counter > 0) {
-            registerMethodsInGlobalMap(cls, rowNo, dataFeeder);
-            handleTestClassAnnotation(cls);
-
-            //set test for parallel execution
-            String id = cls.getName() + "/" + rowNo;
-            TestClassExecutionData classData = GenericListTestSuite.getTestClassExecutionData(id); //get the class exec object
-            //set blocker parameters
-            String blockerString = null;
-            boolean blockerSelfEnabled = false;
-            if ((blocker != null) && (blocker.length() > 0)) {
-                if (blocker.endsWith("*")) {
-                    blockerString = blocker.substring(0, blocker.length() - 1);
-                    blockerSelfEnabled = true;
-                } else {
-                    blockerString = blocker;
+        addTestClassRows(new TestClassRows(testClassData, dataFeeder, originalLine));
+    }
+
+    private void addTestClassRows(final TestClassRows rows) {
+        registerResources(rows.testClassData.getBlocker());
+        for (int rowNo = 0; rowNo < rows.testClassData.getCount(); rowNo++) {
+            if (publishing) {
+                //do not create the row too early, if the executor threads have enough to do
+                TestClassExecutionThread.getDispatcher().awaitLoadCapacity();
+            }
+            TestClassExecutionData classData = rows.createRow(rowNo);
+            registerMethodsInGlobalMap(classData);
+            if (publishing) {
+                TestClassExecutionThread.publishTestClass(classData);
+            }
+        }
+    }
+
+    private void registerResources(final String blocker) {
+        for (ResourceClaim claim : ResourceClaim.parse(blocker)) {
+            //take care about the blocker map
+            if (!TestClassExecutionThread.containsClassBlockingInfo(claim.getName())) {
+                //need a new blocker element, its capacity is 1, unless it is a resource pool
+                TestClassExecutionThread.putClassBlockingInfo(claim.getName(), new BlockingInfo(getResourceCapacity(claim.getName())));
+            }
+        }
+    }
+
+    private List<String> collectDependencies(final Class<?> clazz, final String testlistDependencies) {
+        Set<String> result = new LinkedHashSet<>();
+        TestClass testClassAnnotation = clazz.getAnnotation(TestClass.class);
+        if (testClassAnnotation != null) {
+            for (Class<?> dependency : testClassAnnotation.dependsOn()) {
+                result.add(dependency.getName());
+            }
+        }
+        if (testlistDependencies != null) {
+            for (String dependency : testlistDependencies.split(DEPENDENCY_SEPARATOR)) {
+                if (!dependency.trim().isEmpty()) {
+                    result.add(dependency.trim());
                 }
-                //take care about the blocker map, too
-                if (!TestClassExecutionThread.containsClassBlockingInfo(blockerString)) {
-                    //need a new blocker element
-                    TestClassExecutionThread.putClassBlockingInfo(blockerString, new BlockingInfo());
+            }
+        }
+        result.remove(clazz.getName());
+        return Collections.unmodifiableList(new ArrayList<>(result));
+    }
+
+    /**
+     * Checks the dependencies between the test classes. Dependencies on test classes those are not in the test suite are ignored,
+     * and circular dependencies are not allowed.
+     */
+    private void checkTestClassDependencies() {
+        for (Map.Entry<String, List<String>> entry : testClassDependencies.entrySet()) {
+            for (String dependency : entry.getValue()) {
+                if (!testClassDependencies.containsKey(dependency)) {
+                    AllTestRunner.CONSOLE_LOG.info("INFO: Test class: " + entry.getKey() + " depends on: " + dependency
+                            + ", but it is not in the test suite, so this dependency is ignored.");
                 }
             }
-            classData.setBlockerString(blockerString);
-            classData.setSelfEnabledBlocker(blockerSelfEnabled);
-            classData.setOriginalLine(originalLine);
-            checkDataDrivenParameters(classData, dataFeeder);
-            counter--;
-            rowNo++;
+            entry.setValue(retainKnownDependencies(entry.getValue()));
+        }
+        Map<String, Boolean> visited = new HashMap<>(); //false: under visit, true: done
+        for (String className : testClassDependencies.keySet()) {
+            detectDependencyCycle(className, testClassDependencies, visited, new ArrayList<String>());
         }
     }
 
-    private void checkDataDrivenParameters(final TestClassExecutionData classData, final DataFeederLoader dataFeeder) {
-        if (classData.getDrivenData() == null) { // this must not be data driven
-            if (classData.getDrivenDataRowNo() > 0) {
+    private List<String> retainKnownDependencies(final List<String> dependencies) {
+        List<String> knownDependencies = new ArrayList<>();
+        for (String dependency : dependencies) {
+            if (testClassDependencies.containsKey(dependency)) {
+                knownDependencies.add(dependency);
+            }
+        }
+        return Collections.unmodifiableList(knownDependencies);
+    }
+
+    private void detectDependencyCycle(final String className, final Map<String, List<String>> dependencyMap, final Map<String, Boolean> visited,
+            final List<String> path) {
+        Boolean state = visited.get(className);
+        path.add(className);
+        if (state == null) {
+            visited.put(className, false);
+            for (String dependency : dependencyMap.get(className)) {
+                detectDependencyCycle(dependency, dependencyMap, visited, path);
+            }
+            visited.put(className, true);
+        } else if (!state) {
+            //the class is under visit, so we got back to it
+            AllTestRunner.CONSOLE_LOG.info("\nERROR: Circular dependency found between test classes: " + path.subList(path.indexOf(className), path.size())
+                    + "\nPlease check and fix it!\nNow exiting...");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_DEPENDENCY_CYCLE);
+        }
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Gets the time limit of the test class: the timeout column of the testlist, or the timeout of the @TestClass annotation,
+     * or the default (gepard.timeout), in this order.
+     *
+     * @param clazz           is the test class
+     * @param testlistTimeout is the timeout column of the testlist, may be null
+     * @return with the time limit in seconds, 0 means no time limit.
+     */
+    private long getTimeout(final Class<?> clazz, final String testlistTimeout) {
+        long timeout = 0;
+        if (testlistTimeout != null && !testlistTimeout.trim().isEmpty()) {
+            timeout = parseTimeout(clazz.getName(), testlistTimeout);
+        }
+        TestClass testClassAnnotation = clazz.getAnnotation(TestClass.class);
+        if (timeout == 0 && testClassAnnotation != null) {
+            timeout = testClassAnnotation.timeout();
+        }
+        String defaultTimeout = environment.getProperty(Environment.GEPARD_TIMEOUT);
+        if (timeout == 0 && defaultTimeout != null && !defaultTimeout.trim().isEmpty()) {
+            timeout = parseTimeout(clazz.getName(), defaultTimeout);
+        }
+        if (timeout < 0) {
+            AllTestRunner.CONSOLE_LOG.info("\nERROR: Timeout of test class: " + clazz.getName() + " must not be negative, but it is: " + timeout
+                    + "\nPlease check and fix it!\nNow exiting...");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_BAD_TIMEOUT);
+        }
+        return timeout;
+    }
+
+    private long parseTimeout(final String className, final String timeoutText) {
+        long timeout = 0;
+        try {
+            timeout = Long.parseLong(timeoutText.trim());
+        } catch (NumberFormatException e) {
+            AllTestRunner.CONSOLE_LOG.info("\nERROR: Timeout of test class: " + className + " must be a number of seconds, but it is: " + timeoutText
+                    + "\nPlease check and fix it!\nNow exiting...");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_BAD_TIMEOUT);
+        }
+        return timeout;
+    }
+
+    private int getResourceCapacity(final String resourceName) {
+        int capacity = 1;
+        String capacityText = environment.getProperty(Environment.GEPARD_RESOURCE_PREFIX + resourceName);
+        if (capacityText != null) {
+            try {
+                capacity = Integer.parseInt(capacityText.trim());
+            } catch (NumberFormatException e) {
+                capacity = 0;
+            }
+            if (capacity <= 0) {
+                AllTestRunner.CONSOLE_LOG.info("\nERROR: Capacity of resource pool: " + resourceName + " must be a positive number, but it is: " + capacityText
+                        + "\nPlease check and fix it!\nNow exiting...");
+                AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_BAD_RESOURCE_POOL);
+            }
+        }
+        return capacity;
+    }
+
+    private void checkDataDrivenParameters(final DataDrivenParameters drivenData, final int rowNo, final DataFeederLoader dataFeeder) {
+        if (drivenData == null) { // this must not be data driven
+            if (rowNo > 0) {
                 AllTestRunner.CONSOLE_LOG.info("\nERROR: Parameters are not loaded for a data driven test class."
                         + "\nPlease check and fix it!\nNow exiting...");
-                AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_DATA_DRIVEN_TEST_CLASS_WITHOUT_DATA);
+                throw new ShutDownException(ExitCode.EXIT_CODE_DATA_DRIVEN_TEST_CLASS_WITHOUT_DATA);
             }
             if (dataFeeder != null) {
                 AllTestRunner.CONSOLE_LOG.info("\nERROR: DataFeederLoader is used on a non-data driven test class."
                         + "\nPlease check and fix it!\nNow exiting...");
-                AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_NON_DATA_DRIVEN_TEST_CLASS_WITH_DATA);
+                throw new ShutDownException(ExitCode.EXIT_CODE_NON_DATA_DRIVEN_TEST_CLASS_WITH_DATA);
             }
             return;
         }
         //we have parameters, now check its correctness
-        String[] parameterNames = classData.getDrivenData().getParameterNames();
+        String[] parameterNames = drivenData.getParameterNames();
         if (parameterNames == null) { //we must have names for the parameters
             AllTestRunner.CONSOLE_LOG.info("\nERROR: Parameters are not loaded correctly for a data driven test class. ParameterNames are missing."
                     + "\nPlease check and fix it!\nNow exiting...");
-            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_DATA_DRIVEN_TEST_CLASS_WITHOUT_DATA_NAMES);
+            throw new ShutDownException(ExitCode.EXIT_CODE_DATA_DRIVEN_TEST_CLASS_WITHOUT_DATA_NAMES);
         }
-        int columns = classData.getDrivenData().getParameters().length;
+        int columns = drivenData.getParameters().length;
         int namesNo = parameterNames.length;
         if (columns != namesNo) { //we must have as many parameter names as parameters we have
             AllTestRunner.CONSOLE_LOG.info("\nERROR: Parameters are not loaded correctly for a data driven test class. "
                     + "Number of ParameterNames differs from the number of parameters." + "\nPlease check and fix it!\nNow exiting...");
-            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_DATA_DRIVEN_TEST_CLASS_INCORRECT_NUMBER_OF_DATA_NAMES);
+            throw new ShutDownException(ExitCode.EXIT_CODE_DATA_DRIVEN_TEST_CLASS_INCORRECT_NUMBER_OF_DATA_NAMES);
         }
     }
 
     /**
-     * This class ensures that the test class receives all data-driven (and other) information before its execution.
+     * This class creates a row of the test class. The parameters and the html reporter of the row are created when it is dispatched,
+     * see {@link TestClassExecutionData#materialize()}.
      *
-     * @param clazz is the test class to be initialized.
-     */
-    protected void handleTestClassAnnotation(final Class<?> clazz) {
-        // Handle annotated classes
-        if (clazz.isAnnotationPresent(TestClass.class)) {
-            handleTestClassInternalCounter(clazz);
-            //set script id and name
-            String id = clazz.getName() + "/" + actualDataRow;
-            TestClassExecutionData classData = GenericListTestSuite.getTestClassExecutionData(id); //get the class exec object
-            classData.setTestScriptId(clazz.getAnnotation(TestClass.class).id());
-            classData.loadParameters();
-            String extension = "";
-            if (classData.getDrivenData() != null) {
-                extension = " - " + classData.getDrivenData().getParameters()[0]; //puts the first parameter into the test name
-            }
-            classData.setTestScriptName(clazz.getAnnotation(TestClass.class).name() + extension);
-        } else {
-            //no proper annotation at Test Class, cannot continue
-            AllTestRunner.CONSOLE_LOG.info("\nERROR: @TestClass annotation is missing at class: " + clazz.getCanonicalName() + " - Please fix!");
-            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_ANNOTATION_MISSING);
-        }
-    }
-
-    private void handleTestClassInternalCounter(final Class testClass) {
-        //first either reset the counter or increase it, based on the given test class name
-        String testClassName = testClass.getName();
-        if ((actualTestClassName == null) || (!actualTestClassName.contentEquals(testClassName))) {
-            actualTestClassName = testClassName;
-            actualDataRow = 0;
-        } else {
-            actualDataRow++;
-        }
-    }
-
-    /**
-     * This class registers the test methods in the global map.
-     *
-     * @param clazz      in which class we search for the test methods.
+     * @param clazz      is the test class.
      * @param rowNo      in case of data-driven test, when the test class is repeated, this specifies the actual repetition.
      * @param dataFeeder is the data feeder class in order to load the proper test data.
+     * @return with the row of the test class.
      */
-    protected void registerMethodsInGlobalMap(final Class<?> clazz, final int rowNo, final DataFeederLoader dataFeeder) {
-        //register this class in the global class list
+    protected TestClassExecutionData createTestClassExecutionData(final Class<?> clazz, final int rowNo, final DataFeederLoader dataFeeder) {
         String id = clazz.getName() + "/" + rowNo;
-        if (testClassMap.containsKey(id)) {
-            //this is bad, this means ...
-            AllTestRunner.CONSOLE_LOG.info("\nERROR: Duplicated Class found in testlist: " + clazz.getName()
-                    + "\nPlease ensure that a class is listed only one time in the list!\nNow exiting...");
-            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_DUPLICATED);
-        }
         TestClassExecutionData classData = new TestClassExecutionData(id, environment);
         classData.setClassName(clazz.getName());
         classData.setDataFeederLoader(dataFeeder);
         classData.setDataRow(rowNo); //note: to load the parameters we just waiting for the paramnames
         classData.setTestClass(clazz);  //for Junit 4
-        testClassMap.put(id, classData);
-        new HtmlRunReporter(classData); //this prepares everything that need to be prepared for Html Logging the execution of the test class
+        classData.setTestScriptId(clazz.getAnnotation(TestClass.class).id());
+        classData.setTestScriptName(clazz.getAnnotation(TestClass.class).name());
+        return classData;
+    }
+
+    /**
+     * This class registers the row of the test class in the global map.
+     *
+     * @param classData is the row of the test class.
+     */
+    protected void registerMethodsInGlobalMap(final TestClassExecutionData classData) {
+        //register this class in the global class list
+        String id = classData.getID();
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            if (testClassMap.containsKey(id) || compactResults.containsKey(id)) {
+                //this is bad, this means ...
+                AllTestRunner.CONSOLE_LOG.info("\nERROR: Duplicated Class found in testlist: " + classData.getClassName()
+                        + "\nPlease ensure that a class is listed only one time in the list!\nNow exiting...");
+                AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEST_CLASS_DUPLICATED);
+            }
+            testClassMap.put(id, classData);
+            testClassIdList.add(id);
+            TEST_CLASS_MAP_LOCK.notifyAll();
+        }
     }
 
     public int getUsedTc() {
@@ -289,7 +672,63 @@ public class GenericListTestSuite {
     }
 
     public int getTestClassCount() {
-        return testClassMap.size();
+        synchronized (TEST_CLASS_MAP_LOCK) {
+            return testClassIdList.size();
+        }
+    }
+
+    /**
+     * The rows of an expanded test class. A row is created only when it is asked for.
+     */
+    private final class TestClassRows {
+        private final TestClassData testClassData;
+        private final DataFeederLoader dataFeeder;
+        private final String originalLine;
+        private final List<String> dependencies;
+        private final long timeout;
+
+        private TestClassRows(final TestClassData testClassData, final DataFeederLoader dataFeeder, final String originalLine) {
+            this.testClassData = testClassData;
+            this.dataFeeder = dataFeeder;
+            this.originalLine = originalLine;
+            Class<?> clazz = testClassData.getClassOfTestClass();
+            dependencies = retainKnownDependencies(collectDependencies(clazz, testClassData.getDependencies()));
+            timeout = getTimeout(clazz, testClassData.getTimeout()) * GepardConstants.ONE_SECOND_LENGTH.getConstant();
+            DataDrivenParameterArray parameterArray = dataFeeder == null ? null : dataFeeder.getParameterArray();
+            for (int rowNo = 0; rowNo < testClassData.getCount(); rowNo++) {
+                //the parameters are checked now, but loaded only when the row is dispatched
+                DataDrivenParameters drivenData = null;
+                if (parameterArray != null && parameterArray.get(rowNo) != null) {
+                    drivenData = new DataDrivenParameters(parameterArray.get(rowNo), parameterArray.getParameterNames());
+                }
+                checkDataDrivenParameters(drivenData, rowNo, dataFeeder);
+            }
+        }
+
+        private TestClassExecutionData createRow(final int rowNo) {
+            TestClassExecutionData classData = createTestClassExecutionData(testClassData.getClassOfTestClass(), rowNo, dataFeeder);
+            //set blocker parameters, i.e. the resources needed by the class
+            classData.setBlockerString(testClassData.getBlocker());
+            classData.setDependencies(dependencies);
+            classData.setTimeout(timeout);
+            classData.setOriginalLine(originalLine);
+            return classData;
+        }
+    }
+
+    /**
+     * A checked testlist row, that is expanded into test class rows later.
+     */
+    private static final class TestListEntry {
+        private final TestClassData testClassData;
+        private final DataFeederLoader dataFeeder;
+        private final String originalLine;
+
+        private TestListEntry(final TestClassData testClassData, final DataFeederLoader dataFeeder, final String originalLine) {
+            this.testClassData = testClassData;
+            this.dataFeeder = dataFeeder;
+            this.originalLine = originalLine;
+        }
     }
 
 }
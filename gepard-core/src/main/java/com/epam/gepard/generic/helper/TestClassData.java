@@ -28,6 +28,8 @@ public class TestClassData {
     private final Class<?> classOfTestClass;
     private final int count;
     private final String blocker;
+    private final String dependencies;
+    private final String timeout;
 
     /**
      * Constructs a new instance of {@link TestClassData}.
@@ -36,9 +38,34 @@ public class TestClassData {
      * @param blocker      is the class blocker-string (for parallel execution)
      */
     public TestClassData(final Class<?> classOfTestClass, final int count, final String blocker) {
+        this(classOfTestClass, count, blocker, null);
+    }
+
+    /**
+     * Constructs a new instance of {@link TestClassData}.
+     * @param classOfTestClass          is the TC class to be added
+     * @param count        is the data multiplier - how many times this class should be added
+     * @param blocker      is the class blocker-string (for parallel execution)
+     * @param dependencies is the list of test classes, joined by '+', those must be executed successfully before this class
+     */
+    public TestClassData(final Class<?> classOfTestClass, final int count, final String blocker, final String dependencies) {
+        this(classOfTestClass, count, blocker, dependencies, null);
+    }
+
+    /**
+     * Constructs a new instance of {@link TestClassData}.
+     * @param classOfTestClass          is the TC class to be added
+     * @param count        is the data multiplier - how many times this class should be added
+     * @param blocker      is the class blocker-string (for parallel execution)
+     * @param dependencies is the list of test classes, joined by '+', those must be executed successfully before this class
+     * @param timeout      is the maximum execution time of the class in seconds, as given in the testlist, may be null
+     */
+    public TestClassData(final Class<?> classOfTestClass, final int count, final String blocker, final String dependencies, final String timeout) {
         this.classOfTestClass = classOfTestClass;
         this.count = count;
         this.blocker = blocker;
+        this.dependencies = dependencies;
+        this.timeout = timeout;
     }
 
     public Class<?> getClassOfTestClass() {
@@ -52,4 +79,12 @@ public class TestClassData {
     public String getBlocker() {
         return blocker;
     }
+
+    public String getDependencies() {
+        return dependencies;
+    }
+
+    public String getTimeout() {
+        return timeout;
+    }
 }
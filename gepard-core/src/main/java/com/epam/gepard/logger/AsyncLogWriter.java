@@ -0,0 +1,181 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.PrintWriter;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This thread writes the report fragments of the {@link LogFileWriter}s those are in async mode, so the test threads do not wait for the disk.
+ * The fragments are queued in a bounded queue (a test thread waits only if the queue is full), and they are written in the order of the queue.
+ * The written logs are flushed in batches: when enough text is written, when the queue is idle, or when the oldest unflushed text is old enough.
+ */
+final class AsyncLogWriter extends Thread {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncLogWriter.class);
+    private static final int QUEUE_CAPACITY = 4096; //fragments
+    private static final int FLUSH_SIZE = 65536; //chars
+    private static final long FLUSH_INTERVAL = 200L; //ms
+
+    private static AsyncLogWriter instance;
+
+    private final BlockingQueue<Fragment> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    //used only by this thread
+    private final Set<PrintWriter> unflushedLogs = new LinkedHashSet<>();
+    private int unflushedChars;
+    private long lastFlushTime = System.currentTimeMillis();
+
+    private AsyncLogWriter() {
+        setName("GEPARD Report Writer");
+        setDaemon(true);
+    }
+
+    /**
+     * Gets the writer thread, it is started at the first use.
+     *
+     * @return with the writer thread.
+     */
+    static synchronized AsyncLogWriter getInstance() {
+        if (instance == null) {
+            instance = new AsyncLogWriter();
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a text to be written into a log.
+     *
+     * @param log is the log.
+     * @param text is the text.
+     */
+    void write(final PrintWriter log, final String text) {
+        enqueue(new Fragment(log, text, null));
+    }
+
+    /**
+     * Queues the closing of a log, it is closed after the texts queued before are written.
+     *
+     * @param log is the log.
+     */
+    void close(final PrintWriter log) {
+        enqueue(new Fragment(log, null, null));
+    }
+
+    /**
+     * Waits till everything that was queued before (by any thread) is written and flushed.
+     */
+    void drain() {
+        CountDownLatch done = new CountDownLatch(1);
+        enqueue(new Fragment(null, null, done));
+        boolean interrupted = false;
+        while (done.getCount() > 0) {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                interrupted = true; //the report must be complete, so we wait anyway
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(final Fragment fragment) {
+        boolean interrupted = false;
+        boolean queued = false;
+        while (!queued) {
+            try {
+                queue.put(fragment);
+                queued = true;
+            } catch (InterruptedException e) {
+                interrupted = true; //e.g. a test method timeout, the fragment must not be lost
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Fragment fragment = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (fragment == null) {
+                    flushLogs();
+                } else {
+                    process(fragment);
+                }
+            } catch (InterruptedException e) {
+                LOGGER.debug("Report writer got InterruptedException, ignored.");
+            }
+        }
+    }
+
+    private void process(final Fragment fragment) {
+        if (fragment.done != null) {
+            flushLogs();
+            fragment.done.countDown();
+        } else if (fragment.text == null) {
+            unflushedLogs.remove(fragment.log);
+            fragment.log.close();
+        } else {
+            fragment.log.write(fragment.text);
+            unflushedLogs.add(fragment.log);
+            unflushedChars += fragment.text.length();
+            if (unflushedChars >= FLUSH_SIZE || System.currentTimeMillis() - lastFlushTime >= FLUSH_INTERVAL) {
+                flushLogs();
+            }
+        }
+    }
+
+    private void flushLogs() {
+        for (PrintWriter log : unflushedLogs) {
+            log.flush();
+        }
+        unflushedLogs.clear();
+        unflushedChars = 0;
+        lastFlushTime = System.currentTimeMillis();
+    }
+
+    /**
+     * A queued text of a log, or the closing of a log (no text), or a drain request (only the latch).
+     */
+    private static final class Fragment {
+        private final PrintWriter log;
+        private final String text;
+        private final CountDownLatch done;
+
+        private Fragment(final PrintWriter log, final String text, final CountDownLatch done) {
+            this.log = log;
+            this.text = text;
+            this.done = done;
+        }
+    }
+}
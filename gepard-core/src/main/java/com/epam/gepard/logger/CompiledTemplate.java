@@ -0,0 +1,187 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A template of the {@link LogFileWriter}, cut into blocks, and every block is cut into literal text and %variable% slots.
+ * A template is compiled only once per path, the compiled form is immutable and is shared by all the log files those use the same template.
+ */
+final class CompiledTemplate {
+
+    /**
+     * Block separator, refers to the beginning of a block in the template file.
+     */
+    private static final Pattern BLOCK_START = Pattern.compile("<!--Start of (\\w*)-->");
+    /**
+     * Block separator, refers to the end of a block in the template file.
+     */
+    private static final Pattern BLOCK_END = Pattern.compile("<!--End of (\\w*)--?>");
+    /**
+     * A variable to be substituted in a block.
+     */
+    private static final Pattern VARIABLE = Pattern.compile("%(\\w+)%");
+
+    private static final ConcurrentMap<String, CompiledTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final Map<String, Block> blocks;
+
+    private CompiledTemplate(final Map<String, Block> blocks) {
+        this.blocks = Collections.unmodifiableMap(blocks);
+    }
+
+    /**
+     * Gets the compiled template of a path, if it is already compiled.
+     *
+     * @param templatePath is the path of the template.
+     * @return with the compiled template, or null if it is not compiled yet.
+     */
+    static CompiledTemplate getCached(final String templatePath) {
+        return CACHE.get(templatePath);
+    }
+
+    /**
+     * Compiles a template and caches it by its path. If another thread compiled the same template meanwhile, that one is kept.
+     *
+     * @param templatePath is the path of the template.
+     * @param template is the content of the template, it is read till its end, but not closed.
+     * @return with the compiled template.
+     * @throws IOException if the template cannot be read or a block is not closed.
+     */
+    static CompiledTemplate compile(final String templatePath, final BufferedReader template) throws IOException {
+        Map<String, Block> blocks = new HashMap<>();
+        String lineSeparator = System.getProperty("line.separator");
+        String templateLine = template.readLine();
+        while (templateLine != null) {
+            Matcher begin = BLOCK_START.matcher(templateLine);
+            if (begin.find()) { //new block found
+                StringBuilder blockContent = new StringBuilder();
+                templateLine = template.readLine();
+                while (templateLine != null && !BLOCK_END.matcher(templateLine).find()) { //collecting blockContent
+                    blockContent.append(templateLine).append(lineSeparator);
+                    templateLine = template.readLine();
+                }
+                if (templateLine == null) {
+                    throw new IOException("Block " + begin.group(1) + " is not closed in template " + templatePath);
+                }
+                blocks.put(begin.group(1), new Block(blockContent.toString()));
+            }
+            templateLine = template.readLine();
+        }
+        CompiledTemplate compiled = new CompiledTemplate(blocks);
+        CompiledTemplate previous = CACHE.putIfAbsent(templatePath, compiled);
+        return previous == null ? compiled : previous;
+    }
+
+    /**
+     * Writes a block with its variables substituted.
+     *
+     * @param blockName is the name of the block.
+     * @param props contains the values of the variables, may be null. Only its own keys are used, its defaults are not.
+     * @param out is the writer of the log file.
+     * @return with false if there is no such block, so nothing was written.
+     */
+    boolean render(final String blockName, final Properties props, final PrintWriter out) {
+        Block block = blocks.get(blockName);
+        if (block != null) {
+            block.render(props, out);
+        }
+        return block != null;
+    }
+
+    /**
+     * Gets the values of the variables of a block, so the block can be written later, without the given properties.
+     *
+     * @param blockName is the name of the block.
+     * @param props contains the values of the variables, may be null. Only its own keys are used, its defaults are not.
+     * @return with the variables those have value, or null if there is no such block.
+     */
+    Map<String, String> resolve(final String blockName, final Properties props) {
+        Block block = blocks.get(blockName);
+        Map<String, String> result = null;
+        if (block != null) {
+            result = new LinkedHashMap<>();
+            for (String variable : block.variables) {
+                String value = getValue(variable, props);
+                if (value != null) {
+                    result.put(variable, value);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String getValue(final String variable, final Properties props) {
+        Object value = props == null ? null : props.get(variable);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * A block of the template: literals[0], variables[0], literals[1], ... variables[n-1], literals[n].
+     */
+    private static final class Block {
+        private final String[] literals;
+        private final String[] variables;
+
+        private Block(final String content) {
+            List<String> literalList = new ArrayList<>();
+            List<String> variableList = new ArrayList<>();
+            Matcher variable = VARIABLE.matcher(content);
+            int literalStart = 0;
+            while (variable.find()) {
+                literalList.add(content.substring(literalStart, variable.start()));
+                variableList.add(variable.group(1));
+                literalStart = variable.end();
+            }
+            literalList.add(content.substring(literalStart));
+            literals = literalList.toArray(new String[literalList.size()]);
+            variables = variableList.toArray(new String[variableList.size()]);
+        }
+
+        private void render(final Properties props, final PrintWriter out) {
+            for (int i = 0; i < variables.length; i++) {
+                out.write(literals[i]);
+                String value = getValue(variables[i], props);
+                if (value == null) { //unknown variables are left in the text as they are
+                    out.write('%');
+                    out.write(variables[i]);
+                    out.write('%');
+                } else {
+                    out.write(value);
+                }
+            }
+            out.write(literals[variables.length]);
+        }
+    }
+}
@@ -32,9 +32,9 @@ import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This reporter generates HML page for the class.
@@ -47,17 +47,13 @@ public final class HtmlRunReporter extends RunListener {
     private String classDir = "";
     private Environment environment;
     private LogFileWriter testClassHtmlLog; //per test class
-    private LogFileWriter testMethodHtmlLog; //per test case
+    private final Object testClassHtmlLogLock = new Object(); //test methods may be executed in parallel
+    //per test case, test methods of the class may be executed in parallel, so it belongs to the thread that executes the method
+    private final InheritableThreadLocal<TestMethodState> testMethodState = new InheritableThreadLocal<>();
+    private volatile TestMethodState lastStartedTestMethod = new TestMethodState(null);
     private final LogFileWriterFactory logFileWriterFactory = new LogFileWriterFactory();
-    private int step; //test step, restarts from 1 in every executed test method
-    private int divStep = 1;
     private Properties props = new Properties();
-    private Boolean testFailed = false;
-    private Boolean testNA = false;
-    private Boolean testDummy = false;
     private FileUtil fileUtil = new FileUtil();
-    private String testNAMessage = "";
-    private List<Failure> testFailure;
 
 
     /**
@@ -68,7 +64,6 @@ public final class HtmlRunReporter extends RunListener {
     public HtmlRunReporter(final TestClassExecutionData classData) {
         this.classData = classData;
         this.environment = classData.getEnvironment();
-        testFailure = new ArrayList<>();
         Class<?> clazz = classData.getTestClass();
         unPackClassNameAndDir(clazz);
         fileUtil.createDirectory(environment.getProperty(Environment.GEPARD_HTML_RESULT_PATH) + "/" + classDir);
@@ -101,21 +96,20 @@ public final class HtmlRunReporter extends RunListener {
     public void testStarted(final Description description) throws Exception {
         fileUtil.createDirectory(environment.getProperty(Environment.GEPARD_HTML_RESULT_PATH) + "/" + readDirectory());
         String methodName = description.getMethodName();
-        testMethodHtmlLog = logFileWriterFactory.createCustomWriter(environment.getProperty(Environment.GEPARD_RESULT_TEMPLATE_PATH) + "/"
+        TestMethodState state = new TestMethodState(logFileWriterFactory.createCustomWriter(environment.getProperty(Environment.GEPARD_RESULT_TEMPLATE_PATH) + "/"
                         + "temp_generictestcase.html", environment.getProperty(Environment.GEPARD_HTML_RESULT_PATH) + "/"
                         + readDirectory() + "/" + methodName + classData.getDrivenDataRowNo() + ".html",
-                classData.getEnvironment());
-        step = 1;
+                classData.getEnvironment()));
+        testMethodState.set(state);
+        lastStartedTestMethod = state;
         classData.addSysOut("\nRunning test: " + classData.getClassName() + "." + methodName + "\nName: " + classData.getTestScriptName());
-        testFailed = false;
-        testNA = false;
-        testDummy = false;
         Properties props = new Properties();
         props.setProperty("ID", classData.getTestScriptId());
         props.setProperty("Name", classData.getTestScriptName());
         props.setProperty("TestCase", methodName);
         props.setProperty("ScriptNameRow", getDataDrivenFullClassName());
-        testMethodHtmlLog.insertBlock("Header", props);
+        state.testMethodHtmlLog.insertBlock("Header", props);
+        recordEvent(createEvent("method-start").put("method", methodName));
         initDataDrivenLog();
     }
 
@@ -127,13 +121,16 @@ public final class HtmlRunReporter extends RunListener {
      */
     @Override
     public void testFailure(final Failure failure) throws Exception {
-        if (!testNA) {
+        recordEvent(createEvent("failure").put("method", failure.getDescription().getMethodName())
+                .put("type", failure.getException().getClass().getName()).put("message", failure.getMessage()));
+        TestMethodState state = getTestMethodState();
+        if (!state.testNA) {
             if (failure.getException() instanceof NATestCaseException) {
-                testNA = true;
-                testNAMessage = failure.getMessage();
+                state.testNA = true;
+                state.testNAMessage = failure.getMessage();
             } else {
-                testFailed = true;
-                testFailure.add(failure);
+                state.testFailed = true;
+                state.testFailure.add(failure);
             }
         }
     }
@@ -159,35 +156,36 @@ public final class HtmlRunReporter extends RunListener {
     public void testFinished(final Description description) throws Exception {
         //After running the test case
         Util u = new Util();
-        boolean isDummy = testDummy;
+        TestMethodState state = getTestMethodState();
+        boolean isDummy = state.testDummy;
         if (isDummy) {
             classData.increaseCountDummy();
         }
-        boolean isNA = testNA;
-        String dataDrivenName = getDataDrivenSimpleClassName() + "/" + description.getMethodName() + classData.getDrivenDataRowNo();
+        boolean isNA = state.testNA;
+        String dataDrivenName = getAttemptName(classData.getRetries() + 1) + "/" + description.getMethodName() + classData.getDrivenDataRowNo();
         Properties props;
         if (isNA) { //testNA test case
             PropertiesData data = createPropertiesData(isDummy, true);
             props = createProperties(classData, description.getMethodName(), u, data, dataDrivenName);
-            logEvent("<font color=\"#0000AA\"><b>N/A</b></font><br>\nMessage: " + testNAMessage);
-            systemOutPrintLn("Test is N/A: " + testNAMessage);
+            logEvent("<font color=\"#0000AA\"><b>N/A</b></font><br>\nMessage: " + state.testNAMessage);
+            systemOutPrintLn("Test is N/A: " + state.testNAMessage);
             classData.increaseCountNA();
-        } else if (testFailed) {  // failed test case
+        } else if (state.testFailed) {  // failed test case
             //The test failed (note that tr contains only ONE failure or error).
             classData.increaseCountFailed();
             String errorMsg = "---No error message---";
             PropertiesData data = createFailurePropertiesData(isDummy, false, errorMsg);
             props = createProperties(classData, description.getMethodName(), u, data, dataDrivenName);
-            String stackTrace = testFailure.get(0).getTrace();
-            String failureMessage = testFailure.get(0).getMessage();
+            String stackTrace = state.testFailure.get(0).getTrace();
+            String failureMessage = state.testFailure.get(0).getMessage();
             systemOutPrintLn("Test failed: " + failureMessage);
             logResult("<font color=\"#AA0000\"><b>Test failed.</b></font><br>\nMessage: " + u.escapeHTML(failureMessage), "<code><small><br><pre>" + u.escapeHTML(stackTrace)
                     + "</pre></small></code>");
-            if (testFailure.size() > 1) {
+            if (state.testFailure.size() > 1) {
                 //multiple failures we have
-                for (int i = 1; i < testFailure.size(); i++) {
-                    stackTrace = testFailure.get(i).getTrace();
-                    failureMessage = testFailure.get(i).getMessage();
+                for (int i = 1; i < state.testFailure.size(); i++) {
+                    stackTrace = state.testFailure.get(i).getTrace();
+                    failureMessage = state.testFailure.get(i).getMessage();
                     systemOutPrintLn("Additional failure: " + failureMessage);
                     logResult("<font color=\"#AA0000\"><b>Additional Failure.</b></font><br>\nMessage: " + u.escapeHTML(failureMessage),
                             "<code><small><br><pre>" + u.escapeHTML(stackTrace) + "</pre></small></code>");
@@ -200,10 +198,22 @@ public final class HtmlRunReporter extends RunListener {
             logEvent("<font color=\"#00AA00\"><b>Test passed.</b></font>");
             systemOutPrintLn("Test passed.");
         }
-        testClassHtmlLog.insertBlock("TestRow", props);
-        testMethodHtmlLog.insertBlock("Footer", null);
-        testMethodHtmlLog.close();
-        testMethodHtmlLog = null;
+        finishTestMethod(state, description.getMethodName(), props);
+    }
+
+    /**
+     * Adds the row of the finished test method to the class page, and closes the page of the method.
+     * Test methods of the class may be executed in parallel, so the class page is shared, but the method state belongs to the actual thread.
+     */
+    private void finishTestMethod(final TestMethodState state, final String methodName, final Properties props) {
+        synchronized (testClassHtmlLogLock) {
+            testClassHtmlLog.insertBlock("TestRow", props);
+        }
+        state.testMethodHtmlLog.insertBlock("Footer", null);
+        recordEvent(createEvent("method-end").put("method", methodName).put("result", state.testNA ? "na" : state.testFailed ? "failed" : "passed"));
+        state.testMethodHtmlLog.close();
+        state.testMethodHtmlLog = null;
+        testMethodState.remove();
     }
 
     /**
@@ -226,7 +236,9 @@ public final class HtmlRunReporter extends RunListener {
                     afterClassLogComment("Failure occurred: " + message + "<br/><br/><pre>" + u.escapeHTML(failure.getTrace()) + "</pre>");
                 }
             } else {
-                testClassHtmlLog.insertBlock("NoTestCases", null);
+                synchronized (testClassHtmlLogLock) {
+                    testClassHtmlLog.insertBlock("NoTestCases", null);
+                }
             }
         }
     }
@@ -237,28 +249,60 @@ public final class HtmlRunReporter extends RunListener {
      * @param problem is the exception.
      */
     public void setTestFailed(final Throwable problem) {
-        testFailed = true;
-        testFailure.add(new Failure(Description.EMPTY, problem));
+        TestMethodState state = getTestMethodState();
+        state.testFailed = true;
+        state.testFailure.add(new Failure(Description.EMPTY, problem));
     }
 
     /**
      * Need to call it well before any test class execution is requested.
      */
     public void hiddenBeforeTestClassExecution() {
-        testClassHtmlLog = new LogFileWriter(environment.getProperty(Environment.GEPARD_RESULT_TEMPLATE_PATH) + "/" + "temp_generictestsuite.html",
-                environment.getProperty(Environment.GEPARD_HTML_RESULT_PATH) + "/" + classDir + "/" + getDataDrivenSimpleClassName() + ".html", environment);
-        props.setProperty("ID", classData.getTestScriptId());
-        props.setProperty("Name", classData.getTestScriptName());
-        testClassHtmlLog.insertBlock("Header", props);
-        testClassHtmlLog.insertBlock("TableHead", props);
+        int attempt = classData.getRetries() + 1;
+        classData.setTestURL(getTestURL()); //every attempt has its own page
+        synchronized (testClassHtmlLogLock) {
+            testClassHtmlLog = new LogFileWriter(environment.getProperty(Environment.GEPARD_RESULT_TEMPLATE_PATH) + "/" + "temp_generictestsuite.html",
+                    environment.getProperty(Environment.GEPARD_HTML_RESULT_PATH) + "/" + classDir + "/" + getAttemptName(attempt) + ".html", environment);
+            props.setProperty("ID", classData.getTestScriptId());
+            props.setProperty("Name", classData.getTestScriptName());
+            testClassHtmlLog.insertBlock("Header", props);
+            testClassHtmlLog.insertBlock("TableHead", props);
+        }
+        if (attempt > 1) {
+            //the pages of the previous attempts are kept, and linked from the page of the last attempt
+            StringBuilder links = new StringBuilder("Re-executed test class, this is attempt " + attempt + ", the previous attempts are:");
+            for (int i = 1; i < attempt; i++) {
+                links.append(" <a href=\"").append(getAttemptName(i)).append(".html\">attempt ").append(i).append("</a>");
+            }
+            beforeClassLogComment(links.toString());
+        }
+        recordEvent(createEvent("class-start").put("class", classData.getClassName()).put("attempt", attempt));
     }
 
     /**
      * Need to call it after test class execution finished.
+     * It closes the test class page, and waits till the pages of the test class are completely written.
      */
     public void hiddenAfterTestClassExecution() {
-        testClassHtmlLog.insertBlock("TableEnd", props);
-        testClassHtmlLog.insertBlock("Footer", null);
+        recordEvent(createEvent("class-end").put("passed", classData.getCountPassed()).put("failed", classData.getCountFailed())
+                .put("na", classData.getCountNA()).put("dummy", classData.getCountDummy()));
+        synchronized (testClassHtmlLogLock) {
+            testClassHtmlLog.insertBlock("TableEnd", props);
+            testClassHtmlLog.insertBlock("Footer", null);
+            testClassHtmlLog.close();
+            testClassHtmlLog.drain();
+        }
+    }
+
+    private JournalEvent createEvent(final String type) {
+        return new JournalEvent(type).put("id", classData.getID());
+    }
+
+    private void recordEvent(final JournalEvent event) {
+        ResultJournal journal = ResultJournal.getInstance();
+        if (journal != null) {
+            journal.record(event);
+        }
     }
 
     /**
@@ -266,8 +310,10 @@ public final class HtmlRunReporter extends RunListener {
      * @param comment that should be logged.
      */
     public void beforeClassLogComment(final String comment) {
-        props.setProperty("BeforeAfterClassMessage", comment);
-        testClassHtmlLog.insertBlock("BeforeAfterClassMessage", props);
+        synchronized (testClassHtmlLogLock) {
+            props.setProperty("BeforeAfterClassMessage", comment);
+            testClassHtmlLog.insertBlock("BeforeAfterClassMessage", props);
+        }
     }
 
     /**
@@ -353,7 +399,7 @@ public final class HtmlRunReporter extends RunListener {
             if (i < st.length - 1) {
                 name = name + "/";
             } else {
-                name = name + classData.getDrivenDataRowNo() + "/";
+                name = name + classData.getDrivenDataRowNo() + getAttemptSuffix(classData.getRetries() + 1) + "/";
             }
             i++;
         }
@@ -416,12 +462,13 @@ public final class HtmlRunReporter extends RunListener {
      * @param reason is the reason why it is N/A.
      */
     public void naTestCase(String reason) {
-        testNA = true;
+        TestMethodState state = getTestMethodState();
+        state.testNA = true;
         String comment = "This test case is N/A";
         if (reason != null) {
             comment = reason;
         }
-        testNAMessage = comment;
+        state.testNAMessage = comment;
         throw new NATestCaseException(comment);
     }
 
@@ -429,12 +476,43 @@ public final class HtmlRunReporter extends RunListener {
      * Makes a test method as Dummy.
      */
     public void dummyTestCase() {
-        testDummy = true;
+        getTestMethodState().testDummy = true;
         logComment("This is a dummy test case");
     }
 
     public LogFileWriter getTestMethodHtmlLog() {
-        return testMethodHtmlLog;
+        return getTestMethodState().testMethodHtmlLog;
+    }
+
+    /**
+     * Gets the state of the test method that is executed by the actual thread.
+     * If the actual thread does not execute a test method (like a thread started by the test itself), the last started test method is used.
+     * @return with the state of the test method.
+     */
+    private TestMethodState getTestMethodState() {
+        TestMethodState state = testMethodState.get();
+        if (state == null) {
+            state = lastStartedTestMethod;
+        }
+        return state;
+    }
+
+    /**
+     * Holds the state of an executed test method.
+     */
+    private static final class TestMethodState {
+        private volatile LogFileWriter testMethodHtmlLog;
+        private int step = 1; //test step, restarts from 1 in every executed test method
+        private int divStep = 1;
+        private volatile boolean testFailed;
+        private volatile boolean testNA;
+        private volatile boolean testDummy;
+        private volatile String testNAMessage = "";
+        private final List<Failure> testFailure = new CopyOnWriteArrayList<>();
+
+        private TestMethodState(final LogFileWriter testMethodHtmlLog) {
+            this.testMethodHtmlLog = testMethodHtmlLog;
+        }
     }
 
     private class PropertiesData {
@@ -490,6 +568,21 @@ public final class HtmlRunReporter extends RunListener {
         return classData.getTestClass().getSimpleName() + classData.getDrivenDataRowNo();
     }
 
+    /**
+     * Gets the name of the pages of an attempt. Every attempt of a re-executed (retried) test class has its own pages,
+     * the first attempt uses the usual name.
+     *
+     * @param attempt is the attempt, starting from 1
+     * @return the Data driven class name, with the suffix of the attempt.
+     */
+    private String getAttemptName(final int attempt) {
+        return getDataDrivenSimpleClassName() + getAttemptSuffix(attempt);
+    }
+
+    private static String getAttemptSuffix(final int attempt) {
+        return attempt > 1 ? "_attempt" + attempt : "";
+    }
+
     /**
      * Sets classDir attribute to the proper path of the given class.
      *
@@ -524,7 +617,7 @@ public final class HtmlRunReporter extends RunListener {
      * @return path
      */
     public String getTestURL() {
-        String dataDrivenName = getDataDrivenSimpleClassName();
+        String dataDrivenName = getAttemptName(classData.getRetries() + 1);
         return classDir + ("".equals(classDir) ? "" : "/") + dataDrivenName + ".html";
     }
 
@@ -553,12 +646,14 @@ public final class HtmlRunReporter extends RunListener {
      */
     public void logStep(final String comment) {
         String consoleComment = comment.replace('\uFF5F', '(').replace('\uFF60', ')'); //Unicode to Console (partial transfer)
-        systemOutPrintLn(step + ". " + consoleComment);
+        TestMethodState state = getTestMethodState();
+        systemOutPrintLn(state.step + ". " + consoleComment);
+        LogFileWriter testMethodHtmlLog = state.testMethodHtmlLog;
         if (testMethodHtmlLog != null) {
-            testMethodHtmlLog.insertText("<tr><td align=\"center\">&nbsp;&nbsp;" + step + ".&nbsp;&nbsp;</td><td bgcolor=\"#E0E0F0\">" + comment
+            testMethodHtmlLog.insertText("<tr><td align=\"center\">&nbsp;&nbsp;" + state.step + ".&nbsp;&nbsp;</td><td bgcolor=\"#E0E0F0\">" + comment
                     + "</td></tr>\n");
         }
-        step++;
+        state.step++;
     }
 
     /**
@@ -568,6 +663,7 @@ public final class HtmlRunReporter extends RunListener {
      */
     public void logWarning(final String warning) {
         systemOutPrintLn("WARNING:" + warning);
+        LogFileWriter testMethodHtmlLog = getTestMethodHtmlLog();
         if (testMethodHtmlLog != null) {
             testMethodHtmlLog.insertText("<tr><td>&nbsp;</td><td bgcolor=\"#F0D0D0\">" + warning + "</td></tr>");
         }
@@ -584,6 +680,7 @@ public final class HtmlRunReporter extends RunListener {
         systemOutPrintLn(comment);
 
         String addStr = " <small>[<a href=\"javascript:showhide('div_" + getDivStep() + "');\">details</a>]</small>";
+        LogFileWriter testMethodHtmlLog = getTestMethodHtmlLog();
         if (testMethodHtmlLog != null) {
             testMethodHtmlLog.insertText("<tr><td>&nbsp;</td><td bgcolor=\"#F0F0E0\">" + comment + addStr + "<div id=\"div_" + getDivStep()
                     + "\" style=\"display:none\"><br>\n" + description + "</div></td></tr>\n");
@@ -602,6 +699,7 @@ public final class HtmlRunReporter extends RunListener {
         systemOutPrintLn(comment);
 
         String addStr = " <small>[<a href=\"javascript:showhide('div_" + getDivStep() + "');\">details</a>]</small>";
+        LogFileWriter testMethodHtmlLog = getTestMethodHtmlLog();
         if (testMethodHtmlLog != null) {
             testMethodHtmlLog.insertText("<tr><td>&nbsp;</td><td bgcolor=\"#F0F0E0\">" + htmlComment + addStr + "<div id=\"div_" + getDivStep()
                     + "\" style=\"display:none\"><br>\n" + description + "</div></td></tr>\n");
@@ -616,6 +714,7 @@ public final class HtmlRunReporter extends RunListener {
      */
     public void logComment(final String comment) {
         systemOutPrintLn(comment);
+        LogFileWriter testMethodHtmlLog = getTestMethodHtmlLog();
         if (testMethodHtmlLog != null) {
             testMethodHtmlLog.insertText("<tr><td>&nbsp;</td><td bgcolor=\"#F0F0E0\">" + comment + "</td></tr>");
         }
@@ -630,6 +729,7 @@ public final class HtmlRunReporter extends RunListener {
         if (!text.startsWith("<font")) {
             systemOutPrintLn(text);
         }
+        LogFileWriter testMethodHtmlLog = getTestMethodHtmlLog();
         if (testMethodHtmlLog != null) {
             testMethodHtmlLog.insertText("<tr><td>&nbsp;</td><td bgcolor=\"#F0F0F0\">" + text + "</td></tr>\n");
         }
@@ -642,6 +742,7 @@ public final class HtmlRunReporter extends RunListener {
      * @param description Event description/info
      */
     public void logResult(final String text, final String description) {
+        LogFileWriter testMethodHtmlLog = getTestMethodHtmlLog();
         if (testMethodHtmlLog != null) {
             String addStr = " <small>[<a href=\"javascript:showhide('div_" + getDivStep() + "');\">details</a>]</small>";
             testMethodHtmlLog.insertText("<tr><td>&nbsp;</td><td bgcolor=\"#F0F0F0\">" + text + addStr + "<div id=\"div_" + getDivStep()
@@ -668,14 +769,14 @@ public final class HtmlRunReporter extends RunListener {
      * @return with the actual div step.
      */
     public int getDivStep() {
-        return divStep;
+        return getTestMethodState().divStep;
     }
 
     /**
      * Increase the div step counter.
      */
     public void increaseDivStep() {
-        divStep++;
+        getTestMethodState().divStep++;
     }
 
     /**
@@ -683,13 +784,13 @@ public final class HtmlRunReporter extends RunListener {
      * @return with the actual div step.
      */
     public int getStep() {
-        return step;
+        return getTestMethodState().step;
     }
 
     /**
      * Increase the test case step counter.
      */
     public void increaseStep() {
-        step++;
+        getTestMethodState().step++;
     }
 }
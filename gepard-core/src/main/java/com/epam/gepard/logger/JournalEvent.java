@@ -0,0 +1,334 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An event of the {@link ResultJournal}, one line of JSON: a flat object of string and number values,
+ * and of objects those have string values only (like the variables of a template block).
+ * E.g.: {"event":"block","time":1431000000000,"log":3,"block":"Header","values":{"Name":"Login"}}
+ */
+final class JournalEvent {
+
+    private static final int UNICODE_HEX_DIGITS = 4;
+    private static final int HEX_RADIX = 16;
+
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    /**
+     * Creates a new event that happens now.
+     *
+     * @param type is the type of the event.
+     */
+    JournalEvent(final String type) {
+        fields.put("event", type);
+        fields.put("time", System.currentTimeMillis());
+    }
+
+    private JournalEvent() {
+    }
+
+    /**
+     * Adds a text field, null values are left out.
+     *
+     * @param key is the name of the field.
+     * @param value is the value.
+     * @return with this event.
+     */
+    JournalEvent put(final String key, final String value) {
+        if (value != null) {
+            fields.put(key, value);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a number field.
+     *
+     * @param key is the name of the field.
+     * @param value is the value.
+     * @return with this event.
+     */
+    JournalEvent put(final String key, final long value) {
+        fields.put(key, value);
+        return this;
+    }
+
+    /**
+     * Adds an object field.
+     *
+     * @param key is the name of the field.
+     * @param values are the properties of the object.
+     * @return with this event.
+     */
+    JournalEvent put(final String key, final Map<String, String> values) {
+        fields.put(key, values);
+        return this;
+    }
+
+    String getType() {
+        return get("event");
+    }
+
+    /**
+     * Gets a text or number field.
+     *
+     * @param key is the name of the field.
+     * @return with the value as text, or null if there is no such field.
+     */
+    String get(final String key) {
+        Object value = fields.get(key);
+        return value == null || value instanceof Map ? null : value.toString();
+    }
+
+    /**
+     * Gets an object field.
+     *
+     * @param key is the name of the field.
+     * @return with the properties of the object, or null if there is no such field.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, String> getMap(final String key) {
+        Object value = fields.get(key);
+        return value instanceof Map ? (Map<String, String>) value : null;
+    }
+
+    /**
+     * Gets the event as a line of JSON.
+     *
+     * @return with the JSON text, without line separator.
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder();
+        appendObject(json, fields);
+        return json.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void appendObject(final StringBuilder json, final Map<String, ?> object) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, ?> field : object.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, field.getKey());
+            json.append(':');
+            Object value = field.getValue();
+            if (value instanceof Map) {
+                appendObject(json, (Map<String, ?>) value);
+            } else if (value instanceof Number) {
+                json.append(value);
+            } else {
+                appendString(json, String.valueOf(value));
+            }
+        }
+        json.append('}');
+    }
+
+    private static void appendString(final StringBuilder json, final String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    String hex = Integer.toHexString(c);
+                    json.append("\\u");
+                    for (int j = hex.length(); j < UNICODE_HEX_DIGITS; j++) {
+                        json.append('0');
+                    }
+                    json.append(hex);
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Parses a line of the journal.
+     *
+     * @param line is the line, as written by {@link #toJson()}.
+     * @return with the event.
+     * @throws IllegalArgumentException if the line is not a journal event, e.g. it was cut by a crash.
+     */
+    static JournalEvent parse(final String line) {
+        JournalEvent event = new JournalEvent();
+        Parser parser = new Parser(line);
+        parser.parseObject(event.fields, true);
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected text after the event: " + line);
+        }
+        return event;
+    }
+
+    /**
+     * Parser of the JSON subset written by the journal.
+     */
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        private Parser(final String text) {
+            this.text = text;
+        }
+
+        private void parseObject(final Map<String, Object> object, final boolean nestedAllowed) {
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                boolean more = true;
+                while (more) {
+                    skipWhitespace();
+                    String key = parseString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    object.put(key, parseValue(nestedAllowed));
+                    skipWhitespace();
+                    more = peek() == ',';
+                    pos++;
+                }
+                if (text.charAt(pos - 1) != '}') {
+                    throw new IllegalArgumentException("Missing } at " + pos + " in: " + text);
+                }
+            }
+        }
+
+        private Object parseValue(final boolean nestedAllowed) {
+            Object result;
+            char c = peek();
+            if (c == '"') {
+                result = parseString();
+            } else if (c == '{' && nestedAllowed) {
+                Map<String, Object> nested = new LinkedHashMap<>();
+                parseObject(nested, false);
+                result = nested;
+            } else {
+                int start = pos;
+                while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '-')) {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw new IllegalArgumentException("Unexpected value at " + pos + " in: " + text);
+                }
+                result = Long.valueOf(text.substring(start, pos));
+            }
+            return result;
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            char c = next();
+            while (c != '"') {
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'u':
+                        result.append(parseUnicode());
+                        break;
+                    default:
+                        result.append(c);
+                    }
+                } else {
+                    result.append(c);
+                }
+                c = next();
+            }
+            return result.toString();
+        }
+
+        private char parseUnicode() {
+            if (pos + UNICODE_HEX_DIGITS > text.length()) {
+                throw new IllegalArgumentException("Unexpected end of: " + text);
+            }
+            char result;
+            try {
+                result = (char) Integer.parseInt(text.substring(pos, pos + UNICODE_HEX_DIGITS), HEX_RADIX);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad unicode escape at " + pos + " in: " + text, e);
+            }
+            pos += UNICODE_HEX_DIGITS;
+            return result;
+        }
+
+        private void expect(final char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("Missing " + expected + " at " + (pos - 1) + " in: " + text);
+            }
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private char peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of: " + text);
+            }
+            return text.charAt(pos);
+        }
+
+        private boolean atEnd() {
+            return pos >= text.length();
+        }
+
+        private void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
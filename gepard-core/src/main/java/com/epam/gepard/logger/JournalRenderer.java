@@ -0,0 +1,131 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.epam.gepard.AllTestRunner;
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.util.ExitCode;
+
+/**
+ * Renders the report files (HTML, CSV and plain) from a {@link ResultJournal}, exactly as they would have been written during the run.
+ * It is used at the end of the run, but it can be started separately, too, to regenerate the reports of a run:
+ * <p><code>java -cp &lt;classpath&gt; com.epam.gepard.logger.JournalRenderer &lt;journal file&gt;</code></p>
+ * The report files are written to the paths recorded in the journal, with the recorded templates.
+ */
+public class JournalRenderer {
+
+    //the values of the template variables are taken from the journal only, and the report files are written directly
+    private final Environment environment = new Environment();
+
+    /**
+     * Renders the report files of a journal. Unreadable lines (e.g. the last line of a crashed run) are skipped.
+     *
+     * @param journalFile is the journal.
+     * @return with the number of the rendered report files.
+     * @throws IOException if the journal cannot be read.
+     */
+    public int render(final File journalFile) throws IOException {
+        Map<String, LogFileWriter> logs = new HashMap<>();
+        int renderedLogs = 0;
+        try (BufferedReader journal = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line = journal.readLine();
+            while (line != null) {
+                JournalEvent event = parseEvent(line);
+                if (event != null && "log-open".equals(event.getType())) {
+                    logs.put(event.get("log"), openLog(event));
+                    renderedLogs++;
+                } else if (event != null && logs.containsKey(event.get("log"))) {
+                    renderLogEvent(event, logs);
+                }
+                line = journal.readLine();
+            }
+        }
+        for (LogFileWriter log : logs.values()) {
+            log.close();
+        }
+        return renderedLogs;
+    }
+
+    private JournalEvent parseEvent(final String line) {
+        JournalEvent result = null;
+        if (!line.isEmpty()) {
+            try {
+                result = JournalEvent.parse(line);
+            } catch (IllegalArgumentException e) {
+                AllTestRunner.CONSOLE_LOG.info("INFO: Skipped unreadable line of the result journal: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private LogFileWriter openLog(final JournalEvent event) {
+        File logFile = new File(event.get("path"));
+        if (logFile.getParentFile() != null) {
+            //noinspection ResultOfMethodCallIgnored
+            logFile.getParentFile().mkdirs();
+        }
+        return new LogFileWriter(event.get("template"), event.get("path"), environment);
+    }
+
+    private void renderLogEvent(final JournalEvent event, final Map<String, LogFileWriter> logs) {
+        LogFileWriter log = logs.get(event.get("log"));
+        String type = event.getType();
+        if ("block".equals(type)) {
+            Properties values = new Properties();
+            values.putAll(event.getMap("values"));
+            log.insertBlock(event.get("block"), values);
+        } else if ("text".equals(type)) {
+            log.insertText(event.get("text"));
+        } else if ("log-restart".equals(type)) {
+            log.restart();
+        } else if ("log-close".equals(type)) {
+            log.close();
+            logs.remove(event.get("log"));
+        }
+    }
+
+    /**
+     * Renders the report files of a journal.
+     *
+     * @param args the path of the journal file.
+     */
+    public static void main(final String[] args) {
+        if (args.length != 1) {
+            AllTestRunner.CONSOLE_LOG.info("Usage: java -cp <classpath> " + JournalRenderer.class.getName() + " <journal file>");
+            AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_WRONG_NUMBER_OF_PARAMETERS_OR_HELP_REQUEST);
+        }
+        try {
+            int renderedLogs = new JournalRenderer().render(new File(args[0]));
+            AllTestRunner.CONSOLE_LOG.info(renderedLogs + " report file(s) are rendered from the result journal: " + args[0]);
+        } catch (IOException e) {
+            AllTestRunner.exitFromGepardWithCriticalException("\nCould not read the result journal " + args[0], e, true, ExitCode.EXIT_CODE_UNKNOWN_ERROR);
+        }
+    }
+}
@@ -30,14 +30,11 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 
-import org.apache.regexp.RE;
-
 import com.epam.gepard.AllTestRunner;
 import com.epam.gepard.common.Environment;
 import com.epam.gepard.util.ExitCode;
@@ -55,7 +52,7 @@ import com.epam.gepard.util.ExitCode;
  * </p>
  * <p>When this class is instantiated, the template file is read from the path given in the
  * constructor. The template file is split according to the beginning and the end of the
- * block-comments.
+ * block-comments, and the blocks are cut at the %variable% marks, once per template path (see {@link CompiledTemplate}).
  * The log file can be built from the blocks:
  * </p>
  * <p>E.g.:<br><code>
@@ -67,41 +64,36 @@ import com.epam.gepard.util.ExitCode;
  * logger.close();
  * </code>
  * </p>
+ * <p>In async mode (gepard.result.async) the text is written and flushed by the {@link AsyncLogWriter} thread,
+ * {@link #drain()} waits till it is on the disk. In this mode the log must not be written directly via {@link #getLog()}.
+ * While the {@link ResultJournal} is active, the log file is not written (and {@link #getLog()} is null),
+ * the blocks and texts are recorded into the journal, and the log file is rendered from the journal after the run.
+ * </p>
  *
  * @author dora.gal, Tamas Godan
  */
 public class LogFileWriter {
 
-    /**
-     * Block separator, refers to the beginning of a block in the template file.
-     */
-    private static final String HTML_BLOCK_START = "<!--Start of (\\w*)-->";
-    /**
-     * Block separator, refers to the end of a block in the template file.
-     */
-    private static final String HTML_BLOCK_END = "<!--End of (\\w*)--?>";
-
     private final String logTemplatePath;
     private final String logPath;
 
-    /**
-     * For reading from the template file.
-     */
-    private BufferedReader template;
     /**
      * For writing into the output file.
      */
     private PrintWriter log;
     /**
-     * It holds the blocks of the template HTML.
+     * It holds the blocks of the template HTML, shared by the log files of the same template.
      */
-    private final Map<String, String> blocks = new HashMap<>();
+    private CompiledTemplate compiledTemplate;
 
-    private final Environment environment;
+    private final boolean async;
+    private final ResultJournal journal; //null, if the log file is written directly
+    private int journalLogId;
 
     /**
      * Constructor for Logger.
-     * It splits the containment of the template file into blocks according to the block-separators.
+     * It splits the containment of the template file into blocks according to the block-separators,
+     * the template file is read and split only for the first log file that uses it.
      * A new Logger recreates the log file.
      *
      * @param logTemplatePath The path where the template is located.
@@ -112,54 +104,29 @@ public class LogFileWriter {
         // storing path data
         this.logTemplatePath = formatPathName(logTemplatePath);
         this.logPath = formatPathName(logPath);
-        this.environment = environment;
-
-        openTemplateFileForReading(logTemplatePath);
-        openLogFileForWriting(logPath);
-        cutTemplateIntoBlocks();
-    }
-
-    private void cutTemplateIntoBlocks() {
-        RE begin = null;
-        RE end = null;
-        try {
-            begin = new RE(HTML_BLOCK_START);
-            end = new RE(HTML_BLOCK_END);
-        } catch (Exception e) {
-            AllTestRunner.exitFromGepardWithCriticalException("\nCould not create regular expressions for extraction of template blocks", e, true,
-                    ExitCode.EXIT_CODE_TEMPLATE_CANNOT_CREATE_REGULAR_EXPRESSION);
-        }
-        try {
-            separatesBlocks(begin, end);
-        } catch (IOException e) {
-            AllTestRunner.exitFromGepardWithCriticalException("\nAn exception occurred during template processing:", e, true,
-                    ExitCode.EXIT_CODE_TEMPLATE_OTHER_EXCEPTION);
-        }
-    }
-
-    private void separatesBlocks(final RE begin, final RE end) throws IOException {
-        String templateLine = template.readLine();
-        StringBuilder blockContent = new StringBuilder();
-        while (templateLine != null) {
-            templateLine = insertBlock(begin, end, templateLine, blockContent);
-            templateLine = template.readLine();
+        async = environment.getBooleanProperty(Environment.GEPARD_RESULT_ASYNC);
+        journal = ResultJournal.getInstance();
+
+        compileTemplate(logTemplatePath);
+        if (journal == null) {
+            openLogFileForWriting(logPath);
+        } else {
+            journalLogId = journal.logOpened(logTemplatePath, logPath);
         }
     }
 
-    private String insertBlock(final RE begin, final RE end, final String templateLineSource, final StringBuilder blockContent) throws IOException {
-        String templateLine = templateLineSource;
-        String blockName;
-        if (begin.match(templateLine)) { //new block found
-            blockContent.setLength(0); //re-setting the buffer
-            blockName = begin.getParen(1); //getting the name of the block from the RE
-            templateLine = template.readLine();
-            while (!end.match(templateLine)) { //collecting blockContent
-                blockContent.append(templateLine).append(System.getProperty("line.separator"));
-                templateLine = template.readLine();
+    private void compileTemplate(final String logTemplatePath) {
+        compiledTemplate = CompiledTemplate.getCached(logTemplatePath);
+        if (compiledTemplate == null) {
+            BufferedReader template = openTemplateFileForReading(logTemplatePath);
+            try {
+                compiledTemplate = CompiledTemplate.compile(logTemplatePath, template);
+                template.close();
+            } catch (IOException e) {
+                AllTestRunner.exitFromGepardWithCriticalException("\nAn exception occurred during template processing:", e, true,
+                        ExitCode.EXIT_CODE_TEMPLATE_OTHER_EXCEPTION);
             }
-            blocks.put(blockName, blockContent.toString());
         }
-        return templateLine;
     }
 
     private void openLogFileForWriting(final String logPath) {
@@ -175,7 +142,8 @@ public class LogFileWriter {
         }
     }
 
-    private void openTemplateFileForReading(final String logTemplatePath) {
+    private BufferedReader openTemplateFileForReading(final String logTemplatePath) {
+        BufferedReader template = null;
         try {
             BufferedReader br;
             //first try to access to templates on file system
@@ -191,6 +159,7 @@ public class LogFileWriter {
             AllTestRunner.CONSOLE_LOG.info("\nCould not open template file " + logTemplatePath);
             AllTestRunner.exitFromGepard(ExitCode.EXIT_CODE_TEMPLATE_FILE_NOT_AVAILABLE);
         }
+        return template;
     }
 
     /**
@@ -211,22 +180,6 @@ public class LogFileWriter {
         return inPathName;
     }
 
-    /**
-     * Gets the reference to the template file.
-     * @return BufferReader Refers to the HTML template.
-     */
-    public BufferedReader getTemplate() {
-        return template;
-    }
-
-    /**
-     * Sets the template.
-     * @param template The template to set
-     */
-    public void setTemplate(final BufferedReader template) {
-        this.template = template;
-    }
-
     /**
      * Gets the reference of the output log file.
      *
@@ -269,46 +222,32 @@ public class LogFileWriter {
      *                  in the block.
      */
     public void insertBlock(final String blockName, final Properties props) {
-        String blockContent = blocks.get(blockName);
-        Properties finalProps = copyPropertiesToFinalProperties(props);
-        try {
-            blockContent = substituteBlocks(blockContent, finalProps);
-        } catch (Exception e) {
-            AllTestRunner.exitFromGepardWithCriticalException("Exception occurred during substitution of block " + blockName + " in template "
-                    + logTemplatePath, e, true, ExitCode.EXIT_CODE_TEMPLATE_BLOCK_SUBSTITUTION_ERROR);
+        if (journal != null) {
+            Map<String, String> values = compiledTemplate.resolve(blockName, props);
+            if (values == null) {
+                exitOnMissingBlock(blockName);
+            }
+            journal.blockInserted(journalLogId, blockName, values);
+        } else {
+            writeBlock(blockName, props);
         }
-        getLog().print(blockContent);
-        getLog().flush();
     }
 
-    private String substituteBlocks(final String blockContent, final Properties finalProps) {
-        String result = blockContent;
-        String key;
-        String value;
-        Iterator<Object> itr = finalProps.keySet().iterator();
-        RE re;
-        while (itr.hasNext()) {
-            key = itr.next().toString();
-            value = finalProps.getProperty(key);
-            re = new RE("%" + key + "%");
-            result = re.subst(result, value);
+    private void writeBlock(final String blockName, final Properties props) {
+        StringWriter asyncText = async ? new StringWriter() : null;
+        PrintWriter out = async ? new PrintWriter(asyncText) : getLog();
+        if (!compiledTemplate.render(blockName, props, out)) {
+            exitOnMissingBlock(blockName);
+        }
+        out.flush();
+        if (async) {
+            AsyncLogWriter.getInstance().write(getLog(), asyncText.toString());
         }
-        return result;
     }
 
-    private Properties copyPropertiesToFinalProperties(final Properties props) {
-        Properties result = new Properties(environment.getProperties());
-        if (props != null) {
-            String key;
-            String value;
-            Iterator<Object> itr = props.keySet().iterator();
-            while (itr.hasNext()) {
-                key = itr.next().toString();
-                value = props.getProperty(key);
-                result.setProperty(key, value);
-            }
-        }
-        return result;
+    private void exitOnMissingBlock(final String blockName) {
+        AllTestRunner.exitFromGepardWithCriticalException("Exception occurred during substitution of block " + blockName + " in template "
+                + logTemplatePath, new IllegalArgumentException("No such block: " + blockName), true, ExitCode.EXIT_CODE_TEMPLATE_BLOCK_SUBSTITUTION_ERROR);
     }
 
     /**
@@ -317,17 +256,51 @@ public class LogFileWriter {
      * @param text The text to insert.
      */
     public void insertText(final String text) {
-        getLog().print(text + System.getProperty("line.separator"));
-        getLog().flush();
+        if (journal != null) {
+            journal.textInserted(journalLogId, text);
+        } else if (async) {
+            AsyncLogWriter.getInstance().write(getLog(), text + System.getProperty("line.separator"));
+        } else {
+            getLog().print(text + System.getProperty("line.separator"));
+            getLog().flush();
+        }
+    }
+
+    /**
+     * Waits till everything inserted so far is written into the output file (or into the result journal).
+     * It is necessary only in async or journal mode, where it waits for the texts of all the other logs, too, and for the closing of the closed ones.
+     */
+    public void drain() {
+        if (async || journal != null) {
+            AsyncLogWriter.getInstance().drain();
+        }
     }
 
     /**
-     * Closes the HTML template file and the HTMl log file.
+     * Starts the output file again, everything written into it so far is dropped.
+     */
+    public void restart() {
+        if (journal != null) {
+            journal.logRestarted(journalLogId);
+        } else {
+            close();
+            drain();
+            openLogFileForWriting(logPath);
+        }
+    }
+
+    /**
+     * Closes the HTMl log file. In async mode it is closed after the texts inserted so far are written, see {@link #drain()}.
      */
     public void close() {
         try {
-            template.close();
-            log.close();
+            if (journal != null) {
+                journal.logClosed(journalLogId);
+            } else if (async) {
+                AsyncLogWriter.getInstance().close(log);
+            } else {
+                log.close();
+            }
         } catch (Exception e) {
             AllTestRunner.exitFromGepardWithCriticalException("\nCould not close template or log file", e, true,
                     ExitCode.EXIT_CODE_TEMPLATE_CANNOT_CLOSE_TEMPLATE);
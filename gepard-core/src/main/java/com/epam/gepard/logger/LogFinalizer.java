@@ -48,6 +48,7 @@ public class LogFinalizer {
         csvLog.close();
         quickLog.insertBlock("Footer", props);
         quickLog.close();
+        quickLog.drain(); //in async mode the logs are closed by the report writer thread
     }
 
 }
@@ -0,0 +1,135 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An append-only journal of the test results, one JSON event per line (see {@link JournalEvent}), written by the {@link AsyncLogWriter} thread.
+ * While the journal is active, the {@link LogFileWriter}s do not write their files, they record their blocks (with the values of their variables)
+ * and texts into the journal, and the HTML, CSV and plain reports are rendered from the journal after the run by the {@link JournalRenderer}.
+ * The {@link HtmlRunReporter} records the start and end of the test classes and test methods, and the failures, too.
+ * <p>
+ * Events of the report files: log-open (log, template, path), block (log, block, values), text (log, text), log-restart (log), log-close (log).
+ * Events of the tests: class-start (id, class, attempt), method-start (id, method), failure (id, method, type, message),
+ * method-end (id, method, result), class-end (id, passed, failed, na, dummy).
+ * </p>
+ */
+public final class ResultJournal {
+
+    private static volatile ResultJournal instance;
+
+    private final File file;
+    private final PrintWriter out;
+    private final AtomicInteger lastLogId = new AtomicInteger();
+
+    private ResultJournal(final File file) throws IOException {
+        this.file = file;
+        out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Starts the journal of this JVM, the reports are recorded into it from now on.
+     *
+     * @param file is the journal file, it is recreated.
+     * @throws IOException if the file cannot be created.
+     */
+    public static synchronized void start(final File file) throws IOException {
+        instance = new ResultJournal(file);
+    }
+
+    /**
+     * Stops the journal, and waits till it is completely written.
+     *
+     * @return with the journal file, or null if the journal was not started.
+     */
+    public static synchronized File stop() {
+        ResultJournal journal = instance;
+        File result = null;
+        if (journal != null) {
+            instance = null;
+            AsyncLogWriter.getInstance().close(journal.out);
+            AsyncLogWriter.getInstance().drain();
+            result = journal.file;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the active journal.
+     *
+     * @return with the journal, or null if the reports are written directly.
+     */
+    public static ResultJournal getInstance() {
+        return instance;
+    }
+
+    /**
+     * Queues an event to be appended to the journal.
+     *
+     * @param event is the event.
+     */
+    void record(final JournalEvent event) {
+        AsyncLogWriter.getInstance().write(out, event.toJson() + "\n");
+    }
+
+    /**
+     * Waits till the events recorded so far are written.
+     */
+    void drain() {
+        AsyncLogWriter.getInstance().drain();
+    }
+
+    /**
+     * Records that a report file is opened.
+     *
+     * @param templatePath is the path of the template of the report file.
+     * @param logPath is the path of the report file.
+     * @return with the ID of the report file in the journal.
+     */
+    int logOpened(final String templatePath, final String logPath) {
+        int logId = lastLogId.incrementAndGet();
+        record(new JournalEvent("log-open").put("log", logId).put("template", templatePath).put("path", logPath));
+        return logId;
+    }
+
+    void blockInserted(final int logId, final String blockName, final Map<String, String> values) {
+        record(new JournalEvent("block").put("log", logId).put("block", blockName).put("values", values));
+    }
+
+    void textInserted(final int logId, final String text) {
+        record(new JournalEvent("text").put("log", logId).put("text", text));
+    }
+
+    void logRestarted(final int logId) {
+        record(new JournalEvent("log-restart").put("log", logId));
+    }
+
+    void logClosed(final int logId) {
+        record(new JournalEvent("log-close").put("log", logId));
+    }
+}
@@ -20,174 +20,145 @@ package com.epam.gepard.logger;
 ===========================================================================*/
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.junit.runner.Description;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import com.epam.gepard.common.GepardConstants;
 import com.epam.gepard.common.NATestCaseException;
-import com.epam.gepard.util.FileUtil;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.threads.TestClassExecutionThread;
 
 /**
  * This reporter generates XML JUnit reports like the Ant JUnit task.
  * This report format is the one which the most build result processing
  * tool understand.
+ * <p>
+ * Two reports are written per test class run: the TEST- report, where the N/A test cases are failures,
+ * and the ITEST- report, where they are listed as ignored.
+ * The test cases are serialized when they finish, and the report files are written when the test class run finishes.
+ * The host name and the system properties are the same for all the reports of the JVM, so they are calculated only once.
+ * The reports of a test class row executed by Gepard are named after the row, so a re-executed (retried) row overwrites the reports
+ * of its previous attempt, and only the final attempt is reported.
+ * </p>
  *
  * @author Laszlo Kishalmi
  */
 public final class XmlRunReporter extends RunListener {
 
     private static final AtomicInteger SUITE_INDEX = new AtomicInteger();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String INDENT = "\n    ";
+    private static volatile String fileNameQualifier = "";
+    private static String hostName; //per JVM
+    private static String propertiesXml; //per JVM
+
     private final DateFormat timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-    private Document doc;
-    private final Map<String, TestInfo> testCases = new ConcurrentHashMap<>();
-    private Element root;
-    private final AtomicInteger errors = new AtomicInteger();
-    private final AtomicInteger failures = new AtomicInteger();
-    private final AtomicInteger ignores = new AtomicInteger();
-    private final AtomicInteger tests = new AtomicInteger();
     private final File logPath;
+    private final Map<String, TestInfo> testCases = new HashMap<>();
+    private final Report testReport = new Report("TEST-", false);
+    private final Report itestReport = new Report("ITEST-", true);
+    private String suiteName;
+    private String suiteTimestamp;
+    private String rowName; //the test class and its data row, if it is run by Gepard, otherwise null
+    private int errors;
+    private int failures;
+    private int ignores;
+    private int tests;
     private boolean flushed;
     private long startTime;
-    private final boolean handleIgnore;
 
     /**
      * Set-up the XML logger. This will be used as JUNIT results, and with the results,
      * tools those understand JUnit xml reports can be informed about the test results.
-     * @param logPath is the path of the xml file.
-     * @param handleIgnore if ignore handling is necessary or not.
-     */
-    public XmlRunReporter(final File logPath, final boolean handleIgnore) {
-        this.logPath = logPath;
-        this.handleIgnore = handleIgnore;
-    }
-
-    /**
-     * Set-up the XML logger. This will be used as JUNIT results, and with the results,
-     * tools those understand JUnit xml reports can be informed about the test results.
-     * @param logPath is the path of the xml file.
+     * @param logPath is the path of the xml files.
      */
     public XmlRunReporter(final File logPath) {
-        this(logPath, false);
+        this.logPath = logPath;
     }
 
     @Override
-    public void testFinished(final Description description) throws Exception {
+    public synchronized void testFinished(final Description description) throws Exception {
         long finish = System.currentTimeMillis();
-        String name = description.getDisplayName();
-        TestInfo info = testCases.get(name);
-        double time = (finish - info.startTime) / GepardConstants.ONE_SECOND_LENGTH.getConstant();
-        info.element.setAttribute("time", String.valueOf(time));
-        root.appendChild(info.element);
-        testCases.remove(name);
+        TestInfo info = testCases.remove(description.getDisplayName());
+        if (info != null) {
+            String time = String.valueOf((double) ((finish - info.startTime) / GepardConstants.ONE_SECOND_LENGTH.getConstant()));
+            testReport.writeTestCase(info, time);
+            itestReport.writeTestCase(info, time);
+        }
     }
 
     @Override
-    public void testRunFinished(final Result result) throws Exception {
+    public synchronized void testRunFinished(final Result result) throws Exception {
         if (!flushed) {
-            root.setAttribute("failures", String.valueOf(failures.get()));
-            root.setAttribute("errors", String.valueOf(errors.get()));
-            root.setAttribute("tests", String.valueOf(tests.get()));
-            if (handleIgnore) {
-                root.setAttribute("ignores", String.valueOf(ignores.get()));
-            }
-            root.setAttribute("time", String.valueOf((System.currentTimeMillis() - startTime) / GepardConstants.ONE_SECOND_LENGTH.getConstant()));
-            String tsName = root.getAttribute("name");
-
-            root.appendChild(doc.createElement("system-out"));
-            root.appendChild(doc.createElement("system-err"));
-
+            String time = String.valueOf((System.currentTimeMillis() - startTime) / GepardConstants.ONE_SECOND_LENGTH.getConstant());
             // Write the XML log into the log-dir or if it not specified use the current directory
             File dir = logPath != null ? logPath : new File(System.getProperty("user.dir"));
-            String prefix = handleIgnore ? "ITEST-" : "TEST-";
-            FileUtil fileUtil = new FileUtil();
-            fileUtil.writeToFile(doc, new File(dir, prefix + calcName(tsName).replace(' ', '_') + "_" + SUITE_INDEX.getAndIncrement() + ".xml"));
+            testReport.writeFile(dir, time);
+            itestReport.writeFile(dir, time);
             flushed = true;
         }
     }
 
     @Override
-    public void testRunStarted(final Description description) throws Exception {
+    public synchronized void testRunStarted(final Description description) throws Exception {
         flushed = false;
         startTime = System.currentTimeMillis();
-
-        doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-        root = doc.createElement("testsuite");
-        root.setAttribute("name", description.getDisplayName());
-        doc.appendChild(root);
-
-        // Create properties section of the report
-        Element properties = doc.createElement("properties");
-        root.appendChild(properties);
-        for (String key : System.getProperties().stringPropertyNames()) {
-            Element property = doc.createElement("property");
-            property.setAttribute("name", key);
-            property.setAttribute("value", System.getProperty(key));
-            properties.appendChild(property);
-        }
-
-        // Add hostname and timestamp attribute
-        String hostName = InetAddress.getLocalHost().getCanonicalHostName();
-        root.setAttribute("hostname", hostName);
-
-        root.setAttribute("timestamp", timestamp.format(new Date()));
-
-        errors.set(0);
-        failures.set(0);
-        ignores.set(0);
-        tests.set(0);
+        suiteName = String.valueOf(description.getDisplayName());
+        suiteTimestamp = timestamp.format(new Date());
+        TestClassExecutionData classData = TestClassExecutionThread.CLASS_DATA_IN_CONTEXT.get();
+        rowName = classData == null ? null : classData.getClassName() + "_" + classData.getDrivenDataRowNo();
+        testCases.clear();
+        testReport.start();
+        itestReport.start();
+        errors = 0;
+        failures = 0;
+        ignores = 0;
+        tests = 0;
     }
 
     @Override
-    public void testStarted(final Description description) throws Exception {
+    public synchronized void testStarted(final Description description) throws Exception {
         String name = description.getDisplayName();
-        TestInfo info = testCases.put(name, new TestInfo(doc, name));
-        if (info != null) {
-            info.toString();
-        }
-        tests.incrementAndGet();
+        testCases.put(name, new TestInfo(name));
+        tests++;
     }
 
     @Override
-    public void testFailure(final Failure failure) throws Exception {
-        String name = failure.getDescription().getDisplayName();
-        TestInfo info = testCases.get(name);
-        Element fe;
-        if (!(failure.getException() instanceof AssertionError)) {
-            fe = doc.createElement("error");
-            fe.setAttribute("message", failure.getMessage());
-            fe.setAttribute("type", failure.getException().getClass().getName());
-            errors.incrementAndGet();
+    public synchronized void testFailure(final Failure failure) throws Exception {
+        FailureInfo fi = new FailureInfo(failure);
+        if (fi.error) {
+            errors++;
+        } else if (fi.ignoreCause != null) {
+            ignores++;
         } else {
-            AssertionError ae = (AssertionError) failure.getException();
-            if (handleIgnore && (ae.getCause() instanceof NATestCaseException)) {
-                fe = doc.createElement("ignore");
-                fe.setAttribute("message", ae.getCause().getMessage());
-                fe.setAttribute("type", ae.getCause().getClass().getName());
-                ignores.incrementAndGet();
-            } else {
-                fe = doc.createElement("failure");
-                fe.setAttribute("message", failure.getMessage());
-                fe.setAttribute("type", failure.getException().getClass().getName());
-                failures.incrementAndGet();
-            }
+            failures++;
         }
-        fe.appendChild(doc.createTextNode(failure.getTrace()));
+        TestInfo info = testCases.get(failure.getDescription().getDisplayName());
         if (info != null) {
-            info.element.appendChild(fe);
+            info.failures.add(fi);
         }
     }
 
@@ -195,6 +166,73 @@ public final class XmlRunReporter extends RunListener {
     public void testIgnored(final Description description) throws Exception {
     }
 
+    /**
+     * Sets a qualifier to be put into the name of the xml files, used by agents those write the files into their own folder,
+     * so the files of the different agents do not collide when they are collected by the coordinator.
+     * @param qualifier is the qualifier, like the name of the agent.
+     */
+    public static void setFileNameQualifier(final String qualifier) {
+        fileNameQualifier = qualifier.replaceAll("[^A-Za-z0-9_-]", "_") + "_";
+    }
+
+    private static synchronized XMLStreamWriter createXmlWriter(final Writer out) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(out);
+    }
+
+    private static synchronized String getHostName() {
+        if (hostName == null) {
+            try {
+                hostName = InetAddress.getLocalHost().getCanonicalHostName();
+            } catch (UnknownHostException e) {
+                hostName = "localhost";
+            }
+        }
+        return hostName;
+    }
+
+    private static synchronized String getPropertiesXml() throws XMLStreamException {
+        if (propertiesXml == null) {
+            StringWriter result = new StringWriter();
+            XMLStreamWriter xml = createXmlWriter(result);
+            xml.writeCharacters(INDENT);
+            xml.writeStartElement("properties");
+            for (String key : System.getProperties().stringPropertyNames()) {
+                xml.writeCharacters(INDENT + "    ");
+                xml.writeEmptyElement("property");
+                xml.writeAttribute("name", key);
+                xml.writeAttribute("value", System.getProperty(key, ""));
+            }
+            xml.writeCharacters(INDENT);
+            xml.writeEndElement();
+            xml.close();
+            propertiesXml = result.toString();
+        }
+        return propertiesXml;
+    }
+
+    /**
+     * Creates a new file with a unique name. Other JVMs (forked workers) may write into the same folder,
+     * so the file is reserved atomically, the index is increased while the file exists.
+     */
+    private static File createUniqueFile(final File dir, final String baseName) throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        File file = new File(dir, baseName + SUITE_INDEX.getAndIncrement() + ".xml");
+        while (!file.createNewFile()) {
+            file = new File(dir, baseName + SUITE_INDEX.getAndIncrement() + ".xml");
+        }
+        return file;
+    }
+
+    /**
+     * Gets the file of the report of a test class row, it is overwritten by the next attempt of the row.
+     */
+    private static File createRowFile(final File dir, final String baseName) {
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        return new File(dir, baseName + ".xml");
+    }
+
     private static String calcName(final String name) {
         int openPar = name.indexOf('(');
         int closePar = name.indexOf(')', openPar + 1);
@@ -207,20 +245,128 @@ public final class XmlRunReporter extends RunListener {
         return (openPar > 0) && (closePar > openPar) ? name.substring(openPar + 1, closePar) : null;
     }
 
+    /**
+     * One of the two reports of the test class run, the finished test cases are serialized into its body.
+     */
+    private final class Report {
+        private final String prefix;
+        private final boolean handleIgnore;
+        private StringWriter body;
+        private XMLStreamWriter bodyXml;
+
+        private Report(final String prefix, final boolean handleIgnore) {
+            this.prefix = prefix;
+            this.handleIgnore = handleIgnore;
+        }
+
+        private void start() throws XMLStreamException {
+            body = new StringWriter();
+            bodyXml = createXmlWriter(body);
+        }
+
+        private void writeTestCase(final TestInfo info, final String time) throws XMLStreamException {
+            bodyXml.writeCharacters(INDENT);
+            if (info.failures.isEmpty()) {
+                bodyXml.writeEmptyElement("testcase");
+            } else {
+                bodyXml.writeStartElement("testcase");
+            }
+            if (info.className != null) {
+                bodyXml.writeAttribute("classname", info.className);
+            }
+            bodyXml.writeAttribute("name", info.name);
+            bodyXml.writeAttribute("time", time);
+            for (FailureInfo failure : info.failures) {
+                bodyXml.writeCharacters(INDENT + "    ");
+                if (handleIgnore && failure.ignoreCause != null) {
+                    writeFailure("ignore", failure.ignoreCause.getMessage(), failure.ignoreCause.getClass().getName(), failure.trace);
+                } else {
+                    writeFailure(failure.error ? "error" : "failure", failure.message, failure.type, failure.trace);
+                }
+            }
+            if (!info.failures.isEmpty()) {
+                bodyXml.writeCharacters(INDENT);
+                bodyXml.writeEndElement();
+            }
+            bodyXml.writeCharacters(""); //closes the empty element, too
+            bodyXml.flush();
+        }
+
+        private void writeFailure(final String element, final String message, final String type, final String trace) throws XMLStreamException {
+            bodyXml.writeStartElement(element);
+            if (message != null) {
+                bodyXml.writeAttribute("message", message);
+            }
+            bodyXml.writeAttribute("type", type);
+            bodyXml.writeCharacters(trace);
+            bodyXml.writeEndElement();
+        }
+
+        private void writeFile(final File dir, final String time) throws IOException, XMLStreamException {
+            File file = rowName == null ? createUniqueFile(dir, prefix + calcName(suiteName).replace(' ', '_') + "_" + fileNameQualifier)
+                    : createRowFile(dir, prefix + rowName);
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                XMLStreamWriter xml = createXmlWriter(out);
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeCharacters("\n");
+                xml.writeStartElement("testsuite");
+                xml.writeAttribute("errors", String.valueOf(errors));
+                xml.writeAttribute("failures", String.valueOf(handleIgnore ? failures : failures + ignores));
+                xml.writeAttribute("hostname", getHostName());
+                if (handleIgnore) {
+                    xml.writeAttribute("ignores", String.valueOf(ignores));
+                }
+                xml.writeAttribute("name", suiteName);
+                xml.writeAttribute("tests", String.valueOf(tests));
+                xml.writeAttribute("time", time);
+                xml.writeAttribute("timestamp", suiteTimestamp);
+                xml.writeCharacters(""); //closes the start tag, so the serialized parts can follow
+                xml.flush();
+                out.write(getPropertiesXml());
+                out.write(body.toString());
+                xml.writeCharacters(INDENT);
+                xml.writeEmptyElement("system-out");
+                xml.writeCharacters(INDENT);
+                xml.writeEmptyElement("system-err");
+                xml.writeCharacters("\n");
+                xml.writeEndElement();
+                xml.writeEndDocument();
+                xml.close();
+            }
+        }
+    }
+
     private static class TestInfo {
 
         private final long startTime = System.currentTimeMillis();
-        private final Element element;
+        private final String name;
+        private final String className;
+        private final List<FailureInfo> failures = new ArrayList<>();
 
-        public TestInfo(final Document doc, final String name) {
-            element = doc.createElement("testcase");
-            String tcName = calcName(name);
-            String tcClass = calcParam(name);
+        public TestInfo(final String displayName) {
+            name = calcName(displayName);
+            className = calcParam(displayName);
+        }
+    }
 
-            element.setAttribute("name", tcName);
-            if (tcClass != null) {
-                element.setAttribute("classname", tcClass);
-            }
+    /**
+     * A failure of a test case, an N/A test case is a failure with {@link NATestCaseException} cause, that is ignored in the ITEST- report.
+     */
+    private static class FailureInfo {
+
+        private final boolean error;
+        private final Throwable ignoreCause;
+        private final String message;
+        private final String type;
+        private final String trace;
+
+        public FailureInfo(final Failure failure) {
+            Throwable exception = failure.getException();
+            error = !(exception instanceof AssertionError);
+            ignoreCause = !error && exception.getCause() instanceof NATestCaseException ? exception.getCause() : null;
+            message = failure.getMessage();
+            type = exception.getClass().getName();
+            trace = failure.getTrace();
         }
     }
 }
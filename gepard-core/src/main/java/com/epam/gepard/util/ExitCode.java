@@ -36,12 +36,15 @@ public final class ExitCode {
     public static final int EXIT_CODE_OUTPUT_FOLDER_HANDLING_ERROR = 4;
     public static final int EXIT_CODE_WRONG_PROPERTY_FILE = 5;
     public static final int EXIT_CODE_CANNOT_CREATE_FOLDER = 6;
+    public static final int EXIT_CODE_BAD_RESOURCE_POOL = 7;
+    public static final int EXIT_CODE_WORKER_SETUP_ERROR = 8;
 
     public static final int EXIT_CODE_TEST_CLASS_BAD_TIMEOUT = 10;
     public static final int EXIT_CODE_TEST_CLASS_WITHOUT_TEST_METHOD = 11;
     public static final int EXIT_CODE_TEST_CLASS_ANNOTATION_MISSING = 12;
     public static final int EXIT_CODE_TEST_CLASS_INITIALIZATION_ERROR = 13;
     public static final int EXIT_CODE_TEST_CLASS_DUPLICATED = 14;
+    public static final int EXIT_CODE_TEST_CLASS_DEPENDENCY_CYCLE = 15;
     public static final int EXIT_CODE_TEST_CLASS_HAS_BAD_CONSTRUCTOR = 20;
     public static final int EXIT_CODE_TEST_CLASS_HAS_NO_CONSTRUCTOR = 21;
 
@@ -55,6 +58,7 @@ public final class ExitCode {
     public static final int EXIT_CODE_DATA_FEEDER_CLASS_DATA_CALCULATION_ERROR = 46;
     public static final int EXIT_CODE_DATA_FEEDER_CLASS_ERROR = 47;
     public static final int EXIT_CODE_DATA_FEEDER_CLASS_LOAD_FAILED = 49;
+    public static final int EXIT_CODE_TEST_EXECUTION_STOPPED = 50;
 
     public static final int EXIT_CODE_THIS_SHOULD_NOT_HAPPEN_CONTACT_MAINTAINERS = 100;
 
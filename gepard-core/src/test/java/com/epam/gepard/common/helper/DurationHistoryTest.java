@@ -0,0 +1,130 @@
+package com.epam.gepard.common.helper;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.generic.GenericListTestSuite;
+
+/**
+ * Unit tests for {@link DurationHistory}.
+ */
+public class DurationHistoryTest {
+
+    private static final String FOLDER = "build";
+    private static final String FILE_NAME = "DurationHistoryTest.properties";
+
+    private Environment environment;
+
+    private DurationHistory underTest;
+
+    @Before
+    public void setup() {
+        environment = new Environment();
+        environment.setProperty(Environment.GEPARD_TESTLIST_FAILURE_PATH, FOLDER);
+        environment.setProperty(Environment.GEPARD_DURATION_HISTORY_FILE, FILE_NAME);
+        new File(FOLDER).mkdirs();
+        new File(FOLDER, FILE_NAME).delete();
+        underTest = new DurationHistory(environment);
+    }
+
+    @Test
+    public void testSavedDurationsArePredictedNextTime() {
+        //GIVEN
+        TestClassExecutionData longClass = createExecutedClass("a.Long/0", 3000);
+        TestClassExecutionData shortClass = createExecutedClass("a.Short/0", 1000);
+        Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>();
+        testClassMap.put(longClass.getID(), longClass);
+        testClassMap.put(shortClass.getID(), shortClass);
+        GenericListTestSuite.setTestClassMap(testClassMap);
+        underTest.load();
+        underTest.save();
+        DurationHistory nextRun = new DurationHistory(environment);
+        //WHEN
+        nextRun.load();
+        //THEN
+        Assert.assertEquals(3000, nextRun.getPredictedDuration(longClass));
+        Assert.assertEquals(1000, nextRun.getPredictedDuration(shortClass));
+        Assert.assertEquals(2000, nextRun.getPredictedDuration(new TestClassExecutionData("a.New/0", environment)));
+    }
+
+    @Test
+    public void testEveryClassIsEqualWithoutHistory() {
+        //GIVEN
+        //WHEN
+        underTest.load();
+        //THEN
+        Assert.assertEquals(0, underTest.getPredictedDuration(new TestClassExecutionData("a.New/0", environment)));
+    }
+
+    @Test
+    public void testSkippedClassesKeepTheirDuration() {
+        //GIVEN
+        saveRun(createExecutedClass("a.Long/0", 3000));
+        TestClassExecutionData skippedClass = createExecutedClass("a.Long/0", 0);
+        skippedClass.setItAsSkipped("the test execution is stopped");
+        saveRun(skippedClass);
+        DurationHistory nextRun = new DurationHistory(environment);
+        //WHEN
+        nextRun.load();
+        //THEN
+        Assert.assertEquals(Long.valueOf(3000), nextRun.getRecordedDuration(skippedClass));
+    }
+
+    @Test
+    public void testCachedPassesKeepTheirDuration() {
+        //GIVEN
+        saveRun(createExecutedClass("a.Long/0", 3000));
+        TestClassExecutionData cachedClass = createExecutedClass("a.Long/0", 1);
+        cachedClass.setItAsCachedPass();
+        saveRun(cachedClass);
+        DurationHistory nextRun = new DurationHistory(environment);
+        //WHEN
+        nextRun.load();
+        //THEN
+        Assert.assertEquals(Long.valueOf(3000), nextRun.getRecordedDuration(cachedClass));
+    }
+
+    private void saveRun(final TestClassExecutionData... rows) {
+        Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>();
+        for (TestClassExecutionData row : rows) {
+            testClassMap.put(row.getID(), row);
+        }
+        GenericListTestSuite.setTestClassMap(testClassMap);
+        DurationHistory run = new DurationHistory(environment);
+        run.load();
+        run.save();
+    }
+
+    private TestClassExecutionData createExecutedClass(final String id, final long executionTime) {
+        TestClassExecutionData classData = new TestClassExecutionData(id, environment);
+        classData.setExecutionTime(executionTime);
+        classData.setLockExecuted();
+        return classData;
+    }
+}
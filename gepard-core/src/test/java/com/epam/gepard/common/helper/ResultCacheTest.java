@@ -0,0 +1,152 @@
+package com.epam.gepard.common.helper;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.datadriven.DataDrivenParameters;
+import com.epam.gepard.util.ExitCode;
+
+/**
+ * Unit tests for {@link ResultCache}.
+ */
+public class ResultCacheTest {
+
+    private static final String CLASS_NAME = ExitCode.class.getName();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File classFolder;
+    private Environment environment;
+
+    @Before
+    public void setUp() throws IOException {
+        classFolder = folder.newFolder("classes");
+        String path = CLASS_NAME.replace('.', '/') + ".class";
+        File classFile = new File(classFolder, path);
+        Assert.assertTrue(classFile.getParentFile().mkdirs());
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(path)) {
+            Files.copy(in, classFile.toPath());
+        }
+        environment = createEnvironment("http://a");
+    }
+
+    @Test
+    public void testPassedRowIsRestoredInTheNextRun() {
+        //GIVEN
+        ResultCache previousRun = createCache();
+        previousRun.storePass(createPassedRow(0, "a"));
+        ResultCache underTest = createCache();
+        TestClassExecutionData row = createRow(0, "a");
+        //WHEN
+        boolean restored = underTest.restoreCachedPass(row);
+        //THEN
+        Assert.assertTrue(restored);
+        Assert.assertEquals(2, row.getCountPassed());
+        Assert.assertEquals(2, row.getCountOfRuns());
+        Assert.assertTrue(row.getSysOut().contains("Cached pass"));
+        Assert.assertTrue(row.isCachedPass());
+    }
+
+    @Test
+    public void testChangedDataRowOrPropertyIsNotRestored() {
+        //GIVEN
+        createCache().storePass(createPassedRow(0, "a"));
+        ResultCache underTest = createCache();
+        environment = createEnvironment("http://b");
+        ResultCache underTestWithOtherProperty = createCache();
+        //WHEN
+        boolean restoredWithOtherData = underTest.restoreCachedPass(createRow(0, "b"));
+        boolean restoredWithOtherProperty = underTestWithOtherProperty.restoreCachedPass(createRow(0, "a"));
+        //THEN
+        Assert.assertFalse(restoredWithOtherData);
+        Assert.assertFalse(restoredWithOtherProperty);
+    }
+
+    @Test
+    public void testForcedRefreshExecutesTheRow() {
+        //GIVEN
+        createCache().storePass(createPassedRow(0, "a"));
+        environment.setProperty(Environment.GEPARD_RESULT_CACHE_REFRESH, "true");
+        ResultCache underTest = createCache();
+        //WHEN
+        boolean restored = underTest.restoreCachedPass(createRow(0, "a"));
+        //THEN
+        Assert.assertFalse(restored);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        //GIVEN
+        environment.setProperty(Environment.GEPARD_RESULT_CACHE_MAX_ENTRIES, "2");
+        ResultCache underTest = createCache();
+        underTest.storePass(createPassedRow(0, "a"));
+        underTest.storePass(createPassedRow(1, "b"));
+        Assert.assertTrue(underTest.restoreCachedPass(createRow(0, "a")));
+        //WHEN
+        underTest.storePass(createPassedRow(2, "c"));
+        //THEN
+        Assert.assertTrue(underTest.restoreCachedPass(createRow(0, "a")));
+        Assert.assertFalse(underTest.restoreCachedPass(createRow(1, "b")));
+        Assert.assertTrue(underTest.restoreCachedPass(createRow(2, "c")));
+    }
+
+    private Environment createEnvironment(final String url) {
+        Environment result = new Environment();
+        result.setProperty(Environment.GEPARD_RESULT_CACHE_FOLDER, new File(folder.getRoot(), "cache").getPath());
+        result.setProperty(Environment.GEPARD_IMPACT_CLASSPATH, classFolder.getPath());
+        result.setProperty(Environment.GEPARD_RESULT_CACHE_PROPERTIES, "test.url");
+        result.setProperty("test.url", url);
+        return result;
+    }
+
+    private ResultCache createCache() {
+        ResultCache cache = new ResultCache(environment);
+        Assert.assertTrue(cache.init());
+        return cache;
+    }
+
+    private TestClassExecutionData createRow(final int rowNo, final String data) {
+        TestClassExecutionData row = new TestClassExecutionData(CLASS_NAME + "/" + rowNo, environment);
+        row.setClassName(CLASS_NAME);
+        row.setOriginalLine(CLASS_NAME + ",feeder");
+        row.setDrivenData(new DataDrivenParameters(new String[]{data}, new String[]{"DATA"}));
+        return row;
+    }
+
+    private TestClassExecutionData createPassedRow(final int rowNo, final String data) {
+        TestClassExecutionData row = createRow(rowNo, data);
+        row.setCounters(2, 0, 0, 0);
+        row.setCountOfRuns(2);
+        return row;
+    }
+}
@@ -20,10 +20,12 @@ package com.epam.gepard.common.helper;
 ===========================================================================*/
 
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -37,6 +39,7 @@ import org.mockito.internal.util.reflection.Whitebox;
 
 import com.epam.gepard.common.Environment;
 import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.TestClassResult;
 import com.epam.gepard.generic.GenericListTestSuite;
 import com.epam.gepard.helper.AllTestResults;
 import com.epam.gepard.logger.LogFileWriter;
@@ -111,4 +114,75 @@ public class ResultCollectorTest {
         boolean resultOdd = (boolean) Whitebox.getInternalState(underTest, "odd");
         Assert.assertFalse(resultOdd);
     }
+
+    @Test
+    public void testRowsAreCollectedInCompletionOrderAndRewrittenInTestlistOrder() throws InterruptedException {
+        //GIVEN
+        Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>();
+        TestClassExecutionData first = createRow("a.First/0");
+        TestClassExecutionData second = createRow("a.Second/0");
+        testClassMap.put(first.getID(), first);
+        testClassMap.put(second.getID(), second);
+        GenericListTestSuite.setTestClassMap(testClassMap);
+        second.setLockExecuted();
+        GenericListTestSuite.testClassFinished(second);
+        first.setLockExecuted();
+        GenericListTestSuite.testClassFinished(first);
+        underTest.waitForExecutionEndAndCollectResults(allTestResults, htmlLog, csvLog);
+        Properties props = new Properties();
+        //WHEN
+        underTest.writeResultRowsInTestlistOrder(props, htmlLog, csvLog);
+        //THEN
+        verify(htmlLog).restart();
+        verify(htmlLog).insertBlock("Header", props);
+        verify(htmlLog, times(4)).insertBlock(eq("TestRow"), Mockito.any(Properties.class));
+        verify(csvLog).restart();
+    }
+
+    @Test
+    public void testRowsFinishedInTestlistOrderAreNotRewritten() throws InterruptedException {
+        //GIVEN
+        Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>();
+        TestClassExecutionData first = createRow("a.First/0");
+        first.setLockExecuted();
+        testClassMap.put(first.getID(), first);
+        GenericListTestSuite.setTestClassMap(testClassMap);
+        underTest.waitForExecutionEndAndCollectResults(allTestResults, htmlLog, csvLog);
+        //WHEN
+        underTest.writeResultRowsInTestlistOrder(new Properties(), htmlLog, csvLog);
+        //THEN
+        verify(htmlLog, never()).restart();
+        verify(htmlLog).insertBlock(eq("TestRow"), Mockito.any(Properties.class));
+    }
+
+    private TestClassExecutionData createRow(final String id) {
+        TestClassExecutionData row = new TestClassExecutionData(id, environment);
+        row.setClassName(id.substring(0, id.indexOf('/')));
+        row.setTestURL("testURL");
+        return row;
+    }
+
+    @Test
+    public void testOnlyTheResultRecordIsKeptWhenResultsAreCompact() throws InterruptedException {
+        //GIVEN
+        Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>();
+        TestClassExecutionData executionData = new TestClassExecutionData("a.Test/0", environment);
+        Whitebox.setInternalState(executionData, "lock", -1);
+        Whitebox.setInternalState(executionData, "testURL", "testURL");
+        executionData.setOriginalLine("a.Test");
+        executionData.increaseCountFailed();
+        testClassMap.put("a.Test/0", executionData);
+        GenericListTestSuite.setTestClassMap(testClassMap);
+        underTest.setCompactResults(true);
+        //WHEN
+        underTest.waitForExecutionEndAndCollectResults(allTestResults, htmlLog, csvLog);
+        //THEN
+        Assert.assertNull(GenericListTestSuite.getTestClassExecutionData("a.Test/0"));
+        List<TestClassResult> results = GenericListTestSuite.getTestClassResults();
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("a.Test/0", results.get(0).getID());
+        Assert.assertEquals("a.Test", results.get(0).getOriginalLine());
+        Assert.assertEquals(1, results.get(0).getCountFailed());
+        Assert.assertTrue(results.get(0).isExecuted());
+    }
 }
@@ -63,6 +63,23 @@ public class TestFailureReporterTest {
         }
     }
 
+    @Test
+    public void testGenerateTestlistFlakyOnlyWhenFileIsSpecified() {
+        //GIVEN
+        String folder = "build";
+        String filePath = "GeneratedFlaky.txt";
+        File f = new File(folder + "/" + filePath);
+        f.delete();
+        environment.setProperty(Environment.GEPARD_TESTLIST_FAILURE_PATH, folder);
+        underTest.generateTestlistFlaky();
+        Assert.assertFalse(f.exists());
+        environment.setProperty(Environment.GEPARD_TESTLIST_FLAKY_FILE, filePath);
+        //WHEN
+        underTest.generateTestlistFlaky();
+        //THEN
+        Assert.assertTrue(f.exists());
+    }
+
     @Test(expected = ComplexGepardException.class)
     public void testGenerateTestlistFailureWhenExceptionOccuresDuringFileWriting() {
         //GIVEN
@@ -0,0 +1,107 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.helper.DurationHistory;
+
+/**
+ * Unit tests for {@link ConcurrencyController}.
+ */
+public class ConcurrencyControllerTest {
+
+    private ExecutorThreadManager manager;
+    private ConcurrencyController underTest;
+
+    @Before
+    public void setUp() {
+        manager = mock(ExecutorThreadManager.class);
+        given(manager.getThreadCount()).willReturn(8);
+        underTest = new ConcurrencyController(manager, 2, 1000L);
+        underTest.setLimits(90, 85, 200);
+        Whitebox.setInternalState(underTest, "threadLimit", 8);
+    }
+
+    @Test
+    public void testOverloadHalvesTheActiveThreadsDownToTheMinimum() {
+        //GIVEN in setUp
+        //WHEN
+        String first = underTest.adjust(50, 90, -1, true);
+        underTest.adjust(95, 20, -1, true);
+        underTest.adjust(50, 20, 300, true);
+        String last = underTest.adjust(95, 20, -1, true);
+        //THEN
+        Assert.assertTrue(first.startsWith("8 -> 4 active threads, heap after GC is over 85%"));
+        Assert.assertEquals(2, underTest.getThreadLimit());
+        Assert.assertNull(last);
+    }
+
+    @Test
+    public void testActiveThreadsAreIncreasedByOneOnlyIfTestClassesAreWaiting() {
+        //GIVEN
+        Whitebox.setInternalState(underTest, "threadLimit", 6);
+        //WHEN
+        String idle = underTest.adjust(50, 20, 100, false);
+        String first = underTest.adjust(50, 20, 100, true);
+        underTest.adjust(-1, -1, -1, true);
+        String overMax = underTest.adjust(50, 20, 100, true);
+        //THEN
+        Assert.assertNull(idle);
+        Assert.assertTrue(first.startsWith("6 -> 7 active threads, test classes are waiting"));
+        Assert.assertNull(overMax);
+        Assert.assertEquals(8, underTest.getThreadLimit());
+        Assert.assertTrue(underTest.getReportHtml().contains("0 decrease(s) and 2 increase(s)"));
+    }
+
+    @Test
+    public void testLatencyIsComparedToThePreviousRun() {
+        //GIVEN
+        DurationHistory durationHistory = mock(DurationHistory.class);
+        TestClassExecutionData known = createExecutedRow("a.Known/0", 3000L, 3);
+        TestClassExecutionData unknown = createExecutedRow("a.Unknown/0", 5000L, 1);
+        given(durationHistory.getRecordedDuration(known)).willReturn(1000L);
+        given(durationHistory.getRecordedDuration(unknown)).willReturn(null);
+        underTest.setDurationHistory(durationHistory);
+        underTest.classExecuted(known);
+        underTest.classExecuted(unknown);
+        //WHEN
+        int latency = underTest.takeLatencySample();
+        //THEN
+        Assert.assertEquals(300, latency);
+        Assert.assertEquals(-1, underTest.takeLatencySample());
+    }
+
+    private TestClassExecutionData createExecutedRow(final String id, final long executionTime, final int runs) {
+        TestClassExecutionData row = new TestClassExecutionData(id, new Environment());
+        row.setClassName(id.substring(0, id.indexOf('/')));
+        row.setExecutionTime(executionTime);
+        row.setCountOfRuns(runs);
+        return row;
+    }
+}
@@ -0,0 +1,179 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import com.epam.gepard.annotations.TestClass;
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.generic.GepardTestClass;
+import com.epam.gepard.logger.HtmlRunReporter;
+
+/**
+ * Unit tests for {@link ParallelMethodComputer}.
+ */
+public class ParallelMethodComputerTest {
+
+    private static final long TIMEOUT = 10;
+    private static final AtomicInteger RUNNING = new AtomicInteger();
+    private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+    private static CountDownLatch bothStarted;
+    private static CyclicBarrier allStarted;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMethodsAreExecutedInParallel() {
+        //GIVEN
+        MAX_RUNNING.set(0);
+        bothStarted = new CountDownLatch(2);
+        //WHEN
+        Result result = new JUnitCore().run(new ParallelMethodComputer(2), ThreeMethods.class);
+        //THEN
+        Assert.assertEquals(3, result.getRunCount());
+        Assert.assertTrue(result.wasSuccessful());
+        Assert.assertEquals(2, MAX_RUNNING.get());
+    }
+
+    @Test
+    public void testParallelMethodsAreReportedSeparately() throws IOException {
+        //GIVEN
+        Environment environment = new Environment();
+        environment.setProperty(Environment.GEPARD_HTML_RESULT_PATH, folder.getRoot().getPath());
+        environment.setProperty(Environment.GEPARD_RESULT_TEMPLATE_PATH, "/templates");
+        TestClassExecutionData classData = new TestClassExecutionData("ID", environment);
+        classData.setTestClass(ParallelGepardTest.class);
+        classData.setClassName(ParallelGepardTest.class.getName());
+        HtmlRunReporter reporter = new HtmlRunReporter(classData);
+        allStarted = new CyclicBarrier(3);
+        TestClassExecutionThread.CLASS_DATA_IN_CONTEXT.set(classData);
+        JUnitCore core = new JUnitCore();
+        core.addListener(reporter);
+        //WHEN
+        try {
+            reporter.hiddenBeforeTestClassExecution();
+            core.run(new ParallelMethodComputer(3), ParallelGepardTest.class);
+            reporter.hiddenAfterTestClassExecution();
+        } finally {
+            TestClassExecutionThread.CLASS_DATA_IN_CONTEXT.set(null);
+        }
+        //THEN
+        Assert.assertEquals(1, classData.getCountPassed());
+        Assert.assertEquals(1, classData.getCountFailed());
+        Assert.assertEquals(1, classData.getCountNA());
+        String passedPage = readPage(reporter, "testPassed");
+        Assert.assertTrue(passedPage.contains("step of testPassed"));
+        Assert.assertTrue(passedPage.contains("Test passed."));
+        Assert.assertFalse(passedPage.contains("step of testFailed"));
+        Assert.assertFalse(passedPage.contains("step of testNotApplicable"));
+        String failedPage = readPage(reporter, "testFailed");
+        Assert.assertTrue(failedPage.contains("step of testFailed"));
+        Assert.assertTrue(failedPage.contains("expected failure"));
+        Assert.assertFalse(failedPage.contains("step of testPassed"));
+        String naPage = readPage(reporter, "testNotApplicable");
+        Assert.assertTrue(naPage.contains("step of testNotApplicable"));
+        Assert.assertTrue(naPage.contains("not applicable"));
+        Assert.assertFalse(naPage.contains("Test failed."));
+        String classPage = new String(Files.readAllBytes(new File(folder.getRoot(), classData.getTestURL()).toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(classPage.contains("<a href=\"ParallelGepardTest0/testPassed0.html\""));
+        Assert.assertTrue(classPage.contains("<a href=\"ParallelGepardTest0/testFailed0.html\""));
+        Assert.assertTrue(classPage.contains("<a href=\"ParallelGepardTest0/testNotApplicable0.html\""));
+    }
+
+    private String readPage(final HtmlRunReporter reporter, final String methodName) throws IOException {
+        File page = new File(folder.getRoot(), reporter.readDirectory() + methodName + "0.html");
+        return new String(Files.readAllBytes(page.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test class, its methods record how many methods are running at the same time.
+     * The first two methods wait for each other, so they are running at the same time, if the methods are executed in parallel.
+     */
+    public static class ThreeMethods {
+        @Test
+        public void testFirst() throws InterruptedException {
+            run();
+        }
+
+        @Test
+        public void testSecond() throws InterruptedException {
+            run();
+        }
+
+        @Test
+        public void testThird() throws InterruptedException {
+            run();
+        }
+
+        private void run() throws InterruptedException {
+            int running = RUNNING.incrementAndGet();
+            synchronized (MAX_RUNNING) {
+                MAX_RUNNING.set(Math.max(MAX_RUNNING.get(), running));
+            }
+            bothStarted.countDown();
+            Assert.assertTrue(bothStarted.await(TIMEOUT, TimeUnit.SECONDS));
+            RUNNING.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gepard test class with a passed, a failed and an N/A method, those are all running at the same time.
+     */
+    @TestClass(id = "PAR", name = "Parallel methods", parallelMethods = 3)
+    public static class ParallelGepardTest implements GepardTestClass {
+        @Test
+        public void testPassed() throws Exception {
+            step("testPassed");
+        }
+
+        @Test
+        public void testFailed() throws Exception {
+            step("testFailed");
+            Assert.fail("expected failure");
+        }
+
+        @Test
+        public void testNotApplicable() throws Exception {
+            step("testNotApplicable");
+            naTestCase("not applicable");
+        }
+
+        private void step(final String methodName) throws Exception {
+            logStep("step of " + methodName);
+            allStarted.await(TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+}
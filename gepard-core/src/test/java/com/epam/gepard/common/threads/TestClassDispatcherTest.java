@@ -0,0 +1,499 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.helper.DurationHistory;
+import com.epam.gepard.generic.GenericListTestSuite;
+
+/**
+ * Unit tests for {@link TestClassDispatcher}.
+ */
+public class TestClassDispatcherTest {
+
+    private TestClassExecutionThread thread;
+    private TestClassDispatcher underTest;
+
+    @Before
+    public void setUp() {
+        thread = new TestClassExecutionThread("xml", new ExecutorThreadManager());
+        thread.setEnabled(true);
+        underTest = new TestClassDispatcher();
+    }
+
+    @Test
+    public void testClassesAreDispatchedInTestlistOrder() {
+        //GIVEN
+        TestClassExecutionData first = createClassData("a.First", 0, null, false);
+        TestClassExecutionData second = createClassData("a.Second", 0, null, false);
+        underTest.enqueue(first);
+        underTest.enqueue(second);
+        //WHEN
+        TestClassExecutionData picked = underTest.takeNextClass(thread, 0);
+        //THEN
+        Assert.assertSame(first, picked);
+        Assert.assertEquals(1, picked.getLock());
+        Assert.assertSame(second, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testBlockedClassIsSkippedAndReleasedWhenBlockerIsFree() {
+        //GIVEN
+        TestClassExecutionData blocker = createClassData("a.First", 0, "AAA", false);
+        TestClassExecutionData blocked = createClassData("a.Second", 0, "AAA", false);
+        TestClassExecutionData free = createClassData("a.Third", 0, null, false);
+        underTest.enqueue(blocker);
+        underTest.enqueue(blocked);
+        underTest.enqueue(free);
+        Assert.assertSame(blocker, underTest.takeNextClass(thread, 0));
+        //WHEN
+        TestClassExecutionData picked = underTest.takeNextClass(thread, 0);
+        underTest.setClassExecuted("test", blocker);
+        //THEN
+        Assert.assertSame(free, picked);
+        Assert.assertEquals(-1, blocker.getLock());
+        Assert.assertSame(blocked, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testSelfEnabledBlockerAllowsParallelRowsOfTheSameClass() {
+        //GIVEN
+        TestClassExecutionData row0 = createClassData("a.First", 0, "AAA", true);
+        TestClassExecutionData other = createClassData("a.Second", 0, "AAA", true);
+        TestClassExecutionData row1 = createClassData("a.First", 1, "AAA", true);
+        underTest.enqueue(row0);
+        underTest.enqueue(other);
+        underTest.enqueue(row1);
+        Assert.assertSame(row0, underTest.takeNextClass(thread, 0));
+        //WHEN
+        TestClassExecutionData picked = underTest.takeNextClass(thread, 0);
+        //THEN
+        Assert.assertSame(row1, picked);
+        underTest.setClassExecuted("test", row0);
+        underTest.setClassExecuted("test", row1);
+        Assert.assertSame(other, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testResourcePoolIsUsedUpToItsCapacity() {
+        //GIVEN
+        underTest.putClassBlockingInfo("DB", new BlockingInfo(2));
+        TestClassExecutionData first = createClassData("a.First", 0, "DB", false);
+        TestClassExecutionData second = createClassData("a.Second", 0, "DB", false);
+        TestClassExecutionData third = createClassData("a.Third", 0, "DB", false);
+        underTest.enqueue(first);
+        underTest.enqueue(second);
+        underTest.enqueue(third);
+        Assert.assertSame(first, underTest.takeNextClass(thread, 0));
+        Assert.assertSame(second, underTest.takeNextClass(thread, 0));
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+        //WHEN
+        underTest.setClassExecuted("test", second);
+        //THEN
+        Assert.assertSame(third, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testAllClaimedResourcesAreAcquiredTogether() {
+        //GIVEN
+        TestClassExecutionData dbUser = createClassData("a.First", 0, "DB", false);
+        TestClassExecutionData both = createClassData("a.Second", 0, "BROWSER+DB", false);
+        TestClassExecutionData browserUser = createClassData("a.Third", 0, "BROWSER", false);
+        underTest.enqueue(dbUser);
+        underTest.enqueue(both);
+        underTest.enqueue(browserUser);
+        Assert.assertSame(dbUser, underTest.takeNextClass(thread, 0));
+        //WHEN
+        TestClassExecutionData picked = underTest.takeNextClass(thread, 0);
+        //THEN
+        Assert.assertSame(browserUser, picked);
+        underTest.setClassExecuted("test", dbUser);
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+        underTest.setClassExecuted("test", browserUser);
+        Assert.assertSame(both, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testLongestClassIsDispatchedFirst() {
+        //GIVEN
+        TestClassExecutionData shortClass = createClassData("a.Short", 0, null, false);
+        TestClassExecutionData unknownClass = createClassData("a.Unknown", 0, null, false);
+        TestClassExecutionData longClass = createClassData("a.Long", 0, null, false);
+        DurationHistory durationHistory = mock(DurationHistory.class);
+        given(durationHistory.getPredictedDuration(shortClass)).willReturn(1000L);
+        given(durationHistory.getPredictedDuration(unknownClass)).willReturn(1000L);
+        given(durationHistory.getPredictedDuration(longClass)).willReturn(5000L);
+        underTest.setDurationHistory(durationHistory);
+        underTest.enqueue(shortClass);
+        underTest.enqueue(unknownClass);
+        underTest.enqueue(longClass);
+        //WHEN
+        TestClassExecutionData picked = underTest.takeNextClass(thread, 0);
+        //THEN
+        Assert.assertSame(longClass, picked);
+        Assert.assertSame(shortClass, underTest.takeNextClass(thread, 0));
+        Assert.assertSame(unknownClass, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testDependentClassIsHeldUntilItsPrerequisiteIsExecuted() {
+        //GIVEN
+        TestClassExecutionData dependent = createClassData("a.Second", 0, null, false);
+        dependent.setDependencies(Collections.singletonList("a.First"));
+        TestClassExecutionData prerequisite = createClassData("a.First", 0, null, false);
+        underTest.enqueue(prerequisite);
+        underTest.enqueue(dependent);
+        Assert.assertSame(prerequisite, underTest.takeNextClass(thread, 0));
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+        //WHEN
+        List<TestClassExecutionData> skipped = underTest.setClassExecuted("test", prerequisite);
+        //THEN
+        Assert.assertTrue(skipped.isEmpty());
+        Assert.assertSame(dependent, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testDependentClassesOfAFailedClassAreSkipped() {
+        //GIVEN
+        TestClassExecutionData prerequisite = createClassData("a.First", 0, null, false);
+        TestClassExecutionData dependent = createClassData("a.Second", 0, null, false);
+        dependent.setDependencies(Collections.singletonList("a.First"));
+        TestClassExecutionData indirect = createClassData("a.Third", 0, null, false);
+        indirect.setDependencies(Collections.singletonList("a.Second"));
+        underTest.enqueue(prerequisite);
+        underTest.enqueue(dependent);
+        underTest.enqueue(indirect);
+        Assert.assertSame(prerequisite, underTest.takeNextClass(thread, 0));
+        prerequisite.setItAsProblematic();
+        //WHEN
+        List<TestClassExecutionData> skipped = underTest.setClassExecuted("test", prerequisite);
+        //THEN
+        Assert.assertEquals(Arrays.asList(dependent, indirect), skipped);
+        Assert.assertTrue(dependent.isSkipped());
+        Assert.assertTrue(indirect.isSkipped());
+        Assert.assertEquals(1, dependent.getLock());
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+    }
+
+    @Test
+    public void testDependentClassIsHeldUntilAllRowsOfItsPrerequisiteAreLoadedAndExecuted() {
+        //GIVEN
+        Map<String, List<String>> prerequisites = new LinkedHashMap<>();
+        prerequisites.put("a.Second", Collections.singletonList("a.First"));
+        prerequisites.put("a.First", Collections.<String>emptyList());
+        underTest.expectTestClasses(prerequisites);
+        TestClassExecutionData dependent = createClassData("a.Second", 0, null, false);
+        dependent.setDependencies(Collections.singletonList("a.First"));
+        underTest.enqueue(dependent);
+        underTest.testClassLoaded("a.Second");
+        TestClassExecutionData row0 = createClassData("a.First", 0, null, false);
+        underTest.enqueue(row0);
+        Assert.assertSame(row0, underTest.takeNextClass(thread, 0));
+        underTest.setClassExecuted("test", row0);
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+        TestClassExecutionData row1 = createClassData("a.First", 1, null, false);
+        underTest.enqueue(row1);
+        Assert.assertSame(row1, underTest.takeNextClass(thread, 0));
+        underTest.setClassExecuted("test", row1);
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+        //WHEN
+        List<TestClassExecutionData> skipped = underTest.testClassLoaded("a.First");
+        //THEN
+        Assert.assertTrue(skipped.isEmpty());
+        Assert.assertSame(dependent, underTest.takeNextClass(thread, 0));
+    }
+
+    @Test
+    public void testClassLoadedAfterItsPrerequisiteFailedIsSkipped() {
+        //GIVEN
+        Map<String, List<String>> prerequisites = new LinkedHashMap<>();
+        prerequisites.put("a.First", Collections.<String>emptyList());
+        prerequisites.put("a.Second", Collections.singletonList("a.First"));
+        underTest.expectTestClasses(prerequisites);
+        TestClassExecutionData prerequisite = createClassData("a.First", 0, null, false);
+        underTest.enqueue(prerequisite);
+        underTest.testClassLoaded("a.First");
+        Assert.assertSame(prerequisite, underTest.takeNextClass(thread, 0));
+        prerequisite.setItAsProblematic();
+        underTest.setClassExecuted("test", prerequisite);
+        TestClassExecutionData dependent = createClassData("a.Second", 0, null, false);
+        dependent.setDependencies(Collections.singletonList("a.First"));
+        //WHEN
+        List<TestClassExecutionData> skipped = underTest.enqueue(dependent);
+        //THEN
+        Assert.assertEquals(Collections.singletonList(dependent), skipped);
+        Assert.assertTrue(dependent.isSkipped());
+        Assert.assertEquals(1, dependent.getLock());
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+    }
+
+    @Test
+    public void testClassOnTheCriticalPathIsDispatchedFirst() {
+        //GIVEN
+        TestClassExecutionData longClass = createClassData("a.Long", 0, null, false);
+        TestClassExecutionData head = createClassData("a.Head", 0, null, false);
+        TestClassExecutionData tail = createClassData("a.Tail", 0, null, false);
+        tail.setDependencies(Collections.singletonList("a.Head"));
+        DurationHistory durationHistory = mock(DurationHistory.class);
+        given(durationHistory.getPredictedDuration(longClass)).willReturn(5000L);
+        given(durationHistory.getPredictedDuration(head)).willReturn(1000L);
+        given(durationHistory.getPredictedDuration(tail)).willReturn(6000L);
+        underTest.setDurationHistory(durationHistory);
+        Map<String, TestClassExecutionData> testClassMap = new LinkedHashMap<>();
+        for (TestClassExecutionData classData : Arrays.asList(longClass, head, tail)) {
+            testClassMap.put(classData.getID(), classData);
+        }
+        GenericListTestSuite.setTestClassMap(testClassMap);
+        underTest.enqueueTestSuite();
+        //WHEN
+        TestClassExecutionData picked = underTest.takeNextClass(thread, 0);
+        //THEN
+        Assert.assertSame(head, picked);
+        Assert.assertSame(longClass, underTest.takeNextClass(thread, 0));
+        GenericListTestSuite.setTestClassMap(new LinkedHashMap<String, TestClassExecutionData>());
+    }
+
+    @Test
+    public void testFailedClassIsRetriedAfterTheNotYetExecutedClasses() {
+        //GIVEN
+        underTest.setMaxRetries(1);
+        TestClassExecutionData flaky = createClassData("a.First", 0, null, false);
+        TestClassExecutionData other = createClassData("a.Second", 0, null, false);
+        underTest.enqueue(flaky);
+        underTest.enqueue(other);
+        Assert.assertSame(flaky, underTest.takeNextClass(thread, 0));
+        flaky.increaseCountFailed();
+        //WHEN
+        underTest.setClassExecuted("test", flaky);
+        //THEN
+        Assert.assertEquals(0, flaky.getLock());
+        Assert.assertEquals(1, flaky.getRetries());
+        Assert.assertEquals(0, flaky.getCountFailed());
+        Assert.assertSame(other, underTest.takeNextClass(thread, 0));
+        Assert.assertSame(flaky, underTest.takeNextClass(thread, 0));
+        flaky.increaseCountPassed();
+        underTest.setClassExecuted("test", flaky);
+        Assert.assertEquals(-1, flaky.getLock());
+        Assert.assertTrue(flaky.isFlaky());
+    }
+
+    @Test
+    public void testClassFailedOnItsLastAttemptIsExecuted() {
+        //GIVEN
+        underTest.setMaxRetries(1);
+        TestClassExecutionData failing = createClassData("a.First", 0, null, false);
+        underTest.enqueue(failing);
+        Assert.assertSame(failing, underTest.takeNextClass(thread, 0));
+        failing.setItAsProblematic();
+        underTest.setClassExecuted("test", failing);
+        Assert.assertSame(failing, underTest.takeNextClass(thread, 0));
+        failing.increaseCountFailed();
+        //WHEN
+        underTest.setClassExecuted("test", failing);
+        //THEN
+        Assert.assertEquals(-1, failing.getLock());
+        Assert.assertFalse(failing.isFlaky());
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+    }
+
+    @Test
+    public void testAbandonedHungClassIsNotRetried() {
+        //GIVEN
+        underTest.setMaxRetries(1);
+        TestClassExecutionData hung = createClassData("a.First", 0, null, false);
+        underTest.enqueue(hung);
+        Assert.assertSame(hung, underTest.takeNextClass(thread, 0));
+        hung.setItAsProblematic();
+        hung.setItAsAbandoned();
+        //WHEN
+        underTest.setClassExecuted("watchdog", hung);
+        //THEN
+        Assert.assertEquals(-1, hung.getLock());
+        Assert.assertEquals(0, hung.getRetries());
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+    }
+
+    @Test
+    public void testWaitingThreadIsWokenUpByEnqueue() throws InterruptedException {
+        //GIVEN
+        final TestClassExecutionData classData = createClassData("a.First", 0, null, false);
+        final TestClassExecutionData[] picked = new TestClassExecutionData[1];
+        Thread waiting = new Thread() {
+            @Override
+            public void run() {
+                picked[0] = underTest.takeNextClass(thread, 0);
+            }
+        };
+        waiting.start();
+        //WHEN
+        underTest.enqueue(classData);
+        waiting.join(1000);
+        //THEN
+        Assert.assertSame(classData, picked[0]);
+    }
+
+    @Test
+    public void testShutdownReleasesWaitingThread() throws InterruptedException {
+        //GIVEN
+        final TestClassExecutionData[] picked = new TestClassExecutionData[]{createClassData("a.First", 0, null, false)};
+        Thread waiting = new Thread() {
+            @Override
+            public void run() {
+                picked[0] = underTest.takeNextClass(thread, 0);
+            }
+        };
+        waiting.start();
+        //WHEN
+        underTest.shutdown();
+        waiting.join(1000);
+        //THEN
+        Assert.assertFalse(waiting.isAlive());
+        Assert.assertNull(picked[0]);
+    }
+
+    @Test
+    public void testLoadingWaitsTillAWaitingRowIsPicked() throws InterruptedException {
+        //GIVEN
+        underTest.setLoadWindow(1);
+        final TestClassExecutionData first = createClassData("a.First", 0, null, false);
+        underTest.enqueue(first);
+        Thread loader = new Thread() {
+            @Override
+            public void run() {
+                underTest.awaitLoadCapacity();
+            }
+        };
+        loader.start();
+        loader.join(100);
+        Assert.assertTrue(loader.isAlive());
+        //WHEN
+        underTest.takeNextClass(thread, 0);
+        loader.join(1000);
+        //THEN
+        Assert.assertFalse(loader.isAlive());
+    }
+
+    @Test
+    public void testRowsWaitingForTheirPrerequisitesDoNotStopTheLoading() {
+        //GIVEN
+        underTest.setLoadWindow(1);
+        TestClassExecutionData dependent = createClassData("a.Second", 0, null, false);
+        dependent.setDependencies(Collections.singletonList("a.First"));
+        Map<String, List<String>> prerequisites = new LinkedHashMap<>();
+        prerequisites.put("a.Second", Collections.singletonList("a.First"));
+        prerequisites.put("a.First", Collections.<String>emptyList());
+        underTest.expectTestClasses(prerequisites);
+        underTest.enqueue(dependent);
+        //WHEN
+        underTest.awaitLoadCapacity();
+        //THEN no waiting
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+    }
+
+    @Test
+    public void testExecutionIsStoppedAtTheFirstFailureAndWaitingClassesAreSkipped() {
+        //GIVEN
+        underTest.setStopCondition(new StopCondition(1, 0, 0));
+        TestClassExecutionData failing = createClassData("a.First", 0, null, false);
+        TestClassExecutionData waiting = createClassData("a.Second", 0, null, false);
+        underTest.enqueue(failing);
+        underTest.enqueue(waiting);
+        Assert.assertSame(failing, underTest.takeNextClass(thread, 0));
+        failing.setItAsProblematic();
+        //WHEN
+        List<TestClassExecutionData> skipped = underTest.setClassExecuted("test", failing);
+        //THEN
+        Assert.assertEquals(Collections.singletonList(waiting), skipped);
+        Assert.assertTrue(waiting.isSkipped());
+        Assert.assertTrue(waiting.getSkipReason().contains("the test execution is stopped"));
+        Assert.assertNotNull(underTest.getStopReason());
+        Assert.assertNull(underTest.takeNextClass(thread, 1));
+    }
+
+    @Test
+    public void testClassesLoadedAfterTheStopAreSkipped() {
+        //GIVEN
+        underTest.setStopCondition(new StopCondition(0, 50, 2));
+        TestClassExecutionData passing = createClassData("a.First", 0, null, false);
+        TestClassExecutionData failing = createClassData("a.Second", 0, null, false);
+        underTest.enqueue(passing);
+        underTest.enqueue(failing);
+        underTest.setClassExecuted("test", underTest.takeNextClass(thread, 0));
+        Assert.assertNull(underTest.getStopReason());
+        underTest.takeNextClass(thread, 0).setItAsProblematic();
+        underTest.setClassExecuted("test", failing);
+        //WHEN
+        TestClassExecutionData late = createClassData("a.Third", 0, null, false);
+        List<TestClassExecutionData> skipped = underTest.enqueue(late);
+        //THEN
+        Assert.assertEquals(Collections.singletonList(late), skipped);
+        Assert.assertEquals(1, late.getLock());
+        Assert.assertTrue(late.isSkipped());
+    }
+
+    @Test
+    public void testThreadPrefersTheRowsOfItsLastClassAndStealsWhenIdle() {
+        //GIVEN
+        TestClassExecutionThread other = new TestClassExecutionThread("xml", new ExecutorThreadManager());
+        other.setEnabled(true);
+        underTest.setThreadAffinity(true);
+        TestClassExecutionData first0 = createClassData("a.First", 0, null, false);
+        TestClassExecutionData first1 = createClassData("a.First", 1, null, false);
+        TestClassExecutionData first2 = createClassData("a.First", 2, null, false);
+        TestClassExecutionData second0 = createClassData("a.Second", 0, null, false);
+        TestClassExecutionData second1 = createClassData("a.Second", 1, null, false);
+        for (TestClassExecutionData row : Arrays.asList(first0, first1, first2, second0, second1)) {
+            underTest.enqueue(row);
+        }
+        Assert.assertSame(first0, underTest.takeNextClass(thread, 0));
+        //WHEN
+        TestClassExecutionData pickedByOther = underTest.takeNextClass(other, 0);
+        TestClassExecutionData pickedByThread = underTest.takeNextClass(thread, 0);
+        TestClassExecutionData secondPickedByOther = underTest.takeNextClass(other, 0);
+        TestClassExecutionData stolenByOther = underTest.takeNextClass(other, 0);
+        //THEN
+        Assert.assertSame(second0, pickedByOther);
+        Assert.assertSame(first1, pickedByThread);
+        Assert.assertSame(second1, secondPickedByOther);
+        Assert.assertSame(first2, stolenByOther);
+    }
+
+    private TestClassExecutionData createClassData(final String className, final int row, final String blocker, final boolean selfEnabled) {
+        TestClassExecutionData classData = new TestClassExecutionData(className + "/" + row, new Environment());
+        classData.setClassName(className);
+        classData.setDataRow(row);
+        classData.setBlockerString(selfEnabled ? blocker + "*" : blocker);
+        return classData;
+    }
+}
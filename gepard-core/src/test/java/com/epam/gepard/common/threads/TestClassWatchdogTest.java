@@ -0,0 +1,99 @@
+package com.epam.gepard.common.threads;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+
+/**
+ * Unit tests for {@link TestClassWatchdog}.
+ */
+public class TestClassWatchdogTest {
+
+    private static final long START_TIME = 100000L;
+
+    private ExecutorThreadManager manager;
+    private TestClassExecutionThread thread;
+    private TestClassExecutionData classData;
+    private TestClassWatchdog underTest;
+
+    @Before
+    public void setUp() {
+        manager = mock(ExecutorThreadManager.class);
+        thread = new TestClassExecutionThread("xml", manager);
+        thread.setEnabled(true);
+        given(manager.getThreads()).willReturn(new TestClassExecutionThread[]{thread});
+        classData = new TestClassExecutionData("a.Hung/0", new Environment());
+        classData.setClassName("a.Hung");
+        classData.setTimeout(1000L);
+        classData.lock();
+        Whitebox.setInternalState(thread, "classData", new AtomicReference<>(classData));
+        Whitebox.setInternalState(thread, "classStartTime", START_TIME);
+        underTest = new TestClassWatchdog(manager);
+    }
+
+    @Test
+    public void testThreadDumpStartsWithTheHungThread() {
+        //GIVEN
+        Whitebox.setInternalState(thread, "runner", Thread.currentThread());
+        //WHEN
+        String threadDump = underTest.createThreadDump(thread);
+        //THEN
+        Assert.assertTrue(threadDump.startsWith("\"" + Thread.currentThread().getName() + "\" RUNNABLE"));
+        Assert.assertTrue(threadDump.contains("testThreadDumpStartsWithTheHungThread"));
+    }
+
+    @Test
+    public void testClassWithinItsTimeLimitIsNotTouched() {
+        //GIVEN in setUp
+        //WHEN
+        underTest.checkExecutorThreads(START_TIME + 1000L);
+        //THEN
+        Assert.assertSame(classData, thread.getActiveTest());
+        Assert.assertTrue(thread.isEnabled());
+        Assert.assertEquals(1, classData.getLock());
+    }
+
+    @Test
+    public void testHungClassIsSetAsFailedAndItsThreadIsAbandoned() {
+        //GIVEN in setUp
+        //WHEN
+        underTest.checkExecutorThreads(START_TIME + 1001L);
+        //THEN
+        Assert.assertNull(thread.getActiveTest());
+        Assert.assertFalse(thread.isEnabled());
+        Assert.assertTrue(classData.isFailed());
+        Assert.assertTrue(classData.isAbandoned());
+        Assert.assertEquals(-1, classData.getLock());
+        Assert.assertTrue(classData.getSysOut().contains("Test class is hung"));
+        verify(manager).startWorkerIfAllowed();
+    }
+}
@@ -0,0 +1,68 @@
+package com.epam.gepard.common.threads.helper;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link VirtualThreadFactory}.
+ */
+public class VirtualThreadFactoryTest {
+
+    private final VirtualThreadFactory underTest = new VirtualThreadFactory();
+
+    @Test
+    public void testCreatedThreadExecutesTheTask() throws InterruptedException {
+        //GIVEN
+        final AtomicBoolean executed = new AtomicBoolean();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                executed.set(true);
+            }
+        };
+        //WHEN
+        Thread thread = underTest.create("Exec0", task);
+        thread.start();
+        thread.join(1000);
+        //THEN
+        Assert.assertEquals("Exec0", thread.getName());
+        Assert.assertTrue(executed.get());
+    }
+
+    @Test
+    public void testSupportFollowsTheJvm() {
+        //GIVEN
+        boolean jvmSupportsVirtualThreads;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            jvmSupportsVirtualThreads = true;
+        } catch (NoSuchMethodException e) {
+            jvmSupportsVirtualThreads = false;
+        }
+        //WHEN
+        boolean result = underTest.isSupported();
+        //THEN
+        Assert.assertEquals(jvmSupportsVirtualThreads, result);
+    }
+}
@@ -0,0 +1,96 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.epam.gepard.common.Environment;
+
+/**
+ * Unit tests for {@link ResultFileShipper}.
+ */
+public class ResultFileShipperTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File workerFolder;
+    private File coordinatorFolder;
+    private ResultFileShipper underTest;
+
+    @Before
+    public void setUp() throws IOException {
+        workerFolder = folder.newFolder("worker");
+        coordinatorFolder = folder.newFolder("coordinator");
+        underTest = new ResultFileShipper(workerFolder);
+    }
+
+    @Test
+    public void testResultPathsAreRelocated() {
+        //GIVEN
+        Properties properties = new Properties();
+        properties.setProperty(Environment.GEPARD_RESULT_PATH, "/coordinator/results");
+        properties.setProperty(Environment.GEPARD_HTML_RESULT_PATH, "/coordinator/results/html");
+        properties.setProperty(Environment.GEPARD_TEST_RESOURCE_PATH, "/coordinator/resources");
+        //WHEN
+        underTest.relocateResultPaths(properties);
+        //THEN
+        Assert.assertEquals(workerFolder.getPath(), properties.getProperty(Environment.GEPARD_RESULT_PATH));
+        Assert.assertEquals(workerFolder.getPath() + "/html", properties.getProperty(Environment.GEPARD_HTML_RESULT_PATH));
+        Assert.assertEquals("/coordinator/resources", properties.getProperty(Environment.GEPARD_TEST_RESOURCE_PATH));
+    }
+
+    @Test
+    public void testChangedFilesAreShippedOnlyOnce() throws IOException {
+        //GIVEN
+        File htmlFolder = new File(workerFolder, "html/a");
+        Assert.assertTrue(htmlFolder.mkdirs());
+        Files.write(new File(htmlFolder, "Test0.html").toPath(), "result".getBytes(StandardCharsets.UTF_8));
+        //WHEN
+        List<WorkerMessage> messages = underTest.collectChangedFiles();
+        for (WorkerMessage message : messages) {
+            ResultFileShipper.storeFile(WorkerMessage.decode(message.encode()), coordinatorFolder);
+        }
+        //THEN
+        Assert.assertEquals(1, messages.size());
+        Assert.assertEquals("result", new String(Files.readAllBytes(new File(coordinatorFolder, "html/a/Test0.html").toPath()), StandardCharsets.UTF_8));
+        Assert.assertTrue(underTest.collectChangedFiles().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testFileOutOfTheResultFolderIsRejected() throws IOException {
+        //GIVEN
+        WorkerMessage message = new WorkerMessage(WorkerMessage.FILE, "../evil.txt", "");
+        //WHEN
+        ResultFileShipper.storeFile(message, coordinatorFolder);
+        //THEN exception is expected
+    }
+}
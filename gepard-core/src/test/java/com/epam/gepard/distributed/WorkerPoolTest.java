@@ -0,0 +1,151 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.threads.helper.ServerSocketFactory;
+
+/**
+ * Unit tests for {@link WorkerPool}.
+ */
+public class WorkerPoolTest {
+
+    private static final String TOKEN = "secret";
+    private static final long REGISTRATION_TIMEOUT = 5000L;
+
+    @Mock
+    private ServerSocketFactory serverSocketFactory;
+
+    private Environment environment;
+    private WorkerPool underTest;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        environment = new Environment();
+    }
+
+    @After
+    public void tearDown() {
+        if (underTest != null) {
+            underTest.shutdown();
+        }
+    }
+
+    @Test
+    public void testPortOfTheForkedWorkersIsOpenedOnTheLoopbackAddress() throws IOException {
+        //GIVEN
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        given(serverSocketFactory.create(0, loopback)).willReturn(new ServerSocket(0, 0, loopback));
+        underTest = new WorkerPool(environment, serverSocketFactory, TOKEN);
+        //WHEN
+        underTest.start(0, true);
+        //THEN
+        verify(serverSocketFactory).create(0, loopback);
+    }
+
+    @Test
+    public void testWorkerWithWrongTokenIsRejected() throws IOException {
+        //GIVEN
+        int port = startPool();
+        WorkerConnection worker = new WorkerConnection(new Socket(InetAddress.getLoopbackAddress(), port));
+        //WHEN
+        worker.send(new WorkerMessage(WorkerMessage.HELLO, "Worker0", "wrong"));
+        //THEN
+        try {
+            worker.receive();
+            Assert.fail("The connection should be closed.");
+        } catch (IOException e) {
+            Assert.assertEquals(0, underTest.getWorkerCount());
+        } finally {
+            worker.close();
+        }
+    }
+
+    @Test
+    public void testWorkerWithTheTokenReceivesTheEnvironment() throws IOException, InterruptedException {
+        //GIVEN
+        int port = startPool();
+        WorkerConnection worker = new WorkerConnection(new Socket(InetAddress.getLoopbackAddress(), port));
+        //WHEN
+        worker.send(new WorkerMessage(WorkerMessage.HELLO, "Worker0", TOKEN));
+        WorkerMessage message = worker.receive();
+        //THEN
+        Assert.assertEquals(WorkerMessage.ENVIRONMENT, message.getCommand());
+        awaitRegistration();
+        Assert.assertEquals(1, underTest.getWorkerCount());
+        worker.close();
+    }
+
+    @Test
+    public void testResultOfAnotherTestClassIsNotAccepted() throws IOException, InterruptedException {
+        //GIVEN
+        WorkerConnection worker = new WorkerConnection(new Socket(InetAddress.getLoopbackAddress(), startPool()));
+        worker.send(new WorkerMessage(WorkerMessage.HELLO, "Worker0", TOKEN));
+        worker.receive();
+        awaitRegistration();
+        final TestClassExecutionData classData = new TestClassExecutionData("a.First/0", environment);
+        classData.setClassName("a.First");
+        Thread executor = new Thread() {
+            @Override
+            public void run() {
+                underTest.execute(classData);
+            }
+        };
+        executor.start();
+        Assert.assertEquals(WorkerMessage.RUN, worker.receive().getCommand());
+        //WHEN
+        worker.send(new WorkerMessage(WorkerMessage.DONE, "a.Second/0", "1", "0", "0", "0", "1", "false", ""));
+        executor.join(REGISTRATION_TIMEOUT);
+        //THEN
+        Assert.assertTrue(classData.isProblematic());
+        Assert.assertEquals(0, classData.getCountPassed());
+        Assert.assertEquals(0, underTest.getWorkerCount());
+        worker.close();
+    }
+
+    private int startPool() throws IOException {
+        underTest = new WorkerPool(environment, new ServerSocketFactory(), TOKEN);
+        return underTest.start(0, true);
+    }
+
+    private void awaitRegistration() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + REGISTRATION_TIMEOUT;
+        while (underTest.getWorkerCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+    }
+}
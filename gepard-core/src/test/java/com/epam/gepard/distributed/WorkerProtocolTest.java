@@ -0,0 +1,137 @@
+package com.epam.gepard.distributed;
+
+/*==========================================================================
+Copyright 2004-2015 EPAM Systems
+
+This file is part of Gepard.
+
+Gepard is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Gepard is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.datadriven.DataDrivenParameters;
+import com.epam.gepard.generic.CommonGepardTestClassForTesting;
+
+/**
+ * Unit tests for {@link WorkerProtocol} and {@link WorkerMessage}.
+ */
+public class WorkerProtocolTest {
+
+    private Environment environment;
+    private WorkerProtocol underTest;
+
+    @Before
+    public void setUp() {
+        environment = new Environment();
+        underTest = new WorkerProtocol();
+    }
+
+    @Test
+    public void testMessageFieldsSurviveEncoding() {
+        //GIVEN
+        WorkerMessage message = new WorkerMessage(WorkerMessage.DONE, "a b", "", null, "line1\nline2 %+=");
+        //WHEN
+        WorkerMessage decoded = WorkerMessage.decode(message.encode());
+        //THEN
+        Assert.assertEquals(WorkerMessage.DONE, decoded.getCommand());
+        Assert.assertEquals(Arrays.asList("a b", "", null, "line1\nline2 %+="), decoded.getFields());
+        Assert.assertFalse(message.encode().contains("\n"));
+    }
+
+    @Test
+    public void testRunMessageCreatesTheSameTestClassAtTheWorker() throws ClassNotFoundException {
+        //GIVEN
+        TestClassExecutionData classData = createClassData();
+        classData.setDrivenData(new DataDrivenParameters(new String[]{"v1", "v 2"}, new String[]{"NAME1", "NAME2"}));
+        classData.setBlockerString("DB+AAA*");
+        //WHEN
+        WorkerMessage message = WorkerMessage.decode(underTest.createRunMessage(classData).encode());
+        TestClassExecutionData workerData = underTest.createClassData(message, environment);
+        //THEN
+        Assert.assertEquals(classData.getID(), workerData.getID());
+        Assert.assertEquals(CommonGepardTestClassForTesting.class, workerData.getTestClass());
+        Assert.assertEquals(2, workerData.getDrivenDataRowNo());
+        Assert.assertEquals("Name - v1", workerData.getTestScriptName());
+        Assert.assertEquals("TC-1", workerData.getTestScriptId());
+        Assert.assertEquals("v 2", workerData.getDrivenData().getTestParameter("NAME2"));
+        Assert.assertEquals("DB+AAA*", workerData.getBlockerString());
+    }
+
+    @Test
+    public void testDoneMessageUpdatesTheCounters() {
+        //GIVEN
+        TestClassExecutionData workerData = createClassData();
+        workerData.increaseCountPassed();
+        workerData.increaseCountPassed();
+        workerData.increaseCountFailed();
+        workerData.setCountOfRuns(3);
+        workerData.addSysOut("Running test");
+        TestClassExecutionData classData = createClassData();
+        //WHEN
+        underTest.applyDoneMessage(WorkerMessage.decode(underTest.createDoneMessage(workerData).encode()), classData);
+        //THEN
+        Assert.assertEquals(2, classData.getCountPassed());
+        Assert.assertEquals(1, classData.getCountFailed());
+        Assert.assertEquals(3, classData.getCountOfRuns());
+        Assert.assertTrue(classData.isFailed());
+        Assert.assertFalse(classData.isProblematic());
+        Assert.assertEquals("Running test\n", classData.getSysOut());
+    }
+
+    @Test
+    public void testEnvironmentIsPassedToTheWorker() {
+        //GIVEN
+        environment.setProperty(Environment.GEPARD_RESULT_PATH, "/tmp/results");
+        //WHEN
+        Properties properties = underTest.readEnvironmentMessage(WorkerMessage.decode(underTest.createEnvironmentMessage(environment).encode()));
+        //THEN
+        Assert.assertEquals("/tmp/results", properties.getProperty(Environment.GEPARD_RESULT_PATH));
+        Assert.assertNull(properties.getProperty("java.version"));
+    }
+
+    @Test
+    public void testOnlyThePropertiesTheWorkerNeedsArePassed() {
+        //GIVEN
+        environment.setProperty(Environment.GEPARD_AGENTS_TOKEN, "secret");
+        environment.setProperty(Environment.GEPARD_AGENTS_PROPERTIES, "myapp., other.");
+        environment.setProperty("env.default.url", "http://a");
+        environment.setProperty("myapp.user", "user");
+        environment.setProperty("jira.site.password", "password");
+        //WHEN
+        Properties properties = underTest.readEnvironmentMessage(WorkerMessage.decode(underTest.createEnvironmentMessage(environment).encode()));
+        //THEN
+        Assert.assertEquals("http://a", properties.getProperty("env.default.url"));
+        Assert.assertEquals("user", properties.getProperty("myapp.user"));
+        Assert.assertNull(properties.getProperty(Environment.GEPARD_AGENTS_TOKEN));
+        Assert.assertNull(properties.getProperty(Environment.GEPARD_AGENTS_PROPERTIES));
+        Assert.assertNull(properties.getProperty("jira.site.password"));
+    }
+
+    private TestClassExecutionData createClassData() {
+        TestClassExecutionData classData = new TestClassExecutionData(CommonGepardTestClassForTesting.class.getName() + "/2", environment);
+        classData.setClassName(CommonGepardTestClassForTesting.class.getName());
+        classData.setDataRow(2);
+        classData.setTestScriptId("TC-1");
+        classData.setTestScriptName("Name - v1");
+        return classData;
+    }
+}
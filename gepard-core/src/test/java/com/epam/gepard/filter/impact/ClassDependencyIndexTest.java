@@ -0,0 +1,126 @@
+package com.epam.gepard.filter.impact;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.epam.gepard.filter.DefaultTestFilter;
+import com.epam.gepard.filter.ExpressionTestFilter;
+import com.epam.gepard.filter.matcher.SimpleMatcher;
+import com.epam.gepard.util.ExitCode;
+
+/**
+ * Unit tests for {@link ClassDependencyIndex}.
+ */
+public class ClassDependencyIndexTest {
+
+    private static final String CHANGED_SOURCE = "gepard-core/src/main/java/com/epam/gepard/filter/matcher/SimpleMatcher.java";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File classFolder;
+    private ClassDependencyIndex underTest;
+
+    @Before
+    public void setUp() throws IOException {
+        classFolder = folder.newFolder("classes");
+        copyClassFile(DefaultTestFilter.class);
+        copyClassFile(ExpressionTestFilter.class);
+        copyClassFile(SimpleMatcher.class);
+        copyClassFile(ExitCode.class);
+        underTest = new ClassDependencyIndex();
+    }
+
+    @Test
+    public void testClassesReferringToTheChangedSourceAreAffected() throws IOException {
+        //GIVEN
+        underTest.update(Collections.singletonList(classFolder));
+        //WHEN
+        Set<String> affected = underTest.getAffectedClasses(Collections.singletonList(CHANGED_SOURCE));
+        //THEN
+        Assert.assertTrue(affected.contains(SimpleMatcher.class.getName()));
+        Assert.assertTrue(affected.contains(DefaultTestFilter.class.getName()));
+        Assert.assertFalse(affected.contains(ExpressionTestFilter.class.getName()));
+        Assert.assertFalse(affected.contains(ExitCode.class.getName()));
+    }
+
+    @Test
+    public void testOnlyChangedClassFilesAreReadFromACachedIndex() throws IOException {
+        //GIVEN
+        Assert.assertEquals(4, underTest.update(Collections.singletonList(classFolder)));
+        File indexFile = new File(folder.getRoot(), "index.txt");
+        underTest.save(indexFile);
+        File changedClassFile = new File(classFolder, "com/epam/gepard/util/ExitCode.class");
+        Assert.assertTrue(changedClassFile.setLastModified(changedClassFile.lastModified() + 10000L));
+        ClassDependencyIndex loaded = new ClassDependencyIndex();
+        //WHEN
+        loaded.load(indexFile);
+        int readClasses = loaded.update(Collections.singletonList(classFolder));
+        //THEN
+        Assert.assertEquals(1, readClasses);
+        Assert.assertEquals(4, loaded.getClassCount());
+        Assert.assertTrue(loaded.getAffectedClasses(Collections.singletonList(CHANGED_SOURCE)).contains(DefaultTestFilter.class.getName()));
+    }
+
+    @Test
+    public void testEveryClassIsAffectedWhenAChangedFileIsNotASourceOfAnIndexedClass() throws IOException {
+        //GIVEN
+        underTest.update(Collections.singletonList(classFolder));
+        //WHEN
+        Set<String> affected = underTest.getAffectedClasses(Arrays.asList(CHANGED_SOURCE, "gepard-examples/src/main/resources/testlist.txt"));
+        //THEN
+        Assert.assertNull(affected);
+    }
+
+    @Test
+    public void testClassesThoseAreNotIndexedAreAccepted() throws IOException {
+        //GIVEN
+        underTest.update(Collections.singletonList(classFolder));
+        Set<String> affected = underTest.getAffectedClasses(Collections.singletonList(CHANGED_SOURCE));
+        //WHEN
+        ImpactTestFilter filter = new ImpactTestFilter(affected, underTest.getClassNames());
+        //THEN
+        Assert.assertTrue(filter.accept(DefaultTestFilter.class));
+        Assert.assertFalse(filter.accept(ExpressionTestFilter.class));
+        Assert.assertTrue(filter.accept(ClassDependencyIndexTest.class));
+    }
+
+    private void copyClassFile(final Class<?> clazz) throws IOException {
+        String path = clazz.getName().replace('.', '/') + ".class";
+        File target = new File(classFolder, path);
+        Assert.assertTrue(target.getParentFile().isDirectory() || target.getParentFile().mkdirs());
+        try (InputStream in = clazz.getClassLoader().getResourceAsStream(path)) {
+            Files.copy(in, target.toPath());
+        }
+    }
+}
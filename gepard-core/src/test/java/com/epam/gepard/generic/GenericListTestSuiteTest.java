@@ -0,0 +1,223 @@
+package com.epam.gepard.generic;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.epam.gepard.annotations.TestClass;
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.datadriven.DataDrivenParameterArray;
+import com.epam.gepard.datadriven.feeders.GepardDataFeeder;
+import com.epam.gepard.exception.ShutDownException;
+import com.epam.gepard.filter.ExpressionTestFilter;
+import com.epam.gepard.util.ExitCode;
+
+/**
+ * Unit tests for {@link GenericListTestSuite}.
+ */
+public class GenericListTestSuiteTest {
+
+    private static final long TIMEOUT = 10;
+    private static final List<String> FINISHED_FEEDERS = Collections.synchronizedList(new ArrayList<String>());
+    private static CountDownLatch fastFeedersFinished;
+    private static volatile boolean feederFailedOnPoolThread;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Mock
+    private ExpressionTestFilter filter;
+
+    private Environment environment;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        given(filter.accept(any(Class.class))).willReturn(true);
+        environment = new Environment();
+        GenericListTestSuite.setTestClassMap(new LinkedHashMap<String, TestClassExecutionData>());
+        FINISHED_FEEDERS.clear();
+        fastFeedersFinished = new CountDownLatch(2);
+        feederFailedOnPoolThread = false;
+    }
+
+    @After
+    public void tearDown() {
+        GenericListTestSuite.setTestClassMap(new LinkedHashMap<String, TestClassExecutionData>());
+    }
+
+    @Test
+    public void testTestClassesAreAddedInTestlistOrderWhenTheirFeedersFinishOutOfOrder() throws Exception {
+        //GIVEN
+        GenericListTestSuite underTest = createSuite(FirstTest.class.getName() + "," + OrderFeeder.class.getName() + ":slow",
+                SecondTest.class.getName() + "," + OrderFeeder.class.getName() + ":fast", ThirdTest.class.getName() + "," + OrderFeeder.class.getName() + ":fast");
+        //WHEN
+        underTest.loadTestClasses();
+        //THEN
+        Assert.assertEquals("slow", FINISHED_FEEDERS.get(2));
+        Assert.assertEquals(Arrays.asList(FirstTest.class.getName() + "/0", SecondTest.class.getName() + "/0", ThirdTest.class.getName() + "/0"),
+                new ArrayList<>(GenericListTestSuite.getTestClassIds()));
+    }
+
+    @Test
+    public void testFeederInitErrorIsDetectedBeforeTheLoad() throws Exception {
+        //GIVEN
+        String firstRow = FirstTest.class.getName() + "," + OrderFeeder.class.getName() + ":fast";
+        String secondRow = SecondTest.class.getName() + "," + OrderFeeder.class.getName() + ":fail";
+        //WHEN
+        try {
+            createSuite(firstRow, secondRow);
+            Assert.fail("ShutDownException is expected.");
+        } catch (ShutDownException e) {
+            //THEN
+            Assert.assertEquals(ExitCode.EXIT_CODE_DATA_FEEDER_INIT_FAILED, e.getExitCode());
+            Assert.assertTrue(FINISHED_FEEDERS.isEmpty());
+        }
+    }
+
+    @Test
+    public void testFeederErrorOfAPoolThreadKeepsItsExitCode() throws Exception {
+        //GIVEN
+        GenericListTestSuite underTest = createSuite(FirstTest.class.getName() + "," + OrderFeeder.class.getName() + ":fast",
+                SecondTest.class.getName() + "," + OrderFeeder.class.getName() + ":nodata");
+        //WHEN
+        try {
+            underTest.loadTestClasses();
+            Assert.fail("ShutDownException is expected.");
+        } catch (ShutDownException e) {
+            //THEN
+            Assert.assertEquals(ExitCode.EXIT_CODE_DATA_FEEDER_CLASS_DATA_CALCULATION_ERROR, e.getExitCode());
+            Assert.assertTrue(feederFailedOnPoolThread);
+        }
+    }
+
+    private GenericListTestSuite createSuite(final String... testListRows) throws IOException, ClassNotFoundException {
+        File testList = folder.newFile("testlist.txt");
+        Files.write(testList.toPath(), Arrays.asList(testListRows), StandardCharsets.UTF_8);
+        return new GenericListTestSuite(testList.getPath(), filter, null, environment);
+    }
+
+    /**
+     * Test feeder with one data row. The "slow" feeder finishes only after the "fast" ones, the "fail" feeder cannot be initialized,
+     * and the "nodata" feeder cannot calculate its data.
+     */
+    public static class OrderFeeder implements GepardDataFeeder {
+        private String parameter;
+
+        @Override
+        public int init(final String testClassName, final String parameter, final Environment environment) {
+            this.parameter = parameter;
+            int result = 0;
+            if ("fail".equals(parameter)) {
+                result = INIT_FAILED_WITH_INVALID_PARAMETER;
+            }
+            return result;
+        }
+
+        @Override
+        public int calculateRuns(final String className, final int inputRows) {
+            return inputRows;
+        }
+
+        @Override
+        public DataDrivenParameterArray calculateParameterArray(final String className, final DataDrivenParameterArray inputParameterArray) {
+            if ("slow".equals(parameter)) {
+                awaitFastFeeders();
+            }
+            DataDrivenParameterArray result = null;
+            if ("nodata".equals(parameter)) {
+                feederFailedOnPoolThread = Thread.currentThread() instanceof ForkJoinWorkerThread;
+            } else {
+                result = new DataDrivenParameterArray();
+                result.setParameterNames(new String[]{"feeder"});
+                result.put(0, new String[]{parameter});
+                FINISHED_FEEDERS.add(parameter);
+            }
+            if ("fast".equals(parameter)) {
+                fastFeedersFinished.countDown();
+            }
+            return result;
+        }
+
+        private void awaitFastFeeders() {
+            try {
+                //managed, so the pool starts another thread for the fast feeders even if it has a single thread
+                ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                    @Override
+                    public boolean block() throws InterruptedException {
+                        return fastFeedersFinished.await(TIMEOUT, TimeUnit.SECONDS);
+                    }
+
+                    @Override
+                    public boolean isReleasable() {
+                        return fastFeedersFinished.getCount() == 0;
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The first test class of the testlist.
+     */
+    @TestClass(id = "FIRST", name = "First")
+    public static class FirstTest {
+    }
+
+    /**
+     * The second test class of the testlist.
+     */
+    @TestClass(id = "SECOND", name = "Second")
+    public static class SecondTest {
+    }
+
+    /**
+     * The third test class of the testlist.
+     */
+    @TestClass(id = "THIRD", name = "Third")
+    public static class ThirdTest {
+    }
+}
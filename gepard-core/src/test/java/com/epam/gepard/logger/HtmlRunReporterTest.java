@@ -1,10 +1,16 @@
 package com.epam.gepard.logger;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 import com.epam.gepard.common.Environment;
 import com.epam.gepard.common.TestClassExecutionData;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.MockitoAnnotations;
 
 /**
@@ -14,6 +20,9 @@ import org.mockito.MockitoAnnotations;
  */
 public class HtmlRunReporterTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private TestClassExecutionData classData;
     private Environment environment;
 
@@ -49,4 +58,25 @@ public class HtmlRunReporterTest {
         Assert.assertTrue("step variable handling is problematic", start + 1 == underTest.getStep());
     }
 
+    @Test
+    public void testEveryAttemptHasItsOwnPage() throws Exception {
+        //given
+        environment.setProperty(Environment.GEPARD_HTML_RESULT_PATH, folder.getRoot().getPath());
+        environment.setProperty(Environment.GEPARD_RESULT_TEMPLATE_PATH, "/templates");
+        classData.setClassName(this.getClass().getName());
+        HtmlRunReporter reporter = new HtmlRunReporter(classData);
+        reporter.hiddenBeforeTestClassExecution();
+        reporter.hiddenAfterTestClassExecution();
+        String firstURL = classData.getTestURL();
+        //when
+        classData.prepareRetry();
+        reporter.hiddenBeforeTestClassExecution();
+        reporter.hiddenAfterTestClassExecution();
+        //then
+        Assert.assertTrue(classData.getTestURL().endsWith("HtmlRunReporterTest0_attempt2.html"));
+        Assert.assertTrue(new File(folder.getRoot(), firstURL).isFile());
+        String lastPage = new String(Files.readAllBytes(new File(folder.getRoot(), classData.getTestURL()).toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(lastPage.contains("<a href=\"HtmlRunReporterTest0.html\">attempt 1</a>"));
+    }
+
 }
@@ -0,0 +1,165 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.epam.gepard.common.Environment;
+
+/**
+ * Unit tests for {@link LogFileWriter}.
+ */
+public class LogFileWriterTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Environment environment;
+    private File templateFile;
+
+    @Before
+    public void setUp() throws IOException {
+        environment = new Environment();
+        environment.setProperty("Version", "1.2");
+        templateFile = folder.newFile("template.html");
+        Files.write(templateFile.toPath(), Arrays.asList("<!--Start of Header-->", "<h1>%Name% %Version%</h1>", "<!--End of Header-->",
+            "ignored text", "<!--Start of Row-->", "<td width=\"100%\">%Name%: %Unknown%, %Name%</td>", "<!--End of Row-->"), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testBlocksAreWrittenWithTheirVariablesSubstituted() throws IOException {
+        //GIVEN
+        File logFile = new File(folder.getRoot(), "log.html");
+        LogFileWriter underTest = new LogFileWriter(templateFile.getPath(), logFile.getPath(), environment);
+        Properties props = new Properties();
+        props.setProperty("Name", "a$1\\b");
+        //WHEN
+        underTest.insertBlock("Header", props);
+        underTest.insertBlock("Row", props);
+        underTest.insertText("text");
+        underTest.close();
+        //THEN
+        String expected = "<h1>a$1\\b %Version%</h1>" + NL + "<td width=\"100%\">a$1\\b: %Unknown%, a$1\\b</td>" + NL + "text" + NL;
+        Assert.assertEquals(expected, new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testOnlyTheGivenPropertiesAreSubstitutedNotTheirDefaults() throws IOException {
+        //GIVEN
+        File logFile = new File(folder.getRoot(), "defaults.html");
+        LogFileWriter underTest = new LogFileWriter(templateFile.getPath(), logFile.getPath(), environment);
+        Properties props = new Properties(environment.getProperties());
+        props.setProperty("Name", "name");
+        //WHEN
+        underTest.insertBlock("Header", props);
+        underTest.close();
+        //THEN
+        Assert.assertEquals("<h1>name %Version%</h1>" + NL, new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTemplateIsCompiledOncePerPath() throws IOException {
+        //GIVEN
+        LogFileWriter first = new LogFileWriter(templateFile.getPath(), new File(folder.getRoot(), "first.html").getPath(), environment);
+        Files.write(templateFile.toPath(), Arrays.asList("<!--Start of Header-->", "changed", "<!--End of Header-->"), StandardCharsets.UTF_8);
+        File logFile = new File(folder.getRoot(), "second.html");
+        //WHEN
+        LogFileWriter second = new LogFileWriter(templateFile.getPath(), logFile.getPath(), environment);
+        second.insertBlock("Header", null);
+        second.close();
+        first.close();
+        //THEN
+        Assert.assertEquals("<h1>%Name% %Version%</h1>" + NL, new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testAsyncModeWritesEverythingBeforeDrainReturns() throws IOException {
+        //GIVEN
+        environment.setProperty(Environment.GEPARD_RESULT_ASYNC, "true");
+        File logFile = new File(folder.getRoot(), "async.html");
+        LogFileWriter underTest = new LogFileWriter(templateFile.getPath(), logFile.getPath(), environment);
+        StringBuilder expected = new StringBuilder("<h1>%Name% %Version%</h1>" + NL);
+        underTest.insertBlock("Header", null);
+        for (int i = 0; i < 5000; i++) {
+            underTest.insertText("step " + i);
+            expected.append("step ").append(i).append(NL);
+        }
+        underTest.close();
+        //WHEN
+        underTest.drain();
+        //THEN
+        Assert.assertEquals(expected.toString(), new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testJournalModeRecordsTheBlocksAndTheRendererWritesThemLater() throws IOException {
+        //GIVEN
+        File journalFile = new File(folder.getRoot(), "journal.jsonl");
+        File logFile = new File(folder.getRoot(), "journal.html");
+        Properties props = new Properties();
+        props.setProperty("Name", "\"quoted\"\n\u0001");
+        ResultJournal.start(journalFile);
+        LogFileWriter underTest = new LogFileWriter(templateFile.getPath(), logFile.getPath(), environment);
+        underTest.insertBlock("Header", props);
+        underTest.insertText("text");
+        underTest.close();
+        ResultJournal.stop();
+        Assert.assertFalse(logFile.exists());
+        //WHEN
+        int renderedLogs = new JournalRenderer().render(journalFile);
+        //THEN
+        Assert.assertEquals(1, renderedLogs);
+        String expected = "<h1>\"quoted\"\n\u0001 %Version%</h1>" + NL + "text" + NL;
+        Assert.assertEquals(expected, new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTruncatedAndBrokenJournalLinesAreSkipped() throws IOException {
+        //GIVEN
+        File journalFile = new File(folder.getRoot(), "broken.jsonl");
+        File logFile = new File(folder.getRoot(), "broken.html");
+        ResultJournal.start(journalFile);
+        LogFileWriter underTest = new LogFileWriter(templateFile.getPath(), logFile.getPath(), environment);
+        underTest.insertText("text");
+        underTest.close();
+        ResultJournal.stop();
+        String logId = "{\"event\":\"text\",\"time\":1,\"log\":1,\"text\":\"";
+        Files.write(journalFile.toPath(), Arrays.asList(logId + "bad \\uZZZZ\"}", logId + "cut \\u00"), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        //WHEN
+        int renderedLogs = new JournalRenderer().render(journalFile);
+        //THEN
+        Assert.assertEquals(1, renderedLogs);
+        Assert.assertEquals("text" + NL, new String(Files.readAllBytes(logFile.toPath()), StandardCharsets.UTF_8));
+    }
+}
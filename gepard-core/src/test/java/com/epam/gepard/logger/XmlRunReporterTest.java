@@ -0,0 +1,124 @@
+package com.epam.gepard.logger;
+
+/*==========================================================================
+ Copyright 2004-2015 EPAM Systems
+
+ This file is part of Gepard.
+
+ Gepard is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ Gepard is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with Gepard.  If not, see <http://www.gnu.org/licenses/>.
+===========================================================================*/
+
+import java.io.File;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.epam.gepard.common.Environment;
+import com.epam.gepard.common.NATestCaseException;
+import com.epam.gepard.common.TestClassExecutionData;
+import com.epam.gepard.common.threads.TestClassExecutionThread;
+
+/**
+ * Unit tests for {@link XmlRunReporter}.
+ */
+public class XmlRunReporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBothReportsAreWrittenFromTheSameRun() throws Exception {
+        //GIVEN
+        XmlRunReporter underTest = new XmlRunReporter(folder.getRoot());
+        Description passed = Description.createTestDescription(XmlRunReporterTest.class, "passed");
+        Description notApplicable = Description.createTestDescription(XmlRunReporterTest.class, "notApplicable");
+        Description error = Description.createTestDescription(XmlRunReporterTest.class, "error");
+        underTest.testRunStarted(Description.createSuiteDescription("Suite <1>"));
+        runTest(underTest, passed, null);
+        runTest(underTest, notApplicable, new AssertionError("N/A", new NATestCaseException("not applicable & skipped")));
+        runTest(underTest, error, new IllegalStateException("broken \"state\""));
+        //WHEN
+        underTest.testRunFinished(new Result());
+        //THEN
+        File[] reports = folder.getRoot().listFiles();
+        Assert.assertEquals(2, reports.length);
+        Element test = parse(reports[0].getName().startsWith("TEST-") ? reports[0] : reports[1]);
+        Element itest = parse(reports[0].getName().startsWith("ITEST-") ? reports[0] : reports[1]);
+        Assert.assertEquals("Suite <1>", test.getAttribute("name"));
+        Assert.assertEquals("3", test.getAttribute("tests"));
+        Assert.assertEquals("1", test.getAttribute("failures"));
+        Assert.assertEquals("1", test.getAttribute("errors"));
+        Assert.assertFalse(test.hasAttribute("ignores"));
+        Assert.assertEquals(1, test.getElementsByTagName("failure").getLength());
+        Assert.assertEquals("0", itest.getAttribute("failures"));
+        Assert.assertEquals("1", itest.getAttribute("ignores"));
+        Element ignore = (Element) itest.getElementsByTagName("ignore").item(0);
+        Assert.assertEquals("not applicable & skipped", ignore.getAttribute("message"));
+        Assert.assertEquals("broken \"state\"", ((Element) itest.getElementsByTagName("error").item(0)).getAttribute("message"));
+        NodeList testCases = itest.getElementsByTagName("testcase");
+        Assert.assertEquals(3, testCases.getLength());
+        Assert.assertEquals(XmlRunReporterTest.class.getName(), ((Element) testCases.item(0)).getAttribute("classname"));
+        Assert.assertEquals("0.0", ((Element) testCases.item(0)).getAttribute("time"));
+        Assert.assertEquals("0", itest.getAttribute("time"));
+        Assert.assertTrue(itest.getElementsByTagName("property").getLength() > 0);
+    }
+
+    @Test
+    public void testRetriedRowKeepsTheReportsOfItsLastAttemptOnly() throws Exception {
+        //GIVEN
+        XmlRunReporter underTest = new XmlRunReporter(folder.getRoot());
+        Description test = Description.createTestDescription(XmlRunReporterTest.class, "flaky");
+        TestClassExecutionData classData = new TestClassExecutionData(XmlRunReporterTest.class.getName() + "/3", new Environment());
+        classData.setClassName(XmlRunReporterTest.class.getName());
+        classData.setDataRow(3);
+        TestClassExecutionThread.CLASS_DATA_IN_CONTEXT.set(classData);
+        try {
+            underTest.testRunStarted(Description.createSuiteDescription("Suite"));
+            runTest(underTest, test, new AssertionError("first attempt fails"));
+            underTest.testRunFinished(new Result());
+            //WHEN
+            underTest.testRunStarted(Description.createSuiteDescription("Suite"));
+            runTest(underTest, test, null);
+            underTest.testRunFinished(new Result());
+        } finally {
+            TestClassExecutionThread.CLASS_DATA_IN_CONTEXT.set(null);
+        }
+        //THEN
+        Assert.assertEquals(2, folder.getRoot().listFiles().length);
+        Element report = parse(new File(folder.getRoot(), "TEST-" + XmlRunReporterTest.class.getName() + "_3.xml"));
+        Assert.assertEquals("1", report.getAttribute("tests"));
+        Assert.assertEquals("0", report.getAttribute("failures"));
+    }
+
+    private void runTest(final XmlRunReporter underTest, final Description description, final Throwable problem) throws Exception {
+        underTest.testStarted(description);
+        if (problem != null) {
+            underTest.testFailure(new Failure(description, problem));
+        }
+        underTest.testFinished(description);
+    }
+
+    private Element parse(final File file) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file).getDocumentElement();
+    }
+}
@@ -29,7 +29,7 @@ import org.junit.rules.Timeout;
  *
  * @author tkohegyi
  */
-@TestClass(id = "DEMO-4", name = "Timeout Handling, Sample")
+@TestClass(id = "DEMO-4", name = "Timeout Handling, Sample", timeout = 60)
 public class SampleTimeoutHandlingTest implements GepardTestClass {
 
     //CHECKSTYLE.OFF
@@ -27,7 +27,7 @@ import com.epam.gepard.generic.GepardTestClass;
  *
  * @author tkohegyi
  */
-@TestClass(id = "DEMO-3", name = "Dependency Sample (b)")
+@TestClass(id = "DEMO-3", name = "Dependency Sample (b)", dependsOn = DependencyATest.class)
 public class DependencyBTest implements GepardTestClass {
 
     public void testNeedToPass() {